@@ -0,0 +1,165 @@
+package com.ispringle.dumbcast;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.ispringle.dumbcast.data.DatabaseHelper;
+import com.ispringle.dumbcast.data.Episode;
+import com.ispringle.dumbcast.data.EpisodeRepository;
+import com.ispringle.dumbcast.data.Podcast;
+import com.ispringle.dumbcast.data.PodcastRepository;
+import com.ispringle.dumbcast.services.AutoDownloadPolicy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the auto-download rules with synthetic device conditions.
+ * Nothing is queued and no network is needed: evaluate() only produces a plan.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AutoDownloadPolicyTest {
+
+    private static final long MB = 1024L * 1024L;
+    // Where DownloadService persists its download ID -> episode ID mapping
+    private static final String DOWNLOAD_PREFS = "download_prefs";
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private EpisodeRepository episodeRepository;
+    private PodcastRepository podcastRepository;
+    private AutoDownloadPolicy policy;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase("dumbcast.db");
+        dbHelper = new DatabaseHelper(context);
+        episodeRepository = new EpisodeRepository(dbHelper);
+        podcastRepository = new PodcastRepository(dbHelper);
+        policy = new AutoDownloadPolicy(context, dbHelper);
+        context.getSharedPreferences(DOWNLOAD_PREFS, Context.MODE_PRIVATE).edit().clear().commit();
+    }
+
+    @After
+    public void tearDown() {
+        context.getSharedPreferences(DOWNLOAD_PREFS, Context.MODE_PRIVATE).edit().clear().commit();
+        dbHelper.close();
+        context.deleteDatabase("dumbcast.db");
+    }
+
+    @Test
+    public void testDisabledPodcastDownloadsNothing() {
+        long podcastId = insertPodcast(false, 3);
+        List<Long> ids = insertEpisodes(podcastId, 2, 10 * MB);
+
+        AutoDownloadPolicy.Plan plan = policy.evaluate(ids, conditions(true, true, 0, 1000 * MB));
+
+        assertEquals(2, plan.decisions.size());
+        assertEquals(0, plan.getEpisodeIdsToDownload().length);
+    }
+
+    @Test
+    public void testKeepLatestPicksNewestEpisodes() {
+        long podcastId = insertPodcast(true, 2);
+        List<Long> ids = insertEpisodes(podcastId, 5, 10 * MB);
+
+        AutoDownloadPolicy.Plan plan = policy.evaluate(ids, conditions(true, true, 0, 1000 * MB));
+
+        long[] toDownload = plan.getEpisodeIdsToDownload();
+        assertEquals(2, toDownload.length);
+        // insertEpisodes() publishes each episode later than the previous one
+        assertEquals((long) ids.get(4), toDownload[0]);
+        assertEquals((long) ids.get(3), toDownload[1]);
+    }
+
+    @Test
+    public void testStorageBudgetIsRespected() {
+        long podcastId = insertPodcast(true, 10);
+        List<Long> ids = insertEpisodes(podcastId, 4, 40 * MB);
+
+        // 30 MB already used of a 100 MB budget leaves room for one 40 MB episode
+        AutoDownloadPolicy.Plan plan = policy.evaluate(ids, conditions(true, true, 30 * MB, 100 * MB));
+
+        assertEquals(1, plan.getEpisodeIdsToDownload().length);
+    }
+
+    @Test
+    public void testMeteredNetworkStillQueuesButWaits() {
+        long podcastId = insertPodcast(true, 1);
+        List<Long> ids = insertEpisodes(podcastId, 1, 10 * MB);
+
+        AutoDownloadPolicy.Plan plan = policy.evaluate(ids, conditions(false, true, 0, 1000 * MB));
+
+        assertEquals(1, plan.getEpisodeIdsToDownload().length);
+        assertTrue(plan.decisions.get(0).reason.contains("Wi-Fi"));
+    }
+
+    @Test
+    public void testQueuedDownloadsCountAgainstKeepLatest() {
+        long podcastId = insertPodcast(true, 2);
+        List<Long> ids = insertEpisodes(podcastId, 4, 10 * MB);
+
+        // An earlier refresh queued two episodes that are still waiting for Wi-Fi
+        markQueued(ids.get(0));
+        markQueued(ids.get(1));
+        AutoDownloadPolicy.Plan plan = policy.evaluate(ids, conditions(false, true, 0, 1000 * MB));
+
+        assertEquals(0, plan.getEpisodeIdsToDownload().length);
+        for (AutoDownloadPolicy.Decision decision : plan.decisions) {
+            long id = decision.episode.getId();
+            assertEquals(id == ids.get(0) || id == ids.get(1) ? "already queued" : "keeping latest 2",
+                decision.reason);
+        }
+    }
+
+    @Test
+    public void testQueuedDownloadsCountAgainstStorageBudget() {
+        long podcastId = insertPodcast(true, 10);
+        List<Long> ids = insertEpisodes(podcastId, 4, 40 * MB);
+
+        // Nothing on disk yet, but one queued 40 MB download leaves room for one more in 100 MB
+        markQueued(ids.get(0));
+        AutoDownloadPolicy.Plan plan = policy.evaluate(ids.subList(1, 4), conditions(true, true, 0, 100 * MB));
+
+        assertEquals(1, plan.getEpisodeIdsToDownload().length);
+    }
+
+    private void markQueued(long episodeId) {
+        context.getSharedPreferences(DOWNLOAD_PREFS, Context.MODE_PRIVATE).edit()
+            .putLong("download_" + (1000 + episodeId), episodeId)
+            .commit();
+    }
+
+    private AutoDownloadPolicy.Conditions conditions(boolean unmetered, boolean charging,
+                                                     long usedBytes, long budgetBytes) {
+        return new AutoDownloadPolicy.Conditions(unmetered, charging, usedBytes, Long.MAX_VALUE, budgetBytes);
+    }
+
+    private long insertPodcast(boolean autoDownload, int keepLatest) {
+        Podcast podcast = new Podcast(0, "http://example.com/feed.xml", "Test Podcast");
+        podcast.setAutoDownload(autoDownload);
+        podcast.setAutoDownloadKeepLatest(keepLatest);
+        return podcastRepository.insertPodcast(podcast);
+    }
+
+    private List<Long> insertEpisodes(long podcastId, int count, long sizeBytes) {
+        List<Long> ids = new ArrayList<>();
+        long base = System.currentTimeMillis() - count * 60000L;
+        for (int i = 0; i < count; i++) {
+            Episode episode = new Episode(podcastId, "guid-" + i, "Episode " + i,
+                "http://example.com/ep" + i + ".mp3", base + i * 60000L);
+            episode.setEnclosureLength(sizeBytes);
+            ids.add(episodeRepository.insertEpisode(episode));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,102 @@
+package com.ispringle.dumbcast;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.ispringle.dumbcast.data.Chapter;
+import com.ispringle.dumbcast.services.ChapterIndex;
+import com.ispringle.dumbcast.utils.ChaptersParser;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Parsing of Podcasting 2.0 chapters files and chapter seeking arithmetic.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ChaptersTest {
+
+    @Test
+    public void testParsesChaptersAndSkipsUnusedFields() throws IOException {
+        String json = "{\"version\":\"1.2.0\",\"author\":\"x\",\"chapters\":[" +
+            "{\"startTime\":0,\"title\":\"Intro\",\"img\":\"https://example.com/a.jpg\"}," +
+            "{\"startTime\":62.5,\"title\":\"Topic\",\"location\":{\"name\":\"Paris\",\"geo\":\"geo:1,2\"}}," +
+            "{\"startTime\":90,\"title\":\"Hidden\",\"toc\":false}," +
+            "{\"startTime\":120,\"url\":\"https://example.com\"}" +
+            "],\"extra\":[1,2,3]}";
+
+        List<Chapter> chapters = ChaptersParser.parse(stream(json));
+
+        assertEquals(3, chapters.size());
+        assertEquals(0, chapters.get(0).getStartMs());
+        assertEquals("Intro", chapters.get(0).getTitle());
+        assertEquals(62500, chapters.get(1).getStartMs());
+        assertEquals(120000, chapters.get(2).getStartMs());
+        assertNull(chapters.get(2).getTitle());
+    }
+
+    @Test
+    public void testSortsAndDeduplicatesStartTimes() throws IOException {
+        String json = "{\"chapters\":[{\"startTime\":300,\"title\":\"C\"},{\"startTime\":10,\"title\":\"A\"}," +
+            "{\"startTime\":10,\"title\":\"A again\"},{\"startTime\":\"200\",\"title\":\"B\"}]}";
+
+        List<Chapter> chapters = ChaptersParser.parse(stream(json));
+
+        assertEquals(3, chapters.size());
+        assertEquals("A", chapters.get(0).getTitle());
+        assertEquals("B", chapters.get(1).getTitle());
+        assertEquals("C", chapters.get(2).getTitle());
+    }
+
+    @Test(expected = ChaptersParser.InvalidChaptersException.class)
+    public void testMalformedFileIsRejected() throws IOException {
+        ChaptersParser.parse(stream("<html>Not found</html>"));
+    }
+
+    @Test
+    public void testIndexLookup() {
+        ChapterIndex index = ChapterIndex.of(chapters(0, 60000, 300000));
+
+        assertEquals(0, index.indexAt(0));
+        assertEquals(0, index.indexAt(59999));
+        assertEquals(1, index.indexAt(60000));
+        assertEquals(2, index.indexAt(7200000));
+        assertEquals(-1, ChapterIndex.of(chapters(5000)).indexAt(1000));
+    }
+
+    @Test
+    public void testNextAndPreviousChapter() {
+        ChapterIndex index = ChapterIndex.of(chapters(0, 60000, 300000));
+
+        assertEquals(60000, index.nextStart(1000));
+        assertEquals(300000, index.nextStart(60000));
+        assertEquals(-1, index.nextStart(300000));
+
+        // Well into a chapter: back to its start
+        assertEquals(60000, index.previousStart(120000));
+        // Just after a chapter started: back to the one before
+        assertEquals(0, index.previousStart(61000));
+        // At the very beginning there is nothing earlier
+        assertEquals(0, index.previousStart(500));
+    }
+
+    private static List<Chapter> chapters(long... starts) {
+        List<Chapter> chapters = new ArrayList<>();
+        for (long start : starts) {
+            chapters.add(new Chapter(start, "Chapter at " + start));
+        }
+        return chapters;
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
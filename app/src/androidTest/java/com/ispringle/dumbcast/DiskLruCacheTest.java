@@ -0,0 +1,130 @@
+package com.ispringle.dumbcast;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.ispringle.dumbcast.utils.DiskLruCache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Size accounting, access-order eviction and journal replay of the artwork disk cache.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DiskLruCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void put(DiskLruCache cache, String key, int length) throws IOException {
+        File temp = cache.beginWrite(key);
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(new byte[length]);
+        }
+        assertNotNull(cache.commit(key, temp));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws IOException {
+        DiskLruCache cache = new DiskLruCache(folder.getRoot(), 300);
+        put(cache, "a", 100);
+        put(cache, "b", 100);
+        put(cache, "c", 100);
+        assertEquals(300, cache.getSize());
+
+        // Reading a makes b the eldest
+        assertNotNull(cache.get("a"));
+        put(cache, "d", 100);
+
+        assertNull(cache.get("b"));
+        assertFalse(new File(folder.getRoot(), "b").exists());
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertNotNull(cache.get("d"));
+        assertEquals(300, cache.getSize());
+    }
+
+    @Test
+    public void testOverwriteKeepsSizeExact() throws IOException {
+        DiskLruCache cache = new DiskLruCache(folder.getRoot(), 1000);
+        put(cache, "a", 100);
+        put(cache, "a", 250);
+
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(250, cache.getSize());
+
+        cache.remove("a");
+        assertEquals(0, cache.getSize());
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void testConcurrentWritesOfOneKeyDoNotShareAFile() throws IOException {
+        DiskLruCache cache = new DiskLruCache(folder.getRoot(), 1000);
+        File first = cache.beginWrite("a");
+        File second = cache.beginWrite("a");
+        assertNotEquals(first, second);
+
+        try (FileOutputStream out = new FileOutputStream(first)) {
+            out.write(new byte[100]);
+        }
+        try (FileOutputStream out = new FileOutputStream(second)) {
+            out.write(new byte[200]);
+        }
+        File committed = cache.commit("a", second);
+        // The other write failing afterwards leaves the committed entry alone
+        cache.abort(first);
+
+        assertNotNull(committed);
+        assertEquals(200, committed.length());
+        assertEquals(200, cache.getSize());
+        assertFalse(first.exists());
+    }
+
+    @Test
+    public void testReopenReplaysJournal() throws IOException {
+        DiskLruCache cache = new DiskLruCache(folder.getRoot(), 300);
+        put(cache, "a", 100);
+        put(cache, "b", 100);
+        put(cache, "c", 100);
+        cache.get("a");
+        cache.remove("c");
+        cache.close();
+
+        DiskLruCache reopened = new DiskLruCache(folder.getRoot(), 300);
+        assertEquals(2, reopened.getEntryCount());
+        assertEquals(200, reopened.getSize());
+
+        // Access order survived: b is still the eldest
+        put(reopened, "d", 100);
+        put(reopened, "e", 100);
+        assertNull(reopened.get("b"));
+        assertNotNull(reopened.get("a"));
+    }
+
+    @Test
+    public void testRebuildsWithoutJournal() throws IOException {
+        File root = folder.getRoot();
+        try (FileOutputStream out = new FileOutputStream(new File(root, "old"))) {
+            out.write(new byte[50]);
+        }
+        try (FileOutputStream out = new FileOutputStream(new File(root, "partial.tmp"))) {
+            out.write(new byte[50]);
+        }
+
+        DiskLruCache cache = new DiskLruCache(root, 1000);
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(50, cache.getSize());
+        assertNotNull(cache.get("old"));
+        assertFalse(new File(root, "partial.tmp").exists());
+        assertTrue(new File(root, "journal").exists());
+    }
+}
@@ -0,0 +1,205 @@
+package com.ispringle.dumbcast;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.ispringle.dumbcast.data.CompressedText;
+import com.ispringle.dumbcast.data.DatabaseHelper;
+import com.ispringle.dumbcast.data.Episode;
+import com.ispringle.dumbcast.data.EpisodeRepository;
+import com.ispringle.dumbcast.data.Podcast;
+import com.ispringle.dumbcast.data.PodcastRepository;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Show notes stored compressed outside the episodes table, and what that does
+ * to database size and list queries on a large synthetic library.
+ */
+@RunWith(AndroidJUnit4.class)
+public class EpisodeDescriptionStorageTest {
+
+    private static final String TAG = "EpisodeDescriptionStorageTest";
+    private static final int LIBRARY_EPISODES = 20000;
+    private static final String[] WORDS = {
+        "the", "show", "we", "talk", "about", "episode", "guest", "this", "week", "and", "news",
+        "listener", "question", "follow", "links", "sponsor", "today", "interview", "story", "more"
+    };
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private EpisodeRepository repository;
+    private long podcastId;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase("dumbcast.db");
+        dbHelper = new DatabaseHelper(context);
+        repository = new EpisodeRepository(dbHelper);
+        podcastId = new PodcastRepository(dbHelper).insertPodcast(
+            new Podcast(0, "https://example.com/feed", "Show"));
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase("dumbcast.db");
+        context.deleteDatabase("inline_descriptions.db");
+        context.deleteDatabase("side_descriptions.db");
+    }
+
+    private static String showNotes(Random random, int paragraphs) {
+        StringBuilder html = new StringBuilder();
+        for (int p = 0; p < paragraphs; p++) {
+            html.append("<p>");
+            for (int w = 0; w < 60; w++) {
+                html.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            html.append("<a href=\"").append(random.nextInt(5) + 1).append("\">link</a></p>");
+        }
+        return html.toString();
+    }
+
+    @Test
+    public void testCompressedTextRoundTrip() {
+        String text = showNotes(new Random(1), 20) + " caf\u00e9 \uD83C\uDF99";
+        byte[] compressed = CompressedText.compress(text);
+
+        assertTrue(compressed.length * 2 < text.length());
+        assertEquals(text, CompressedText.decompress(compressed));
+        assertEquals("", CompressedText.decompress(CompressedText.compress("")));
+        assertNull(CompressedText.decompress(new byte[]{(byte) 0xff, 0x00, 0x13}));
+    }
+
+    @Test
+    public void testEpisodesDoNotCarryShowNotes() {
+        Episode episode = new Episode(podcastId, "guid-1", "Episode", "https://example.com/1.mp3", 1000);
+        episode.setDescription("<p>Notes with a <a href=\"https://example.com/link\">link</a></p>");
+        long id = repository.insertEpisode(episode);
+
+        assertNull(repository.getEpisodeById(id).getDescription());
+        assertEquals("<p>Notes with a <a href=\"https://example.com/link\">link</a></p>",
+            repository.getShowNotesHtml(id));
+
+        // Not a column of the episodes table in a new database
+        Cursor cursor = dbHelper.getReadableDatabase().rawQuery(
+            "PRAGMA table_info(" + DatabaseHelper.TABLE_EPISODES + ")", null);
+        while (cursor.moveToNext()) {
+            assertNotEquals(DatabaseHelper.COL_EPISODE_DESCRIPTION, cursor.getString(1));
+        }
+        cursor.close();
+    }
+
+    @Test
+    public void testUpdatedShowNotesReplaceStoredOnes() {
+        Episode episode = new Episode(podcastId, "guid-2", "Episode", "https://example.com/2.mp3", 1000);
+        long id = repository.insertEpisode(episode);
+        assertNull(repository.getShowNotesHtml(id));
+
+        repository.updateEpisodeDescription(id, "<p>First</p>");
+        repository.updateEpisodeDescription(id, "<div>Second</div>");
+
+        assertEquals("<p>Second</p>", repository.getShowNotesHtml(id));
+    }
+
+    /**
+     * The same synthetic library stored with show notes inline in the episode rows,
+     * as before, and in a compressed side table. Sizes and list query times go to
+     * the log; only the size is asserted, timings vary too much between devices.
+     * The figures quoted when the side table was introduced came from desktop
+     * SQLite with the same schema, not from this test; until it has been run on a
+     * device they are unverified on Android.
+     */
+    @Test
+    public void testSyntheticLibraryIsSmallerWithSideTable() {
+        SQLiteDatabase inline = createLibrary("inline_descriptions.db", false);
+        SQLiteDatabase side = createLibrary("side_descriptions.db", true);
+
+        long inlineListMs = timeListQueries(inline);
+        long sideListMs = timeListQueries(side);
+        long inlineBytes = fileSize(inline);
+        long sideBytes = fileSize(side);
+        inline.close();
+        side.close();
+
+        Log.i(TAG, LIBRARY_EPISODES + " episodes: inline " + inlineBytes / 1024 + " KB, list " + inlineListMs +
+              " ms; side table " + sideBytes / 1024 + " KB, list " + sideListMs + " ms");
+        assertTrue(sideBytes * 2 < inlineBytes);
+    }
+
+    private SQLiteDatabase createLibrary(String name, boolean sideTable) {
+        context.deleteDatabase(name);
+        SQLiteDatabase db = context.openOrCreateDatabase(name, Context.MODE_PRIVATE, null);
+        // Everything in the main file, so its size is the whole database
+        db.disableWriteAheadLogging();
+        db.execSQL("CREATE TABLE episodes (id INTEGER PRIMARY KEY, podcast_id INTEGER NOT NULL, " +
+            "title TEXT NOT NULL, " + (sideTable ? "" : "description TEXT, ") +
+            "published_at INTEGER NOT NULL, state TEXT NOT NULL, duration INTEGER)");
+        db.execSQL("CREATE INDEX idx_episodes_state ON episodes(state)");
+        if (sideTable) {
+            db.execSQL("CREATE TABLE episode_descriptions (episode_id INTEGER PRIMARY KEY, body BLOB NOT NULL)");
+        }
+
+        Random random = new Random(LIBRARY_EPISODES);
+        String[] states = {"NEW", "AVAILABLE", "AVAILABLE", "AVAILABLE", "BACKLOG", "LISTENED"};
+        db.beginTransaction();
+        try {
+            for (int i = 1; i <= LIBRARY_EPISODES; i++) {
+                String notes = showNotes(random, 3 + random.nextInt(8));
+                Object[] row = {i, i % 50, "Episode " + i, i * 1000L, states[i % states.length], 1800 + i % 1800};
+                if (sideTable) {
+                    db.execSQL("INSERT INTO episodes (id, podcast_id, title, published_at, state, duration) " +
+                        "VALUES (?, ?, ?, ?, ?, ?)", row);
+                    db.execSQL("INSERT INTO episode_descriptions (episode_id, body) VALUES (?, ?)",
+                        new Object[]{i, CompressedText.compress(notes)});
+                } else {
+                    db.execSQL("INSERT INTO episodes (id, podcast_id, title, description, published_at, state, duration) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?)", new Object[]{i, i % 50, "Episode " + i, notes,
+                        i * 1000L, states[i % states.length], 1800 + i % 1800});
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return db;
+    }
+
+    /**
+     * The shape of the tab queries: an ordered list by state, and a count.
+     * @return Milliseconds for a few rounds of both
+     */
+    private static long timeListQueries(SQLiteDatabase db) {
+        long start = System.currentTimeMillis();
+        for (int round = 0; round < 5; round++) {
+            Cursor cursor = db.rawQuery("SELECT id, podcast_id, title, published_at, state, duration FROM episodes " +
+                "WHERE state = ? ORDER BY published_at DESC", new String[]{"AVAILABLE"});
+            int rows = 0;
+            while (cursor.moveToNext()) {
+                rows++;
+            }
+            cursor.close();
+            assertTrue(rows > LIBRARY_EPISODES / 3);
+            assertEquals(LIBRARY_EPISODES, DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM episodes", null));
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    private static long fileSize(SQLiteDatabase db) {
+        return new File(db.getPath()).length();
+    }
+}
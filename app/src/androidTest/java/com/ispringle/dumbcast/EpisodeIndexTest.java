@@ -0,0 +1,147 @@
+package com.ispringle.dumbcast;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.ispringle.dumbcast.data.DatabaseHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Query plans of the episode list and maintenance queries: each should read
+ * through an index made for it, with no temporary sort. The SQL mirrors what
+ * EpisodeRepository runs.
+ */
+@RunWith(AndroidJUnit4.class)
+public class EpisodeIndexTest {
+
+    private static final String TAG = "EpisodeIndexTest";
+    private static final String E = DatabaseHelper.TABLE_EPISODES;
+    private static final String PODCAST = DatabaseHelper.COL_EPISODE_PODCAST_ID;
+    private static final String STATE = DatabaseHelper.COL_EPISODE_STATE;
+    private static final String PUBLISHED = DatabaseHelper.COL_EPISODE_PUBLISHED_AT;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase("dumbcast.db");
+        dbHelper = new DatabaseHelper(context);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase("dumbcast.db");
+    }
+
+    /**
+     * @return The query plan, one step per line
+     */
+    private String plan(String sql, String... args) {
+        Cursor cursor = dbHelper.getReadableDatabase().rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        StringBuilder plan = new StringBuilder();
+        int detail = cursor.getColumnIndexOrThrow("detail");
+        while (cursor.moveToNext()) {
+            plan.append(cursor.getString(detail)).append('\n');
+        }
+        cursor.close();
+        Log.d(TAG, sql + "\n" + plan);
+        return plan.toString();
+    }
+
+    private void assertUsesIndex(String index, String sql, String... args) {
+        String plan = plan(sql, args);
+        assertTrue(sql + "\n" + plan, plan.contains(index));
+        assertFalse(sql + "\n" + plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void testPodcastListsReadInDateOrder() {
+        assertUsesIndex("idx_episodes_podcast_published",
+            "SELECT * FROM " + E + " WHERE " + PODCAST + " = ? ORDER BY " + PUBLISHED + " DESC", "1");
+        assertUsesIndex("idx_episodes_podcast_published",
+            "SELECT * FROM " + E + " WHERE " + PODCAST + " = ? ORDER BY " + PUBLISHED + " ASC", "1");
+        assertUsesIndex("idx_episodes_podcast_published",
+            "SELECT COUNT(*) as count FROM " + E + " WHERE " + PODCAST + " = ?", "1");
+        assertUsesIndex("idx_episodes_podcast_state_published",
+            "SELECT * FROM " + E + " WHERE " + PODCAST + " = ? AND " + STATE + " = ? ORDER BY " +
+            PUBLISHED + " DESC", "1", "NEW");
+        assertUsesIndex("idx_episodes_podcast_state_published",
+            "SELECT COUNT(*) FROM " + E + " WHERE " + PODCAST + " = ? AND " + STATE + " = ?", "1", "NEW");
+    }
+
+    @Test
+    public void testStateTabsUsePartialIndexes() {
+        assertUsesIndex("idx_episodes_backlog",
+            "SELECT * FROM " + E + " WHERE " + STATE + " = 'BACKLOG' ORDER BY " + PUBLISHED + " DESC");
+        assertUsesIndex("idx_episodes_backlog",
+            "SELECT COUNT(*) FROM " + E + " WHERE " + STATE + " = 'BACKLOG'");
+        assertUsesIndex("idx_episodes_new",
+            "SELECT COUNT(*) FROM " + E + " WHERE " + STATE + " = 'NEW'");
+    }
+
+    @Test
+    public void testMaintenanceQueriesUsePartialIndexes() {
+        assertUsesIndex("idx_episodes_new",
+            "SELECT MIN(CASE WHEN " + DatabaseHelper.COL_EPISODE_SESSION_GRACE + " = 1 THEN 0 ELSE " +
+            DatabaseHelper.COL_EPISODE_FETCHED_AT + " END) FROM " + E + " WHERE " + STATE + " = 'NEW'");
+        assertUsesIndex("idx_episodes_new",
+            "UPDATE " + E + " SET " + STATE + " = 'AVAILABLE' WHERE " + STATE + " = 'NEW' AND (" +
+            DatabaseHelper.COL_EPISODE_SESSION_GRACE + " = 1 OR " + DatabaseHelper.COL_EPISODE_FETCHED_AT + " <= ?)", "0");
+        assertUsesIndex("idx_episodes_downloaded",
+            "UPDATE " + E + " SET " + STATE + " = 'BACKLOG' WHERE " + DatabaseHelper.COL_EPISODE_DOWNLOAD_PATH +
+            " IS NOT NULL AND " + STATE + " != ? AND " + STATE + " != ?", "BACKLOG", "LISTENED");
+    }
+
+    @Test
+    public void testUpgradeReplacesOldIndexes() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        // Back to the version 14 indexes
+        for (String index : new String[]{"idx_episodes_podcast_published", "idx_episodes_podcast_state_published",
+                "idx_episodes_new", "idx_episodes_backlog", "idx_episodes_downloaded"}) {
+            db.execSQL("DROP INDEX " + index);
+        }
+        db.execSQL("CREATE INDEX idx_episodes_state ON " + E + "(" + STATE + ")");
+        db.execSQL("CREATE INDEX idx_episodes_podcast_state ON " + E + "(" + PODCAST + ", " + STATE + ")");
+        db.execSQL("CREATE INDEX idx_episodes_fetched_at ON " + E + "(" + DatabaseHelper.COL_EPISODE_FETCHED_AT + ")");
+
+        dbHelper.onUpgrade(db, 14, 15);
+
+        List<String> indexes = indexes(db);
+        assertFalse(indexes.contains("idx_episodes_state"));
+        assertFalse(indexes.contains("idx_episodes_podcast_state"));
+        assertFalse(indexes.contains("idx_episodes_fetched_at"));
+        assertTrue(indexes.contains("idx_episodes_published_at"));
+        assertTrue(indexes.contains("idx_episodes_podcast_published"));
+        assertTrue(indexes.contains("idx_episodes_podcast_state_published"));
+        assertTrue(indexes.contains("idx_episodes_new"));
+        assertTrue(indexes.contains("idx_episodes_backlog"));
+        assertTrue(indexes.contains("idx_episodes_downloaded"));
+    }
+
+    private static List<String> indexes(SQLiteDatabase db) {
+        List<String> indexes = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name = ?",
+            new String[]{DatabaseHelper.TABLE_EPISODES});
+        while (cursor.moveToNext()) {
+            indexes.add(cursor.getString(0));
+        }
+        cursor.close();
+        return indexes;
+    }
+}
@@ -0,0 +1,112 @@
+package com.ispringle.dumbcast;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.annotation.UiThreadTest;
+import android.support.test.rule.UiThreadTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+import android.widget.ListView;
+
+import com.ispringle.dumbcast.adapters.EpisodeAdapter;
+import com.ispringle.dumbcast.data.Episode;
+import com.ispringle.dumbcast.data.EpisodeState;
+import com.ispringle.dumbcast.data.Podcast;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Episode changes rebind only the rows they affect.
+ */
+@RunWith(AndroidJUnit4.class)
+public class EpisodeRowPatchTest {
+
+    private static final int ROWS = 5;
+
+    @Rule
+    public UiThreadTestRule uiThreadTestRule = new UiThreadTestRule();
+
+    private ListView listView;
+    private EpisodeAdapter adapter;
+    private Map<Long, Podcast> podcasts;
+
+    private static Episode episode(long id, EpisodeState state) {
+        Episode episode = new Episode(1, "guid-" + id, "Episode " + id, "https://example.com/" + id + ".mp3", id * 1000);
+        episode.setId(id);
+        episode.setDuration(1800);
+        episode.setState(state);
+        return episode;
+    }
+
+    private static List<Episode> episodes() {
+        List<Episode> episodes = new ArrayList<>();
+        for (long id = 1; id <= ROWS; id++) {
+            episodes.add(episode(id, EpisodeState.AVAILABLE));
+        }
+        return episodes;
+    }
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        podcasts = new HashMap<>();
+        podcasts.put(1L, new Podcast(1, "https://example.com/feed", "Show"));
+        adapter = new EpisodeAdapter(context, new ArrayList<>(episodes()), podcasts);
+        listView = new ListView(context);
+        listView.setAdapter(adapter);
+        listView.measure(View.MeasureSpec.makeMeasureSpec(480, View.MeasureSpec.EXACTLY),
+            View.MeasureSpec.makeMeasureSpec(4000, View.MeasureSpec.EXACTLY));
+        listView.layout(0, 0, 480, 4000);
+    }
+
+    @Test
+    @UiThreadTest
+    public void testMarkingOneEpisodeListenedRebindsOneRow() {
+        assertEquals(ROWS, listView.getChildCount());
+        int binds = adapter.getBindCount();
+
+        assertTrue(adapter.patchRow(episode(3, EpisodeState.LISTENED), listView));
+
+        assertEquals(1, adapter.getBindCount() - binds);
+        assertEquals(EpisodeState.LISTENED, adapter.getItem(2).getState());
+        assertEquals(ROWS, adapter.getCount());
+    }
+
+    @Test
+    @UiThreadTest
+    public void testReloadRebindsOnlyChangedRows() {
+        int binds = adapter.getBindCount();
+        List<Episode> reloaded = episodes();
+        reloaded.set(1, episode(2, EpisodeState.BACKLOG));
+
+        assertTrue(adapter.setRows(reloaded, podcasts, false, listView));
+        assertEquals(1, adapter.getBindCount() - binds);
+
+        // Nothing changed: nothing rebound
+        assertFalse(adapter.setRows(reloaded, podcasts, false, listView));
+        assertEquals(1, adapter.getBindCount() - binds);
+    }
+
+    @Test
+    @UiThreadTest
+    public void testUnchangedOrMissingEpisodesAreNotRebound() {
+        int binds = adapter.getBindCount();
+
+        // Same as shown: row updated without a rebind
+        assertTrue(adapter.patchRow(episode(4, EpisodeState.AVAILABLE), listView));
+        // Not one of the rows
+        assertFalse(adapter.patchRow(episode(99, EpisodeState.NEW), listView));
+
+        assertEquals(0, adapter.getBindCount() - binds);
+    }
+}
@@ -0,0 +1,282 @@
+package com.ispringle.dumbcast;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.ispringle.dumbcast.data.DatabaseHelper;
+import com.ispringle.dumbcast.data.Episode;
+import com.ispringle.dumbcast.data.EpisodeRepository;
+import com.ispringle.dumbcast.data.EpisodeState;
+import com.ispringle.dumbcast.data.Podcast;
+import com.ispringle.dumbcast.data.PodcastRepository;
+import com.ispringle.dumbcast.utils.EpisodeSearch;
+import com.ispringle.dumbcast.utils.ShowNotesNormalizer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Episode search: query building, keeping the index in step with episodes, and
+ * latency on a synthetic 50,000 episode library.
+ */
+@RunWith(AndroidJUnit4.class)
+public class EpisodeSearchTest {
+
+    private static final String TAG = "EpisodeSearchTest";
+    private static final int LIBRARY_EPISODES = 50000;
+    private static final String[] WORDS = {
+        "history", "science", "music", "interview", "politics", "football", "cooking", "startup",
+        "language", "weather", "garden", "travel", "comedy", "review", "mystery", "ocean",
+        "machine", "learning", "climate", "design", "finance", "health", "space", "theatre"
+    };
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private EpisodeRepository repository;
+    private long podcastId;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase("dumbcast.db");
+        dbHelper = new DatabaseHelper(context);
+        repository = new EpisodeRepository(dbHelper);
+        podcastId = new PodcastRepository(dbHelper).insertPodcast(
+            new Podcast(0, "https://example.com/feed", "Show"));
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase("dumbcast.db");
+    }
+
+    private long insert(String guid, String title, long publishedAt) {
+        return repository.insertEpisode(
+            new Episode(podcastId, guid, title, "https://example.com/" + guid + ".mp3", publishedAt));
+    }
+
+    private List<Episode> search(String query) {
+        return repository.searchEpisodes(query, -1, null, 100, null);
+    }
+
+    @Test
+    public void testKeypadDigits() {
+        assertEquals("43556 96753", EpisodeSearch.toKeypadDigits("Hello World"));
+        assertEquals("2233 79", EpisodeSearch.toKeypadDigits("Caf\u00e9-Pz"));
+        assertEquals(" 4 2 2278", EpisodeSearch.toKeypadDigits("#4 a Cast"));
+    }
+
+    @Test
+    public void testMatchQueries() {
+        assertNull(EpisodeSearch.toMatchQuery(null, "keypad"));
+        assertNull(EpisodeSearch.toMatchQuery(" a ", "keypad"));
+        assertNull(EpisodeSearch.toMatchQuery("--", "keypad"));
+
+        assertEquals("keypad:4355* keypad:9*", EpisodeSearch.toMatchQuery("4355 9", "keypad"));
+        assertEquals("hello* world*", EpisodeSearch.toMatchQuery("Hello, World", "keypad"));
+        // Query syntax typed in is searched for as words
+        assertEquals("title* foo* or* bar*", EpisodeSearch.toMatchQuery("title:foo OR \"bar", "keypad"));
+        assertEquals("cafe*", EpisodeSearch.toMatchQuery("Caf\u00e9", "keypad"));
+    }
+
+    @Test
+    public void testScoreFavoursTitlesAndRareWords() {
+        // One phrase, three columns: a title hit outranks a show notes hit
+        byte[] title = matchinfo(1, 3, new int[][]{{1, 10, 10}, {0, 10, 10}, {0, 0, 0}});
+        byte[] notes = matchinfo(1, 3, new int[][]{{0, 10, 10}, {1, 10, 10}, {0, 0, 0}});
+        byte[] rare = matchinfo(1, 3, new int[][]{{1, 2, 2}, {0, 10, 10}, {0, 0, 0}});
+
+        assertTrue(EpisodeSearch.score(title) > EpisodeSearch.score(notes));
+        assertTrue(EpisodeSearch.score(rare) > EpisodeSearch.score(title));
+        assertEquals(0.0, EpisodeSearch.score(matchinfo(1, 3, new int[3][3])), 0.0);
+    }
+
+    private static byte[] matchinfo(int phrases, int columns, int[][] hits) {
+        ByteBuffer info = ByteBuffer.allocate(4 * (2 + 3 * phrases * columns)).order(ByteOrder.nativeOrder());
+        info.putInt(phrases).putInt(columns);
+        for (int[] column : hits) {
+            for (int value : column) {
+                info.putInt(value);
+            }
+        }
+        return info.array();
+    }
+
+    @Test
+    public void testPlainTextFromShowNotes() {
+        assertEquals("Links: one & two \"here\"",
+            ShowNotesNormalizer.plainText("<p><b>Links:</b></p><ul><li>one &amp; two</li><li>&quot;here&quot;</li></ul>", 100));
+        assertEquals("abcd", ShowNotesNormalizer.plainText("<p>abcdef</p>", 4));
+    }
+
+    @Test
+    public void testKeypadAndTextSearchFindTitles() {
+        long hello = insert("guid-1", "Hello World", 1000);
+        long help = insert("guid-2", "Help Wanted", 2000);
+        insert("guid-3", "Gardening", 3000);
+
+        assertEquals(Arrays.asList(help), ids(search("4357")));
+        assertEquals(Arrays.asList(help, hello), ids(search("435")));
+        assertEquals(Arrays.asList(hello), ids(search("435 967")));
+        assertEquals(Arrays.asList(hello), ids(search("worl")));
+        assertTrue(search("xyz").isEmpty());
+    }
+
+    @Test
+    public void testShowNotesAreSearchable() {
+        long id = insert("guid-1", "Episode", 1000);
+        assertTrue(search("volcano").isEmpty());
+
+        repository.updateEpisodeDescription(id, "<p>All about the <b>volcano</b> eruption</p>");
+        assertEquals(Arrays.asList(id), ids(search("volcan")));
+
+        repository.updateEpisodeDescription(id, "<p>About glaciers instead</p>");
+        assertTrue(search("volcano").isEmpty());
+        assertEquals(Arrays.asList(id), ids(search("glacier")));
+    }
+
+    @Test
+    public void testIndexFollowsTitleChangesAndDeletes() {
+        long id = insert("guid-1", "Old Title", 1000);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        db.execSQL("UPDATE " + DatabaseHelper.TABLE_EPISODES + " SET " + DatabaseHelper.COL_EPISODE_TITLE +
+            " = 'Brand New' WHERE " + DatabaseHelper.COL_EPISODE_ID + " = " + id);
+        assertTrue(search("old").isEmpty());
+        assertEquals(Arrays.asList(id), ids(search("27263")));
+
+        db.delete(DatabaseHelper.TABLE_EPISODES, DatabaseHelper.COL_EPISODE_ID + " = ?",
+            new String[]{String.valueOf(id)});
+        assertTrue(search("brand").isEmpty());
+    }
+
+    @Test
+    public void testSearchStaysInScope() {
+        long available = insert("guid-1", "Science Weekly", 1000);
+        long backlog = insert("guid-2", "Science Daily", 2000);
+        repository.updateEpisodeState(backlog, EpisodeState.BACKLOG);
+        long otherPodcast = new PodcastRepository(dbHelper).insertPodcast(
+            new Podcast(0, "https://example.com/other", "Other"));
+        repository.insertEpisode(new Episode(otherPodcast, "guid-3", "Science Hour", "https://example.com/3.mp3", 3000));
+
+        assertEquals(3, search("science").size());
+        assertEquals(Arrays.asList(backlog),
+            ids(repository.searchEpisodes("science", -1, EpisodeState.BACKLOG, 100, null)));
+        assertEquals(2, repository.searchEpisodes("science", podcastId, null, 100, null).size());
+        assertEquals(Arrays.asList(available),
+            ids(repository.searchEpisodes("science", podcastId, repository.getEpisodeById(available).getState(), 100, null)));
+    }
+
+    /**
+     * Search latency across a 50,000 episode library, typed the way it is on a
+     * keypad and on a keyboard. Median and 95th percentile go to the log; the
+     * asserted limits are loose enough for slow devices and catch a query
+     * falling off the index.
+     */
+    @Test
+    public void testSyntheticLibraryLatency() {
+        createLibrary();
+
+        long[] keypadShort = time(new String[]{"43", "72", "62", "26", "46"});
+        long[] keypad = time(new String[]{"447", "724", "687", "468", "366", "46837", "72436"});
+        long[] text = time(new String[]{"sci", "mus", "inter", "foot", "clim", "space"});
+        long[] scoped = timeScoped(new String[]{"sci", "724", "gard", "46837"});
+
+        Log.i(TAG, LIBRARY_EPISODES + " episodes, median/p95 ms: keypad 2 digits " + report(keypadShort) +
+              ", keypad " + report(keypad) + ", text " + report(text) + ", in backlog " + report(scoped));
+        assertTrue(percentile(keypad, 95) < 100);
+        assertTrue(percentile(text, 95) < 250);
+        assertTrue(percentile(scoped, 95) < 250);
+    }
+
+    private void createLibrary() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        Random random = new Random(LIBRARY_EPISODES);
+        String[] states = {"AVAILABLE", "AVAILABLE", "AVAILABLE", "BACKLOG", "LISTENED", "NEW"};
+        db.beginTransaction();
+        try {
+            // Through SQL, so the index triggers do the work they do for real episodes
+            for (int i = 1; i <= LIBRARY_EPISODES; i++) {
+                String title = "#" + i + " " + WORDS[random.nextInt(WORDS.length)] + " and " +
+                    WORDS[random.nextInt(WORDS.length)];
+                db.execSQL("INSERT INTO " + DatabaseHelper.TABLE_EPISODES + " (" +
+                    DatabaseHelper.COL_EPISODE_PODCAST_ID + ", " + DatabaseHelper.COL_EPISODE_GUID + ", " +
+                    DatabaseHelper.COL_EPISODE_TITLE + ", " + DatabaseHelper.COL_EPISODE_ENCLOSURE_URL + ", " +
+                    DatabaseHelper.COL_EPISODE_PUBLISHED_AT + ", " + DatabaseHelper.COL_EPISODE_STATE +
+                    ") VALUES (?, ?, ?, ?, ?, ?)",
+                    new Object[]{podcastId, "guid-" + i, title, "https://example.com/" + i + ".mp3",
+                        i * 1000L, states[i % states.length]});
+                // Show notes are only stored for downloaded episodes
+                if (i % 10 == 0) {
+                    StringBuilder notes = new StringBuilder();
+                    for (int w = 0; w < 150; w++) {
+                        notes.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+                    }
+                    db.execSQL("UPDATE " + DatabaseHelper.TABLE_EPISODE_SEARCH + " SET " +
+                        DatabaseHelper.COL_SEARCH_NOTES + " = ? WHERE docid = last_insert_rowid()",
+                        new Object[]{notes.toString()});
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private long[] time(String[] queries) {
+        long[] nanos = new long[queries.length * 3];
+        for (int round = 0; round < 3; round++) {
+            for (int q = 0; q < queries.length; q++) {
+                long start = System.nanoTime();
+                assertFalse(queries[q], search(queries[q]).isEmpty());
+                nanos[round * queries.length + q] = System.nanoTime() - start;
+            }
+        }
+        return nanos;
+    }
+
+    private long[] timeScoped(String[] queries) {
+        long[] nanos = new long[queries.length * 3];
+        for (int round = 0; round < 3; round++) {
+            for (int q = 0; q < queries.length; q++) {
+                long start = System.nanoTime();
+                repository.searchEpisodes(queries[q], podcastId, EpisodeState.BACKLOG, 100, null);
+                nanos[round * queries.length + q] = System.nanoTime() - start;
+            }
+        }
+        return nanos;
+    }
+
+    private static long percentile(long[] nanos, int percent) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * percent / 100.0) - 1);
+        return sorted[Math.max(0, index)] / 1000000;
+    }
+
+    private static String report(long[] nanos) {
+        return percentile(nanos, 50) + "/" + percentile(nanos, 95);
+    }
+
+    private static List<Long> ids(List<Episode> episodes) {
+        Long[] ids = new Long[episodes.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = episodes.get(i).getId();
+        }
+        return Arrays.asList(ids);
+    }
+}
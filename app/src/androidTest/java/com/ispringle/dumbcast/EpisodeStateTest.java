@@ -8,6 +8,8 @@ import com.ispringle.dumbcast.data.DatabaseHelper;
 import com.ispringle.dumbcast.data.Episode;
 import com.ispringle.dumbcast.data.EpisodeRepository;
 import com.ispringle.dumbcast.data.EpisodeState;
+import com.ispringle.dumbcast.data.Podcast;
+import com.ispringle.dumbcast.data.PodcastRepository;
 
 import org.junit.After;
 import org.junit.Before;
@@ -97,4 +99,27 @@ public class EpisodeStateTest {
         assertEquals("Episode with sessionGrace should decay to AVAILABLE", EpisodeState.AVAILABLE, updated.getState());
         assertFalse("sessionGrace flag should be cleared after decay", updated.isSessionGrace());
     }
+
+    @Test
+    public void testDownloadedEpisodesOutsideBacklogAreRepaired() {
+        long podcastId = new PodcastRepository(dbHelper).insertPodcast(
+            new Podcast(0, "https://example.com/feed", "Show"));
+        long newId = repository.insertEpisode(
+            new Episode(podcastId, "guid-1", "New", "http://example.com/ep1.mp3", 1000));
+        long listenedId = repository.insertEpisode(
+            new Episode(podcastId, "guid-2", "Listened", "http://example.com/ep2.mp3", 2000));
+        repository.updateEpisodeState(listenedId, EpisodeState.LISTENED);
+        assertFalse(repository.hasDownloadsOutsideBacklog());
+
+        // Downloaded without the state change, as a promoted stream once was
+        repository.updateEpisodeDownload(newId, "/sdcard/ep1.mp3", 3000);
+        repository.updateEpisodeDownload(listenedId, "/sdcard/ep2.mp3", 3000);
+        assertTrue(repository.hasDownloadsOutsideBacklog());
+
+        repository.fixDownloadedEpisodesState();
+
+        assertFalse(repository.hasDownloadsOutsideBacklog());
+        assertEquals(EpisodeState.BACKLOG, repository.getEpisodeById(newId).getState());
+        assertEquals(EpisodeState.LISTENED, repository.getEpisodeById(listenedId).getState());
+    }
 }
@@ -0,0 +1,107 @@
+package com.ispringle.dumbcast;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.ispringle.dumbcast.data.DatabaseHelper;
+import com.ispringle.dumbcast.data.Podcast;
+import com.ispringle.dumbcast.data.PodcastRepository;
+import com.ispringle.dumbcast.utils.RssFeed;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feed fetches through PodcastRepository#fetchFeed, the path shared by refreshes
+ * and DownloadService: a permanent redirect rewrites the stored feed URL, a
+ * temporary one does not, and the URL subscribed with is still found.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FeedRedirectTest {
+
+    private static final String FEED =
+        "<?xml version=\"1.0\"?><rss version=\"2.0\"><channel><title>Moved</title>" +
+        "<item><title>Episode 1</title><guid>ep-1</guid></item></channel></rss>";
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private PodcastRepository podcastRepository;
+    private TestHttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase("dumbcast.db");
+        dbHelper = new DatabaseHelper(context);
+        podcastRepository = new PodcastRepository(dbHelper);
+        server = new TestHttpServer();
+        server.serve("/new.rss", FEED);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+        dbHelper.close();
+        context.deleteDatabase("dumbcast.db");
+    }
+
+    @Test
+    public void testPermanentRedirectIsSaved() throws Exception {
+        server.respond("/old.rss", 301, "/new.rss");
+        long podcastId = podcastRepository.insertPodcast(new Podcast(0, server.url("/old.rss"), "Moved"));
+
+        RssFeed feed = podcastRepository.fetchFeed(podcastRepository.getPodcastById(podcastId));
+        assertEquals(1, feed.getItems().size());
+
+        Podcast saved = podcastRepository.getPodcastById(podcastId);
+        assertEquals(server.url("/new.rss"), saved.getFeedUrl());
+        assertEquals(server.url("/old.rss"), saved.getOriginalFeedUrl());
+        assertEquals(1, saved.getFeedRedirectHops());
+
+        // The next fetch goes straight to the new location
+        server.clearRequests();
+        podcastRepository.fetchFeed(saved);
+        assertEquals(0, server.requestCount("/old.rss"));
+
+        // Subscribing again with the old URL finds the same podcast
+        Podcast byOldUrl = podcastRepository.getPodcastByFeedUrl(server.url("/old.rss"));
+        assertNotNull(byOldUrl);
+        assertEquals(podcastId, byOldUrl.getId());
+    }
+
+    @Test
+    public void testTemporaryRedirectIsNotSaved() throws Exception {
+        server.respond("/temp.rss", 302, "/new.rss");
+        long podcastId = podcastRepository.insertPodcast(new Podcast(0, server.url("/temp.rss"), "Temp"));
+
+        podcastRepository.fetchFeed(podcastRepository.getPodcastById(podcastId));
+
+        Podcast saved = podcastRepository.getPodcastById(podcastId);
+        assertEquals(server.url("/temp.rss"), saved.getFeedUrl());
+        assertNull(saved.getOriginalFeedUrl());
+    }
+
+    @Test
+    public void testOriginalFeedUrlLookupUsesIndexes() {
+        Cursor cursor = dbHelper.getReadableDatabase().rawQuery("EXPLAIN QUERY PLAN SELECT * FROM " +
+            DatabaseHelper.TABLE_PODCASTS + " WHERE " + DatabaseHelper.COL_PODCAST_FEED_URL + " = ? OR " +
+            DatabaseHelper.COL_PODCAST_ORIGINAL_FEED_URL + " = ?", new String[]{"a", "a"});
+        StringBuilder plan = new StringBuilder();
+        int detail = cursor.getColumnIndexOrThrow("detail");
+        while (cursor.moveToNext()) {
+            plan.append(cursor.getString(detail)).append('\n');
+        }
+        cursor.close();
+
+        assertTrue(plan.toString(), plan.toString().contains("idx_podcasts_original_feed_url"));
+        assertFalse(plan.toString(), plan.toString().contains("SCAN"));
+    }
+}
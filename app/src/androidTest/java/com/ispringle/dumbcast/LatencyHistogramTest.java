@@ -0,0 +1,58 @@
+package com.ispringle.dumbcast;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.ispringle.dumbcast.utils.LatencyHistogram;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Bucketing and percentile estimates of the startup latency histogram.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(0, histogram.getMean());
+    }
+
+    @Test
+    public void testPercentilesAreBucketUpperBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 10);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(505, histogram.getMean());
+        assertEquals(1000, histogram.getMax());
+        // 500 ms falls exactly on a bound; 900 ms is reported as the 1000 ms bucket
+        assertEquals(500, histogram.getPercentile(50));
+        assertEquals(1000, histogram.getPercentile(90));
+        assertEquals(1000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void testOutliersAreCappedAtMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(40);
+        histogram.record(120000);
+        histogram.record(-5);
+
+        assertEquals(2, histogram.getCount());
+        assertEquals(50, histogram.getPercentile(50));
+        assertEquals(120000, histogram.getPercentile(99));
+
+        histogram.clear();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+}
@@ -0,0 +1,291 @@
+package com.ispringle.dumbcast;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.ispringle.dumbcast.data.DatabaseHelper;
+import com.ispringle.dumbcast.data.Episode;
+import com.ispringle.dumbcast.data.ListeningEvent;
+import com.ispringle.dumbcast.data.ListeningStatsRepository;
+import com.ispringle.dumbcast.services.ListeningLog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Listening history: the rollups built batch by batch must match a full
+ * recompute from the raw event log, and sessions must close where they ended.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ListeningStatsTest {
+
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final int PODCASTS = 3;
+    private static final int EPISODES = 12;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private ListeningStatsRepository repository;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase("dumbcast.db");
+        dbHelper = new DatabaseHelper(context);
+        repository = new ListeningStatsRepository(dbHelper);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase("dumbcast.db");
+    }
+
+    @Test
+    public void testIncrementalRollupsMatchFullRecompute() {
+        // A week of random listening across a few podcasts, appended in batches of varied size
+        Random random = new Random(37);
+        List<ListeningEvent> events = new ArrayList<>();
+        Set<Long> played = new HashSet<>();
+        long at = 1700000000000L;
+        for (int i = 0; i < 2000; i++) {
+            at += random.nextInt((int) (10 * 60 * 1000)) + (random.nextInt(20) == 0 ? 12 * HOUR_MS : 0);
+            long episodeId = 1 + random.nextInt(EPISODES);
+            long podcastId = 1 + episodeId % PODCASTS;
+            long position = random.nextInt(3600000);
+            // As from ListeningLog, an episode's history begins with a START
+            ListeningEvent.Type type = played.add(episodeId)
+                ? ListeningEvent.Type.START : ListeningEvent.Type.values()[random.nextInt(4)];
+            long value;
+            switch (type) {
+                case STOP:
+                    value = 1 + random.nextInt(1800000);
+                    break;
+                case SEEK:
+                    value = position + (random.nextBoolean() ? 1 : -1) * (1 + random.nextInt(300000));
+                    break;
+                default:
+                    value = 0;
+            }
+            events.add(new ListeningEvent(episodeId, podcastId, type, at, position, value, 1f));
+        }
+        for (int start = 0; start < events.size(); ) {
+            int end = Math.min(events.size(), start + 1 + random.nextInt(40));
+            repository.appendEvents(events.subList(start, end));
+            start = end;
+        }
+
+        Recompute expected = recompute();
+        assertEquals(events.size(), expected.eventCount);
+
+        // Per day and podcast
+        Cursor cursor = dbHelper.getReadableDatabase().rawQuery("SELECT " +
+            DatabaseHelper.COL_DAILY_DAY + ", " + DatabaseHelper.COL_DAILY_PODCAST_ID + ", " +
+            DatabaseHelper.COL_ROLLUP_LISTENED_MS + ", " + DatabaseHelper.COL_ROLLUP_SESSIONS + ", " +
+            DatabaseHelper.COL_ROLLUP_COMPLETIONS + ", " + DatabaseHelper.COL_ROLLUP_SEEKS_FORWARD + ", " +
+            DatabaseHelper.COL_ROLLUP_SEEKS_BACK + ", " + DatabaseHelper.COL_ROLLUP_SKIPPED_MS + ", " +
+            DatabaseHelper.COL_ROLLUP_REWOUND_MS + " FROM " + DatabaseHelper.TABLE_LISTENING_DAILY, null);
+        assertEquals(expected.daily.size(), cursor.getCount());
+        while (cursor.moveToNext()) {
+            String key = cursor.getLong(0) + ":" + cursor.getLong(1);
+            ListeningStatsRepository.Totals day = expected.daily.get(key);
+            assertNotNull(key, day);
+            assertEquals(key, day.listenedMs, cursor.getLong(2));
+            assertEquals(key, day.sessions, cursor.getInt(3));
+            assertEquals(key, day.completions, cursor.getInt(4));
+            assertEquals(key, day.seeksForward, cursor.getInt(5));
+            assertEquals(key, day.seeksBack, cursor.getInt(6));
+            assertEquals(key, day.skippedMs, cursor.getLong(7));
+            assertEquals(key, day.rewoundMs, cursor.getLong(8));
+        }
+        cursor.close();
+
+        // Per podcast
+        for (long podcastId = 1; podcastId <= PODCASTS; podcastId++) {
+            ListeningStatsRepository.PodcastStats stats = repository.getPodcastStats(podcastId);
+            ListeningStatsRepository.Totals totals = expected.podcasts.get(podcastId);
+            assertEquals(totals.listenedMs, stats.listenedMs);
+            assertEquals(totals.sessions, stats.sessions);
+            assertEquals(totals.completions, stats.completions);
+            assertEquals(totals.seeksForward, stats.seeksForward);
+            assertEquals(totals.seeksBack, stats.seeksBack);
+            assertEquals(totals.skippedMs, stats.skippedMs);
+            assertEquals(totals.rewoundMs, stats.rewoundMs);
+            assertEquals(count(expected.started, podcastId), stats.episodesStarted);
+            assertEquals(count(expected.completed, podcastId), stats.episodesCompleted);
+        }
+
+        // Per episode
+        cursor = dbHelper.getReadableDatabase().rawQuery("SELECT " + DatabaseHelper.COL_LE_EPISODE_ID + ", " +
+            DatabaseHelper.COL_LE_LISTENED_MS + ", " + DatabaseHelper.COL_LE_COMPLETED_AT + " IS NOT NULL FROM " +
+            DatabaseHelper.TABLE_LISTENING_EPISODES, null);
+        assertEquals(expected.started.size(), cursor.getCount());
+        while (cursor.moveToNext()) {
+            long episodeId = cursor.getLong(0);
+            Long listened = expected.episodeListened.get(episodeId);
+            // Only listening after the first START lands on the episode row
+            assertEquals(listened != null ? listened : 0, cursor.getLong(1));
+            assertEquals(expected.completed.containsKey(episodeId), cursor.getInt(2) == 1);
+        }
+        cursor.close();
+    }
+
+    @Test
+    public void testSwitchingEpisodesClosesSessionAtItsLastPosition() {
+        Episode first = episode(1, 1);
+        Episode second = episode(2, 1);
+        ListeningLog log = new ListeningLog(repository, Runnable::run);
+
+        log.onStart(first, 0, 1f);
+        log.onProgress(60000);
+        log.onSeek(first, 60000, 90000);
+        log.onProgress(95000);
+        // The next episode starts without a pause, from its own resume position
+        log.onStart(second, 5000, 1f);
+        log.onProgress(7000);
+        log.onStop(7000);
+
+        List<long[]> stops = new ArrayList<>();
+        Cursor cursor = dbHelper.getReadableDatabase().rawQuery("SELECT " + DatabaseHelper.COL_EVENT_EPISODE_ID +
+            ", " + DatabaseHelper.COL_EVENT_POSITION_MS + " FROM " + DatabaseHelper.TABLE_LISTENING_EVENTS +
+            " WHERE " + DatabaseHelper.COL_EVENT_TYPE + " = ? ORDER BY " + DatabaseHelper.COL_EVENT_ID,
+            new String[]{ListeningEvent.Type.STOP.name()});
+        while (cursor.moveToNext()) {
+            stops.add(new long[]{cursor.getLong(0), cursor.getLong(1)});
+        }
+        cursor.close();
+
+        assertEquals(2, stops.size());
+        assertArrayEquals(new long[]{1, 95000}, stops.get(0));
+        assertArrayEquals(new long[]{2, 7000}, stops.get(1));
+    }
+
+    @Test
+    public void testFlushKeepsSessionOpen() {
+        ListeningLog log = new ListeningLog(repository, Runnable::run);
+        log.onStart(episode(1, 1), 0, 1f);
+        log.flush();
+
+        assertEquals(1, repository.getPodcastStats(1).sessions);
+        assertEquals(1, eventCount());
+
+        log.onStop(30000);
+        assertEquals(2, eventCount());
+    }
+
+    /**
+     * Rollups recomputed from scratch out of the raw event log.
+     */
+    private static class Recompute {
+        int eventCount;
+        final Map<String, ListeningStatsRepository.Totals> daily = new HashMap<>();
+        final Map<Long, ListeningStatsRepository.Totals> podcasts = new HashMap<>();
+        final Map<Long, Long> started = new HashMap<>();
+        final Map<Long, Long> completed = new HashMap<>();
+        final Map<Long, Long> episodeListened = new HashMap<>();
+    }
+
+    private Recompute recompute() {
+        Recompute result = new Recompute();
+        Cursor cursor = dbHelper.getReadableDatabase().rawQuery("SELECT " +
+            DatabaseHelper.COL_EVENT_EPISODE_ID + ", " + DatabaseHelper.COL_EVENT_PODCAST_ID + ", " +
+            DatabaseHelper.COL_EVENT_TYPE + ", " + DatabaseHelper.COL_EVENT_AT + ", " +
+            DatabaseHelper.COL_EVENT_POSITION_MS + ", " + DatabaseHelper.COL_EVENT_VALUE +
+            " FROM " + DatabaseHelper.TABLE_LISTENING_EVENTS + " ORDER BY " + DatabaseHelper.COL_EVENT_ID, null);
+        while (cursor.moveToNext()) {
+            result.eventCount++;
+            long episodeId = cursor.getLong(0);
+            long podcastId = cursor.getLong(1);
+            ListeningEvent.Type type = ListeningEvent.Type.valueOf(cursor.getString(2));
+            long at = cursor.getLong(3);
+            long position = cursor.getLong(4);
+            long value = cursor.getLong(5);
+
+            List<ListeningStatsRepository.Totals> targets = new ArrayList<>();
+            targets.add(totals(result.daily, ListeningStatsRepository.dayOf(at) + ":" + podcastId));
+            targets.add(totals(result.podcasts, podcastId));
+            for (ListeningStatsRepository.Totals totals : targets) {
+                switch (type) {
+                    case START:
+                        totals.sessions++;
+                        break;
+                    case STOP:
+                        totals.listenedMs += value;
+                        break;
+                    case SEEK:
+                        if (value > position) {
+                            totals.seeksForward++;
+                            totals.skippedMs += value - position;
+                        } else if (value < position) {
+                            totals.seeksBack++;
+                            totals.rewoundMs += position - value;
+                        }
+                        break;
+                    case COMPLETE:
+                        totals.completions++;
+                        break;
+                }
+            }
+
+            if (type == ListeningEvent.Type.START && !result.started.containsKey(episodeId)) {
+                result.started.put(episodeId, podcastId);
+            } else if (type == ListeningEvent.Type.COMPLETE && result.started.containsKey(episodeId)) {
+                result.completed.put(episodeId, podcastId);
+            } else if (type == ListeningEvent.Type.STOP && result.started.containsKey(episodeId)) {
+                Long listened = result.episodeListened.get(episodeId);
+                result.episodeListened.put(episodeId, (listened != null ? listened : 0) + value);
+            }
+        }
+        cursor.close();
+        return result;
+    }
+
+    private static <K> ListeningStatsRepository.Totals totals(Map<K, ListeningStatsRepository.Totals> map, K key) {
+        ListeningStatsRepository.Totals totals = map.get(key);
+        if (totals == null) {
+            totals = new ListeningStatsRepository.Totals();
+            map.put(key, totals);
+        }
+        return totals;
+    }
+
+    private static int count(Map<Long, Long> episodePodcasts, long podcastId) {
+        Set<Long> episodes = new HashSet<>();
+        for (Map.Entry<Long, Long> entry : episodePodcasts.entrySet()) {
+            if (entry.getValue() == podcastId) {
+                episodes.add(entry.getKey());
+            }
+        }
+        return episodes.size();
+    }
+
+    private int eventCount() {
+        Cursor cursor = dbHelper.getReadableDatabase().rawQuery(
+            "SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_LISTENING_EVENTS, null);
+        cursor.moveToFirst();
+        int count = cursor.getInt(0);
+        cursor.close();
+        return count;
+    }
+
+    private static Episode episode(long id, long podcastId) {
+        Episode episode = new Episode(podcastId, "guid-" + id, "Episode " + id,
+            "https://example.com/" + id + ".mp3", 1000);
+        episode.setId(id);
+        return episode;
+    }
+}
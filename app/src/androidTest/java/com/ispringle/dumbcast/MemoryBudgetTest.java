@@ -0,0 +1,112 @@
+package com.ispringle.dumbcast;
+
+import android.content.ComponentCallbacks2;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v4.util.LruCache;
+
+import com.ispringle.dumbcast.utils.MemoryBudget;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Cache sizing and shed order of the memory budget under simulated trim events.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MemoryBudgetTest {
+
+    private static LruCache<String, byte[]> filledCache(int entries, int entrySize) {
+        LruCache<String, byte[]> cache = new LruCache<String, byte[]>(entries * entrySize) {
+            @Override
+            protected int sizeOf(String key, byte[] value) {
+                return value.length;
+            }
+        };
+        for (int i = 0; i < entries; i++) {
+            cache.put("key" + i, new byte[entrySize]);
+        }
+        return cache;
+    }
+
+    @Test
+    public void testLowRamDevicesGetSmallerCaches() {
+        MemoryBudget normal = new MemoryBudget(128, false);
+        MemoryBudget lowRam = new MemoryBudget(128, true);
+
+        assertEquals(16 * 1024 * 1024, normal.getBitmapCacheBytes());
+        assertEquals(8 * 1024 * 1024, lowRam.getBitmapCacheBytes());
+        assertTrue(lowRam.getDiskCacheBytes() < normal.getDiskCacheBytes());
+        assertTrue(lowRam.getMaxFeedItems() < normal.getMaxFeedItems());
+
+        // Never below 1 MB of bitmaps, even on a tiny heap
+        assertEquals(1024 * 1024, new MemoryBudget(8, true).getBitmapCacheBytes());
+    }
+
+    @Test
+    public void testTrimShrinksCaches() {
+        MemoryBudget budget = new MemoryBudget(64, true);
+        LruCache<String, byte[]> cache = filledCache(10, 1000);
+        budget.register(level -> MemoryBudget.trimLruCache(cache, level), MemoryBudget.ORDER_UI);
+        assertEquals(10000, cache.size());
+
+        budget.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertEquals(5000, cache.size());
+        // Most recently used entries survive
+        assertNotNull(cache.get("key9"));
+        assertNull(cache.get("key0"));
+
+        budget.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testTiersAreShedInOrder() {
+        MemoryBudget budget = new MemoryBudget(64, false);
+        List<String> trimmed = new ArrayList<>();
+        budget.register(level -> trimmed.add("playback"), MemoryBudget.ORDER_PLAYBACK);
+        budget.register(level -> trimmed.add("parsed"), MemoryBudget.ORDER_PARSED);
+        budget.register(level -> trimmed.add("ui"), MemoryBudget.ORDER_UI);
+
+        budget.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertEquals(1, trimmed.size());
+        assertEquals("ui", trimmed.get(0));
+
+        trimmed.clear();
+        budget.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_MODERATE);
+        assertEquals(2, trimmed.size());
+        assertEquals("parsed", trimmed.get(1));
+
+        // Routine while playing in the foreground on low-RAM devices; the look-ahead stays
+        trimmed.clear();
+        budget.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertEquals(2, trimmed.size());
+        assertFalse(trimmed.contains("playback"));
+
+        trimmed.clear();
+        budget.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+        assertEquals(3, trimmed.size());
+        assertEquals("ui", trimmed.get(0));
+        assertEquals("playback", trimmed.get(2));
+
+        trimmed.clear();
+        budget.onLowMemory();
+        assertEquals(3, trimmed.size());
+    }
+
+    @Test
+    public void testUnregisteredCachesAreLeftAlone() {
+        MemoryBudget budget = new MemoryBudget(64, false);
+        LruCache<String, byte[]> cache = filledCache(4, 100);
+        MemoryBudget.Trimmable trimmable = level -> MemoryBudget.trimLruCache(cache, level);
+        budget.register(trimmable, MemoryBudget.ORDER_UI);
+        budget.unregister(trimmable);
+
+        budget.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertEquals(400, cache.size());
+    }
+}
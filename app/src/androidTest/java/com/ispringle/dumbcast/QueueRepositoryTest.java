@@ -0,0 +1,184 @@
+package com.ispringle.dumbcast;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.ispringle.dumbcast.data.DatabaseHelper;
+import com.ispringle.dumbcast.data.Episode;
+import com.ispringle.dumbcast.data.EpisodeRepository;
+import com.ispringle.dumbcast.data.Podcast;
+import com.ispringle.dumbcast.data.PodcastRepository;
+import com.ispringle.dumbcast.data.QueueRepository;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Queue order under the sparse sort keys, including the renumbering that kicks
+ * in once repeated moves into the same spot use up the space between two keys.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueueRepositoryTest {
+
+    // Enough moves into one gap to exhaust it several times over (2^20 halves in 20)
+    private static final int MOVES = 70;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private QueueRepository queue;
+    private long a, b, c, d;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase("dumbcast.db");
+        dbHelper = new DatabaseHelper(context);
+        queue = new QueueRepository(dbHelper);
+
+        long podcastId = new PodcastRepository(dbHelper).insertPodcast(
+            new Podcast(0, "https://example.com/feed", "Show"));
+        EpisodeRepository episodes = new EpisodeRepository(dbHelper);
+        long[] ids = new long[4];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = episodes.insertEpisode(new Episode(podcastId, "guid-" + i, "Episode " + i,
+                "https://example.com/" + i + ".mp3", 1000 + i));
+        }
+        a = ids[0];
+        b = ids[1];
+        c = ids[2];
+        d = ids[3];
+        for (long id : ids) {
+            assertTrue(queue.addToEnd(id));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase("dumbcast.db");
+    }
+
+    @Test
+    public void testAddAndRemoveKeepOrder() {
+        assertEquals(Arrays.asList(a, b, c, d), queueIds());
+        assertFalse(queue.addToEnd(b));
+
+        assertTrue(queue.remove(b));
+        assertFalse(queue.isQueued(b));
+        assertEquals(Arrays.asList(a, c, d), queueIds());
+        assertEquals(c, queue.getNext(a).getId());
+        assertNull(queue.getNext(d));
+
+        assertTrue(queue.addAfter(b, c));
+        assertEquals(Arrays.asList(a, c, b, d), queueIds());
+    }
+
+    @Test
+    public void testMovesAtTheEndsAreRefused() {
+        assertFalse(queue.moveUp(a));
+        assertFalse(queue.moveDown(d));
+        assertEquals(Arrays.asList(a, b, c, d), queueIds());
+    }
+
+    @Test
+    public void testRepeatedMoveUpBetweenSameNeighboursRenumbers() {
+        // b and c take turns jumping to just after a, halving the gap after a each time
+        long gap = Long.MAX_VALUE;
+        int renumbers = 0;
+        for (int i = 0; i < MOVES; i++) {
+            long moving = i % 2 == 0 ? c : b;
+            long other = moving == c ? b : c;
+            assertTrue(queue.moveUp(moving));
+            assertEquals("After move " + i, Arrays.asList(a, moving, other, d), queueIds());
+            assertKeysIncreasing();
+            // The gap only grows back when the queue was renumbered
+            long newGap = sortKey(moving) - sortKey(a);
+            if (newGap > gap) {
+                renumbers++;
+            }
+            gap = newGap;
+        }
+        assertTrue("Renumbered " + renumbers + " times", renumbers >= 2);
+    }
+
+    @Test
+    public void testRepeatedMoveDownBetweenSameNeighboursRenumbers() {
+        // b and c take turns dropping to just before d, halving the gap before d each time
+        long gap = Long.MAX_VALUE;
+        int renumbers = 0;
+        for (int i = 0; i < MOVES; i++) {
+            long moving = i % 2 == 0 ? b : c;
+            long other = moving == b ? c : b;
+            assertTrue(queue.moveDown(moving));
+            assertEquals("After move " + i, Arrays.asList(a, other, moving, d), queueIds());
+            assertKeysIncreasing();
+            long newGap = sortKey(d) - sortKey(moving);
+            if (newGap > gap) {
+                renumbers++;
+            }
+            gap = newGap;
+        }
+        assertTrue("Renumbered " + renumbers + " times", renumbers >= 2);
+    }
+
+    @Test
+    public void testRepeatedAddAfterSameAnchorRenumbers() {
+        // "Play next" after a, alternating between two episodes
+        long gap = Long.MAX_VALUE;
+        int renumbers = 0;
+        for (int i = 0; i < MOVES; i++) {
+            long moving = i % 2 == 0 ? c : b;
+            long other = moving == c ? b : c;
+            assertTrue(queue.addAfter(moving, a));
+            assertEquals("After move " + i, Arrays.asList(a, moving, other, d), queueIds());
+            assertKeysIncreasing();
+            long newGap = sortKey(moving) - sortKey(a);
+            if (newGap > gap) {
+                renumbers++;
+            }
+            gap = newGap;
+        }
+        assertTrue("Renumbered " + renumbers + " times", renumbers >= 2);
+        assertEquals(4, queue.size());
+    }
+
+    private List<Long> queueIds() {
+        List<Long> ids = new ArrayList<>();
+        for (Episode episode : queue.getQueue()) {
+            ids.add(episode.getId());
+        }
+        return ids;
+    }
+
+    private long sortKey(long episodeId) {
+        Cursor cursor = dbHelper.getReadableDatabase().rawQuery("SELECT " + DatabaseHelper.COL_QUEUE_SORT_KEY +
+            " FROM " + DatabaseHelper.TABLE_QUEUE + " WHERE " + DatabaseHelper.COL_QUEUE_EPISODE_ID + " = ?",
+            new String[]{String.valueOf(episodeId)});
+        assertTrue(cursor.moveToFirst());
+        long key = cursor.getLong(0);
+        cursor.close();
+        return key;
+    }
+
+    private void assertKeysIncreasing() {
+        Cursor cursor = dbHelper.getReadableDatabase().rawQuery("SELECT " + DatabaseHelper.COL_QUEUE_SORT_KEY +
+            " FROM " + DatabaseHelper.TABLE_QUEUE + " ORDER BY " + DatabaseHelper.COL_QUEUE_SORT_KEY, null);
+        Long previous = null;
+        while (cursor.moveToNext()) {
+            long key = cursor.getLong(0);
+            assertTrue("Duplicate sort key " + key, previous == null || key > previous);
+            previous = key;
+        }
+        cursor.close();
+    }
+}
@@ -0,0 +1,148 @@
+package com.ispringle.dumbcast;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.style.URLSpan;
+import android.util.Log;
+
+import com.ispringle.dumbcast.utils.ShowNotesNormalizer;
+import com.ispringle.dumbcast.utils.ShowNotesRenderer;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Rendering and paging of show notes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ShowNotesRendererTest {
+
+    private static final String TAG = "ShowNotesRendererTest";
+
+    private static String paragraph(int index, int words) {
+        StringBuilder text = new StringBuilder("Paragraph " + index + ":");
+        for (int i = 0; i < words; i++) {
+            text.append(" word");
+        }
+        return text.toString();
+    }
+
+    @Test
+    public void testShortNotesAreOnePage() {
+        List<Spanned> pages = ShowNotesRenderer.paginate(new SpannableString("  Short notes.\n\n"), 100);
+
+        assertEquals(1, pages.size());
+        assertEquals("Short notes.", pages.get(0).toString());
+    }
+
+    @Test
+    public void testPagesBreakAtParagraphs() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            text.append(paragraph(i, 10)).append("\n\n");
+        }
+        List<Spanned> pages = ShowNotesRenderer.paginate(new SpannableString(text), 200);
+
+        assertTrue(pages.size() > 1);
+        StringBuilder joined = new StringBuilder();
+        for (Spanned page : pages) {
+            assertTrue(page.length() <= 200);
+            assertTrue(page.toString().startsWith("Paragraph "));
+            assertTrue(page.toString().endsWith("word"));
+            joined.append(page).append("\n\n");
+        }
+        // Nothing lost or repeated between pages
+        assertEquals(text.toString(), joined.toString());
+    }
+
+    @Test
+    public void testUnbrokenTextIsCutAtPageSize() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 250; i++) {
+            text.append('x');
+        }
+        List<Spanned> pages = ShowNotesRenderer.paginate(new SpannableString(text), 100);
+
+        assertEquals(3, pages.size());
+        assertEquals(100, pages.get(0).length());
+        assertEquals(50, pages.get(2).length());
+    }
+
+    @Test
+    public void testLinksSurviveRenderingAndPaging() {
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            html.append("<p>").append(paragraph(i, 5))
+                .append(" <a href=\"https://example.com/").append(i).append("\">link</a></p>");
+        }
+        ShowNotesRenderer.Pages pages = ShowNotesRenderer.renderPages(html.toString(), 150);
+
+        assertTrue(pages.getCount() > 1);
+        int links = 0;
+        for (int i = 0; i < pages.getCount(); i++) {
+            Spanned page = pages.get(i);
+            assertFalse(page.toString().contains("<a"));
+            links += page.getSpans(0, page.length(), URLSpan.class).length;
+        }
+        assertEquals(20, links);
+        URLSpan first = pages.get(0).getSpans(0, pages.get(0).length(), URLSpan.class)[0];
+        assertEquals("https://example.com/0", first.getURL());
+    }
+
+    @Test
+    public void testReducedNotesRenderFaster() {
+        // Hosted-feed shaped notes: tracking, inline styles and a sponsor block around the text
+        StringBuilder raw = new StringBuilder("<script>window.track('episode');</script>" +
+            "<style>.notes p { margin: 0 0 1em; }</style><div class=\"notes\" style=\"font-size:14px\">");
+        for (int i = 0; i < 40; i++) {
+            raw.append("<p><span style=\"font-weight:400;color:#333333\">").append(paragraph(i, 12))
+                .append("</span> <a href=\"https://example.com/").append(i)
+                .append("?utm_source=feed\" target=\"_blank\" rel=\"noopener noreferrer\" class=\"link\" ")
+                .append("style=\"color:#0066cc\">link</a></p><p><br></p><p>&nbsp;</p>")
+                .append("<img src=\"https://pixel.example.com/t.gif?p=").append(i).append("\" width=\"1\" height=\"1\">");
+        }
+        raw.append("<div style=\"margin-top:12px\"><p><strong>Support the show</strong> at ")
+            .append("<a href=\"https://sponsor.example.com/\" target=\"_blank\">sponsor.example.com</a></p></div></div>");
+        String reduced = ShowNotesNormalizer.clean(raw.toString());
+
+        long rawNs = medianRenderNs(raw.toString());
+        long reducedNs = medianRenderNs(reduced);
+        String report = "Rendered " + raw.length() + " chars in " + rawNs / 1000 + " us, reduced " +
+            reduced.length() + " chars in " + reducedNs / 1000 + " us";
+        Log.d(TAG, report);
+
+        // The reduced notes lose no links
+        assertEquals(report, 41, countLinks(ShowNotesRenderer.renderPages(raw.toString(), ShowNotesRenderer.PAGE_CHARS)));
+        assertEquals(report, 41, countLinks(ShowNotesRenderer.renderPages(reduced, ShowNotesRenderer.PAGE_CHARS)));
+        assertTrue(report, reducedNs < rawNs);
+    }
+
+    private static int countLinks(ShowNotesRenderer.Pages pages) {
+        int links = 0;
+        for (int i = 0; i < pages.getCount(); i++) {
+            Spanned page = pages.get(i);
+            links += page.getSpans(0, page.length(), URLSpan.class).length;
+        }
+        return links;
+    }
+
+    private static long medianRenderNs(String html) {
+        for (int i = 0; i < 5; i++) {
+            ShowNotesRenderer.renderPages(html, ShowNotesRenderer.PAGE_CHARS);
+        }
+        long[] times = new long[21];
+        for (int i = 0; i < times.length; i++) {
+            long start = System.nanoTime();
+            ShowNotesRenderer.renderPages(html, ShowNotesRenderer.PAGE_CHARS);
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[times.length / 2];
+    }
+}
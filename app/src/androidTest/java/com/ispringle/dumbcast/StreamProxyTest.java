@@ -0,0 +1,338 @@
+package com.ispringle.dumbcast;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.ispringle.dumbcast.services.SparseCacheFile;
+import com.ispringle.dumbcast.services.StreamProxy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Streams a synthetic episode through the caching proxy from a local origin
+ * server and checks how many bytes the origin had to send.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StreamProxyTest {
+
+    private static final long EPISODE_ID = 42;
+    // A one-hour episode at 8 kbit/s keeps the test small while the maths stays realistic
+    private static final int BYTES_PER_SECOND = 1000;
+    private static final int EPISODE_SECONDS = 3600;
+    private static final int EPISODE_BYTES = BYTES_PER_SECOND * EPISODE_SECONDS;
+
+    private File cacheDir;
+    private byte[] content;
+    private OriginServer origin;
+    private StreamProxy proxy;
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = InstrumentationRegistry.getTargetContext();
+        cacheDir = new File(context.getCacheDir(), "stream-proxy-test");
+        deleteRecursively(cacheDir);
+
+        content = new byte[EPISODE_BYTES];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31 + (i >> 8));
+        }
+
+        origin = new OriginServer(content, true);
+        proxy = new StreamProxy(cacheDir);
+        proxy.start();
+    }
+
+    @After
+    public void tearDown() {
+        proxy.stop();
+        origin.close();
+        deleteRecursively(cacheDir);
+    }
+
+    @Test
+    public void testFullReadIsServedFromCacheTheSecondTime() throws IOException {
+        String url = proxy.getProxyUrl(EPISODE_ID, origin.getUrl());
+
+        assertArrayEquals(content, fetch(url, null));
+        long afterFirst = origin.getBytesSent();
+        assertTrue("First play fetches everything", afterFirst >= EPISODE_BYTES);
+
+        assertArrayEquals(content, fetch(url, null));
+        assertEquals("Replay needs no network", afterFirst, origin.getBytesSent());
+    }
+
+    @Test
+    public void testSeekIntoBufferedRegionNeedsNoNetwork() throws IOException {
+        String url = proxy.getProxyUrl(EPISODE_ID, origin.getUrl());
+        fetch(url, "bytes=0-999999");
+        long before = origin.getBytesSent();
+
+        byte[] seeked = fetch(url, "bytes=500000-899999");
+
+        assertEquals(before, origin.getBytesSent());
+        assertRange(seeked, 500000, 899999);
+    }
+
+    @Test
+    public void testGapsAreFilledWithoutRefetchingCachedRanges() throws IOException {
+        String url = proxy.getProxyUrl(EPISODE_ID, origin.getUrl());
+        fetch(url, "bytes=1000000-1999999");
+        fetch(url, "bytes=3000000-");
+        long before = origin.getBytesSent();
+
+        // Spans cached, missing, cached, missing
+        byte[] whole = fetch(url, "bytes=0-");
+
+        assertArrayEquals(content, whole);
+        assertEquals("Only the two gaps were fetched", 2000000, origin.getBytesSent() - before);
+    }
+
+    @Test
+    public void testBytesFetchedPerListenedHour() throws IOException {
+        String url = proxy.getProxyUrl(EPISODE_ID, origin.getUrl());
+        long listenedBytes = 0;
+
+        // Listen to the first 40%, skip back to 10%, carry on to 70%
+        listenedBytes += fetch(url, "bytes=0-1439999").length;
+        listenedBytes += fetch(url, "bytes=360000-2519999").length;
+        // Paused long enough for MediaPlayer to drop the connection, then resume to the end
+        listenedBytes += fetch(url, "bytes=2520000-").length;
+        // Replay the opening
+        listenedBytes += fetch(url, "bytes=0-359999").length;
+
+        double listenedHours = listenedBytes / (double) BYTES_PER_SECOND / 3600;
+        double fetchedPerHour = origin.getBytesSent() / listenedHours;
+
+        // Streaming straight from the origin costs exactly one hour of audio per listened hour
+        assertEquals(1.4, listenedHours, 0.001);
+        assertTrue("Fetched " + fetchedPerHour + " bytes per listened hour",
+            fetchedPerHour < BYTES_PER_SECOND * 3600 * 0.75);
+        // Every byte crossed the network once; the extra byte is the length probe
+        assertEquals(EPISODE_BYTES + 1, origin.getBytesSent());
+    }
+
+    @Test
+    public void testCacheSurvivesProxyRestart() throws IOException {
+        String url = proxy.getProxyUrl(EPISODE_ID, origin.getUrl());
+        fetch(url, "bytes=0-1999999");
+        proxy.stop();
+        long before = origin.getBytesSent();
+
+        proxy = new StreamProxy(cacheDir);
+        proxy.start();
+        url = proxy.getProxyUrl(EPISODE_ID, origin.getUrl());
+        assertRange(fetch(url, "bytes=0-1999999"), 0, 1999999);
+
+        assertEquals(before, origin.getBytesSent());
+    }
+
+    @Test
+    public void testCompleteCacheIsPromoted() throws Exception {
+        final CountDownLatch completed = new CountDownLatch(1);
+        final AtomicReference<SparseCacheFile> completedCache = new AtomicReference<>();
+        proxy.setListener((episodeId, cache) -> {
+            completedCache.set(cache);
+            completed.countDown();
+        });
+
+        String url = proxy.getProxyUrl(EPISODE_ID, origin.getUrl());
+        fetch(url, "bytes=2000000-");
+        assertEquals(1, completed.getCount());
+        fetch(url, "bytes=0-1999999");
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+
+        File destination = new File(cacheDir, "promoted.mp3");
+        completedCache.get().promoteTo(destination);
+
+        assertArrayEquals(content, readFile(destination));
+        // Still readable through the proxy after the move
+        assertArrayEquals(content, fetch(url, null));
+    }
+
+    @Test
+    public void testOriginWithoutRangeSupport() throws IOException {
+        origin.close();
+        origin = new OriginServer(content, false);
+        String url = proxy.getProxyUrl(EPISODE_ID, origin.getUrl());
+
+        assertRange(fetch(url, "bytes=100000-199999"), 100000, 199999);
+
+        // Everything before the requested range was cached on the way, so the
+        // origin isn't needed any more
+        origin.close();
+        assertRange(fetch(url, "bytes=0-99999"), 0, 99999);
+    }
+
+    private void assertRange(byte[] actual, int start, int end) {
+        assertEquals(end - start + 1, actual.length);
+        for (int i = 0; i < actual.length; i++) {
+            if (actual[i] != content[start + i]) {
+                fail("Mismatch at offset " + (start + i));
+            }
+        }
+    }
+
+    private static byte[] fetch(String url, String range) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        if (range != null) {
+            connection.setRequestProperty("Range", range);
+        }
+        try {
+            return readAll(connection.getInputStream());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return readAll(in);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[16 * 1024];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Minimal HTTP origin that serves one byte array and counts the body bytes it sends.
+     */
+    private static class OriginServer {
+        private final byte[] body;
+        private final boolean supportsRanges;
+        private final ServerSocket serverSocket;
+        private final AtomicLong bytesSent = new AtomicLong();
+
+        OriginServer(byte[] body, boolean supportsRanges) throws IOException {
+            this.body = body;
+            this.supportsRanges = supportsRanges;
+            this.serverSocket = new ServerSocket(0, 8, InetAddress.getByName("127.0.0.1"));
+            Thread thread = new Thread(this::acceptLoop, "OriginServer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        String getUrl() {
+            return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/episode.mp3";
+        }
+
+        long getBytesSent() {
+            return bytesSent.get();
+        }
+
+        void close() {
+            try {
+                serverSocket.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        private void acceptLoop() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    final Socket socket = serverSocket.accept();
+                    new Thread(() -> handle(socket)).start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void handle(Socket socket) {
+            try (Socket s = socket) {
+                InputStream in = new BufferedInputStream(s.getInputStream());
+                String range = null;
+                String line;
+                while ((line = readLine(in)) != null && !line.isEmpty()) {
+                    if (line.toLowerCase().startsWith("range:")) {
+                        range = line.substring(6).trim();
+                    }
+                }
+
+                int start = 0;
+                int end = body.length - 1;
+                String status = "200 OK";
+                String contentRange = "";
+                if (supportsRanges && range != null && range.startsWith("bytes=")) {
+                    String[] bounds = range.substring(6).split("-", -1);
+                    start = Integer.parseInt(bounds[0]);
+                    if (!bounds[1].isEmpty()) {
+                        end = Math.min(end, Integer.parseInt(bounds[1]));
+                    }
+                    status = "206 Partial Content";
+                    contentRange = "Content-Range: bytes " + start + "-" + end + "/" + body.length + "\r\n";
+                }
+
+                OutputStream out = s.getOutputStream();
+                String headers = "HTTP/1.1 " + status + "\r\n" +
+                    "Content-Type: audio/mpeg\r\n" +
+                    "Content-Length: " + (end - start + 1) + "\r\n" +
+                    contentRange +
+                    "Connection: close\r\n\r\n";
+                out.write(headers.getBytes(StandardCharsets.ISO_8859_1));
+
+                int position = start;
+                while (position <= end) {
+                    int n = Math.min(8192, end - position + 1);
+                    out.write(body, position, n);
+                    bytesSent.addAndGet(n);
+                    position += n;
+                }
+                out.flush();
+            } catch (IOException ignored) {
+                // Client hung up
+            }
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = in.read()) != -1 && c != '\n') {
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            return c == -1 && line.length() == 0 ? null : line.toString();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.ispringle.dumbcast;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.ispringle.dumbcast.data.Episode;
+import com.ispringle.dumbcast.data.EpisodeState;
+import com.ispringle.dumbcast.data.Podcast;
+import com.ispringle.dumbcast.data.TabSnapshots;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips, row limits and damaged files of the tab list snapshots.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TabSnapshotsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Podcast podcast(long id, String title) {
+        Podcast podcast = new Podcast(id, "https://example.com/" + id, title);
+        podcast.setArtworkUrl("https://example.com/" + id + ".jpg");
+        return podcast;
+    }
+
+    @Test
+    public void testPodcastRoundTrip() {
+        TabSnapshots snapshots = new TabSnapshots(folder.getRoot());
+        Podcast first = podcast(1, "First");
+        first.setDescription("<p>About</p>");
+        Podcast second = podcast(2, "Second");
+        Map<Long, Integer> counts = new HashMap<>();
+        counts.put(1L, 12);
+        counts.put(2L, 3);
+
+        snapshots.writePodcasts("subscriptions", 42, Arrays.asList(first, second), counts);
+        TabSnapshots.PodcastRows rows = snapshots.readPodcasts("subscriptions");
+
+        assertNotNull(rows);
+        assertEquals(42, rows.dataVersion);
+        assertEquals(2, rows.podcasts.size());
+        assertEquals(1, rows.podcasts.get(0).getId());
+        assertEquals("First", rows.podcasts.get(0).getTitle());
+        assertEquals("<p>About</p>", rows.podcasts.get(0).getDescription());
+        assertNull(rows.podcasts.get(1).getDescription());
+        assertEquals("https://example.com/2.jpg", rows.podcasts.get(1).getArtworkUrl());
+        assertEquals(Integer.valueOf(12), rows.counts.get(1L));
+        assertEquals(Integer.valueOf(3), rows.counts.get(2L));
+    }
+
+    @Test
+    public void testEpisodeRoundTrip() {
+        TabSnapshots snapshots = new TabSnapshots(folder.getRoot());
+        Episode downloaded = new Episode(7, "guid-1", "Downloaded", "https://example.com/1.mp3", 1000);
+        downloaded.setId(100);
+        downloaded.setDuration(3600);
+        downloaded.setState(EpisodeState.BACKLOG);
+        downloaded.setDownloadPath("/podcasts/Show/Downloaded.mp3");
+        downloaded.setDownloadedAt(2000L);
+        Episode streamed = new Episode(7, "guid-2", "Streamed", "https://example.com/2.mp3", 3000);
+        streamed.setId(101);
+        streamed.setState(EpisodeState.BACKLOG);
+        Map<Long, Podcast> podcasts = new HashMap<>();
+        podcasts.put(7L, podcast(7, "Show"));
+
+        snapshots.writeEpisodes("episodes_backlog", 5, Arrays.asList(downloaded, streamed), podcasts);
+        TabSnapshots.EpisodeRows rows = snapshots.readEpisodes("episodes_backlog");
+
+        assertNotNull(rows);
+        assertEquals(5, rows.dataVersion);
+        assertEquals(2, rows.episodes.size());
+        Episode first = rows.episodes.get(0);
+        assertEquals(100, first.getId());
+        assertEquals(7, first.getPodcastId());
+        assertEquals("Downloaded", first.getTitle());
+        assertEquals(3600, first.getDuration());
+        assertEquals(EpisodeState.BACKLOG, first.getState());
+        assertTrue(first.isDownloaded());
+        assertFalse(rows.episodes.get(1).isDownloaded());
+        assertEquals("Show", rows.podcasts.get(7L).getTitle());
+    }
+
+    @Test
+    public void testKeepsOnlyFirstRows() {
+        TabSnapshots snapshots = new TabSnapshots(folder.getRoot());
+        List<Podcast> podcasts = new ArrayList<>();
+        for (int i = 0; i < TabSnapshots.MAX_ROWS + 20; i++) {
+            podcasts.add(podcast(i, "Podcast " + i));
+        }
+        StringBuilder longDescription = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            longDescription.append("words ");
+        }
+        podcasts.get(0).setDescription(longDescription.toString());
+
+        snapshots.writePodcasts("subscriptions", 1, podcasts, new HashMap<Long, Integer>());
+        TabSnapshots.PodcastRows rows = snapshots.readPodcasts("subscriptions");
+
+        assertEquals(TabSnapshots.MAX_ROWS, rows.podcasts.size());
+        assertEquals(TabSnapshots.clipDescription(longDescription.toString()), rows.podcasts.get(0).getDescription());
+        assertTrue(rows.podcasts.get(0).getDescription().length() < longDescription.length());
+    }
+
+    @Test
+    public void testMissingOrDamagedSnapshotReadsAsNull() throws IOException {
+        TabSnapshots snapshots = new TabSnapshots(folder.getRoot());
+        assertNull(snapshots.readPodcasts("new"));
+
+        try (FileOutputStream out = new FileOutputStream(new File(folder.getRoot(), "new"))) {
+            out.write(new byte[]{0, 0, 0, 1, 0, 0, 0, 1, 0, 0});
+        }
+        assertNull(snapshots.readPodcasts("new"));
+
+        // A snapshot of the other kind is not mistaken for this one
+        snapshots.writeEpisodes("new", 1, new ArrayList<Episode>(), new HashMap<Long, Podcast>());
+        assertNull(snapshots.readPodcasts("new"));
+        assertNotNull(snapshots.readEpisodes("new"));
+    }
+}
@@ -0,0 +1,137 @@
+package com.ispringle.dumbcast;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Minimal HTTP server on localhost for redirect tests. Each path answers with a
+ * fixed status, optional Location and body; requests are counted per path.
+ * Unknown paths get a 404.
+ */
+public class TestHttpServer {
+
+    private final ServerSocket serverSocket;
+    private final Map<String, Response> responses = new ConcurrentHashMap<>();
+    private final Map<String, Integer> requests = new ConcurrentHashMap<>();
+
+    private static class Response {
+        final int status;
+        final String location;
+        final byte[] body;
+
+        Response(int status, String location, byte[] body) {
+            this.status = status;
+            this.location = location;
+            this.body = body;
+        }
+    }
+
+    public TestHttpServer() throws IOException {
+        serverSocket = new ServerSocket(0, 8, InetAddress.getByName("127.0.0.1"));
+        Thread thread = new Thread(this::acceptLoop, "TestHttpServer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @param path Path starting with a slash
+     * @return The absolute URL of the path on this server
+     */
+    public String url(String path) {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + path;
+    }
+
+    /**
+     * Answer a path with 200 and the given body.
+     */
+    public void serve(String path, String body) {
+        responses.put(path, new Response(200, null, body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Answer a path with a status and an optional Location header.
+     * @param location Target path on this server, or null for no Location header
+     */
+    public void respond(String path, int status, String location) {
+        responses.put(path, new Response(status, location != null ? url(location) : null, new byte[0]));
+    }
+
+    /**
+     * @return Number of requests for the path since the last {@link #clearRequests}
+     */
+    public int requestCount(String path) {
+        Integer count = requests.get(path);
+        return count != null ? count : 0;
+    }
+
+    public void clearRequests() {
+        requests.clear();
+    }
+
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                new Thread(() -> handle(socket)).start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            String[] requestLine = readLine(in).split(" ");
+            String line;
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                // Headers are not needed
+            }
+            String path = requestLine[1];
+            requests.merge(path, 1, Integer::sum);
+
+            Response response = responses.get(path);
+            if (response == null) {
+                response = new Response(404, null, new byte[0]);
+            }
+            String headers = "HTTP/1.1 " + response.status + " Test\r\n" +
+                (response.location != null ? "Location: " + response.location + "\r\n" : "") +
+                "Content-Length: " + response.body.length + "\r\n" +
+                "Connection: close\r\n\r\n";
+            OutputStream out = s.getOutputStream();
+            out.write(headers.getBytes(StandardCharsets.ISO_8859_1));
+            if (!"HEAD".equals(requestLine[0])) {
+                out.write(response.body);
+            }
+            out.flush();
+        } catch (IOException ignored) {
+            // Client hung up
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return c == -1 && line.length() == 0 ? null : line.toString();
+    }
+}
@@ -0,0 +1,160 @@
+package com.ispringle.dumbcast.utils;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.ispringle.dumbcast.TestHttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Redirect hops cached per status, against a local server. The cache's clock is
+ * overridden so hops can be expired without waiting. In this package to reach
+ * that clock.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RedirectCacheTest {
+
+    private static final long MINUTE_MS = 60 * 1000;
+    private static final long DAY_MS = 24 * 60 * MINUTE_MS;
+
+    private TestHttpServer server;
+    private RedirectCache cache;
+    private long clock = 1000000;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new TestHttpServer();
+        server.serve("/episode.mp3", "audio");
+        cache = new RedirectCache() {
+            @Override
+            long currentTimeMillis() {
+                return clock;
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void testChainIsResolvedOnceThenServedFromCache() throws IOException {
+        server.respond("/track", 302, "/cdn");
+        server.respond("/cdn", 301, "/episode.mp3");
+
+        assertEquals(server.url("/episode.mp3"), cache.resolve(server.url("/track")));
+        assertEquals(3, cache.getNetworkHopCount());
+
+        assertEquals(server.url("/episode.mp3"), cache.getCachedFinalUrl(server.url("/track")));
+        assertEquals(server.url("/episode.mp3"), cache.resolve(server.url("/track")));
+        assertEquals(3, cache.getNetworkHopCount());
+        assertEquals(3, cache.getCachedHopCount());
+        assertEquals(1, server.requestCount("/track"));
+    }
+
+    @Test
+    public void testTemporaryHopsExpireBeforePermanentOnes() throws IOException {
+        server.respond("/track", 307, "/cdn");
+        server.respond("/cdn", 308, "/episode.mp3");
+        String track = server.url("/track");
+        cache.resolve(track);
+
+        // Temporary hops last half an hour
+        clock += 29 * MINUTE_MS;
+        assertNotNull(cache.getCachedFinalUrl(track));
+        clock += 2 * MINUTE_MS;
+        assertNull(cache.getCachedFinalUrl(track));
+
+        // Only the expired temporary hop goes back to the network
+        server.clearRequests();
+        assertEquals(server.url("/episode.mp3"), cache.resolve(track));
+        assertEquals(1, server.requestCount("/track"));
+        assertEquals(0, server.requestCount("/cdn"));
+        assertEquals(0, server.requestCount("/episode.mp3"));
+    }
+
+    @Test
+    public void testPermanentHopsExpireAfterAWeek() throws IOException {
+        server.respond("/old.mp3", 301, "/episode.mp3");
+        String old = server.url("/old.mp3");
+        cache.resolve(old);
+
+        // The end of the chain is rechecked after six hours; the permanent hop stays
+        clock += 7 * 60 * MINUTE_MS;
+        server.clearRequests();
+        cache.resolve(old);
+        assertEquals(0, server.requestCount("/old.mp3"));
+        assertEquals(1, server.requestCount("/episode.mp3"));
+
+        clock += 7 * DAY_MS;
+        server.clearRequests();
+        cache.resolve(old);
+        assertEquals(1, server.requestCount("/old.mp3"));
+    }
+
+    @Test
+    public void testOnlyRedirectStatusesWithLocationAreFollowed() throws IOException {
+        server.respond("/not-modified", 304, "/episode.mp3");
+        server.respond("/choices", 300, "/episode.mp3");
+        server.respond("/no-location", 302, null);
+
+        assertEquals(server.url("/not-modified"), cache.resolve(server.url("/not-modified")));
+        assertEquals(server.url("/choices"), cache.resolve(server.url("/choices")));
+        assertEquals(server.url("/no-location"), cache.resolve(server.url("/no-location")));
+        assertEquals(0, server.requestCount("/episode.mp3"));
+
+        // Remembered as the end of the chain
+        assertEquals(server.url("/not-modified"), cache.getCachedFinalUrl(server.url("/not-modified")));
+    }
+
+    @Test
+    public void testLongestAllowedChainResolves() throws IOException {
+        chain(RedirectCache.MAX_REDIRECTS);
+        assertEquals(server.url("/episode.mp3"), cache.resolve(server.url("/hop0")));
+        assertEquals(server.url("/episode.mp3"), cache.getCachedFinalUrl(server.url("/hop0")));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTooLongChainFails() throws IOException {
+        chain(RedirectCache.MAX_REDIRECTS + 1);
+        cache.resolve(server.url("/hop0"));
+    }
+
+    @Test
+    public void testRedirectLoopFails() {
+        server.respond("/a", 302, "/b");
+        server.respond("/b", 302, "/a");
+        try {
+            cache.resolve(server.url("/a"));
+            fail("Loop resolved");
+        } catch (IOException expected) {
+        }
+        // Each hop was fetched once; the rest of the loop came from the cache
+        assertEquals(1, server.requestCount("/a"));
+        assertEquals(1, server.requestCount("/b"));
+        assertNull(cache.getCachedFinalUrl(server.url("/a")));
+    }
+
+    @Test
+    public void testErrorsAreNotCached() throws IOException {
+        assertEquals(server.url("/missing"), cache.resolve(server.url("/missing")));
+        assertNull(cache.getCachedFinalUrl(server.url("/missing")));
+    }
+
+    /**
+     * Set up /hop0 -> /hop1 -> ... -> /episode.mp3 with the given number of redirects.
+     */
+    private void chain(int redirects) {
+        for (int i = 0; i < redirects; i++) {
+            server.respond("/hop" + i, 302, i + 1 < redirects ? "/hop" + (i + 1) : "/episode.mp3");
+        }
+    }
+}
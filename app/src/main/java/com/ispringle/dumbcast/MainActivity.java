@@ -1,13 +1,13 @@
 package com.ispringle.dumbcast;
 
-import android.content.BroadcastReceiver;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.ServiceConnection;
+import android.os.AsyncTask;
 import android.os.Bundle;
-import android.support.v4.content.LocalBroadcastManager;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.os.IBinder;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentTransaction;
@@ -18,6 +18,7 @@ import android.widget.TextView;
 
 import com.ispringle.dumbcast.data.DatabaseHelper;
 import com.ispringle.dumbcast.data.DatabaseManager;
+import com.ispringle.dumbcast.data.EpisodeChangeNotifier;
 import com.ispringle.dumbcast.data.EpisodeRepository;
 import com.ispringle.dumbcast.data.EpisodeState;
 import com.ispringle.dumbcast.data.PodcastRepository;
@@ -26,9 +27,13 @@ import com.ispringle.dumbcast.fragments.EpisodeListFragment;
 import com.ispringle.dumbcast.fragments.NewFragment;
 import com.ispringle.dumbcast.fragments.PlayerFragment;
 import com.ispringle.dumbcast.fragments.SubscriptionsFragment;
-import com.ispringle.dumbcast.services.DownloadService;
 import com.ispringle.dumbcast.services.PlaybackService;
+import com.ispringle.dumbcast.services.StartupMaintenance;
+import com.ispringle.dumbcast.utils.MemoryBudget;
+import com.ispringle.dumbcast.utils.StartupTrace;
 
+import java.io.File;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -41,8 +46,17 @@ public class MainActivity extends AppCompatActivity {
 
     private static final String TAG = "MainActivity";
 
+    private static final String STARTUP_TRACE_FILE = "app_startup.txt";
+    private static final int NO_TAB = -1;
+
+    // Maintenance runs once per process, not on every activity creation
+    private static boolean maintenanceScheduled = false;
+
     private TextView tabIndicator;
     private EpisodeRepository episodeRepository;
+    private PodcastRepository podcastRepository;
+    private boolean tracingStartup = false;
+    private boolean startupDataLoaded = false;
 
     // Tab identifiers (constants for tab types, not indices)
     private static final int TAB_NOW_PLAYING = 0;
@@ -66,69 +80,56 @@ public class MainActivity extends AppCompatActivity {
     private boolean isCheckingPlayback = false;
 
     // Broadcast receiver for episode state changes
-    private BroadcastReceiver episodeStateChangeReceiver;
+    private final EpisodeChangeNotifier.Listener episodeChangeListener = new EpisodeChangeNotifier.Listener() {
+        @Override
+        public void onEpisodesChanged(EpisodeChangeNotifier.Change change) {
+            if (change.changed(EpisodeChangeNotifier.FIELD_STATE | EpisodeChangeNotifier.FIELD_ROWS)) {
+                updateTabVisibility();
+            }
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        tracingStartup = savedInstanceState == null &&
+            StartupTrace.getInstance().begin(new File(getFilesDir(), STARTUP_TRACE_FILE));
         setContentView(R.layout.activity_main);
 
-        // Initialize database and repository using singleton
-        DatabaseHelper dbHelper = DatabaseManager.getInstance(this);
-        episodeRepository = new EpisodeRepository(dbHelper);
-        final PodcastRepository podcastRepository = new PodcastRepository(dbHelper);
+        // Size caches for this device and start listening for memory pressure
+        MemoryBudget.getInstance(this);
 
-        // Run episode maintenance on background thread to avoid blocking app startup
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                // Decay old NEW episodes to AVAILABLE
-                episodeRepository.decayNewEpisodes();
-
-                // Fix state for downloaded episodes (migration fix)
-                // Downloaded episodes should be in BACKLOG state, not NEW
-                episodeRepository.fixDownloadedEpisodesState();
-
-                // After maintenance, update tab visibility on main thread
-                runOnUiThread(new Runnable() {
-                    @Override
-                    public void run() {
-                        updateTabVisibility();
-                    }
-                });
-            }
-        }).start();
+        // Startup runs in three phases:
+        // 1. Here, before the first frame: views, listeners and the tabs that are
+        //    always shown. Nothing in this phase touches the database.
+        // 2. LoadTabCountsTask: subscriptions and episode counts are read in the
+        //    background, then the conditional tabs and the initial tab are set up.
+        // 3. Once the main thread is idle after that, due maintenance runs in the background.
 
-        // Recover orphaned downloads (files that exist but database doesn't know about)
-        // This handles cases where download completes but broadcast is missed
-        DownloadService.recoverOrphanedDownloads(this);
+        // Repositories open the database lazily, on first query
+        DatabaseHelper dbHelper = DatabaseManager.getInstance(this);
+        episodeRepository = new EpisodeRepository(dbHelper);
+        podcastRepository = new PodcastRepository(dbHelper);
 
         // Setup tab indicator
         tabIndicator = findViewById(R.id.tab_indicator);
 
-        // Build initial tab list (synchronously for first setup)
-        buildVisibleTabs();
+        // Start with the tabs that don't depend on episode counts
+        buildVisibleTabs(0, 0);
 
-        // Determine initial tab
-        int requestedTab = TAB_SUBSCRIPTIONS;
+        int requestedTab = NO_TAB;
         if (getIntent() != null && getIntent().hasExtra(EXTRA_NAVIGATE_TO_TAB)) {
             requestedTab = getIntent().getIntExtra(EXTRA_NAVIGATE_TO_TAB, TAB_SUBSCRIPTIONS);
-        } else if (savedInstanceState == null) {
-            // On first launch, check if there are any subscriptions
-            // If none, start on Discovery tab instead of Subscriptions
-            if (podcastRepository.getAllPodcasts().isEmpty()) {
-                requestedTab = TAB_DISCOVER;
-            } else {
-                // Check if there's an active playback session
-                // If yes, default to Now Playing tab
-                isCheckingPlayback = true;
-                checkPlaybackAndSetTab();
-            }
         }
 
-        // Find the index of the requested tab in visibleTabs
-        if (!isCheckingPlayback) {
-            currentTabIndex = findTabIndex(requestedTab);
+        boolean chooseInitialTab = savedInstanceState == null;
+        if (chooseInitialTab && requestedTab != NO_TAB && findTabIndex(requestedTab) != -1) {
+            // An always-visible tab was asked for, so it can be shown without waiting for the database
+            showInitialTab(requestedTab);
+            chooseInitialTab = false;
+        } else if (savedInstanceState != null) {
+            // The fragment manager restores the fragment; the tab is synced to it once tabs are built
+            currentTabIndex = findTabIndex(TAB_SUBSCRIPTIONS);
             updateTabIndicator();
         }
 
@@ -143,45 +144,115 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
-        // Register broadcast receiver for episode state changes
-        episodeStateChangeReceiver = new BroadcastReceiver() {
-            @Override
-            public void onReceive(Context context, Intent intent) {
-                Log.d(TAG, "Received episode state change broadcast");
-                updateTabVisibility();
-            }
-        };
-        IntentFilter filter = new IntentFilter(DownloadService.ACTION_EPISODE_STATE_CHANGED);
-        LocalBroadcastManager.getInstance(this).registerReceiver(episodeStateChangeReceiver, filter);
+        // Tab visibility follows the NEW and BACKLOG counts
+        EpisodeChangeNotifier.getInstance().addListener(episodeChangeListener);
 
-        // Set initial fragment if this is first creation
-        // Only load if we're not checking playback state
-        if (savedInstanceState == null && !isCheckingPlayback) {
-            loadFragmentForTab(getCurrentTab());
+        if (tracingStartup) {
+            StartupTrace.getInstance().markAfterNextDraw(tabIndicator, StartupTrace.Milestone.FIRST_FRAME);
+        }
+
+        new LoadTabCountsTask(this, true, chooseInitialTab ? requestedTab : NO_TAB, chooseInitialTab).execute();
+    }
+
+    /**
+     * Phase 2 of startup: the database reads the first screen depends on are done.
+     * @param counts Episode counts and whether there are any subscriptions
+     * @param requestedTab Tab asked for by the launching intent, or NO_TAB
+     * @param chooseInitialTab True if no fragment is showing yet and one should be picked
+     */
+    private void onStartupStateLoaded(TabCounts counts, int requestedTab, boolean chooseInitialTab) {
+        startupDataLoaded = true;
+        if (tracingStartup) {
+            StartupTrace.getInstance().mark(StartupTrace.Milestone.DATA_LOADED);
+        }
+        buildVisibleTabs(counts.newCount, counts.backlogCount);
+
+        if (!chooseInitialTab) {
+            // A fragment is already showing (restored, or loaded in phase 1); line the tabs up with it
+            syncCurrentTabWithFragment();
+            updateTabIndicator();
+            onInitialTabShown();
+            return;
+        }
+
+        if (requestedTab != NO_TAB) {
+            showInitialTab(requestedTab);
+        } else if (!counts.hasPodcasts) {
+            // No subscriptions yet: start on Discovery instead of Subscriptions
+            showInitialTab(TAB_DISCOVER);
+        } else if (PlaybackService.isRunning()) {
+            // There may be an active playback session; if so, default to Now Playing.
+            // Only asked of a service that is already running, so startup never creates one.
+            currentTabIndex = findTabIndex(TAB_SUBSCRIPTIONS);
+            isCheckingPlayback = true;
+            checkPlaybackAndSetTab();
+        } else {
+            showInitialTab(TAB_SUBSCRIPTIONS);
+        }
+    }
+
+    /**
+     * Show the first tab of this launch.
+     * @param tabType The tab type constant
+     */
+    private void showInitialTab(int tabType) {
+        currentTabIndex = findTabIndex(tabType);
+        updateTabIndicator();
+        loadFragmentForTab(getCurrentTab());
+        if (startupDataLoaded) {
+            onInitialTabShown();
         }
     }
 
+    /**
+     * The initial tab is loaded and the tabs reflect the database: mark the app
+     * interactive once it is drawn and queue phase 3, deferred maintenance.
+     */
+    private void onInitialTabShown() {
+        if (tracingStartup) {
+            // Posted so the pending fragment transaction runs before the draw being waited for
+            tabIndicator.post(new Runnable() {
+                @Override
+                public void run() {
+                    StartupTrace.getInstance().markAfterNextDraw(tabIndicator, StartupTrace.Milestone.INTERACTIVE);
+                }
+            });
+        }
+
+        if (maintenanceScheduled) {
+            return;
+        }
+        maintenanceScheduled = true;
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                new RunMaintenanceTask(MainActivity.this).executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+                return false;
+            }
+        });
+    }
+
     /**
      * Build the list of visible tabs based on episode counts.
      * Always shows: Now Playing, Subscriptions, Discovery
      * Conditionally shows: NEW (if NEW episodes exist), BACKLOG (if BACKLOG episodes exist)
      * Order: Now Playing, NEW, BACKLOG, Subscriptions, Discovery
+     * @param newCount Number of NEW episodes
+     * @param backlogCount Number of BACKLOG episodes
      */
-    private void buildVisibleTabs() {
+    private void buildVisibleTabs(int newCount, int backlogCount) {
         visibleTabs.clear();
 
         // Always add Now Playing
         visibleTabs.add(TAB_NOW_PLAYING);
 
         // Add NEW tab if there are NEW episodes
-        int newCount = episodeRepository.getEpisodeCountByState(EpisodeState.NEW);
         if (newCount > 0) {
             visibleTabs.add(TAB_NEW);
             Log.d(TAG, "buildVisibleTabs: Added NEW tab (count=" + newCount + ")");
         }
 
         // Add BACKLOG tab if there are BACKLOG episodes
-        int backlogCount = episodeRepository.getEpisodeCountByState(EpisodeState.BACKLOG);
         if (backlogCount > 0) {
             visibleTabs.add(TAB_BACKLOG);
             Log.d(TAG, "buildVisibleTabs: Added BACKLOG tab (count=" + backlogCount + ")");
@@ -200,8 +271,19 @@ public class MainActivity extends AppCompatActivity {
      * Attempts to preserve the current fragment if possible.
      */
     public void updateTabVisibility() {
+        if (!startupDataLoaded) {
+            // The startup load reads the counts anyway
+            return;
+        }
         Log.d(TAG, "updateTabVisibility: Updating tab visibility");
+        new LoadTabCountsTask(this, false, NO_TAB, false).execute();
+    }
 
+    /**
+     * Rebuild the tabs from freshly read episode counts.
+     * @param counts The counts
+     */
+    private void applyTabCounts(TabCounts counts) {
         // Remember current tab type (not index)
         int currentTabType = getCurrentTab();
 
@@ -209,7 +291,7 @@ public class MainActivity extends AppCompatActivity {
         Fragment currentFragment = getSupportFragmentManager().findFragmentById(R.id.fragment_container);
 
         // Rebuild visible tabs list
-        buildVisibleTabs();
+        buildVisibleTabs(counts.newCount, counts.backlogCount);
 
         // Try to find the current tab in the new visible tabs list
         int newTabIndex = findTabIndex(currentTabType);
@@ -264,7 +346,7 @@ public class MainActivity extends AppCompatActivity {
     }
 
     /**
-     * Check if PlaybackService is running with an active episode
+     * Check if PlaybackService has an active episode
      * and set the initial tab to Now Playing if so.
      */
     private void checkPlaybackAndSetTab() {
@@ -275,6 +357,7 @@ public class MainActivity extends AppCompatActivity {
         if (!bound) {
             isCheckingPlayback = false;
             loadFragmentForTab(getCurrentTab());
+            onInitialTabShown();
         }
     }
 
@@ -298,6 +381,7 @@ public class MainActivity extends AppCompatActivity {
             // Load the appropriate fragment
             loadFragmentForTab(getCurrentTab());
             isCheckingPlayback = false;
+            onInitialTabShown();
 
             // Unbind immediately - we only needed to check the state
             unbindService(playbackCheckConnection);
@@ -314,6 +398,7 @@ public class MainActivity extends AppCompatActivity {
             if (isCheckingPlayback) {
                 isCheckingPlayback = false;
                 loadFragmentForTab(getCurrentTab());
+                onInitialTabShown();
             }
         }
     };
@@ -341,15 +426,7 @@ public class MainActivity extends AppCompatActivity {
             playbackService = null;
         }
 
-        // Unregister broadcast receiver
-        if (episodeStateChangeReceiver != null) {
-            try {
-                LocalBroadcastManager.getInstance(this).unregisterReceiver(episodeStateChangeReceiver);
-            } catch (IllegalArgumentException e) {
-                // Receiver was not registered, ignore
-            }
-            episodeStateChangeReceiver = null;
-        }
+        EpisodeChangeNotifier.getInstance().removeListener(episodeChangeListener);
     }
 
     /**
@@ -520,6 +597,13 @@ public class MainActivity extends AppCompatActivity {
      */
     @Override
     public boolean onKeyDown(int keyCode, KeyEvent event) {
+        // Keys the list didn't use itself type into its search
+        Fragment currentFragment = getSupportFragmentManager().findFragmentById(R.id.fragment_container);
+        if (currentFragment instanceof EpisodeListFragment &&
+                ((EpisodeListFragment) currentFragment).onSearchKey(keyCode, event)) {
+            return true;
+        }
+
         switch (keyCode) {
             case KeyEvent.KEYCODE_DPAD_LEFT:
                 // Navigate to previous tab
@@ -588,4 +672,86 @@ public class MainActivity extends AppCompatActivity {
             ", currentFragment=" + (currentFragment != null ? currentFragment.getClass().getSimpleName() : "null") +
             ", backStackCount=" + getSupportFragmentManager().getBackStackEntryCount());
     }
+
+    /**
+     * Episode counts the tab list depends on.
+     */
+    private static class TabCounts {
+        int newCount;
+        int backlogCount;
+        boolean hasPodcasts;
+    }
+
+    /**
+     * AsyncTask to read episode counts (and at startup, whether there are any
+     * subscriptions) on a background thread.
+     */
+    private static class LoadTabCountsTask extends AsyncTask<Void, Void, TabCounts> {
+        private final WeakReference<MainActivity> activityRef;
+        private final EpisodeRepository episodeRepository;
+        private final PodcastRepository podcastRepository;
+        private final boolean startup;
+        private final int requestedTab;
+        private final boolean chooseInitialTab;
+
+        LoadTabCountsTask(MainActivity activity, boolean startup, int requestedTab, boolean chooseInitialTab) {
+            this.activityRef = new WeakReference<>(activity);
+            this.episodeRepository = activity.episodeRepository;
+            this.podcastRepository = activity.podcastRepository;
+            this.startup = startup;
+            this.requestedTab = requestedTab;
+            this.chooseInitialTab = chooseInitialTab;
+        }
+
+        @Override
+        protected TabCounts doInBackground(Void... voids) {
+            TabCounts counts = new TabCounts();
+            counts.newCount = episodeRepository.getEpisodeCountByState(EpisodeState.NEW);
+            counts.backlogCount = episodeRepository.getEpisodeCountByState(EpisodeState.BACKLOG);
+            if (startup) {
+                counts.hasPodcasts = podcastRepository.hasPodcasts();
+            }
+            return counts;
+        }
+
+        @Override
+        protected void onPostExecute(TabCounts counts) {
+            MainActivity activity = activityRef.get();
+            if (activity == null || activity.isFinishing() || activity.isDestroyed()) {
+                return;
+            }
+            if (startup) {
+                activity.onStartupStateLoaded(counts, requestedTab, chooseInitialTab);
+            } else {
+                activity.applyTabCounts(counts);
+            }
+        }
+    }
+
+    /**
+     * AsyncTask to run deferred startup maintenance on a background thread.
+     */
+    private static class RunMaintenanceTask extends AsyncTask<Void, Void, Boolean> {
+        private final WeakReference<MainActivity> activityRef;
+        private final StartupMaintenance maintenance;
+
+        RunMaintenanceTask(MainActivity activity) {
+            this.activityRef = new WeakReference<>(activity);
+            this.maintenance = new StartupMaintenance(activity);
+        }
+
+        @Override
+        protected Boolean doInBackground(Void... voids) {
+            return maintenance.runDue();
+        }
+
+        @Override
+        protected void onPostExecute(Boolean changed) {
+            StartupTrace.getInstance().mark(StartupTrace.Milestone.MAINTENANCE_DONE);
+            MainActivity activity = activityRef.get();
+            if (changed && activity != null && !activity.isFinishing() && !activity.isDestroyed()) {
+                activity.updateTabVisibility();
+            }
+        }
+    }
 }
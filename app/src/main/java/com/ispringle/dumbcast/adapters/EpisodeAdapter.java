@@ -1,17 +1,23 @@
 package com.ispringle.dumbcast.adapters;
 
 import android.content.Context;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.ArrayAdapter;
+import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import com.ispringle.dumbcast.R;
 import com.ispringle.dumbcast.data.Episode;
 import com.ispringle.dumbcast.data.EpisodeState;
 import com.ispringle.dumbcast.data.Podcast;
+import com.ispringle.dumbcast.data.TabSnapshots;
+import com.ispringle.dumbcast.services.DownloadProgressTracker;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,11 +26,14 @@ import java.util.Map;
  * Custom ArrayAdapter for displaying Episode objects in a ListView.
  * Uses ViewHolder pattern for performance.
  * Shows episode title, podcast name, duration, download status, and state badges.
+ * Episodes that are downloading show a progress bar fed by {@link DownloadProgressTracker}.
  */
 public class EpisodeAdapter extends ArrayAdapter<Episode> {
 
     private final LayoutInflater inflater;
     private final Map<Long, Podcast> podcastCache;
+    private boolean snapshot = false;
+    private int bindCount = 0;
 
     /**
      * ViewHolder pattern to cache view references for performance.
@@ -35,6 +44,7 @@ public class EpisodeAdapter extends ArrayAdapter<Episode> {
         TextView durationText;
         TextView stateBadge;
         TextView downloadStatus;
+        ProgressBar downloadProgress;
     }
 
     public EpisodeAdapter(Context context, List<Episode> episodes, Map<Long, Podcast> podcastCache) {
@@ -43,9 +53,136 @@ public class EpisodeAdapter extends ArrayAdapter<Episode> {
         this.podcastCache = podcastCache != null ? podcastCache : new HashMap<Long, Podcast>();
     }
 
+    /**
+     * Replace the rows in place, keeping the list's scroll position and selection.
+     * If the same episodes are shown in the same order, only the on-screen rows that
+     * look different are rebound; otherwise the list is redrawn if any row changed.
+     * @param episodes The new rows
+     * @param podcasts Podcasts of the episodes, by ID
+     * @param fromSnapshot True if the rows come from a {@link TabSnapshots} and are display-only
+     * @param list The list showing this adapter
+     * @return True if any row looks different
+     */
+    public boolean setRows(List<Episode> episodes, Map<Long, Podcast> podcasts, boolean fromSnapshot,
+                           AbsListView list) {
+        boolean sameEpisodes = showsSameEpisodes(episodes);
+        List<Integer> changedRows = new ArrayList<>();
+        if (sameEpisodes) {
+            for (int i = 0; i < episodes.size(); i++) {
+                if (!looksSame(getItem(i), podcastCache, episodes.get(i), podcasts)) {
+                    changedRows.add(i);
+                }
+            }
+        }
+        boolean changed = !sameEpisodes || !changedRows.isEmpty();
+
+        setNotifyOnChange(false);
+        clear();
+        addAll(episodes);
+        podcastCache.clear();
+        podcastCache.putAll(podcasts);
+        snapshot = fromSnapshot;
+        if (!sameEpisodes) {
+            notifyDataSetChanged();
+        } else {
+            for (int position : changedRows) {
+                rebindRow(list, position);
+            }
+        }
+        setNotifyOnChange(true);
+        return changed;
+    }
+
+    /**
+     * Replace one episode's row with a fresh copy, rebinding it if it is on screen
+     * and looks different. Nothing else in the list is touched.
+     * @param episode The updated episode
+     * @param list The list showing this adapter
+     * @return True if the episode is one of the rows
+     */
+    public boolean patchRow(Episode episode, AbsListView list) {
+        int position = getPosition(episode.getId());
+        if (position < 0) {
+            return false;
+        }
+        Episode shown = getItem(position);
+        setNotifyOnChange(false);
+        remove(shown);
+        insert(episode, position);
+        setNotifyOnChange(true);
+        if (!looksSame(shown, podcastCache, episode, podcastCache)) {
+            rebindRow(list, position);
+        }
+        return true;
+    }
+
+    /**
+     * @param episodeId The episode ID
+     * @return Position of the episode's row, or -1 if it isn't shown
+     */
+    public int getPosition(long episodeId) {
+        for (int i = 0; i < getCount(); i++) {
+            Episode episode = getItem(i);
+            if (episode != null && episode.getId() == episodeId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return True if the rows are a snapshot still waiting for the fresh query
+     */
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return How many times a row has been bound, for checking that updates
+     *         rebind only the rows they affect
+     */
+    public int getBindCount() {
+        return bindCount;
+    }
+
+    private void rebindRow(AbsListView list, int position) {
+        View row = list.getChildAt(position - list.getFirstVisiblePosition());
+        if (row != null) {
+            getView(position, row, list);
+        }
+    }
+
+    private boolean showsSameEpisodes(List<Episode> episodes) {
+        if (episodes.size() != getCount()) {
+            return false;
+        }
+        for (int i = 0; i < episodes.size(); i++) {
+            Episode shown = getItem(i);
+            if (shown == null || shown.getId() != episodes.get(i).getId()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean looksSame(Episode shown, Map<Long, Podcast> shownPodcasts,
+                                     Episode episode, Map<Long, Podcast> podcasts) {
+        return TextUtils.equals(shown.getTitle(), episode.getTitle()) &&
+            shown.getDuration() == episode.getDuration() &&
+            shown.getState() == episode.getState() &&
+            shown.isDownloaded() == episode.isDownloaded() &&
+            TextUtils.equals(podcastTitle(shownPodcasts, shown), podcastTitle(podcasts, episode));
+    }
+
+    private static String podcastTitle(Map<Long, Podcast> podcasts, Episode episode) {
+        Podcast podcast = podcasts.get(episode.getPodcastId());
+        return podcast != null ? podcast.getTitle() : null;
+    }
+
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
         ViewHolder holder;
+        bindCount++;
 
         if (convertView == null) {
             convertView = inflater.inflate(R.layout.item_episode, parent, false);
@@ -55,6 +192,7 @@ public class EpisodeAdapter extends ArrayAdapter<Episode> {
             holder.durationText = convertView.findViewById(R.id.episode_duration);
             holder.stateBadge = convertView.findViewById(R.id.episode_state_badge);
             holder.downloadStatus = convertView.findViewById(R.id.episode_download_status);
+            holder.downloadProgress = convertView.findViewById(R.id.episode_download_progress);
             convertView.setTag(holder);
         } else {
             holder = (ViewHolder) convertView.getTag();
@@ -95,14 +233,60 @@ public class EpisodeAdapter extends ArrayAdapter<Episode> {
             if (episode.isDownloaded()) {
                 holder.downloadStatus.setText("DL");
                 holder.downloadStatus.setVisibility(View.VISIBLE);
+                holder.downloadProgress.setVisibility(View.GONE);
             } else {
-                holder.downloadStatus.setVisibility(View.GONE);
+                bindProgress(holder, DownloadProgressTracker.getInstance().getProgress(episode.getId()));
             }
         }
 
         return convertView;
     }
 
+    /**
+     * Update only the download progress views of an already bound row.
+     * Lets the list react to progress updates without rebinding every row.
+     * @param row A row view previously returned by {@link #getView}
+     * @param progress The latest progress sample, or null if no longer downloading
+     */
+    public void updateProgress(View row, DownloadProgressTracker.Progress progress) {
+        Object tag = row.getTag();
+        if (tag instanceof ViewHolder) {
+            bindProgress((ViewHolder) tag, progress);
+        }
+    }
+
+    private void bindProgress(ViewHolder holder, DownloadProgressTracker.Progress progress) {
+        if (progress == null) {
+            holder.downloadStatus.setVisibility(View.GONE);
+            holder.downloadProgress.setVisibility(View.GONE);
+            return;
+        }
+
+        int percent = progress.getPercent();
+        holder.downloadProgress.setVisibility(View.VISIBLE);
+        holder.downloadProgress.setIndeterminate(percent < 0);
+        if (percent >= 0) {
+            holder.downloadProgress.setProgress(percent);
+        }
+
+        String status = percent >= 0 ? percent + "%" : formatBytes(progress.bytesDownloaded);
+        if (progress.bytesPerSecond > 0) {
+            status += " · " + formatBytes(progress.bytesPerSecond) + "/s";
+        }
+        holder.downloadStatus.setText(status);
+        holder.downloadStatus.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * Format a byte count compactly (e.g., "850K" or "12.4M").
+     */
+    private String formatBytes(long bytes) {
+        if (bytes >= 1024 * 1024) {
+            return String.format(java.util.Locale.US, "%.1fM", bytes / (1024f * 1024f));
+        }
+        return (bytes / 1024) + "K";
+    }
+
     /**
      * Format duration in seconds to human-readable format (e.g., "1h 23m" or "45m").
      * @param seconds Duration in seconds
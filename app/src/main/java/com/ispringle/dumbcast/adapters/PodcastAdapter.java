@@ -1,20 +1,25 @@
 package com.ispringle.dumbcast.adapters;
 
 import android.content.Context;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.ArrayAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.ispringle.dumbcast.R;
 import com.ispringle.dumbcast.data.Podcast;
+import com.ispringle.dumbcast.data.TabSnapshots;
 import com.ispringle.dumbcast.utils.ImageLoader;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * Custom ArrayAdapter for displaying Podcast objects in a ListView.
@@ -23,8 +28,12 @@ import java.util.Map;
  */
 public class PodcastAdapter extends ArrayAdapter<Podcast> {
 
+    // Rows past the one being bound whose artwork is fetched ahead of time
+    private static final int PREFETCH_AHEAD = 3;
+
     private final LayoutInflater inflater;
     private final Map<Long, Integer> episodeCounts;
+    private boolean snapshot = false;
 
     /**
      * ViewHolder pattern to cache view references for performance.
@@ -42,6 +51,77 @@ public class PodcastAdapter extends ArrayAdapter<Podcast> {
         this.episodeCounts = episodeCounts != null ? episodeCounts : new HashMap<Long, Integer>();
     }
 
+    /**
+     * Replace the rows in place, keeping the list's scroll position and selection.
+     * If the same podcasts are shown in the same order, only the on-screen rows that
+     * look different are rebound; otherwise the list is redrawn if any row changed.
+     * @param podcasts The new rows
+     * @param counts Episode count for each podcast ID
+     * @param fromSnapshot True if the rows come from a {@link TabSnapshots} and are display-only
+     * @param list The list showing this adapter
+     * @return True if any row looks different
+     */
+    public boolean setRows(List<Podcast> podcasts, Map<Long, Integer> counts, boolean fromSnapshot,
+                           AbsListView list) {
+        boolean samePodcasts = showsSamePodcasts(podcasts);
+        List<Integer> changedRows = new ArrayList<>();
+        if (samePodcasts) {
+            for (int i = 0; i < podcasts.size(); i++) {
+                if (!looksSame(getItem(i), podcasts.get(i), counts)) {
+                    changedRows.add(i);
+                }
+            }
+        }
+        boolean changed = !samePodcasts || !changedRows.isEmpty();
+
+        setNotifyOnChange(false);
+        clear();
+        addAll(podcasts);
+        episodeCounts.clear();
+        episodeCounts.putAll(counts);
+        snapshot = fromSnapshot;
+        if (!samePodcasts) {
+            notifyDataSetChanged();
+        } else {
+            for (int position : changedRows) {
+                View row = list.getChildAt(position - list.getFirstVisiblePosition());
+                if (row != null) {
+                    getView(position, row, list);
+                }
+            }
+        }
+        setNotifyOnChange(true);
+        return changed;
+    }
+
+    /**
+     * @return True if the rows are a snapshot still waiting for the fresh query
+     */
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    private boolean showsSamePodcasts(List<Podcast> podcasts) {
+        if (podcasts.size() != getCount()) {
+            return false;
+        }
+        for (int i = 0; i < podcasts.size(); i++) {
+            Podcast shown = getItem(i);
+            if (shown == null || shown.getId() != podcasts.get(i).getId()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean looksSame(Podcast shown, Podcast podcast, Map<Long, Integer> counts) {
+        return TextUtils.equals(shown.getTitle(), podcast.getTitle()) &&
+            TextUtils.equals(TabSnapshots.clipDescription(shown.getDescription()),
+                TabSnapshots.clipDescription(podcast.getDescription())) &&
+            TextUtils.equals(shown.getArtworkUrl(), podcast.getArtworkUrl()) &&
+            Objects.equals(episodeCounts.get(podcast.getId()), counts.get(podcast.getId()));
+    }
+
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
         ViewHolder holder;
@@ -67,6 +147,14 @@ public class PodcastAdapter extends ArrayAdapter<Podcast> {
                 holder.artworkImage
             );
 
+            // Get the next rows' artwork going behind the visible ones, so scrolling down finds it ready
+            for (int next = position + 1; next <= position + PREFETCH_AHEAD && next < getCount(); next++) {
+                Podcast upcoming = getItem(next);
+                if (upcoming != null) {
+                    ImageLoader.getInstance(getContext()).prefetch(upcoming.getArtworkUrl(), holder.artworkImage);
+                }
+            }
+
             // Set title
             holder.titleText.setText(podcast.getTitle());
 
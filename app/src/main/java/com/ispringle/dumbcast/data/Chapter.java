@@ -0,0 +1,17 @@
+package com.ispringle.dumbcast.data;
+
+/**
+ * A single chapter marker within an episode.
+ */
+public class Chapter {
+    private final long startMs;
+    private final String title;
+
+    public Chapter(long startMs, String title) {
+        this.startMs = startMs;
+        this.title = title;
+    }
+
+    public long getStartMs() { return startMs; }
+    public String getTitle() { return title; }
+}
@@ -0,0 +1,174 @@
+package com.ispringle.dumbcast.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.ispringle.dumbcast.utils.ChaptersParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Repository for episode chapters.
+ *
+ * Chapters files are fetched lazily: when an episode is first played, or ahead
+ * of time for episodes the user is likely to play soon. Once fetched, an
+ * episode's chapters_fetched_at is set, even if the file had no chapters, so the
+ * file is never downloaded twice. Network failures leave it unset to retry later.
+ */
+public class ChapterRepository {
+
+    private static final String TAG = "ChapterRepository";
+    private final DatabaseHelper dbHelper;
+
+    public ChapterRepository(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Get the stored chapters for an episode.
+     * @param episodeId The episode ID
+     * @return Chapters ordered by start time; empty if none are stored
+     */
+    public List<Chapter> getChapters(long episodeId) {
+        List<Chapter> chapters = new ArrayList<>();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        Cursor cursor = db.query(
+            DatabaseHelper.TABLE_CHAPTERS,
+            new String[]{DatabaseHelper.COL_CHAPTER_START_MS, DatabaseHelper.COL_CHAPTER_TITLE},
+            DatabaseHelper.COL_CHAPTER_EPISODE_ID + " = ?",
+            new String[]{String.valueOf(episodeId)},
+            null, null,
+            DatabaseHelper.COL_CHAPTER_START_MS + " ASC"
+        );
+
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                chapters.add(new Chapter(cursor.getLong(0), cursor.isNull(1) ? null : cursor.getString(1)));
+            }
+            cursor.close();
+        }
+        return chapters;
+    }
+
+    /**
+     * Get an episode's chapters, fetching the chapters file first if it hasn't been yet.
+     * Blocks on network, so call from a background thread.
+     * @param episode The episode
+     * @return Chapters ordered by start time; empty if the episode has none or the fetch failed
+     */
+    public List<Chapter> getOrFetchChapters(Episode episode) {
+        if (needsFetch(episode)) {
+            fetchChapters(episode.getId(), episode.getChaptersUrl());
+        }
+        return getChapters(episode.getId());
+    }
+
+    /**
+     * Fetch chapters for episodes that will probably be played soon: queued,
+     * backlog or downloaded episodes whose chapters file hasn't been fetched.
+     * Blocks on network, so call from a background thread.
+     * @param limit Maximum number of chapters files to fetch
+     * @return Number of episodes whose chapters were fetched
+     */
+    public int fetchPendingChapters(int limit) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        String query = "SELECT " + DatabaseHelper.COL_EPISODE_ID + ", " + DatabaseHelper.COL_EPISODE_CHAPTERS_URL +
+            " FROM " + DatabaseHelper.TABLE_EPISODES +
+            " WHERE " + DatabaseHelper.COL_EPISODE_CHAPTERS_URL + " IS NOT NULL" +
+            " AND " + DatabaseHelper.COL_EPISODE_CHAPTERS_FETCHED_AT + " IS NULL" +
+            " AND (" + DatabaseHelper.COL_EPISODE_STATE + " = ?" +
+            " OR " + DatabaseHelper.COL_EPISODE_DOWNLOAD_PATH + " IS NOT NULL" +
+            " OR " + DatabaseHelper.COL_EPISODE_ID + " IN (SELECT " + DatabaseHelper.COL_QUEUE_EPISODE_ID +
+            " FROM " + DatabaseHelper.TABLE_QUEUE + "))" +
+            " ORDER BY " + DatabaseHelper.COL_EPISODE_PUBLISHED_AT + " DESC LIMIT " + limit;
+
+        List<Long> ids = new ArrayList<>();
+        List<String> urls = new ArrayList<>();
+        Cursor cursor = db.rawQuery(query, new String[]{EpisodeState.BACKLOG.name()});
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+                urls.add(cursor.getString(1));
+            }
+            cursor.close();
+        }
+
+        int fetched = 0;
+        for (int i = 0; i < ids.size(); i++) {
+            if (fetchChapters(ids.get(i), urls.get(i))) {
+                fetched++;
+            }
+        }
+        if (!ids.isEmpty()) {
+            Log.d(TAG, "Prefetched chapters for " + fetched + " of " + ids.size() + " episodes");
+        }
+        return fetched;
+    }
+
+    /**
+     * Replace an episode's chapters and mark them as fetched.
+     * @param episodeId The episode ID
+     * @param chapters Chapters with distinct start times
+     */
+    public void replaceChapters(long episodeId, List<Chapter> chapters) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            String[] idArg = {String.valueOf(episodeId)};
+            db.delete(DatabaseHelper.TABLE_CHAPTERS, DatabaseHelper.COL_CHAPTER_EPISODE_ID + " = ?", idArg);
+
+            ContentValues values = new ContentValues();
+            for (Chapter chapter : chapters) {
+                values.clear();
+                values.put(DatabaseHelper.COL_CHAPTER_EPISODE_ID, episodeId);
+                values.put(DatabaseHelper.COL_CHAPTER_START_MS, chapter.getStartMs());
+                values.put(DatabaseHelper.COL_CHAPTER_TITLE, chapter.getTitle());
+                db.insertWithOnConflict(DatabaseHelper.TABLE_CHAPTERS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+
+            ContentValues fetched = new ContentValues();
+            fetched.put(DatabaseHelper.COL_EPISODE_CHAPTERS_FETCHED_AT, System.currentTimeMillis());
+            db.update(DatabaseHelper.TABLE_EPISODES, fetched, DatabaseHelper.COL_EPISODE_ID + " = ?", idArg);
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private boolean needsFetch(Episode episode) {
+        String url = episode.getChaptersUrl();
+        if (url == null || url.isEmpty()) {
+            return false;
+        }
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        long unfetched = DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_EPISODES,
+            DatabaseHelper.COL_EPISODE_ID + " = ? AND " + DatabaseHelper.COL_EPISODE_CHAPTERS_FETCHED_AT + " IS NULL",
+            new String[]{String.valueOf(episode.getId())});
+        return unfetched > 0;
+    }
+
+    private boolean fetchChapters(long episodeId, String chaptersUrl) {
+        try {
+            long start = System.currentTimeMillis();
+            List<Chapter> chapters = ChaptersParser.fetch(chaptersUrl);
+            replaceChapters(episodeId, chapters);
+            Log.d(TAG, "Stored " + chapters.size() + " chapters for episode " + episodeId +
+                  " in " + (System.currentTimeMillis() - start) + " ms");
+            return true;
+        } catch (ChaptersParser.InvalidChaptersException e) {
+            // Don't keep retrying a broken file; record it as having no chapters
+            Log.w(TAG, "Unusable chapters file for episode " + episodeId + ": " + chaptersUrl, e);
+            replaceChapters(episodeId, new ArrayList<Chapter>());
+            return false;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to fetch chapters for episode " + episodeId + ": " + chaptersUrl, e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.ispringle.dumbcast.data;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate compression for text stored as BLOBs, such as episode show notes.
+ *
+ * Stored without the zlib header or checksum; the row is the unit of
+ * integrity and SQLite already checks its pages. Show notes HTML compresses
+ * to roughly a third of its UTF-8 size.
+ */
+public final class CompressedText {
+
+    private CompressedText() {
+    }
+
+    /**
+     * @param text The text, not null
+     * @return The text as deflated UTF-8
+     */
+    public static byte[] compress(String text) {
+        byte[] input = text.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + 16);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @param data Bytes from {@link #compress}
+     * @return The text, or null if the data is damaged
+     */
+    public static String decompress(byte[] data) {
+        Inflater inflater = new Inflater(true);
+        try {
+            // Raw deflate needs a spare byte at the end to see the final block
+            byte[] input = new byte[data.length + 1];
+            System.arraycopy(data, 0, input, 0, data.length);
+            inflater.setInput(input);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    return null;
+                }
+                out.write(buffer, 0, count);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            return null;
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -3,21 +3,39 @@ package com.ispringle.dumbcast.data;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
+import com.ispringle.dumbcast.utils.EpisodeSearch;
+import com.ispringle.dumbcast.utils.ShowNotesNormalizer;
+
 public class DatabaseHelper extends SQLiteOpenHelper {
 
     private static final String DATABASE_NAME = "dumbcast.db";
-    private static final int DATABASE_VERSION = 4;
+    private static final int DATABASE_VERSION = 16;
 
     // Table names
     public static final String TABLE_PODCASTS = "podcasts";
     public static final String TABLE_EPISODES = "episodes";
+    public static final String TABLE_DOWNLOAD_STATS = "download_stats";
+    public static final String TABLE_QUEUE = "queue";
+    public static final String TABLE_CHAPTERS = "chapters";
+    public static final String TABLE_LISTENING_EVENTS = "listening_events";
+    public static final String TABLE_LISTENING_DAILY = "listening_daily";
+    public static final String TABLE_LISTENING_PODCASTS = "listening_podcasts";
+    public static final String TABLE_LISTENING_EPISODES = "listening_episodes";
+    public static final String TABLE_DATA_VERSION = "data_version";
+    public static final String TABLE_EPISODE_LINKS = "episode_links";
+    public static final String TABLE_SHOW_NOTES_FOOTERS = "show_notes_footers";
+    public static final String TABLE_EPISODE_DESCRIPTIONS = "episode_descriptions";
+    public static final String TABLE_EPISODE_SEARCH = "episode_search";
 
     // Podcasts columns
     public static final String COL_PODCAST_ID = "id";
     public static final String COL_PODCAST_FEED_URL = "feed_url";
+    public static final String COL_PODCAST_ORIGINAL_FEED_URL = "original_feed_url";
+    public static final String COL_PODCAST_FEED_REDIRECT_HOPS = "feed_redirect_hops";
     public static final String COL_PODCAST_TITLE = "title";
     public static final String COL_PODCAST_DESCRIPTION = "description";
     public static final String COL_PODCAST_ARTWORK_URL = "artwork_url";
@@ -25,12 +43,18 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String COL_PODCAST_LAST_REFRESH = "last_refresh_at";
     public static final String COL_PODCAST_CREATED = "created_at";
     public static final String COL_PODCAST_REVERSE_ORDER = "reverse_order";
+    public static final String COL_PODCAST_AUTO_DOWNLOAD = "auto_download";
+    public static final String COL_PODCAST_AUTO_DOWNLOAD_KEEP = "auto_download_keep";
+    public static final String COL_PODCAST_AUTO_DOWNLOAD_UNMETERED = "auto_download_unmetered";
+    public static final String COL_PODCAST_AUTO_DOWNLOAD_CHARGING = "auto_download_charging";
 
     // Episodes columns
     public static final String COL_EPISODE_ID = "id";
     public static final String COL_EPISODE_PODCAST_ID = "podcast_id";
     public static final String COL_EPISODE_GUID = "guid";
     public static final String COL_EPISODE_TITLE = "title";
+    // Only in databases created before version 13, where it is now always null;
+    // show notes are in episode_descriptions
     public static final String COL_EPISODE_DESCRIPTION = "description";
     public static final String COL_EPISODE_ENCLOSURE_URL = "enclosure_url";
     public static final String COL_EPISODE_ENCLOSURE_TYPE = "enclosure_type";
@@ -47,7 +71,20 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String COL_EPISODE_DOWNLOADED_AT = "downloaded_at";
     public static final String COL_EPISODE_SESSION_GRACE = "session_grace";
     public static final String COL_EPISODE_CHAPTERS_URL = "chapters_url";
+    public static final String COL_EPISODE_CHAPTERS_FETCHED_AT = "chapters_fetched_at";
     public static final String COL_EPISODE_ARTWORK_URL = "artwork_url";
+    public static final String COL_EPISODE_FOOTER_ID = "footer_id";
+
+    // Download stats columns
+    public static final String COL_STAT_ID = "id";
+    public static final String COL_STAT_EPISODE_ID = "episode_id";
+    public static final String COL_STAT_HOST = "host";
+    public static final String COL_STAT_BYTES = "bytes";
+    public static final String COL_STAT_DURATION_MS = "duration_ms";
+    public static final String COL_STAT_COMPLETED_AT = "completed_at";
+
+    // Data version columns
+    public static final String COL_DATA_VERSION = "version";
 
     private static final String CREATE_PODCASTS_TABLE =
         "CREATE TABLE " + TABLE_PODCASTS + " (" +
@@ -59,7 +96,19 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         COL_PODCAST_INDEX_ID + " INTEGER, " +
         COL_PODCAST_LAST_REFRESH + " INTEGER, " +
         COL_PODCAST_CREATED + " INTEGER NOT NULL, " +
-        COL_PODCAST_REVERSE_ORDER + " INTEGER DEFAULT 0)";
+        COL_PODCAST_REVERSE_ORDER + " INTEGER DEFAULT 0, " +
+        COL_PODCAST_AUTO_DOWNLOAD + " INTEGER DEFAULT 0, " +
+        COL_PODCAST_AUTO_DOWNLOAD_KEEP + " INTEGER DEFAULT 3, " +
+        COL_PODCAST_AUTO_DOWNLOAD_UNMETERED + " INTEGER DEFAULT 1, " +
+        COL_PODCAST_AUTO_DOWNLOAD_CHARGING + " INTEGER DEFAULT 0, " +
+        COL_PODCAST_ORIGINAL_FEED_URL + " TEXT, " +
+        COL_PODCAST_FEED_REDIRECT_HOPS + " INTEGER DEFAULT 0)";
+
+    // Subscribing de-duplicates against feed_url OR original_feed_url; feed_url is
+    // UNIQUE, so with this index both sides of the OR are index lookups
+    private static final String CREATE_PODCAST_ORIGINAL_FEED_URL_INDEX =
+        "CREATE INDEX idx_podcasts_original_feed_url ON " + TABLE_PODCASTS +
+        "(" + COL_PODCAST_ORIGINAL_FEED_URL + ")";
 
     private static final String CREATE_EPISODES_TABLE =
         "CREATE TABLE " + TABLE_EPISODES + " (" +
@@ -67,7 +116,6 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         COL_EPISODE_PODCAST_ID + " INTEGER NOT NULL, " +
         COL_EPISODE_GUID + " TEXT NOT NULL, " +
         COL_EPISODE_TITLE + " TEXT NOT NULL, " +
-        COL_EPISODE_DESCRIPTION + " TEXT, " +
         COL_EPISODE_ENCLOSURE_URL + " TEXT, " +
         COL_EPISODE_ENCLOSURE_TYPE + " TEXT, " +
         COL_EPISODE_ENCLOSURE_LENGTH + " INTEGER, " +
@@ -84,10 +132,211 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         COL_EPISODE_SESSION_GRACE + " INTEGER DEFAULT 0, " +
         COL_EPISODE_CHAPTERS_URL + " TEXT, " +
         COL_EPISODE_ARTWORK_URL + " TEXT, " +
+        COL_EPISODE_CHAPTERS_FETCHED_AT + " INTEGER, " +
+        COL_EPISODE_FOOTER_ID + " INTEGER, " +
         "FOREIGN KEY(" + COL_EPISODE_PODCAST_ID + ") REFERENCES " +
         TABLE_PODCASTS + "(" + COL_PODCAST_ID + ") ON DELETE CASCADE, " +
         "UNIQUE(" + COL_EPISODE_PODCAST_ID + ", " + COL_EPISODE_GUID + "))";
 
+    // No foreign key: throughput history outlives deleted episodes
+    private static final String CREATE_DOWNLOAD_STATS_TABLE =
+        "CREATE TABLE " + TABLE_DOWNLOAD_STATS + " (" +
+        COL_STAT_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+        COL_STAT_EPISODE_ID + " INTEGER NOT NULL, " +
+        COL_STAT_HOST + " TEXT NOT NULL, " +
+        COL_STAT_BYTES + " INTEGER NOT NULL, " +
+        COL_STAT_DURATION_MS + " INTEGER NOT NULL, " +
+        COL_STAT_COMPLETED_AT + " INTEGER NOT NULL)";
+
+    // Queue columns. sort_key values are spaced out so an entry can be moved or
+    // inserted by rewriting only its own key (see QueueRepository).
+    public static final String COL_QUEUE_EPISODE_ID = "episode_id";
+    public static final String COL_QUEUE_SORT_KEY = "sort_key";
+    public static final String COL_QUEUE_ADDED_AT = "added_at";
+
+    private static final String CREATE_QUEUE_TABLE =
+        "CREATE TABLE " + TABLE_QUEUE + " (" +
+        COL_QUEUE_EPISODE_ID + " INTEGER PRIMARY KEY, " +
+        COL_QUEUE_SORT_KEY + " INTEGER NOT NULL, " +
+        COL_QUEUE_ADDED_AT + " INTEGER NOT NULL, " +
+        "FOREIGN KEY(" + COL_QUEUE_EPISODE_ID + ") REFERENCES " +
+        TABLE_EPISODES + "(" + COL_EPISODE_ID + ") ON DELETE CASCADE)";
+
+    private static final String CREATE_QUEUE_SORT_INDEX =
+        "CREATE INDEX idx_queue_sort_key ON " + TABLE_QUEUE + "(" + COL_QUEUE_SORT_KEY + ")";
+
+    // Chapters columns. Keyed by (episode, start) without a rowid, so a chapter
+    // list is stored in seek order and read back with a single range scan.
+    public static final String COL_CHAPTER_EPISODE_ID = "episode_id";
+    public static final String COL_CHAPTER_START_MS = "start_ms";
+    public static final String COL_CHAPTER_TITLE = "title";
+
+    private static final String CREATE_CHAPTERS_TABLE =
+        "CREATE TABLE " + TABLE_CHAPTERS + " (" +
+        COL_CHAPTER_EPISODE_ID + " INTEGER NOT NULL, " +
+        COL_CHAPTER_START_MS + " INTEGER NOT NULL, " +
+        COL_CHAPTER_TITLE + " TEXT, " +
+        "PRIMARY KEY(" + COL_CHAPTER_EPISODE_ID + ", " + COL_CHAPTER_START_MS + "), " +
+        "FOREIGN KEY(" + COL_CHAPTER_EPISODE_ID + ") REFERENCES " +
+        TABLE_EPISODES + "(" + COL_EPISODE_ID + ") ON DELETE CASCADE) WITHOUT ROWID";
+
+    // Show notes are stored reduced by ShowNotesNormalizer. Link URLs live in
+    // episode_links, numbered per episode and referenced as href="N" from the
+    // description; boilerplate shared by a podcast's episodes is stored once in
+    // show_notes_footers and referenced by episodes.footer_id.
+    public static final String COL_LINK_EPISODE_ID = "episode_id";
+    public static final String COL_LINK_NUMBER = "number";
+    public static final String COL_LINK_URL = "url";
+    public static final String COL_FOOTER_ID = "id";
+    public static final String COL_FOOTER_PODCAST_ID = "podcast_id";
+    public static final String COL_FOOTER_HTML = "html";
+
+    private static final String CREATE_EPISODE_LINKS_TABLE =
+        "CREATE TABLE " + TABLE_EPISODE_LINKS + " (" +
+        COL_LINK_EPISODE_ID + " INTEGER NOT NULL, " +
+        COL_LINK_NUMBER + " INTEGER NOT NULL, " +
+        COL_LINK_URL + " TEXT NOT NULL, " +
+        "PRIMARY KEY(" + COL_LINK_EPISODE_ID + ", " + COL_LINK_NUMBER + "), " +
+        "FOREIGN KEY(" + COL_LINK_EPISODE_ID + ") REFERENCES " +
+        TABLE_EPISODES + "(" + COL_EPISODE_ID + ") ON DELETE CASCADE) WITHOUT ROWID";
+
+    private static final String CREATE_SHOW_NOTES_FOOTERS_TABLE =
+        "CREATE TABLE " + TABLE_SHOW_NOTES_FOOTERS + " (" +
+        COL_FOOTER_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+        COL_FOOTER_PODCAST_ID + " INTEGER NOT NULL, " +
+        COL_FOOTER_HTML + " TEXT NOT NULL, " +
+        "FOREIGN KEY(" + COL_FOOTER_PODCAST_ID + ") REFERENCES " +
+        TABLE_PODCASTS + "(" + COL_PODCAST_ID + ") ON DELETE CASCADE)";
+
+    private static final String CREATE_SHOW_NOTES_FOOTERS_PODCAST_INDEX =
+        "CREATE INDEX idx_show_notes_footers_podcast ON " + TABLE_SHOW_NOTES_FOOTERS +
+        "(" + COL_FOOTER_PODCAST_ID + ")";
+
+    // Show notes themselves, deflated (see CompressedText), kept out of the episodes
+    // table so the rows every list query, state update and count walks stay narrow.
+    // Read only when show notes are opened.
+    public static final String COL_DESCRIPTION_EPISODE_ID = "episode_id";
+    public static final String COL_DESCRIPTION_BODY = "body";
+
+    private static final String CREATE_EPISODE_DESCRIPTIONS_TABLE =
+        "CREATE TABLE " + TABLE_EPISODE_DESCRIPTIONS + " (" +
+        COL_DESCRIPTION_EPISODE_ID + " INTEGER PRIMARY KEY, " +
+        COL_DESCRIPTION_BODY + " BLOB NOT NULL, " +
+        "FOREIGN KEY(" + COL_DESCRIPTION_EPISODE_ID + ") REFERENCES " +
+        TABLE_EPISODES + "(" + COL_EPISODE_ID + ") ON DELETE CASCADE)";
+
+    // Full-text index of episodes, one row per episode with docid = episodes.id.
+    // Triggers keep titles and their keypad spelling (see EpisodeSearch) in step
+    // with the episodes table. Show notes are compressed where they are stored,
+    // so EpisodeRepository writes their text here itself; a trigger clears it
+    // when they are removed.
+    public static final String COL_SEARCH_TITLE = "title";
+    public static final String COL_SEARCH_NOTES = "notes";
+    public static final String COL_SEARCH_KEYPAD = "keypad";
+    // The start of show notes says what an episode is about; the rest is mostly
+    // links and sponsor reads, and would make the index larger than the notes
+    public static final int SEARCH_NOTES_CHARS = 4000;
+
+    private static final String CREATE_EPISODE_SEARCH_TABLE =
+        "CREATE VIRTUAL TABLE " + TABLE_EPISODE_SEARCH + " USING fts4(" +
+        COL_SEARCH_TITLE + ", " + COL_SEARCH_NOTES + ", " + COL_SEARCH_KEYPAD + ")";
+
+    private static final String[] CREATE_EPISODE_SEARCH_TRIGGERS = {
+        "CREATE TRIGGER episodes_search_insert AFTER INSERT ON " + TABLE_EPISODES + " BEGIN " +
+            "INSERT INTO " + TABLE_EPISODE_SEARCH + "(docid, " + COL_SEARCH_TITLE + ", " + COL_SEARCH_KEYPAD + ") " +
+            "VALUES (new." + COL_EPISODE_ID + ", new." + COL_EPISODE_TITLE + ", " +
+            EpisodeSearch.keypadDigitsSql("new." + COL_EPISODE_TITLE) + "); END",
+        "CREATE TRIGGER episodes_search_title AFTER UPDATE OF " + COL_EPISODE_TITLE + " ON " + TABLE_EPISODES + " BEGIN " +
+            "UPDATE " + TABLE_EPISODE_SEARCH + " SET " + COL_SEARCH_TITLE + " = new." + COL_EPISODE_TITLE + ", " +
+            COL_SEARCH_KEYPAD + " = " + EpisodeSearch.keypadDigitsSql("new." + COL_EPISODE_TITLE) +
+            " WHERE docid = new." + COL_EPISODE_ID + "; END",
+        "CREATE TRIGGER episodes_search_delete AFTER DELETE ON " + TABLE_EPISODES + " BEGIN " +
+            "DELETE FROM " + TABLE_EPISODE_SEARCH + " WHERE docid = old." + COL_EPISODE_ID + "; END",
+        "CREATE TRIGGER episode_descriptions_search_delete AFTER DELETE ON " + TABLE_EPISODE_DESCRIPTIONS + " BEGIN " +
+            "UPDATE " + TABLE_EPISODE_SEARCH + " SET " + COL_SEARCH_NOTES + " = NULL" +
+            " WHERE docid = old." + COL_DESCRIPTION_EPISODE_ID + "; END"
+    };
+
+    // Listening history. listening_events is an append-only log written by
+    // PlaybackService; the other three are rollups kept up to date as each batch
+    // of events is written (see ListeningStatsRepository). None of them reference
+    // episodes or podcasts, so history outlives unsubscribing.
+    public static final String COL_EVENT_ID = "id";
+    public static final String COL_EVENT_EPISODE_ID = "episode_id";
+    public static final String COL_EVENT_PODCAST_ID = "podcast_id";
+    public static final String COL_EVENT_TYPE = "type";
+    public static final String COL_EVENT_AT = "at";
+    public static final String COL_EVENT_POSITION_MS = "position_ms";
+    public static final String COL_EVENT_VALUE = "value";
+    public static final String COL_EVENT_SPEED = "speed";
+
+    // Rollup counters shared by listening_daily and listening_podcasts
+    public static final String COL_ROLLUP_LISTENED_MS = "listened_ms";
+    public static final String COL_ROLLUP_SESSIONS = "sessions";
+    public static final String COL_ROLLUP_COMPLETIONS = "completions";
+    public static final String COL_ROLLUP_SEEKS_FORWARD = "seeks_forward";
+    public static final String COL_ROLLUP_SEEKS_BACK = "seeks_back";
+    public static final String COL_ROLLUP_SKIPPED_MS = "skipped_ms";
+    public static final String COL_ROLLUP_REWOUND_MS = "rewound_ms";
+
+    public static final String COL_DAILY_DAY = "day";
+    public static final String COL_DAILY_PODCAST_ID = "podcast_id";
+    public static final String COL_LP_PODCAST_ID = "podcast_id";
+    public static final String COL_LP_EPISODES_STARTED = "episodes_started";
+    public static final String COL_LP_EPISODES_COMPLETED = "episodes_completed";
+    public static final String COL_LE_EPISODE_ID = "episode_id";
+    public static final String COL_LE_PODCAST_ID = "podcast_id";
+    public static final String COL_LE_LISTENED_MS = "listened_ms";
+    public static final String COL_LE_FIRST_PLAYED_AT = "first_played_at";
+    public static final String COL_LE_COMPLETED_AT = "completed_at";
+
+    private static final String ROLLUP_COUNTER_COLUMNS =
+        COL_ROLLUP_LISTENED_MS + " INTEGER NOT NULL DEFAULT 0, " +
+        COL_ROLLUP_SESSIONS + " INTEGER NOT NULL DEFAULT 0, " +
+        COL_ROLLUP_COMPLETIONS + " INTEGER NOT NULL DEFAULT 0, " +
+        COL_ROLLUP_SEEKS_FORWARD + " INTEGER NOT NULL DEFAULT 0, " +
+        COL_ROLLUP_SEEKS_BACK + " INTEGER NOT NULL DEFAULT 0, " +
+        COL_ROLLUP_SKIPPED_MS + " INTEGER NOT NULL DEFAULT 0, " +
+        COL_ROLLUP_REWOUND_MS + " INTEGER NOT NULL DEFAULT 0, ";
+
+    private static final String CREATE_LISTENING_EVENTS_TABLE =
+        "CREATE TABLE " + TABLE_LISTENING_EVENTS + " (" +
+        COL_EVENT_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+        COL_EVENT_EPISODE_ID + " INTEGER NOT NULL, " +
+        COL_EVENT_PODCAST_ID + " INTEGER NOT NULL, " +
+        COL_EVENT_TYPE + " TEXT NOT NULL, " +
+        COL_EVENT_AT + " INTEGER NOT NULL, " +
+        COL_EVENT_POSITION_MS + " INTEGER NOT NULL, " +
+        COL_EVENT_VALUE + " INTEGER NOT NULL DEFAULT 0, " +
+        COL_EVENT_SPEED + " REAL NOT NULL DEFAULT 1)";
+
+    // Keyed by day first so a date range is a single range scan
+    private static final String CREATE_LISTENING_DAILY_TABLE =
+        "CREATE TABLE " + TABLE_LISTENING_DAILY + " (" +
+        COL_DAILY_DAY + " INTEGER NOT NULL, " +
+        COL_DAILY_PODCAST_ID + " INTEGER NOT NULL, " +
+        ROLLUP_COUNTER_COLUMNS +
+        "PRIMARY KEY(" + COL_DAILY_DAY + ", " + COL_DAILY_PODCAST_ID + ")) WITHOUT ROWID";
+
+    private static final String CREATE_LISTENING_PODCASTS_TABLE =
+        "CREATE TABLE " + TABLE_LISTENING_PODCASTS + " (" +
+        COL_LP_PODCAST_ID + " INTEGER PRIMARY KEY, " +
+        ROLLUP_COUNTER_COLUMNS +
+        COL_LP_EPISODES_STARTED + " INTEGER NOT NULL DEFAULT 0, " +
+        COL_LP_EPISODES_COMPLETED + " INTEGER NOT NULL DEFAULT 0)";
+
+    private static final String CREATE_LISTENING_EPISODES_TABLE =
+        "CREATE TABLE " + TABLE_LISTENING_EPISODES + " (" +
+        COL_LE_EPISODE_ID + " INTEGER PRIMARY KEY, " +
+        COL_LE_PODCAST_ID + " INTEGER NOT NULL, " +
+        COL_LE_LISTENED_MS + " INTEGER NOT NULL DEFAULT 0, " +
+        COL_LE_FIRST_PLAYED_AT + " INTEGER NOT NULL, " +
+        COL_LE_COMPLETED_AT + " INTEGER)";
+
+    private static final String CREATE_DOWNLOAD_STATS_HOST_INDEX =
+        "CREATE INDEX idx_download_stats_host ON " + TABLE_DOWNLOAD_STATS + "(" + COL_STAT_HOST + ")";
+
+    // Replaced in version 15; still created by the version 2 migration, which runs before that one
     private static final String CREATE_EPISODE_STATE_INDEX =
         "CREATE INDEX idx_episodes_state ON " + TABLE_EPISODES + "(" + COL_EPISODE_STATE + ")";
 
@@ -98,9 +347,71 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String CREATE_EPISODE_FETCHED_INDEX =
         "CREATE INDEX idx_episodes_fetched_at ON " + TABLE_EPISODES + "(" + COL_EPISODE_FETCHED_AT + ")";
 
+    private static final String[] REPLACED_EPISODE_INDEXES = {
+        "idx_episodes_state", "idx_episodes_podcast_state", "idx_episodes_fetched_at"
+    };
+
+    // Newest first across all podcasts (chapters prefetch)
     private static final String CREATE_EPISODE_PUBLISHED_INDEX =
         "CREATE INDEX idx_episodes_published_at ON " + TABLE_EPISODES + "(" + COL_EPISODE_PUBLISHED_AT + " DESC)";
 
+    // A podcast's episodes in date order, either way round, and the podcast foreign key
+    private static final String CREATE_EPISODE_PODCAST_PUBLISHED_INDEX =
+        "CREATE INDEX idx_episodes_podcast_published ON " + TABLE_EPISODES +
+        "(" + COL_EPISODE_PODCAST_ID + ", " + COL_EPISODE_PUBLISHED_AT + ")";
+
+    // A podcast's episodes in one state, in date order, and their counts
+    private static final String CREATE_EPISODE_PODCAST_STATE_PUBLISHED_INDEX =
+        "CREATE INDEX idx_episodes_podcast_state_published ON " + TABLE_EPISODES +
+        "(" + COL_EPISODE_PODCAST_ID + ", " + COL_EPISODE_STATE + ", " + COL_EPISODE_PUBLISHED_AT + ")";
+
+    // The partial indexes below hold only the few rows their queries read. SQLite
+    // only uses them when the query has the same condition written in its SQL, not
+    // bound as an argument; see EpisodeRepository#stateIs. Leading with the state
+    // makes them cover counts.
+
+    // NEW episodes by when they decay (EpisodeRepository#decayNewEpisodes, #getNextDecayAt)
+    private static final String CREATE_EPISODE_NEW_INDEX =
+        "CREATE INDEX idx_episodes_new ON " + TABLE_EPISODES +
+        "(" + COL_EPISODE_STATE + ", " + COL_EPISODE_FETCHED_AT + ", " + COL_EPISODE_SESSION_GRACE + ")" +
+        " WHERE " + COL_EPISODE_STATE + " = '" + EpisodeState.NEW.name() + "'";
+
+    // The backlog tab, newest first
+    private static final String CREATE_EPISODE_BACKLOG_INDEX =
+        "CREATE INDEX idx_episodes_backlog ON " + TABLE_EPISODES +
+        "(" + COL_EPISODE_STATE + ", " + COL_EPISODE_PUBLISHED_AT + ")" +
+        " WHERE " + COL_EPISODE_STATE + " = '" + EpisodeState.BACKLOG.name() + "'";
+
+    // Downloaded episodes, by podcast (auto-download limits, download state repair)
+    private static final String CREATE_EPISODE_DOWNLOADED_INDEX =
+        "CREATE INDEX idx_episodes_downloaded ON " + TABLE_EPISODES +
+        "(" + COL_EPISODE_PODCAST_ID + ", " + COL_EPISODE_STATE + ")" +
+        " WHERE " + COL_EPISODE_DOWNLOAD_PATH + " IS NOT NULL";
+
+    // One row, bumped by triggers whenever something a list row shows changes
+    private static final String CREATE_DATA_VERSION_TABLE =
+        "CREATE TABLE " + TABLE_DATA_VERSION + " (" + COL_DATA_VERSION + " INTEGER NOT NULL)";
+
+    private static final String[] CREATE_DATA_VERSION_TRIGGERS = {
+        dataVersionTrigger("podcasts_insert", "INSERT ON " + TABLE_PODCASTS),
+        dataVersionTrigger("podcasts_delete", "DELETE ON " + TABLE_PODCASTS),
+        dataVersionTrigger("podcasts_update", "UPDATE OF " + COL_PODCAST_TITLE + ", " +
+            COL_PODCAST_DESCRIPTION + ", " + COL_PODCAST_ARTWORK_URL + ", " +
+            COL_PODCAST_REVERSE_ORDER + " ON " + TABLE_PODCASTS),
+        dataVersionTrigger("episodes_insert", "INSERT ON " + TABLE_EPISODES),
+        dataVersionTrigger("episodes_delete", "DELETE ON " + TABLE_EPISODES),
+        // Not playback position: it is saved every few seconds during playback and no list shows it
+        dataVersionTrigger("episodes_update", "UPDATE OF " + COL_EPISODE_PODCAST_ID + ", " +
+            COL_EPISODE_TITLE + ", " + COL_EPISODE_PUBLISHED_AT + ", " + COL_EPISODE_DURATION + ", " +
+            COL_EPISODE_STATE + ", " + COL_EPISODE_DOWNLOAD_PATH + ", " + COL_EPISODE_DOWNLOADED_AT +
+            " ON " + TABLE_EPISODES)
+    };
+
+    private static String dataVersionTrigger(String name, String event) {
+        return "CREATE TRIGGER " + name + "_data_version AFTER " + event + " BEGIN " +
+            "UPDATE " + TABLE_DATA_VERSION + " SET " + COL_DATA_VERSION + " = " + COL_DATA_VERSION + " + 1; END";
+    }
+
     public DatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
     }
@@ -114,11 +425,133 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     @Override
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(CREATE_PODCASTS_TABLE);
+        db.execSQL(CREATE_PODCAST_ORIGINAL_FEED_URL_INDEX);
         db.execSQL(CREATE_EPISODES_TABLE);
-        db.execSQL(CREATE_EPISODE_STATE_INDEX);
-        db.execSQL(CREATE_EPISODE_PODCAST_STATE_INDEX);
-        db.execSQL(CREATE_EPISODE_FETCHED_INDEX);
         db.execSQL(CREATE_EPISODE_PUBLISHED_INDEX);
+        createEpisodeIndexes(db);
+        db.execSQL(CREATE_DOWNLOAD_STATS_TABLE);
+        db.execSQL(CREATE_DOWNLOAD_STATS_HOST_INDEX);
+        db.execSQL(CREATE_QUEUE_TABLE);
+        db.execSQL(CREATE_QUEUE_SORT_INDEX);
+        db.execSQL(CREATE_CHAPTERS_TABLE);
+        createListeningTables(db);
+        createDataVersion(db);
+        createShowNotesTables(db);
+        db.execSQL(CREATE_EPISODE_DESCRIPTIONS_TABLE);
+        createSearchIndex(db);
+    }
+
+    private static void createListeningTables(SQLiteDatabase db) {
+        db.execSQL(CREATE_LISTENING_EVENTS_TABLE);
+        db.execSQL(CREATE_LISTENING_DAILY_TABLE);
+        db.execSQL(CREATE_LISTENING_PODCASTS_TABLE);
+        db.execSQL(CREATE_LISTENING_EPISODES_TABLE);
+    }
+
+    private static void createShowNotesTables(SQLiteDatabase db) {
+        db.execSQL(CREATE_EPISODE_LINKS_TABLE);
+        db.execSQL(CREATE_SHOW_NOTES_FOOTERS_TABLE);
+        db.execSQL(CREATE_SHOW_NOTES_FOOTERS_PODCAST_INDEX);
+    }
+
+    private static void createEpisodeIndexes(SQLiteDatabase db) {
+        db.execSQL(CREATE_EPISODE_PODCAST_PUBLISHED_INDEX);
+        db.execSQL(CREATE_EPISODE_PODCAST_STATE_PUBLISHED_INDEX);
+        db.execSQL(CREATE_EPISODE_NEW_INDEX);
+        db.execSQL(CREATE_EPISODE_BACKLOG_INDEX);
+        db.execSQL(CREATE_EPISODE_DOWNLOADED_INDEX);
+    }
+
+    private static void createSearchIndex(SQLiteDatabase db) {
+        db.execSQL(CREATE_EPISODE_SEARCH_TABLE);
+        for (String trigger : CREATE_EPISODE_SEARCH_TRIGGERS) {
+            db.execSQL(trigger);
+        }
+    }
+
+    /**
+     * Index the episodes already stored: titles in SQL, show notes text in Java,
+     * as it is compressed.
+     */
+    private static void indexEpisodes(SQLiteDatabase db) {
+        db.execSQL("INSERT INTO " + TABLE_EPISODE_SEARCH + "(docid, " + COL_SEARCH_TITLE + ", " +
+            COL_SEARCH_KEYPAD + ") SELECT " + COL_EPISODE_ID + ", " + COL_EPISODE_TITLE + ", " +
+            EpisodeSearch.keypadDigitsSql(COL_EPISODE_TITLE) + " FROM " + TABLE_EPISODES);
+        Cursor cursor = db.query(TABLE_EPISODE_DESCRIPTIONS,
+            new String[]{COL_DESCRIPTION_EPISODE_ID, COL_DESCRIPTION_BODY}, null, null, null, null, null);
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                String body = CompressedText.decompress(cursor.getBlob(1));
+                if (body != null) {
+                    ContentValues values = new ContentValues();
+                    values.put(COL_SEARCH_NOTES, ShowNotesNormalizer.plainText(body, SEARCH_NOTES_CHARS));
+                    db.update(TABLE_EPISODE_SEARCH, values, "docid = ?",
+                        new String[]{String.valueOf(cursor.getLong(0))});
+                }
+            }
+            cursor.close();
+        }
+    }
+
+    /**
+     * Move show notes from the episodes table into episode_descriptions, compressed.
+     */
+    private static void moveDescriptions(SQLiteDatabase db) {
+        db.execSQL(CREATE_EPISODE_DESCRIPTIONS_TABLE);
+        Cursor cursor = db.query(TABLE_EPISODES,
+            new String[]{COL_EPISODE_ID, COL_EPISODE_DESCRIPTION},
+            COL_EPISODE_DESCRIPTION + " IS NOT NULL", null, null, null, null);
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                ContentValues values = new ContentValues();
+                values.put(COL_DESCRIPTION_EPISODE_ID, cursor.getLong(0));
+                values.put(COL_DESCRIPTION_BODY, CompressedText.compress(cursor.getString(1)));
+                db.insert(TABLE_EPISODE_DESCRIPTIONS, null, values);
+            }
+            cursor.close();
+        }
+        // SQLite can't drop the column; emptied, it costs a byte per row. The freed
+        // pages are given back by vacuumIfSparse.
+        db.execSQL("UPDATE " + TABLE_EPISODES + " SET " + COL_EPISODE_DESCRIPTION + " = NULL");
+    }
+
+    private static void createDataVersion(SQLiteDatabase db) {
+        db.execSQL(CREATE_DATA_VERSION_TABLE);
+        // Start from the clock so versions from a deleted and recreated database never repeat
+        ContentValues values = new ContentValues();
+        values.put(COL_DATA_VERSION, System.currentTimeMillis());
+        db.insert(TABLE_DATA_VERSION, null, values);
+        for (String trigger : CREATE_DATA_VERSION_TRIGGERS) {
+            db.execSQL(trigger);
+        }
+    }
+
+    /**
+     * A counter that changes whenever a podcast or episode changes in a way a
+     * list could show: rows added or removed, titles, states, downloads.
+     * Playback position and other columns no list displays don't move it.
+     * @return The current data version
+     */
+    public long getDataVersion() {
+        return DatabaseUtils.longForQuery(getReadableDatabase(),
+            "SELECT " + COL_DATA_VERSION + " FROM " + TABLE_DATA_VERSION, null);
+    }
+
+    /**
+     * Give free pages back to the file system if a large share of the database is
+     * free, as after show notes moved out of the episodes table. VACUUM rewrites the
+     * whole file, so this is for idle maintenance, never the main thread.
+     * @return True if the database was vacuumed
+     */
+    public boolean vacuumIfSparse() {
+        SQLiteDatabase db = getWritableDatabase();
+        long pages = DatabaseUtils.longForQuery(db, "PRAGMA page_count", null);
+        long free = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+        if (free < 256 || free * 4 < pages) {
+            return false;
+        }
+        db.execSQL("VACUUM");
+        return true;
     }
 
     @Override
@@ -178,5 +611,87 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             db.execSQL("ALTER TABLE " + TABLE_EPISODES + " ADD COLUMN " +
                 COL_EPISODE_ARTWORK_URL + " TEXT");
         }
+
+        if (oldVersion < 5) {
+            // Migration from version 4 to 5: Add per-podcast auto-download rules
+            db.execSQL("ALTER TABLE " + TABLE_PODCASTS + " ADD COLUMN " +
+                COL_PODCAST_AUTO_DOWNLOAD + " INTEGER DEFAULT 0");
+            db.execSQL("ALTER TABLE " + TABLE_PODCASTS + " ADD COLUMN " +
+                COL_PODCAST_AUTO_DOWNLOAD_KEEP + " INTEGER DEFAULT 3");
+            db.execSQL("ALTER TABLE " + TABLE_PODCASTS + " ADD COLUMN " +
+                COL_PODCAST_AUTO_DOWNLOAD_UNMETERED + " INTEGER DEFAULT 1");
+            db.execSQL("ALTER TABLE " + TABLE_PODCASTS + " ADD COLUMN " +
+                COL_PODCAST_AUTO_DOWNLOAD_CHARGING + " INTEGER DEFAULT 0");
+        }
+
+        if (oldVersion < 6) {
+            // Migration from version 5 to 6: Add download throughput stats
+            db.execSQL(CREATE_DOWNLOAD_STATS_TABLE);
+            db.execSQL(CREATE_DOWNLOAD_STATS_HOST_INDEX);
+        }
+
+        if (oldVersion < 7) {
+            // Migration from version 6 to 7: Remember feed URLs rewritten by permanent redirects
+            db.execSQL("ALTER TABLE " + TABLE_PODCASTS + " ADD COLUMN " +
+                COL_PODCAST_ORIGINAL_FEED_URL + " TEXT");
+            db.execSQL("ALTER TABLE " + TABLE_PODCASTS + " ADD COLUMN " +
+                COL_PODCAST_FEED_REDIRECT_HOPS + " INTEGER DEFAULT 0");
+        }
+
+        if (oldVersion < 8) {
+            // Migration from version 7 to 8: Add the play queue
+            db.execSQL(CREATE_QUEUE_TABLE);
+            db.execSQL(CREATE_QUEUE_SORT_INDEX);
+        }
+
+        if (oldVersion < 9) {
+            // Migration from version 8 to 9: Store parsed chapters and when they were fetched
+            db.execSQL(CREATE_CHAPTERS_TABLE);
+            db.execSQL("ALTER TABLE " + TABLE_EPISODES + " ADD COLUMN " +
+                COL_EPISODE_CHAPTERS_FETCHED_AT + " INTEGER");
+        }
+
+        if (oldVersion < 10) {
+            // Migration from version 9 to 10: Listening history and its rollups
+            createListeningTables(db);
+        }
+
+        if (oldVersion < 11) {
+            // Migration from version 10 to 11: Data version counter for list snapshots
+            createDataVersion(db);
+        }
+
+        if (oldVersion < 12) {
+            // Migration from version 11 to 12: Link table and shared footers for reduced show notes.
+            // Descriptions already stored stay as they are until they are next saved.
+            createShowNotesTables(db);
+            db.execSQL("ALTER TABLE " + TABLE_EPISODES + " ADD COLUMN " +
+                COL_EPISODE_FOOTER_ID + " INTEGER");
+        }
+
+        if (oldVersion < 13) {
+            // Migration from version 12 to 13: Show notes move to a side table, compressed
+            moveDescriptions(db);
+        }
+
+        if (oldVersion < 14) {
+            // Migration from version 13 to 14: Full-text search index
+            createSearchIndex(db);
+            indexEpisodes(db);
+        }
+
+        if (oldVersion < 15) {
+            // Migration from version 14 to 15: Episode indexes that match the list and
+            // maintenance queries, so none of them sorts or scans the whole table
+            for (String index : REPLACED_EPISODE_INDEXES) {
+                db.execSQL("DROP INDEX IF EXISTS " + index);
+            }
+            createEpisodeIndexes(db);
+        }
+
+        if (oldVersion < 16) {
+            // Migration from version 15 to 16: Index the pre-redirect feed URL looked up on subscribe
+            db.execSQL(CREATE_PODCAST_ORIGINAL_FEED_URL_INDEX);
+        }
     }
 }
@@ -0,0 +1,107 @@
+package com.ispringle.dumbcast.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Repository for completed download transfers.
+ * Each successful download records its host, size and wall-clock duration,
+ * which lets us compare throughput and time-to-complete across hosts.
+ */
+public class DownloadStatsRepository {
+
+    private static final String TAG = "DownloadStatsRepository";
+    private final DatabaseHelper dbHelper;
+
+    public DownloadStatsRepository(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Aggregated throughput for a single host.
+     */
+    public static class HostStats {
+        public final String host;
+        public final int transfers;
+        public final long totalBytes;
+        public final long totalDurationMs;
+
+        HostStats(String host, int transfers, long totalBytes, long totalDurationMs) {
+            this.host = host;
+            this.transfers = transfers;
+            this.totalBytes = totalBytes;
+            this.totalDurationMs = totalDurationMs;
+        }
+
+        /**
+         * @return Average throughput across all transfers from this host
+         */
+        public long getBytesPerSecond() {
+            return totalDurationMs > 0 ? totalBytes * 1000 / totalDurationMs : 0;
+        }
+
+        /**
+         * @return Average time from enqueue to completion
+         */
+        public long getAverageDurationMs() {
+            return transfers > 0 ? totalDurationMs / transfers : 0;
+        }
+    }
+
+    /**
+     * Record a completed transfer.
+     * @param episodeId The downloaded episode
+     * @param host Host the file was served from (after redirects)
+     * @param bytes Size of the downloaded file
+     * @param durationMs Time from enqueue to completion
+     * @return The row ID of the new record, or -1 if an error occurred
+     */
+    public long recordTransfer(long episodeId, String host, long bytes, long durationMs) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(DatabaseHelper.COL_STAT_EPISODE_ID, episodeId);
+        values.put(DatabaseHelper.COL_STAT_HOST, host != null ? host : "unknown");
+        values.put(DatabaseHelper.COL_STAT_BYTES, bytes);
+        values.put(DatabaseHelper.COL_STAT_DURATION_MS, durationMs);
+        values.put(DatabaseHelper.COL_STAT_COMPLETED_AT, System.currentTimeMillis());
+
+        long id = db.insert(DatabaseHelper.TABLE_DOWNLOAD_STATS, null, values);
+        if (id != -1 && durationMs > 0) {
+            Log.d(TAG, "Recorded transfer from " + host + ": " + bytes + " bytes in " + durationMs +
+                  " ms (" + (bytes * 1000 / durationMs / 1024) + " KB/s)");
+        }
+        return id;
+    }
+
+    /**
+     * Get per-host throughput, fastest hosts first.
+     * @return Aggregated stats for every host with at least one recorded transfer
+     */
+    public List<HostStats> getHostStats() {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        List<HostStats> stats = new ArrayList<>();
+
+        Cursor cursor = db.rawQuery(
+            "SELECT " + DatabaseHelper.COL_STAT_HOST + ", COUNT(*), SUM(" + DatabaseHelper.COL_STAT_BYTES +
+            "), SUM(" + DatabaseHelper.COL_STAT_DURATION_MS + ") AS total_ms FROM " +
+            DatabaseHelper.TABLE_DOWNLOAD_STATS +
+            " GROUP BY " + DatabaseHelper.COL_STAT_HOST +
+            " ORDER BY SUM(" + DatabaseHelper.COL_STAT_BYTES + ") * 1.0 / MAX(total_ms, 1) DESC",
+            null
+        );
+
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                stats.add(new HostStats(cursor.getString(0), cursor.getInt(1), cursor.getLong(2), cursor.getLong(3)));
+            }
+            cursor.close();
+        }
+
+        return stats;
+    }
+}
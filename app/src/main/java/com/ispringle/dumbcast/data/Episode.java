@@ -5,7 +5,7 @@ public class Episode {
     private long podcastId;
     private String guid;
     private String title;
-    private String description;
+    private String description; // Feed HTML; null when loaded from the database, see EpisodeRepository#getShowNotesHtml
     private String enclosureUrl;
     private String enclosureType;
     private long enclosureLength;
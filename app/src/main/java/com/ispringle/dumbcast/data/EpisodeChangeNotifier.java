@@ -0,0 +1,162 @@
+package com.ispringle.dumbcast.data;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Typed notifications of episode writes, published by the repositories once a
+ * write has been committed.
+ *
+ * A change names the episodes it touched and which of their fields changed, so
+ * a list can re-read and rebind just the affected rows instead of reloading.
+ * Writes that touch many rows at once (decay, feed refresh, unsubscribe) publish
+ * a change without episode IDs, which listeners treat as "reload".
+ *
+ * Changes published in a burst, e.g. a loop of single-row updates, reach
+ * listeners merged into one on the main thread. Playback position writes are
+ * not published; no list shows them.
+ */
+public class EpisodeChangeNotifier {
+
+    /** Episode state (NEW, BACKLOG, ...) changed */
+    public static final int FIELD_STATE = 1;
+    /** Download path or time changed */
+    public static final int FIELD_DOWNLOAD = 1 << 1;
+    /** Show notes changed */
+    public static final int FIELD_DESCRIPTION = 1 << 2;
+    /** Episodes were added or removed */
+    public static final int FIELD_ROWS = 1 << 3;
+
+    private static EpisodeChangeNotifier instance;
+
+    private final List<Listener> listeners = new ArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Change pending;
+
+    /**
+     * What changed. Immutable.
+     */
+    public static class Change {
+        private final Set<Long> episodeIds; // null if any episode may have changed
+        public final int fields;
+
+        Change(Set<Long> episodeIds, int fields) {
+            this.episodeIds = episodeIds != null ? Collections.unmodifiableSet(episodeIds) : null;
+            this.fields = fields;
+        }
+
+        /**
+         * @return True if the change lists the episodes it touched
+         */
+        public boolean hasEpisodeIds() {
+            return episodeIds != null;
+        }
+
+        /**
+         * @return IDs of the changed episodes, or null if any episode may have changed
+         */
+        public Set<Long> getEpisodeIds() {
+            return episodeIds;
+        }
+
+        /**
+         * @param mask One or more FIELD_ flags
+         * @return True if any of the fields changed
+         */
+        public boolean changed(int mask) {
+            return (fields & mask) != 0;
+        }
+
+        Change mergedWith(Change other) {
+            Set<Long> ids = null;
+            if (episodeIds != null && other.episodeIds != null) {
+                ids = new HashSet<>(episodeIds);
+                ids.addAll(other.episodeIds);
+            }
+            return new Change(ids, fields | other.fields);
+        }
+    }
+
+    /**
+     * Receives changes on the main thread.
+     */
+    public interface Listener {
+        void onEpisodesChanged(Change change);
+    }
+
+    private EpisodeChangeNotifier() {
+    }
+
+    public static synchronized EpisodeChangeNotifier getInstance() {
+        if (instance == null) {
+            instance = new EpisodeChangeNotifier();
+        }
+        return instance;
+    }
+
+    /**
+     * Register a listener. Must be called on the main thread.
+     */
+    public void addListener(Listener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * Unregister a listener. Must be called on the main thread.
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Publish a change to one episode. Safe to call from any thread.
+     * @param episodeId The episode ID
+     * @param fields FIELD_ flags of what changed
+     */
+    void publishEpisode(long episodeId, int fields) {
+        Set<Long> ids = new HashSet<>();
+        ids.add(episodeId);
+        publish(new Change(ids, fields));
+    }
+
+    /**
+     * Publish a change that may have touched any episode. Safe to call from any thread.
+     * @param fields FIELD_ flags of what changed
+     */
+    void publishAll(int fields) {
+        publish(new Change(null, fields));
+    }
+
+    private synchronized void publish(Change change) {
+        if (pending != null) {
+            pending = pending.mergedWith(change);
+            return;
+        }
+        pending = change;
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                dispatch();
+            }
+        });
+    }
+
+    private void dispatch() {
+        Change change;
+        synchronized (this) {
+            change = pending;
+            pending = null;
+        }
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onEpisodesChanged(change);
+        }
+    }
+}
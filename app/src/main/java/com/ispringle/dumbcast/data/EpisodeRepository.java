@@ -2,10 +2,18 @@ package com.ispringle.dumbcast.data;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.os.CancellationSignal;
+
+import com.ispringle.dumbcast.utils.EpisodeSearch;
+import com.ispringle.dumbcast.utils.ShowNotesNormalizer;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import android.util.Log;
 
@@ -21,15 +29,33 @@ public class EpisodeRepository {
 
     /**
      * Insert a new episode into the database.
+     * Its description is stored reduced, as by {@link #updateEpisodeDescription}.
      * @param episode The episode to insert
      * @return The row ID of the newly inserted episode, or -1 if an error occurred
      */
     public long insertEpisode(Episode episode) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
         ContentValues values = episodeToContentValues(episode);
-        long id = db.insert(DatabaseHelper.TABLE_EPISODES, null, values);
-        if (id != -1) {
-            episode.setId(id);
+        String description = ShowNotesNormalizer.clean(episode.getDescription());
+        if (description == null) {
+            long id = db.insert(DatabaseHelper.TABLE_EPISODES, null, values);
+            if (id != -1) {
+                episode.setId(id);
+            }
+            return id;
+        }
+
+        long id;
+        db.beginTransaction();
+        try {
+            id = db.insert(DatabaseHelper.TABLE_EPISODES, null, values);
+            if (id != -1) {
+                writeDescription(db, id, description);
+                episode.setId(id);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
         }
         return id;
     }
@@ -67,8 +93,9 @@ public class EpisodeRepository {
      * - NEW episodes fetched more than 7 days ago decay to AVAILABLE
      * - Episodes with sessionGrace=true decay to AVAILABLE and clear the flag
      * - BACKLOG and LISTENED episodes are not affected
+     * @return Number of episodes that decayed
      */
-    public void decayNewEpisodes() {
+    public int decayNewEpisodes() {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
         long now = System.currentTimeMillis();
         long sevenDaysAgo = now - SEVEN_DAYS_MS;
@@ -77,19 +104,63 @@ public class EpisodeRepository {
         values.put(DatabaseHelper.COL_EPISODE_STATE, EpisodeState.AVAILABLE.name());
         values.put(DatabaseHelper.COL_EPISODE_SESSION_GRACE, 0);
 
-        String whereClause = DatabaseHelper.COL_EPISODE_STATE + " = ? AND (" +
+        String whereClause = stateIs(EpisodeState.NEW) + " AND (" +
             DatabaseHelper.COL_EPISODE_SESSION_GRACE + " = 1 OR " +
             DatabaseHelper.COL_EPISODE_FETCHED_AT + " <= ?)";
 
-        String[] whereArgs = {EpisodeState.NEW.name(), String.valueOf(sevenDaysAgo)};
+        String[] whereArgs = {String.valueOf(sevenDaysAgo)};
 
+        int updated;
         db.beginTransaction();
         try {
-            db.update(DatabaseHelper.TABLE_EPISODES, values, whereClause, whereArgs);
+            updated = db.update(DatabaseHelper.TABLE_EPISODES, values, whereClause, whereArgs);
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
         }
+        if (updated > 0) {
+            EpisodeChangeNotifier.getInstance().publishAll(EpisodeChangeNotifier.FIELD_STATE);
+        }
+        return updated;
+    }
+
+    /**
+     * When {@link #decayNewEpisodes()} next has something to do. Reads only the
+     * index of NEW episodes, so it is far cheaper than running the decay.
+     * @return Time the earliest NEW episode is due to decay (0 if one has session grace),
+     *         or Long.MAX_VALUE if there are no NEW episodes
+     */
+    public long getNextDecayAt() {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        Cursor cursor = db.rawQuery(
+            "SELECT MIN(CASE WHEN " + DatabaseHelper.COL_EPISODE_SESSION_GRACE + " = 1 THEN 0 ELSE " +
+            DatabaseHelper.COL_EPISODE_FETCHED_AT + " + " + SEVEN_DAYS_MS + " END) FROM " +
+            DatabaseHelper.TABLE_EPISODES + " WHERE " + stateIs(EpisodeState.NEW),
+            null
+        );
+
+        long nextDecayAt = Long.MAX_VALUE;
+        if (cursor != null) {
+            if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                nextDecayAt = cursor.getLong(0);
+            }
+            cursor.close();
+        }
+        return nextDecayAt;
+    }
+
+    /**
+     * @return True if a downloaded episode is in neither BACKLOG nor LISTENED state,
+     *         so {@link #fixDownloadedEpisodesState()} has work. Reads only the index
+     *         of downloaded episodes.
+     */
+    public boolean hasDownloadsOutsideBacklog() {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        return DatabaseUtils.longForQuery(db,
+            "SELECT EXISTS (SELECT 1 FROM " + DatabaseHelper.TABLE_EPISODES + " WHERE " +
+            DatabaseHelper.COL_EPISODE_DOWNLOAD_PATH + " IS NOT NULL AND " +
+            DatabaseHelper.COL_EPISODE_STATE + " != ? AND " + DatabaseHelper.COL_EPISODE_STATE + " != ?)",
+            new String[]{EpisodeState.BACKLOG.name(), EpisodeState.LISTENED.name()}) != 0;
     }
 
     /**
@@ -111,14 +182,18 @@ public class EpisodeRepository {
 
         String[] whereArgs = {EpisodeState.BACKLOG.name(), EpisodeState.LISTENED.name()};
 
+        int updated;
         db.beginTransaction();
         try {
-            int updated = db.update(DatabaseHelper.TABLE_EPISODES, values, whereClause, whereArgs);
+            updated = db.update(DatabaseHelper.TABLE_EPISODES, values, whereClause, whereArgs);
             db.setTransactionSuccessful();
             Log.d(TAG, "Fixed state for " + updated + " downloaded episodes");
         } finally {
             db.endTransaction();
         }
+        if (updated > 0) {
+            EpisodeChangeNotifier.getInstance().publishAll(EpisodeChangeNotifier.FIELD_STATE);
+        }
     }
 
     /**
@@ -142,12 +217,16 @@ public class EpisodeRepository {
             values.put(DatabaseHelper.COL_EPISODE_VIEWED_AT, now);
         }
 
-        return db.update(
+        int rows = db.update(
             DatabaseHelper.TABLE_EPISODES,
             values,
             DatabaseHelper.COL_EPISODE_ID + " = ?",
             new String[]{String.valueOf(id)}
         );
+        if (rows > 0) {
+            EpisodeChangeNotifier.getInstance().publishEpisode(id, EpisodeChangeNotifier.FIELD_STATE);
+        }
+        return rows;
     }
 
     /**
@@ -163,32 +242,294 @@ public class EpisodeRepository {
         values.put(DatabaseHelper.COL_EPISODE_DOWNLOAD_PATH, downloadPath);
         values.put(DatabaseHelper.COL_EPISODE_DOWNLOADED_AT, downloadedAt);
 
-        return db.update(
+        int rows = db.update(
             DatabaseHelper.TABLE_EPISODES,
             values,
             DatabaseHelper.COL_EPISODE_ID + " = ?",
             new String[]{String.valueOf(id)}
         );
+        if (rows > 0) {
+            EpisodeChangeNotifier.getInstance().publishEpisode(id, EpisodeChangeNotifier.FIELD_DOWNLOAD);
+        }
+        return rows;
     }
 
     /**
      * Update the description for an episode.
      * Used when fetching show notes for downloaded episodes.
+     * The show notes are reduced by {@link ShowNotesNormalizer} and their link URLs
+     * moved to the link table. An ending they share with the podcast's latest other
+     * show notes is stored once as a footer of the podcast and left out of both.
      * @param id The episode ID
-     * @param description The episode description/show notes
+     * @param description The episode description/show notes, as found in the feed
      * @return The number of rows affected
      */
     public int updateEpisodeDescription(long id, String description) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
+        String cleaned = ShowNotesNormalizer.clean(description);
+        long otherUpdated = -1;
+        int rows;
+
+        db.beginTransaction();
+        try {
+            long podcastId = getPodcastIdOf(db, id);
+            long footerId = -1;
+            String body = cleaned;
+            if (cleaned != null && podcastId != -1) {
+                Footer footer = findFooter(db, podcastId, cleaned);
+                if (footer == null) {
+                    footer = extractSharedFooter(db, id, podcastId, cleaned);
+                    if (footer != null) {
+                        otherUpdated = footer.sharedWith;
+                    }
+                }
+                if (footer != null) {
+                    footerId = footer.id;
+                    body = ShowNotesNormalizer.stripFooter(cleaned, footer.html);
+                }
+            }
+            rows = storeDescription(db, id, body, footerId);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (rows > 0) {
+            EpisodeChangeNotifier.getInstance().publishEpisode(id, EpisodeChangeNotifier.FIELD_DESCRIPTION);
+        }
+        if (otherUpdated != -1) {
+            EpisodeChangeNotifier.getInstance().publishEpisode(otherUpdated, EpisodeChangeNotifier.FIELD_DESCRIPTION);
+        }
+        return rows;
+    }
+
+    /**
+     * Get an episode's show notes ready to render: decompressed, link URLs put
+     * back and the podcast footer, if the episode has one, appended.
+     * Episodes loaded from the database don't carry their show notes; this is
+     * how the player and details dialogs get them.
+     * @param id The episode ID
+     * @return The show notes HTML, or null if the episode has none
+     */
+    public String getShowNotesHtml(long id) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        Cursor cursor = db.rawQuery(
+            "SELECT d." + DatabaseHelper.COL_DESCRIPTION_BODY + ", f." + DatabaseHelper.COL_FOOTER_HTML +
+            " FROM " + DatabaseHelper.TABLE_EPISODES + " e" +
+            " LEFT JOIN " + DatabaseHelper.TABLE_EPISODE_DESCRIPTIONS +
+            " d ON d." + DatabaseHelper.COL_DESCRIPTION_EPISODE_ID + " = e." + DatabaseHelper.COL_EPISODE_ID +
+            " LEFT JOIN " + DatabaseHelper.TABLE_SHOW_NOTES_FOOTERS +
+            " f ON f." + DatabaseHelper.COL_FOOTER_ID + " = e." + DatabaseHelper.COL_EPISODE_FOOTER_ID +
+            " WHERE e." + DatabaseHelper.COL_EPISODE_ID + " = ?",
+            new String[]{String.valueOf(id)}
+        );
+
+        String body = null;
+        String footer = null;
+        if (cursor != null) {
+            if (cursor.moveToFirst()) {
+                body = cursor.isNull(0) ? null : CompressedText.decompress(cursor.getBlob(0));
+                footer = cursor.getString(1);
+            }
+            cursor.close();
+        }
+        if (body == null && footer == null) {
+            return null;
+        }
+        String html = body != null ? ShowNotesNormalizer.expandLinks(body, getLinks(db, id)) : "";
+        return footer != null ? html + footer : html;
+    }
+
+    /**
+     * A footer shared by episodes of one podcast.
+     */
+    private static class Footer {
+        final long id;
+        final String html;
+        long sharedWith = -1; // The other episode it was just found in, if it was just found
+
+        Footer(long id, String html) {
+            this.id = id;
+            this.html = html;
+        }
+    }
+
+    /**
+     * @return The podcast's longest footer the show notes end with, leaving some
+     *         text of their own, or null
+     */
+    private Footer findFooter(SQLiteDatabase db, long podcastId, String cleaned) {
+        Cursor cursor = db.query(
+            DatabaseHelper.TABLE_SHOW_NOTES_FOOTERS,
+            new String[]{DatabaseHelper.COL_FOOTER_ID, DatabaseHelper.COL_FOOTER_HTML},
+            DatabaseHelper.COL_FOOTER_PODCAST_ID + " = ?",
+            new String[]{String.valueOf(podcastId)},
+            null, null, null
+        );
+
+        Footer best = null;
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                String html = cursor.getString(1);
+                if (html.length() < cleaned.length() && cleaned.endsWith(html) &&
+                    (best == null || html.length() > best.html.length())) {
+                    best = new Footer(cursor.getLong(0), html);
+                }
+            }
+            cursor.close();
+        }
+        return best;
+    }
+
+    /**
+     * Compare show notes with those of the podcast's latest other episode that has
+     * no footer yet. If they share a long enough ending, store it as a new footer
+     * and take it out of the other episode's show notes too.
+     * @return The new footer, or null if there is no shared ending
+     */
+    private Footer extractSharedFooter(SQLiteDatabase db, long id, long podcastId, String cleaned) {
+        Cursor cursor = db.rawQuery(
+            "SELECT e." + DatabaseHelper.COL_EPISODE_ID + ", d." + DatabaseHelper.COL_DESCRIPTION_BODY +
+            " FROM " + DatabaseHelper.TABLE_EPISODES + " e JOIN " + DatabaseHelper.TABLE_EPISODE_DESCRIPTIONS +
+            " d ON d." + DatabaseHelper.COL_DESCRIPTION_EPISODE_ID + " = e." + DatabaseHelper.COL_EPISODE_ID +
+            " WHERE e." + DatabaseHelper.COL_EPISODE_PODCAST_ID + " = ? AND e." + DatabaseHelper.COL_EPISODE_ID +
+            " != ? AND e." + DatabaseHelper.COL_EPISODE_FOOTER_ID + " IS NULL" +
+            " ORDER BY e." + DatabaseHelper.COL_EPISODE_PUBLISHED_AT + " DESC LIMIT 1",
+            new String[]{String.valueOf(podcastId), String.valueOf(id)}
+        );
+
+        long otherId = -1;
+        String otherDescription = null;
+        if (cursor != null) {
+            if (cursor.moveToFirst()) {
+                otherId = cursor.getLong(0);
+                otherDescription = CompressedText.decompress(cursor.getBlob(1));
+            }
+            cursor.close();
+        }
+        if (otherDescription == null) {
+            return null;
+        }
+
+        // Cleaning again also reduces show notes stored before they were cleaned on the way in
+        String other = ShowNotesNormalizer.clean(
+            ShowNotesNormalizer.expandLinks(otherDescription, getLinks(db, otherId)));
+        String shared = ShowNotesNormalizer.findSharedFooter(cleaned, other);
+        if (shared == null || shared.length() >= cleaned.length() || shared.length() >= other.length()) {
+            return null;
+        }
+
         ContentValues values = new ContentValues();
-        values.put(DatabaseHelper.COL_EPISODE_DESCRIPTION, description);
+        values.put(DatabaseHelper.COL_FOOTER_PODCAST_ID, podcastId);
+        values.put(DatabaseHelper.COL_FOOTER_HTML, shared);
+        long footerId = db.insert(DatabaseHelper.TABLE_SHOW_NOTES_FOOTERS, null, values);
+        if (footerId == -1) {
+            return null;
+        }
+        storeDescription(db, otherId, ShowNotesNormalizer.stripFooter(other, shared), footerId);
+        Log.d(TAG, "Stored a " + shared.length() + " char show notes footer for podcast " + podcastId);
 
-        return db.update(
+        Footer footer = new Footer(footerId, shared);
+        footer.sharedWith = otherId;
+        return footer;
+    }
+
+    /**
+     * Write reduced show notes and which footer they end with.
+     * @param body Cleaned show notes without any footer, links inline; null for none
+     * @param footerId The footer the show notes end with, or -1
+     * @return The number of rows affected
+     */
+    private int storeDescription(SQLiteDatabase db, long id, String body, long footerId) {
+        ContentValues values = new ContentValues();
+        if (footerId != -1) {
+            values.put(DatabaseHelper.COL_EPISODE_FOOTER_ID, footerId);
+        } else {
+            values.putNull(DatabaseHelper.COL_EPISODE_FOOTER_ID);
+        }
+
+        int rows = db.update(
             DatabaseHelper.TABLE_EPISODES,
             values,
             DatabaseHelper.COL_EPISODE_ID + " = ?",
             new String[]{String.valueOf(id)}
         );
+        String[] args = new String[]{String.valueOf(id)};
+        db.delete(DatabaseHelper.TABLE_EPISODE_LINKS, DatabaseHelper.COL_LINK_EPISODE_ID + " = ?", args);
+        db.delete(DatabaseHelper.TABLE_EPISODE_DESCRIPTIONS, DatabaseHelper.COL_DESCRIPTION_EPISODE_ID + " = ?", args);
+        if (rows > 0 && body != null) {
+            writeDescription(db, id, body);
+        }
+        return rows;
+    }
+
+    /**
+     * Insert show notes for an episode that has none stored: link URLs to the
+     * link table, the rest compressed to the description table, and the start
+     * of their text to the search index.
+     * @param body Cleaned show notes, links inline
+     */
+    private static void writeDescription(SQLiteDatabase db, long id, String body) {
+        ShowNotesNormalizer.Compacted compacted = ShowNotesNormalizer.compactLinks(body);
+        ContentValues values = new ContentValues();
+        values.put(DatabaseHelper.COL_DESCRIPTION_EPISODE_ID, id);
+        values.put(DatabaseHelper.COL_DESCRIPTION_BODY, CompressedText.compress(compacted.html));
+        db.insert(DatabaseHelper.TABLE_EPISODE_DESCRIPTIONS, null, values);
+        insertLinks(db, id, compacted.links);
+
+        ContentValues search = new ContentValues();
+        search.put(DatabaseHelper.COL_SEARCH_NOTES,
+            ShowNotesNormalizer.plainText(compacted.html, DatabaseHelper.SEARCH_NOTES_CHARS));
+        db.update(DatabaseHelper.TABLE_EPISODE_SEARCH, search, "docid = ?", new String[]{String.valueOf(id)});
+    }
+
+    private static void insertLinks(SQLiteDatabase db, long id, List<String> links) {
+        for (int i = 0; i < links.size(); i++) {
+            ContentValues values = new ContentValues();
+            values.put(DatabaseHelper.COL_LINK_EPISODE_ID, id);
+            values.put(DatabaseHelper.COL_LINK_NUMBER, i + 1);
+            values.put(DatabaseHelper.COL_LINK_URL, links.get(i));
+            db.insert(DatabaseHelper.TABLE_EPISODE_LINKS, null, values);
+        }
+    }
+
+    private static List<String> getLinks(SQLiteDatabase db, long id) {
+        Cursor cursor = db.query(
+            DatabaseHelper.TABLE_EPISODE_LINKS,
+            new String[]{DatabaseHelper.COL_LINK_URL},
+            DatabaseHelper.COL_LINK_EPISODE_ID + " = ?",
+            new String[]{String.valueOf(id)},
+            null, null,
+            DatabaseHelper.COL_LINK_NUMBER
+        );
+
+        List<String> links = new ArrayList<>();
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                links.add(cursor.getString(0));
+            }
+            cursor.close();
+        }
+        return links;
+    }
+
+    private static long getPodcastIdOf(SQLiteDatabase db, long id) {
+        Cursor cursor = db.query(
+            DatabaseHelper.TABLE_EPISODES,
+            new String[]{DatabaseHelper.COL_EPISODE_PODCAST_ID},
+            DatabaseHelper.COL_EPISODE_ID + " = ?",
+            new String[]{String.valueOf(id)},
+            null, null, null
+        );
+
+        long podcastId = -1;
+        if (cursor != null) {
+            if (cursor.moveToFirst()) {
+                podcastId = cursor.getLong(0);
+            }
+            cursor.close();
+        }
+        return podcastId;
     }
 
     /**
@@ -212,21 +553,27 @@ public class EpisodeRepository {
         ContentValues values = new ContentValues();
         values.put(DatabaseHelper.COL_EPISODE_DOWNLOAD_PATH, (String) null);
         values.put(DatabaseHelper.COL_EPISODE_DOWNLOADED_AT, 0);
+        int fields = EpisodeChangeNotifier.FIELD_DOWNLOAD;
 
         // If episode is in BACKLOG state, move it to AVAILABLE
         // This removes it from the backlog view when deleted
         if (episode.getState() == EpisodeState.BACKLOG) {
             values.put(DatabaseHelper.COL_EPISODE_STATE, EpisodeState.AVAILABLE.name());
             values.put(DatabaseHelper.COL_EPISODE_VIEWED_AT, System.currentTimeMillis());
+            fields |= EpisodeChangeNotifier.FIELD_STATE;
             Log.d(TAG, "Moving episode from BACKLOG to AVAILABLE after deletion: " + id);
         }
 
-        return db.update(
+        int rows = db.update(
             DatabaseHelper.TABLE_EPISODES,
             values,
             DatabaseHelper.COL_EPISODE_ID + " = ?",
             new String[]{String.valueOf(id)}
         );
+        if (rows > 0) {
+            EpisodeChangeNotifier.getInstance().publishEpisode(id, fields);
+        }
+        return rows;
     }
 
     /**
@@ -250,7 +597,19 @@ public class EpisodeRepository {
     }
 
     /**
-     * Get all episodes with a specific state.
+     * A condition on episode state with the state written into the SQL rather than
+     * bound, so SQLite can use the partial indexes on NEW and BACKLOG episodes
+     * (see DatabaseHelper). State names are enum constants, safe to inline.
+     * @param state The episode state
+     * @return The WHERE condition
+     */
+    private static String stateIs(EpisodeState state) {
+        return DatabaseHelper.COL_EPISODE_STATE + " = '" + state.name() + "'";
+    }
+
+    /**
+     * Get all episodes with a specific state. NEW and BACKLOG have indexes of their
+     * own; other states read the whole table.
      * @param state The episode state to filter by
      * @return List of episodes in the specified state
      */
@@ -261,8 +620,8 @@ public class EpisodeRepository {
         Cursor cursor = db.query(
             DatabaseHelper.TABLE_EPISODES,
             null,
-            DatabaseHelper.COL_EPISODE_STATE + " = ?",
-            new String[]{state.name()},
+            stateIs(state),
+            null,
             null,
             null,
             DatabaseHelper.COL_EPISODE_PUBLISHED_AT + " DESC"
@@ -351,6 +710,108 @@ public class EpisodeRepository {
         return episodes;
     }
 
+    /**
+     * Search episode titles and show notes. Keypad digits ("4355") match titles
+     * spelled on a phone keypad; other input matches words by prefix. See EpisodeSearch.
+     * @param query What was typed
+     * @param podcastId Only episodes of this podcast, or -1 for any
+     * @param state Only episodes in this state, or null for any
+     * @param limit Most episodes to return
+     * @param cancellationSignal Cancels the search, or null; a cancelled search
+     *                           throws {@link android.os.OperationCanceledException}
+     * @return Matching episodes, best match first, then newest; empty if the query
+     *         is too short to search
+     */
+    public List<Episode> searchEpisodes(String query, long podcastId, EpisodeState state, int limit,
+                                        CancellationSignal cancellationSignal) {
+        List<Episode> episodes = new ArrayList<>();
+        String match = EpisodeSearch.toMatchQuery(query, DatabaseHelper.COL_SEARCH_KEYPAD);
+        if (match == null) {
+            return episodes;
+        }
+
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        StringBuilder sql = new StringBuilder(
+            "SELECT e." + DatabaseHelper.COL_EPISODE_ID + ", matchinfo(" + DatabaseHelper.TABLE_EPISODE_SEARCH +
+            ", 'pcx'), e." + DatabaseHelper.COL_EPISODE_PUBLISHED_AT +
+            " FROM " + DatabaseHelper.TABLE_EPISODE_SEARCH + " JOIN " + DatabaseHelper.TABLE_EPISODES +
+            " e ON e." + DatabaseHelper.COL_EPISODE_ID + " = " + DatabaseHelper.TABLE_EPISODE_SEARCH + ".docid" +
+            " WHERE " + DatabaseHelper.TABLE_EPISODE_SEARCH + " MATCH ?");
+        List<String> args = new ArrayList<>();
+        args.add(match);
+        if (podcastId != -1) {
+            sql.append(" AND e." + DatabaseHelper.COL_EPISODE_PODCAST_ID + " = ?");
+            args.add(String.valueOf(podcastId));
+        }
+        if (state != null) {
+            sql.append(" AND e." + DatabaseHelper.COL_EPISODE_STATE + " = ?");
+            args.add(state.name());
+        }
+
+        // Rank every match, then load only the episodes that make the cut
+        List<SearchHit> hits = new ArrayList<>();
+        Cursor cursor = db.rawQuery(sql.toString(), args.toArray(new String[0]), cancellationSignal);
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                hits.add(new SearchHit(cursor.getLong(0), EpisodeSearch.score(cursor.getBlob(1)), cursor.getLong(2)));
+            }
+            cursor.close();
+        }
+        Collections.sort(hits);
+        if (hits.size() > limit) {
+            hits = hits.subList(0, limit);
+        }
+        if (hits.isEmpty()) {
+            return episodes;
+        }
+
+        StringBuilder ids = new StringBuilder();
+        for (SearchHit hit : hits) {
+            if (ids.length() > 0) {
+                ids.append(',');
+            }
+            ids.append(hit.episodeId);
+        }
+        Map<Long, Episode> byId = new HashMap<>();
+        cursor = db.rawQuery("SELECT * FROM " + DatabaseHelper.TABLE_EPISODES +
+            " WHERE " + DatabaseHelper.COL_EPISODE_ID + " IN (" + ids + ")", null, cancellationSignal);
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                Episode episode = cursorToEpisode(cursor);
+                byId.put(episode.getId(), episode);
+            }
+            cursor.close();
+        }
+        for (SearchHit hit : hits) {
+            Episode episode = byId.get(hit.episodeId);
+            if (episode != null) {
+                episodes.add(episode);
+            }
+        }
+        return episodes;
+    }
+
+    /**
+     * A ranked search match, best first.
+     */
+    private static class SearchHit implements Comparable<SearchHit> {
+        final long episodeId;
+        final double score;
+        final long publishedAt;
+
+        SearchHit(long episodeId, double score, long publishedAt) {
+            this.episodeId = episodeId;
+            this.score = score;
+            this.publishedAt = publishedAt;
+        }
+
+        @Override
+        public int compareTo(SearchHit other) {
+            int byScore = Double.compare(other.score, score);
+            return byScore != 0 ? byScore : Long.compare(other.publishedAt, publishedAt);
+        }
+    }
+
     /**
      * Get the count of episodes for a specific podcast AND state.
      * @param podcastId The podcast ID
@@ -412,11 +873,37 @@ public class EpisodeRepository {
      * @return The number of episodes in the specified state
      */
     public int getEpisodeCountByState(EpisodeState state) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        Cursor cursor = db.rawQuery(
+            "SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_EPISODES + " WHERE " + stateIs(state),
+            null
+        );
+
+        int count = 0;
+        if (cursor != null) {
+            if (cursor.moveToFirst()) {
+                count = cursor.getInt(0);
+            }
+            cursor.close();
+        }
+
+        return count;
+    }
+
+    /**
+     * Get the count of downloaded episodes for a podcast that haven't been listened to yet.
+     * Used by the auto-download policy to enforce a podcast's "keep latest N" rule.
+     * @param podcastId The podcast ID
+     * @return The number of downloaded, unplayed episodes for the podcast
+     */
+    public int getDownloadedUnplayedCountByPodcast(long podcastId) {
         SQLiteDatabase db = dbHelper.getReadableDatabase();
         Cursor cursor = db.rawQuery(
             "SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_EPISODES +
-            " WHERE " + DatabaseHelper.COL_EPISODE_STATE + " = ?",
-            new String[]{state.name()}
+            " WHERE " + DatabaseHelper.COL_EPISODE_PODCAST_ID + " = ? AND " +
+            DatabaseHelper.COL_EPISODE_DOWNLOAD_PATH + " IS NOT NULL AND " +
+            DatabaseHelper.COL_EPISODE_STATE + " != ?",
+            new String[]{String.valueOf(podcastId), EpisodeState.LISTENED.name()}
         );
 
         int count = 0;
@@ -472,7 +959,6 @@ public class EpisodeRepository {
         values.put(DatabaseHelper.COL_EPISODE_PODCAST_ID, episode.getPodcastId());
         values.put(DatabaseHelper.COL_EPISODE_GUID, episode.getGuid());
         values.put(DatabaseHelper.COL_EPISODE_TITLE, episode.getTitle());
-        values.put(DatabaseHelper.COL_EPISODE_DESCRIPTION, episode.getDescription());
         values.put(DatabaseHelper.COL_EPISODE_ENCLOSURE_URL, episode.getEnclosureUrl());
         values.put(DatabaseHelper.COL_EPISODE_ENCLOSURE_TYPE, episode.getEnclosureType());
         values.put(DatabaseHelper.COL_EPISODE_ENCLOSURE_LENGTH, episode.getEnclosureLength());
@@ -511,10 +997,11 @@ public class EpisodeRepository {
 
     /**
      * Convert a database cursor to an Episode object.
+     * Show notes are not loaded; see {@link #getShowNotesHtml}.
      * @param cursor The cursor pointing to episode data
      * @return Episode object populated from cursor data
      */
-    private Episode cursorToEpisode(Cursor cursor) {
+    Episode cursorToEpisode(Cursor cursor) {
         long podcastId = cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_EPISODE_PODCAST_ID));
         String guid = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_EPISODE_GUID));
         String title = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_EPISODE_TITLE));
@@ -527,7 +1014,6 @@ public class EpisodeRepository {
         episode.setId(cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_EPISODE_ID)));
 
         // Set other fields
-        episode.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_EPISODE_DESCRIPTION)));
         episode.setEnclosureType(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_EPISODE_ENCLOSURE_TYPE)));
         episode.setEnclosureLength(cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_EPISODE_ENCLOSURE_LENGTH)));
         episode.setFetchedAt(cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_EPISODE_FETCHED_AT)));
@@ -0,0 +1,46 @@
+package com.ispringle.dumbcast.data;
+
+/**
+ * One entry in the listening history log.
+ *
+ * The meaning of value depends on the type:
+ * - START: unused; speed is the playback speed
+ * - STOP: milliseconds actually listened since the matching START
+ * - SEEK: position jumped to; positionMs is where the seek started
+ * - COMPLETE: unused; positionMs is the episode's duration
+ */
+public class ListeningEvent {
+
+    public enum Type {
+        START,
+        STOP,
+        SEEK,
+        COMPLETE
+    }
+
+    private final long episodeId;
+    private final long podcastId;
+    private final Type type;
+    private final long at;
+    private final long positionMs;
+    private final long value;
+    private final float speed;
+
+    public ListeningEvent(long episodeId, long podcastId, Type type, long at, long positionMs, long value, float speed) {
+        this.episodeId = episodeId;
+        this.podcastId = podcastId;
+        this.type = type;
+        this.at = at;
+        this.positionMs = positionMs;
+        this.value = value;
+        this.speed = speed;
+    }
+
+    public long getEpisodeId() { return episodeId; }
+    public long getPodcastId() { return podcastId; }
+    public Type getType() { return type; }
+    public long getAt() { return at; }
+    public long getPositionMs() { return positionMs; }
+    public long getValue() { return value; }
+    public float getSpeed() { return speed; }
+}
@@ -0,0 +1,391 @@
+package com.ispringle.dumbcast.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Repository for listening history and the statistics derived from it.
+ *
+ * Events are appended in batches. In the same transaction, each batch is
+ * folded into in-memory deltas, and those are added onto three rollup tables:
+ * per day and podcast, per podcast, and per episode. Stats screens only read
+ * the rollups, so showing a month of history reads about 30 rows per podcast
+ * listened to, however many events were logged. The raw log stays as the source
+ * of truth and for finer analysis later.
+ */
+public class ListeningStatsRepository {
+
+    private static final String TAG = "ListeningStatsRepository";
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+    // Rollup counters, in the order readTotals() expects them
+    private static final String[] COUNTER_COLUMNS = {
+        DatabaseHelper.COL_ROLLUP_LISTENED_MS,
+        DatabaseHelper.COL_ROLLUP_SESSIONS,
+        DatabaseHelper.COL_ROLLUP_COMPLETIONS,
+        DatabaseHelper.COL_ROLLUP_SEEKS_FORWARD,
+        DatabaseHelper.COL_ROLLUP_SEEKS_BACK,
+        DatabaseHelper.COL_ROLLUP_SKIPPED_MS,
+        DatabaseHelper.COL_ROLLUP_REWOUND_MS
+    };
+
+    private final DatabaseHelper dbHelper;
+
+    public ListeningStatsRepository(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Listening counters for one day or one podcast.
+     */
+    public static class Totals {
+        public long listenedMs;
+        public int sessions;
+        public int completions;
+        public int seeksForward;
+        public int seeksBack;
+        public long skippedMs;
+        public long rewoundMs;
+
+        /**
+         * @return True if nothing has been recorded
+         */
+        public boolean isEmpty() {
+            return listenedMs == 0 && sessions == 0 && completions == 0 &&
+                seeksForward == 0 && seeksBack == 0;
+        }
+    }
+
+    /**
+     * Totals for one local calendar day, across all podcasts.
+     */
+    public static class DayStats extends Totals {
+        public final long day;
+
+        DayStats(long day) {
+            this.day = day;
+        }
+
+        /**
+         * @return Midnight at the start of the day, local time
+         */
+        public long getStartMillis() {
+            long utcMidnight = day * DAY_MS;
+            return utcMidnight - TimeZone.getDefault().getOffset(utcMidnight);
+        }
+    }
+
+    /**
+     * All-time totals for one podcast.
+     */
+    public static class PodcastStats extends Totals {
+        public final long podcastId;
+        public int episodesStarted;
+        public int episodesCompleted;
+
+        PodcastStats(long podcastId) {
+            this.podcastId = podcastId;
+        }
+
+        /**
+         * @return Share of started episodes that were played to the end, 0 to 1
+         */
+        public float getCompletionRate() {
+            return episodesStarted > 0 ? (float) episodesCompleted / episodesStarted : 0;
+        }
+    }
+
+    /**
+     * @param millis Wall-clock time
+     * @return Local calendar day number: days since 1970-01-01 in the current time zone
+     */
+    public static long dayOf(long millis) {
+        return Math.floorDiv(millis + TimeZone.getDefault().getOffset(millis), DAY_MS);
+    }
+
+    /**
+     * Append a batch of events and fold them into the rollups, all in one transaction.
+     * @param events Events in the order they happened
+     */
+    public void appendEvents(List<ListeningEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Map<String, Totals> daily = new HashMap<>();
+        Map<Long, PodcastStats> podcasts = new HashMap<>();
+        Map<Long, Long> episodeListened = new HashMap<>();
+
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            SQLiteStatement insert = db.compileStatement(
+                "INSERT INTO " + DatabaseHelper.TABLE_LISTENING_EVENTS + " (" +
+                DatabaseHelper.COL_EVENT_EPISODE_ID + ", " + DatabaseHelper.COL_EVENT_PODCAST_ID + ", " +
+                DatabaseHelper.COL_EVENT_TYPE + ", " + DatabaseHelper.COL_EVENT_AT + ", " +
+                DatabaseHelper.COL_EVENT_POSITION_MS + ", " + DatabaseHelper.COL_EVENT_VALUE + ", " +
+                DatabaseHelper.COL_EVENT_SPEED + ") VALUES (?, ?, ?, ?, ?, ?, ?)");
+            for (ListeningEvent event : events) {
+                insert.bindLong(1, event.getEpisodeId());
+                insert.bindLong(2, event.getPodcastId());
+                insert.bindString(3, event.getType().name());
+                insert.bindLong(4, event.getAt());
+                insert.bindLong(5, event.getPositionMs());
+                insert.bindLong(6, event.getValue());
+                insert.bindDouble(7, event.getSpeed());
+                insert.executeInsert();
+
+                long podcastId = event.getPodcastId();
+                String dayKey = dayOf(event.getAt()) + ":" + podcastId;
+                Totals day = daily.get(dayKey);
+                if (day == null) {
+                    day = new Totals();
+                    daily.put(dayKey, day);
+                }
+                PodcastStats podcast = podcasts.get(podcastId);
+                if (podcast == null) {
+                    podcast = new PodcastStats(podcastId);
+                    podcasts.put(podcastId, podcast);
+                }
+
+                switch (event.getType()) {
+                    case START:
+                        day.sessions++;
+                        podcast.sessions++;
+                        if (markEpisodeStarted(db, event)) {
+                            podcast.episodesStarted++;
+                        }
+                        break;
+                    case STOP:
+                        day.listenedMs += event.getValue();
+                        podcast.listenedMs += event.getValue();
+                        Long listened = episodeListened.get(event.getEpisodeId());
+                        episodeListened.put(event.getEpisodeId(),
+                            (listened != null ? listened : 0) + event.getValue());
+                        break;
+                    case SEEK:
+                        long distance = event.getValue() - event.getPositionMs();
+                        addSeek(day, distance);
+                        addSeek(podcast, distance);
+                        break;
+                    case COMPLETE:
+                        day.completions++;
+                        podcast.completions++;
+                        if (markEpisodeCompleted(db, event)) {
+                            podcast.episodesCompleted++;
+                        }
+                        break;
+                }
+            }
+            insert.close();
+
+            for (Map.Entry<String, Totals> entry : daily.entrySet()) {
+                String[] key = entry.getKey().split(":");
+                addDaily(db, Long.parseLong(key[0]), Long.parseLong(key[1]), entry.getValue());
+            }
+            for (PodcastStats podcast : podcasts.values()) {
+                addPodcast(db, podcast);
+            }
+            for (Map.Entry<Long, Long> entry : episodeListened.entrySet()) {
+                db.execSQL("UPDATE " + DatabaseHelper.TABLE_LISTENING_EPISODES +
+                    " SET " + DatabaseHelper.COL_LE_LISTENED_MS + " = " + DatabaseHelper.COL_LE_LISTENED_MS + " + ?" +
+                    " WHERE " + DatabaseHelper.COL_LE_EPISODE_ID + " = ?",
+                    new Object[]{entry.getValue(), entry.getKey()});
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Log.d(TAG, "Logged " + events.size() + " listening events into " + daily.size() + " daily rollups in " +
+              (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Per-day totals across all podcasts.
+     * @param fromDay First day, see {@link #dayOf(long)}
+     * @param toDay Last day, inclusive
+     * @return Days with any listening, oldest first
+     */
+    public List<DayStats> getDailyStats(long fromDay, long toDay) {
+        List<DayStats> days = new ArrayList<>();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + DatabaseHelper.COL_DAILY_DAY + ", " + sumColumns() +
+            " FROM " + DatabaseHelper.TABLE_LISTENING_DAILY +
+            " WHERE " + DatabaseHelper.COL_DAILY_DAY + " BETWEEN ? AND ?" +
+            " GROUP BY " + DatabaseHelper.COL_DAILY_DAY +
+            " ORDER BY " + DatabaseHelper.COL_DAILY_DAY + " ASC",
+            new String[]{String.valueOf(fromDay), String.valueOf(toDay)});
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                DayStats day = new DayStats(cursor.getLong(0));
+                readTotals(cursor, 1, day);
+                days.add(day);
+            }
+            cursor.close();
+        }
+        return days;
+    }
+
+    /**
+     * All-time totals for a podcast.
+     * @param podcastId The podcast ID
+     * @return Its stats; all zero if it was never played
+     */
+    public PodcastStats getPodcastStats(long podcastId) {
+        PodcastStats stats = new PodcastStats(podcastId);
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + counterColumns() + ", " +
+            DatabaseHelper.COL_LP_EPISODES_STARTED + ", " + DatabaseHelper.COL_LP_EPISODES_COMPLETED +
+            " FROM " + DatabaseHelper.TABLE_LISTENING_PODCASTS +
+            " WHERE " + DatabaseHelper.COL_LP_PODCAST_ID + " = ?",
+            new String[]{String.valueOf(podcastId)});
+        if (cursor != null) {
+            if (cursor.moveToFirst()) {
+                int next = readTotals(cursor, 0, stats);
+                stats.episodesStarted = cursor.getInt(next);
+                stats.episodesCompleted = cursor.getInt(next + 1);
+            }
+            cursor.close();
+        }
+        return stats;
+    }
+
+    /**
+     * @return True if this is the first time the episode was played
+     */
+    private static boolean markEpisodeStarted(SQLiteDatabase db, ListeningEvent event) {
+        ContentValues values = new ContentValues();
+        values.put(DatabaseHelper.COL_LE_EPISODE_ID, event.getEpisodeId());
+        values.put(DatabaseHelper.COL_LE_PODCAST_ID, event.getPodcastId());
+        values.put(DatabaseHelper.COL_LE_FIRST_PLAYED_AT, event.getAt());
+        return db.insertWithOnConflict(DatabaseHelper.TABLE_LISTENING_EPISODES, null, values,
+            SQLiteDatabase.CONFLICT_IGNORE) != -1;
+    }
+
+    /**
+     * @return True if this is the first time the episode was played to the end
+     */
+    private static boolean markEpisodeCompleted(SQLiteDatabase db, ListeningEvent event) {
+        ContentValues values = new ContentValues();
+        values.put(DatabaseHelper.COL_LE_COMPLETED_AT, event.getAt());
+        return db.update(DatabaseHelper.TABLE_LISTENING_EPISODES, values,
+            DatabaseHelper.COL_LE_EPISODE_ID + " = ? AND " + DatabaseHelper.COL_LE_COMPLETED_AT + " IS NULL",
+            new String[]{String.valueOf(event.getEpisodeId())}) > 0;
+    }
+
+    private static void addSeek(Totals totals, long distance) {
+        if (distance > 0) {
+            totals.seeksForward++;
+            totals.skippedMs += distance;
+        } else if (distance < 0) {
+            totals.seeksBack++;
+            totals.rewoundMs -= distance;
+        }
+    }
+
+    private static void addDaily(SQLiteDatabase db, long day, long podcastId, Totals delta) {
+        if (delta.isEmpty()) {
+            return;
+        }
+        String where = DatabaseHelper.COL_DAILY_DAY + " = " + day + " AND " +
+            DatabaseHelper.COL_DAILY_PODCAST_ID + " = " + podcastId;
+        if (!addToRow(db, DatabaseHelper.TABLE_LISTENING_DAILY, where, delta, "")) {
+            ContentValues values = totalsValues(delta);
+            values.put(DatabaseHelper.COL_DAILY_DAY, day);
+            values.put(DatabaseHelper.COL_DAILY_PODCAST_ID, podcastId);
+            db.insertOrThrow(DatabaseHelper.TABLE_LISTENING_DAILY, null, values);
+        }
+    }
+
+    private static void addPodcast(SQLiteDatabase db, PodcastStats delta) {
+        String where = DatabaseHelper.COL_LP_PODCAST_ID + " = " + delta.podcastId;
+        String extra = ", " +
+            DatabaseHelper.COL_LP_EPISODES_STARTED + " = " + DatabaseHelper.COL_LP_EPISODES_STARTED + " + " +
+            delta.episodesStarted + ", " +
+            DatabaseHelper.COL_LP_EPISODES_COMPLETED + " = " + DatabaseHelper.COL_LP_EPISODES_COMPLETED + " + " +
+            delta.episodesCompleted;
+        if (!addToRow(db, DatabaseHelper.TABLE_LISTENING_PODCASTS, where, delta, extra)) {
+            ContentValues values = totalsValues(delta);
+            values.put(DatabaseHelper.COL_LP_PODCAST_ID, delta.podcastId);
+            values.put(DatabaseHelper.COL_LP_EPISODES_STARTED, delta.episodesStarted);
+            values.put(DatabaseHelper.COL_LP_EPISODES_COMPLETED, delta.episodesCompleted);
+            db.insertOrThrow(DatabaseHelper.TABLE_LISTENING_PODCASTS, null, values);
+        }
+    }
+
+    /**
+     * Add a delta onto an existing rollup row.
+     * @return False if the row doesn't exist yet
+     */
+    private static boolean addToRow(SQLiteDatabase db, String table, String where, Totals delta, String extra) {
+        SQLiteStatement update = db.compileStatement("UPDATE " + table + " SET " +
+            increment(DatabaseHelper.COL_ROLLUP_LISTENED_MS, delta.listenedMs) + ", " +
+            increment(DatabaseHelper.COL_ROLLUP_SESSIONS, delta.sessions) + ", " +
+            increment(DatabaseHelper.COL_ROLLUP_COMPLETIONS, delta.completions) + ", " +
+            increment(DatabaseHelper.COL_ROLLUP_SEEKS_FORWARD, delta.seeksForward) + ", " +
+            increment(DatabaseHelper.COL_ROLLUP_SEEKS_BACK, delta.seeksBack) + ", " +
+            increment(DatabaseHelper.COL_ROLLUP_SKIPPED_MS, delta.skippedMs) + ", " +
+            increment(DatabaseHelper.COL_ROLLUP_REWOUND_MS, delta.rewoundMs) + extra +
+            " WHERE " + where);
+        try {
+            return update.executeUpdateDelete() > 0;
+        } finally {
+            update.close();
+        }
+    }
+
+    private static String increment(String column, long delta) {
+        return column + " = " + column + " + " + delta;
+    }
+
+    private static ContentValues totalsValues(Totals totals) {
+        ContentValues values = new ContentValues();
+        values.put(DatabaseHelper.COL_ROLLUP_LISTENED_MS, totals.listenedMs);
+        values.put(DatabaseHelper.COL_ROLLUP_SESSIONS, totals.sessions);
+        values.put(DatabaseHelper.COL_ROLLUP_COMPLETIONS, totals.completions);
+        values.put(DatabaseHelper.COL_ROLLUP_SEEKS_FORWARD, totals.seeksForward);
+        values.put(DatabaseHelper.COL_ROLLUP_SEEKS_BACK, totals.seeksBack);
+        values.put(DatabaseHelper.COL_ROLLUP_SKIPPED_MS, totals.skippedMs);
+        values.put(DatabaseHelper.COL_ROLLUP_REWOUND_MS, totals.rewoundMs);
+        return values;
+    }
+
+    private static String counterColumns() {
+        return String.join(", ", COUNTER_COLUMNS);
+    }
+
+    private static String sumColumns() {
+        StringBuilder sums = new StringBuilder();
+        for (String column : COUNTER_COLUMNS) {
+            if (sums.length() > 0) {
+                sums.append(", ");
+            }
+            sums.append("SUM(").append(column).append(")");
+        }
+        return sums.toString();
+    }
+
+    /**
+     * Read the counters in {@link #COUNTER_COLUMNS} order.
+     * @return Index of the column after the counters
+     */
+    private static int readTotals(Cursor cursor, int first, Totals totals) {
+        totals.listenedMs = cursor.getLong(first);
+        totals.sessions = cursor.getInt(first + 1);
+        totals.completions = cursor.getInt(first + 2);
+        totals.seeksForward = cursor.getInt(first + 3);
+        totals.seeksBack = cursor.getInt(first + 4);
+        totals.skippedMs = cursor.getLong(first + 5);
+        totals.rewoundMs = cursor.getLong(first + 6);
+        return first + COUNTER_COLUMNS.length;
+    }
+}
@@ -3,6 +3,8 @@ package com.ispringle.dumbcast.data;
 public class Podcast {
     private long id;
     private String feedUrl;
+    private String originalFeedUrl;
+    private int feedRedirectHops;
     private String title;
     private String description;
     private String artworkUrl;
@@ -10,6 +12,10 @@ public class Podcast {
     private long lastRefreshAt;
     private long createdAt;
     private boolean reverseOrder;
+    private boolean autoDownload;
+    private int autoDownloadKeepLatest = 3;
+    private boolean autoDownloadUnmeteredOnly = true;
+    private boolean autoDownloadChargingOnly;
 
     // Constructor
     public Podcast(long id, String feedUrl, String title) {
@@ -26,6 +32,12 @@ public class Podcast {
     public String getFeedUrl() { return feedUrl; }
     public void setFeedUrl(String feedUrl) { this.feedUrl = feedUrl; }
 
+    public String getOriginalFeedUrl() { return originalFeedUrl; }
+    public void setOriginalFeedUrl(String originalFeedUrl) { this.originalFeedUrl = originalFeedUrl; }
+
+    public int getFeedRedirectHops() { return feedRedirectHops; }
+    public void setFeedRedirectHops(int feedRedirectHops) { this.feedRedirectHops = feedRedirectHops; }
+
     public String getTitle() { return title; }
     public void setTitle(String title) { this.title = title; }
 
@@ -46,4 +58,16 @@ public class Podcast {
 
     public boolean isReverseOrder() { return reverseOrder; }
     public void setReverseOrder(boolean reverseOrder) { this.reverseOrder = reverseOrder; }
+
+    public boolean isAutoDownload() { return autoDownload; }
+    public void setAutoDownload(boolean autoDownload) { this.autoDownload = autoDownload; }
+
+    public int getAutoDownloadKeepLatest() { return autoDownloadKeepLatest; }
+    public void setAutoDownloadKeepLatest(int autoDownloadKeepLatest) { this.autoDownloadKeepLatest = autoDownloadKeepLatest; }
+
+    public boolean isAutoDownloadUnmeteredOnly() { return autoDownloadUnmeteredOnly; }
+    public void setAutoDownloadUnmeteredOnly(boolean autoDownloadUnmeteredOnly) { this.autoDownloadUnmeteredOnly = autoDownloadUnmeteredOnly; }
+
+    public boolean isAutoDownloadChargingOnly() { return autoDownloadChargingOnly; }
+    public void setAutoDownloadChargingOnly(boolean autoDownloadChargingOnly) { this.autoDownloadChargingOnly = autoDownloadChargingOnly; }
 }
@@ -6,16 +6,14 @@ import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 
 import com.ispringle.dumbcast.utils.RssFeed;
-import com.ispringle.dumbcast.utils.RssParser;
+import com.ispringle.dumbcast.utils.RssFeedUtils;
 
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Repository for managing podcast subscriptions and RSS feed operations.
@@ -30,12 +28,11 @@ public class PodcastRepository {
 
     private final DatabaseHelper dbHelper;
     private final EpisodeRepository episodeRepository;
-    private final RssParser rssParser;
+    private final AtomicInteger redirectRoundTripsSaved = new AtomicInteger();
 
     public PodcastRepository(DatabaseHelper dbHelper) {
         this.dbHelper = dbHelper;
         this.episodeRepository = new EpisodeRepository(dbHelper);
-        this.rssParser = new RssParser();
     }
 
     /**
@@ -112,8 +109,23 @@ public class PodcastRepository {
         return podcasts;
     }
 
+    /**
+     * @return True if at least one podcast is subscribed
+     */
+    public boolean hasPodcasts() {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT 1 FROM " + DatabaseHelper.TABLE_PODCASTS + " LIMIT 1", null);
+        boolean any = false;
+        if (cursor != null) {
+            any = cursor.moveToFirst();
+            cursor.close();
+        }
+        return any;
+    }
+
     /**
      * Get a podcast by its feed URL.
+     * Also matches the URL a podcast was subscribed with before a permanent redirect rewrote it.
      * @param feedUrl The RSS feed URL
      * @return The podcast if found, null otherwise
      */
@@ -122,8 +134,9 @@ public class PodcastRepository {
         Cursor cursor = db.query(
             DatabaseHelper.TABLE_PODCASTS,
             null,
-            DatabaseHelper.COL_PODCAST_FEED_URL + " = ?",
-            new String[]{feedUrl},
+            DatabaseHelper.COL_PODCAST_FEED_URL + " = ? OR " +
+            DatabaseHelper.COL_PODCAST_ORIGINAL_FEED_URL + " = ?",
+            new String[]{feedUrl, feedUrl},
             null,
             null,
             null
@@ -153,6 +166,7 @@ public class PodcastRepository {
         );
         if (rowsDeleted > 0) {
             Log.d(TAG, "Deleted podcast ID: " + podcastId);
+            EpisodeChangeNotifier.getInstance().publishAll(EpisodeChangeNotifier.FIELD_ROWS);
         } else {
             Log.w(TAG, "No podcast found with ID: " + podcastId);
         }
@@ -175,7 +189,7 @@ public class PodcastRepository {
         Log.d(TAG, "Fetching initial episodes for new subscription: " + podcast.getTitle());
 
         // Fetch and parse RSS feed
-        RssFeed feed = fetchFeed(podcast.getFeedUrl());
+        RssFeed feed = fetchFeed(podcast);
 
         // Update podcast metadata from feed
         updatePodcastFromFeed(podcast, feed);
@@ -194,37 +208,39 @@ public class PodcastRepository {
      * Fetches RSS feed, parses it, and inserts new episodes.
      * Updates podcast metadata from feed.
      * @param podcastId The ID of the podcast to refresh
+     * @return IDs of the episodes inserted in NEW state (empty if skipped or nothing new)
      * @throws IOException If network or I/O error occurs
      * @throws XmlPullParserException If XML parsing error occurs
      */
-    public void refreshPodcast(long podcastId) throws IOException, XmlPullParserException {
+    public List<Long> refreshPodcast(long podcastId) throws IOException, XmlPullParserException {
         Podcast podcast = getPodcastById(podcastId);
         if (podcast == null) {
             Log.e(TAG, "Cannot refresh: Podcast not found (ID: " + podcastId + ")");
-            return;
+            return new ArrayList<>();
         }
 
         if (!shouldRefresh(podcast)) {
             Log.d(TAG, "Skipping refresh for " + podcast.getTitle() +
                   " (last refresh was less than 1 hour ago)");
-            return;
+            return new ArrayList<>();
         }
 
         Log.d(TAG, "Refreshing podcast: " + podcast.getTitle());
 
         // Fetch and parse RSS feed
-        RssFeed feed = fetchFeed(podcast.getFeedUrl());
+        RssFeed feed = fetchFeed(podcast);
 
         // Update podcast metadata from feed
         updatePodcastFromFeed(podcast, feed);
 
         // Insert new episodes from feed (limit to 10 most recent, not initial subscription)
-        insertEpisodesFromFeed(podcastId, feed, 10, false);
+        List<Long> newEpisodeIds = insertEpisodesFromFeed(podcastId, feed, 10, false);
 
         // Update last refresh timestamp
         updateLastRefresh(podcastId);
 
         Log.d(TAG, "Successfully refreshed podcast: " + podcast.getTitle());
+        return newEpisodeIds;
     }
 
     /**
@@ -245,7 +261,7 @@ public class PodcastRepository {
         Log.d(TAG, "Refreshing podcast with limit " + maxNewEpisodes + ": " + podcast.getTitle());
 
         // Fetch and parse RSS feed
-        RssFeed feed = fetchFeed(podcast.getFeedUrl());
+        RssFeed feed = fetchFeed(podcast);
 
         // Update podcast metadata from feed
         updatePodcastFromFeed(podcast, feed);
@@ -261,18 +277,20 @@ public class PodcastRepository {
 
     /**
      * Refresh all podcasts that are due for refresh (last refresh > 1 hour ago).
+     * @return IDs of all episodes inserted in NEW state, collected into a single batch
      * @throws IOException If network or I/O error occurs
      * @throws XmlPullParserException If XML parsing error occurs
      */
-    public void refreshAllPodcasts() throws IOException, XmlPullParserException {
+    public List<Long> refreshAllPodcasts() throws IOException, XmlPullParserException {
         List<Podcast> podcasts = getAllPodcasts();
         Log.d(TAG, "Refreshing all podcasts (" + podcasts.size() + " total)");
 
+        List<Long> newEpisodeIds = new ArrayList<>();
         int refreshedCount = 0;
         for (Podcast podcast : podcasts) {
             try {
                 if (shouldRefresh(podcast)) {
-                    refreshPodcast(podcast.getId());
+                    newEpisodeIds.addAll(refreshPodcast(podcast.getId()));
                     refreshedCount++;
                 }
             } catch (IOException | XmlPullParserException e) {
@@ -281,7 +299,9 @@ public class PodcastRepository {
             }
         }
 
-        Log.d(TAG, "Refreshed " + refreshedCount + " out of " + podcasts.size() + " podcasts");
+        Log.d(TAG, "Refreshed " + refreshedCount + " out of " + podcasts.size() + " podcasts (" +
+              takeRedirectRoundTripsSaved() + " redirect round trips saved)");
+        return newEpisodeIds;
     }
 
     /**
@@ -303,60 +323,81 @@ public class PodcastRepository {
     }
 
     /**
-     * Fetch RSS feed from the given URL using HttpURLConnection.
-     * @param feedUrl The URL of the RSS feed
+     * Fetch a podcast's RSS feed, persisting any permanent redirect it answers with.
+     * Counts the redirect round trips avoided thanks to earlier rewrites and the
+     * in-memory temporary redirect cache.
+     * @param podcast The podcast whose feed to fetch
      * @return Parsed RssFeed object
      * @throws IOException If network or I/O error occurs
      * @throws XmlPullParserException If XML parsing error occurs
      */
-    private RssFeed fetchFeed(String feedUrl) throws IOException, XmlPullParserException {
-        return fetchFeedWithRedirects(feedUrl, 5); // Allow up to 5 redirects
+    public RssFeed fetchFeed(Podcast podcast) throws IOException, XmlPullParserException {
+        RssFeedUtils.FetchResult result = RssFeedUtils.fetchFeedResult(podcast.getFeedUrl());
+
+        int saved = result.getCachedRedirects();
+        if (podcast.getOriginalFeedUrl() != null) {
+            saved += podcast.getFeedRedirectHops();
+        }
+        redirectRoundTripsSaved.addAndGet(saved);
+
+        if (result.getPermanentUrl() != null) {
+            applyPermanentRedirect(podcast, result.getPermanentUrl(), result.getPermanentHops());
+        }
+
+        return result.getFeed();
     }
 
     /**
-     * Fetch RSS feed with manual redirect following.
-     * HttpURLConnection doesn't follow HTTP -> HTTPS redirects by default.
+     * Rewrite a podcast's feed URL after a permanent redirect so later refreshes
+     * go straight to the new location. The URL originally subscribed to is kept
+     * in original_feed_url so the directory entry still de-duplicates.
+     * @param podcast The podcast to update
+     * @param newUrl The URL reached through permanent redirects
+     * @param hops Number of redirects the new URL collapses
      */
-    private RssFeed fetchFeedWithRedirects(String feedUrl, int maxRedirects) throws IOException, XmlPullParserException {
-        if (maxRedirects <= 0) {
-            throw new IOException("Too many redirects");
+    private void applyPermanentRedirect(Podcast podcast, String newUrl, int hops) {
+        Podcast existing = getPodcastByFeedUrl(newUrl);
+        if (existing != null && existing.getId() != podcast.getId()) {
+            // feed_url is UNIQUE; two subscriptions ended up at the same feed
+            Log.w(TAG, "Not rewriting feed URL for " + podcast.getTitle() + ": " + newUrl +
+                  " already belongs to " + existing.getTitle());
+            return;
         }
 
-        URL url = new URL(feedUrl);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-
-        try {
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(15000);
-            connection.setReadTimeout(15000);
-            connection.setRequestProperty("User-Agent", "Dumbcast/1.0");
-            connection.setInstanceFollowRedirects(false); // Handle redirects manually
-
-            int responseCode = connection.getResponseCode();
-
-            // Handle redirects (301, 302, 303, 307, 308)
-            if (responseCode >= 300 && responseCode < 400) {
-                String newUrl = connection.getHeaderField("Location");
-                if (newUrl == null) {
-                    throw new IOException("Redirect with no Location header");
-                }
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(DatabaseHelper.COL_PODCAST_FEED_URL, newUrl);
+        if (podcast.getOriginalFeedUrl() == null) {
+            values.put(DatabaseHelper.COL_PODCAST_ORIGINAL_FEED_URL, podcast.getFeedUrl());
+        }
+        values.put(DatabaseHelper.COL_PODCAST_FEED_REDIRECT_HOPS, podcast.getFeedRedirectHops() + hops);
 
-                Log.d(TAG, "Following redirect: " + feedUrl + " -> " + newUrl);
-                connection.disconnect();
-                return fetchFeedWithRedirects(newUrl, maxRedirects - 1);
-            }
+        int rows = db.update(
+            DatabaseHelper.TABLE_PODCASTS,
+            values,
+            DatabaseHelper.COL_PODCAST_ID + " = ?",
+            new String[]{String.valueOf(podcast.getId())}
+        );
 
-            if (responseCode != HttpURLConnection.HTTP_OK) {
-                throw new IOException("HTTP error code: " + responseCode);
+        if (rows > 0) {
+            Log.d(TAG, "Feed permanently moved for " + podcast.getTitle() + ": " +
+                  podcast.getFeedUrl() + " -> " + newUrl);
+            if (podcast.getOriginalFeedUrl() == null) {
+                podcast.setOriginalFeedUrl(podcast.getFeedUrl());
             }
-
-            InputStream inputStream = connection.getInputStream();
-            return rssParser.parse(inputStream);
-        } finally {
-            connection.disconnect();
+            podcast.setFeedUrl(newUrl);
+            podcast.setFeedRedirectHops(podcast.getFeedRedirectHops() + hops);
         }
     }
 
+    /**
+     * Get the number of redirect round trips avoided since the last call, and reset it.
+     * @return Round trips skipped by persisted permanent redirects and cached temporary ones
+     */
+    public int takeRedirectRoundTripsSaved() {
+        return redirectRoundTripsSaved.getAndSet(0);
+    }
+
     /**
      * Update podcast metadata from RSS feed data.
      * @param podcast The podcast to update
@@ -400,10 +441,12 @@ public class PodcastRepository {
      * @param feed The RSS feed containing episodes
      * @param maxNewEpisodes Maximum number of NEW episodes to insert (0 = unlimited)
      * @param isInitialSubscription If true, all episodes go to BACKLOG (no NEW pressure), no descriptions stored
+     * @return IDs of inserted episodes that landed in NEW state without session grace
      */
-    private void insertEpisodesFromFeed(long podcastId, RssFeed feed, int maxNewEpisodes, boolean isInitialSubscription) {
+    private List<Long> insertEpisodesFromFeed(long podcastId, RssFeed feed, int maxNewEpisodes, boolean isInitialSubscription) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
         long now = System.currentTimeMillis();
+        List<Long> newEpisodeIds = new ArrayList<>();
         int newEpisodeCount = 0;
         int skippedCount = 0;
         int consecutiveDuplicates = 0;
@@ -562,6 +605,9 @@ public class PodcastRepository {
                 long episodeId = episodeRepository.insertEpisode(episode);
                 if (episodeId != -1) {
                     newEpisodeCount++;
+                    if (episode.getState() == EpisodeState.NEW && !episode.isSessionGrace()) {
+                        newEpisodeIds.add(episodeId);
+                    }
                     Log.d(TAG, "Inserted episode: " + episode.getTitle() + " (GUID: " + guid + ")");
                 } else {
                     Log.w(TAG, "Failed to insert episode: " + episode.getTitle());
@@ -581,6 +627,10 @@ public class PodcastRepository {
         } finally {
             db.endTransaction();
         }
+        if (newEpisodeCount > 0) {
+            EpisodeChangeNotifier.getInstance().publishAll(EpisodeChangeNotifier.FIELD_ROWS);
+        }
+        return newEpisodeIds;
     }
 
     /**
@@ -656,6 +706,32 @@ public class PodcastRepository {
         return newReverseOrder;
     }
 
+    /**
+     * Update the auto-download rule for a podcast.
+     * @param podcastId The ID of the podcast
+     * @param enabled Whether NEW episodes should be downloaded automatically after a refresh
+     * @param keepLatest Maximum number of downloaded, unplayed episodes to keep for this podcast
+     * @param unmeteredOnly Only download over unmetered (Wi-Fi) networks
+     * @param chargingOnly Only download while the device is charging
+     * @return The number of rows affected
+     */
+    public int updateAutoDownloadRule(long podcastId, boolean enabled, int keepLatest,
+                                      boolean unmeteredOnly, boolean chargingOnly) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(DatabaseHelper.COL_PODCAST_AUTO_DOWNLOAD, enabled ? 1 : 0);
+        values.put(DatabaseHelper.COL_PODCAST_AUTO_DOWNLOAD_KEEP, Math.max(1, keepLatest));
+        values.put(DatabaseHelper.COL_PODCAST_AUTO_DOWNLOAD_UNMETERED, unmeteredOnly ? 1 : 0);
+        values.put(DatabaseHelper.COL_PODCAST_AUTO_DOWNLOAD_CHARGING, chargingOnly ? 1 : 0);
+
+        return db.update(
+            DatabaseHelper.TABLE_PODCASTS,
+            values,
+            DatabaseHelper.COL_PODCAST_ID + " = ?",
+            new String[]{String.valueOf(podcastId)}
+        );
+    }
+
     /**
      * Convert a Podcast object to ContentValues for database insertion/update.
      * @param podcast The podcast to convert
@@ -668,6 +744,11 @@ public class PodcastRepository {
         values.put(DatabaseHelper.COL_PODCAST_TITLE, podcast.getTitle());
         values.put(DatabaseHelper.COL_PODCAST_CREATED, podcast.getCreatedAt());
         values.put(DatabaseHelper.COL_PODCAST_REVERSE_ORDER, podcast.isReverseOrder() ? 1 : 0);
+        values.put(DatabaseHelper.COL_PODCAST_AUTO_DOWNLOAD, podcast.isAutoDownload() ? 1 : 0);
+        values.put(DatabaseHelper.COL_PODCAST_AUTO_DOWNLOAD_KEEP, podcast.getAutoDownloadKeepLatest());
+        values.put(DatabaseHelper.COL_PODCAST_AUTO_DOWNLOAD_UNMETERED, podcast.isAutoDownloadUnmeteredOnly() ? 1 : 0);
+        values.put(DatabaseHelper.COL_PODCAST_AUTO_DOWNLOAD_CHARGING, podcast.isAutoDownloadChargingOnly() ? 1 : 0);
+        values.put(DatabaseHelper.COL_PODCAST_FEED_REDIRECT_HOPS, podcast.getFeedRedirectHops());
 
         // Nullable fields
         if (podcast.getDescription() != null) {
@@ -679,6 +760,9 @@ public class PodcastRepository {
         if (podcast.getPodcastIndexId() != null) {
             values.put(DatabaseHelper.COL_PODCAST_INDEX_ID, podcast.getPodcastIndexId());
         }
+        if (podcast.getOriginalFeedUrl() != null) {
+            values.put(DatabaseHelper.COL_PODCAST_ORIGINAL_FEED_URL, podcast.getOriginalFeedUrl());
+        }
         if (podcast.getLastRefreshAt() > 0) {
             values.put(DatabaseHelper.COL_PODCAST_LAST_REFRESH, podcast.getLastRefreshAt());
         }
@@ -726,6 +810,19 @@ public class PodcastRepository {
         int reverseOrderIndex = cursor.getColumnIndexOrThrow(DatabaseHelper.COL_PODCAST_REVERSE_ORDER);
         podcast.setReverseOrder(cursor.getInt(reverseOrderIndex) == 1);
 
+        // Set auto-download rule
+        podcast.setAutoDownload(cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_PODCAST_AUTO_DOWNLOAD)) == 1);
+        podcast.setAutoDownloadKeepLatest(cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_PODCAST_AUTO_DOWNLOAD_KEEP)));
+        podcast.setAutoDownloadUnmeteredOnly(cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_PODCAST_AUTO_DOWNLOAD_UNMETERED)) == 1);
+        podcast.setAutoDownloadChargingOnly(cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_PODCAST_AUTO_DOWNLOAD_CHARGING)) == 1);
+
+        // Set permanent redirect bookkeeping
+        int originalFeedUrlIndex = cursor.getColumnIndexOrThrow(DatabaseHelper.COL_PODCAST_ORIGINAL_FEED_URL);
+        if (!cursor.isNull(originalFeedUrlIndex)) {
+            podcast.setOriginalFeedUrl(cursor.getString(originalFeedUrlIndex));
+        }
+        podcast.setFeedRedirectHops(cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_PODCAST_FEED_REDIRECT_HOPS)));
+
         return podcast;
     }
 }
@@ -0,0 +1,330 @@
+package com.ispringle.dumbcast.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Repository for the ordered play queue.
+ *
+ * Each entry has an integer sort key, and new keys are spaced SORT_KEY_GAP
+ * apart. Adding, removing or moving an entry rewrites only that entry's key,
+ * chosen between its new neighbours. Every lookup uses the primary key or
+ * the sort_key index, so each operation is O(log n) however long the queue
+ * is. The whole queue is renumbered only when two neighbours have no integer
+ * left between them, which takes about 20 consecutive inserts into the same
+ * spot.
+ */
+public class QueueRepository {
+
+    private static final String TAG = "QueueRepository";
+    static final long SORT_KEY_GAP = 1L << 20;
+
+    private final DatabaseHelper dbHelper;
+    private final EpisodeRepository episodeRepository;
+
+    public QueueRepository(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+        this.episodeRepository = new EpisodeRepository(dbHelper);
+    }
+
+    /**
+     * Add an episode to the end of the queue.
+     * @param episodeId The episode to add
+     * @return true if added, false if it was already queued
+     */
+    public boolean addToEnd(long episodeId) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        if (getSortKey(db, episodeId) != null) {
+            return false;
+        }
+        Long last = queryKey(db, "SELECT MAX(" + DatabaseHelper.COL_QUEUE_SORT_KEY + ") FROM " +
+            DatabaseHelper.TABLE_QUEUE, null);
+        return insert(db, episodeId, last != null ? last + SORT_KEY_GAP : SORT_KEY_GAP);
+    }
+
+    /**
+     * Add an episode right after another one, e.g. "play next" after the current episode.
+     * If the anchor isn't queued the episode goes to the front.
+     * Moves the episode if it is already queued.
+     * @param episodeId The episode to add
+     * @param afterEpisodeId The episode it should follow
+     * @return true if the queue changed
+     */
+    public boolean addAfter(long episodeId, long afterEpisodeId) {
+        if (episodeId == afterEpisodeId) {
+            return false;
+        }
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            remove(db, episodeId);
+            // A second attempt is only needed if the first one had to renumber
+            for (int attempt = 0; attempt < 2; attempt++) {
+                Long anchor = getSortKey(db, afterEpisodeId);
+                Long upper = anchor != null ? nextKey(db, anchor) : firstKey(db);
+                long key = keyBetween(db, anchor, upper);
+                if (key != Long.MIN_VALUE) {
+                    boolean inserted = insert(db, episodeId, key);
+                    db.setTransactionSuccessful();
+                    return inserted;
+                }
+            }
+            return false;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Remove an episode from the queue.
+     * @param episodeId The episode to remove
+     * @return true if it was queued
+     */
+    public boolean remove(long episodeId) {
+        return remove(dbHelper.getWritableDatabase(), episodeId) > 0;
+    }
+
+    /**
+     * Move an episode one place towards the front of the queue.
+     * @param episodeId The episode to move
+     * @return true if it moved
+     */
+    public boolean moveUp(long episodeId) {
+        return move(episodeId, true);
+    }
+
+    /**
+     * Move an episode one place towards the end of the queue.
+     * @param episodeId The episode to move
+     * @return true if it moved
+     */
+    public boolean moveDown(long episodeId) {
+        return move(episodeId, false);
+    }
+
+    /**
+     * @param episodeId The episode ID
+     * @return true if the episode is in the queue
+     */
+    public boolean isQueued(long episodeId) {
+        return getSortKey(dbHelper.getReadableDatabase(), episodeId) != null;
+    }
+
+    /**
+     * Get the whole queue in play order.
+     * @return Queued episodes, first to play first
+     */
+    public List<Episode> getQueue() {
+        return queryEpisodes(null, null, -1);
+    }
+
+    /**
+     * Get the episodes that follow the given one in the queue.
+     * If the episode isn't queued, the queue is returned from the front.
+     * @param currentEpisodeId The episode playing now, or -1
+     * @param limit Maximum number of episodes to return
+     * @return Up to limit upcoming episodes in play order
+     */
+    public List<Episode> getUpcoming(long currentEpisodeId, int limit) {
+        Long current = currentEpisodeId != -1
+            ? getSortKey(dbHelper.getReadableDatabase(), currentEpisodeId) : null;
+        if (current == null) {
+            return queryEpisodes(null, null, limit);
+        }
+        return queryEpisodes("q." + DatabaseHelper.COL_QUEUE_SORT_KEY + " > ?",
+            new String[]{String.valueOf(current)}, limit);
+    }
+
+    /**
+     * Get the episode that plays after the given one.
+     * @param currentEpisodeId The episode playing now, or -1
+     * @return The next queued episode, or null if the queue has nothing after it
+     */
+    public Episode getNext(long currentEpisodeId) {
+        List<Episode> upcoming = getUpcoming(currentEpisodeId, 1);
+        return upcoming.isEmpty() ? null : upcoming.get(0);
+    }
+
+    /**
+     * @return Number of queued episodes
+     */
+    public int size() {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_QUEUE, null);
+        int count = 0;
+        if (cursor != null) {
+            if (cursor.moveToFirst()) {
+                count = cursor.getInt(0);
+            }
+            cursor.close();
+        }
+        return count;
+    }
+
+    private boolean move(long episodeId, boolean towardsFront) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            long newKey = Long.MIN_VALUE;
+            // A second attempt is only needed if the first one had to renumber
+            for (int attempt = 0; attempt < 2 && newKey == Long.MIN_VALUE; attempt++) {
+                Long key = getSortKey(db, episodeId);
+                if (key == null) {
+                    return false;
+                }
+
+                // The neighbour we swap past, and the one beyond it
+                Long neighbour = towardsFront ? previousKey(db, key) : nextKey(db, key);
+                if (neighbour == null) {
+                    return false;
+                }
+                Long beyond = towardsFront ? previousKey(db, neighbour) : nextKey(db, neighbour);
+                newKey = towardsFront ? keyBetween(db, beyond, neighbour) : keyBetween(db, neighbour, beyond);
+            }
+            if (newKey == Long.MIN_VALUE) {
+                return false;
+            }
+
+            ContentValues values = new ContentValues();
+            values.put(DatabaseHelper.COL_QUEUE_SORT_KEY, newKey);
+            db.update(DatabaseHelper.TABLE_QUEUE, values,
+                DatabaseHelper.COL_QUEUE_EPISODE_ID + " = ?", new String[]{String.valueOf(episodeId)});
+            db.setTransactionSuccessful();
+            return true;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Pick a key strictly between two neighbours (either may be null for an open end).
+     * @return The new key, or Long.MIN_VALUE if there was no room and the queue was
+     *         renumbered, in which case the caller must look its neighbours up again
+     */
+    private long keyBetween(SQLiteDatabase db, Long lower, Long upper) {
+        if (lower == null && upper == null) {
+            return SORT_KEY_GAP;
+        }
+        if (lower == null) {
+            return upper - SORT_KEY_GAP;
+        }
+        if (upper == null) {
+            return lower + SORT_KEY_GAP;
+        }
+        if (upper - lower > 1) {
+            return lower + (upper - lower) / 2;
+        }
+        renumber(db);
+        return Long.MIN_VALUE;
+    }
+
+    /**
+     * Respace every key SORT_KEY_GAP apart, keeping the order.
+     */
+    private void renumber(SQLiteDatabase db) {
+        Log.d(TAG, "Renumbering queue sort keys");
+        List<Long> ids = new ArrayList<>();
+        Cursor cursor = db.query(DatabaseHelper.TABLE_QUEUE,
+            new String[]{DatabaseHelper.COL_QUEUE_EPISODE_ID},
+            null, null, null, null, DatabaseHelper.COL_QUEUE_SORT_KEY + " ASC");
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+            cursor.close();
+        }
+
+        ContentValues values = new ContentValues();
+        for (int i = 0; i < ids.size(); i++) {
+            values.put(DatabaseHelper.COL_QUEUE_SORT_KEY, (i + 1) * SORT_KEY_GAP);
+            db.update(DatabaseHelper.TABLE_QUEUE, values,
+                DatabaseHelper.COL_QUEUE_EPISODE_ID + " = ?", new String[]{String.valueOf(ids.get(i))});
+        }
+    }
+
+    private boolean insert(SQLiteDatabase db, long episodeId, long sortKey) {
+        ContentValues values = new ContentValues();
+        values.put(DatabaseHelper.COL_QUEUE_EPISODE_ID, episodeId);
+        values.put(DatabaseHelper.COL_QUEUE_SORT_KEY, sortKey);
+        values.put(DatabaseHelper.COL_QUEUE_ADDED_AT, System.currentTimeMillis());
+        long id = db.insert(DatabaseHelper.TABLE_QUEUE, null, values);
+        if (id == -1) {
+            Log.e(TAG, "Failed to queue episode ID: " + episodeId);
+            return false;
+        }
+        Log.d(TAG, "Queued episode ID: " + episodeId + " (sort key " + sortKey + ")");
+        return true;
+    }
+
+    private int remove(SQLiteDatabase db, long episodeId) {
+        return db.delete(DatabaseHelper.TABLE_QUEUE,
+            DatabaseHelper.COL_QUEUE_EPISODE_ID + " = ?", new String[]{String.valueOf(episodeId)});
+    }
+
+    private Long getSortKey(SQLiteDatabase db, long episodeId) {
+        return queryKey(db, "SELECT " + DatabaseHelper.COL_QUEUE_SORT_KEY + " FROM " + DatabaseHelper.TABLE_QUEUE +
+            " WHERE " + DatabaseHelper.COL_QUEUE_EPISODE_ID + " = ?", new String[]{String.valueOf(episodeId)});
+    }
+
+    private Long firstKey(SQLiteDatabase db) {
+        return queryKey(db, "SELECT MIN(" + DatabaseHelper.COL_QUEUE_SORT_KEY + ") FROM " +
+            DatabaseHelper.TABLE_QUEUE, null);
+    }
+
+    private Long nextKey(SQLiteDatabase db, Long key) {
+        if (key == null) {
+            return null;
+        }
+        return queryKey(db, "SELECT " + DatabaseHelper.COL_QUEUE_SORT_KEY + " FROM " + DatabaseHelper.TABLE_QUEUE +
+            " WHERE " + DatabaseHelper.COL_QUEUE_SORT_KEY + " > ? ORDER BY " +
+            DatabaseHelper.COL_QUEUE_SORT_KEY + " ASC LIMIT 1", new String[]{String.valueOf(key)});
+    }
+
+    private Long previousKey(SQLiteDatabase db, Long key) {
+        if (key == null) {
+            return null;
+        }
+        return queryKey(db, "SELECT " + DatabaseHelper.COL_QUEUE_SORT_KEY + " FROM " + DatabaseHelper.TABLE_QUEUE +
+            " WHERE " + DatabaseHelper.COL_QUEUE_SORT_KEY + " < ? ORDER BY " +
+            DatabaseHelper.COL_QUEUE_SORT_KEY + " DESC LIMIT 1", new String[]{String.valueOf(key)});
+    }
+
+    private Long queryKey(SQLiteDatabase db, String sql, String[] args) {
+        Cursor cursor = db.rawQuery(sql, args);
+        Long key = null;
+        if (cursor != null) {
+            if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                key = cursor.getLong(0);
+            }
+            cursor.close();
+        }
+        return key;
+    }
+
+    private List<Episode> queryEpisodes(String where, String[] args, int limit) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        List<Episode> episodes = new ArrayList<>();
+
+        Cursor cursor = db.rawQuery(
+            "SELECT e.* FROM " + DatabaseHelper.TABLE_QUEUE + " q JOIN " + DatabaseHelper.TABLE_EPISODES +
+            " e ON e." + DatabaseHelper.COL_EPISODE_ID + " = q." + DatabaseHelper.COL_QUEUE_EPISODE_ID +
+            (where != null ? " WHERE " + where : "") +
+            " ORDER BY q." + DatabaseHelper.COL_QUEUE_SORT_KEY + " ASC" +
+            (limit > 0 ? " LIMIT " + limit : ""),
+            args
+        );
+
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                episodes.add(episodeRepository.cursorToEpisode(cursor));
+            }
+            cursor.close();
+        }
+        return episodes;
+    }
+}
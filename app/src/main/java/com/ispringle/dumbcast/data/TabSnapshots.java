@@ -0,0 +1,290 @@
+package com.ispringle.dumbcast.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The last rows each tab list showed, kept on disk so a tab can draw them on
+ * its first frame instead of an empty list while its query runs.
+ *
+ * A snapshot holds only what the list rows display, so its Podcast and Episode
+ * objects are for display: the fresh query replaces them before the rows can be
+ * acted on. Each snapshot records the {@link DatabaseHelper#getDataVersion()} it
+ * was taken at, which tells a reader whether anything the rows show may have
+ * changed since.
+ *
+ * Snapshots are small binary files written with DataOutputStream, at most
+ * {@link #MAX_ROWS} rows each, and swapped in with a rename. A missing, old
+ * format or damaged snapshot reads as null.
+ */
+public class TabSnapshots {
+
+    private static final String TAG = "TabSnapshots";
+    private static final String DIRECTORY = "tab_snapshots";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int FORMAT_VERSION = 1;
+    private static final int KIND_PODCASTS = 1;
+    private static final int KIND_EPISODES = 2;
+
+    // Only the first screenfuls matter for first paint; the query fills in the rest
+    public static final int MAX_ROWS = 100;
+    // Podcast rows show the start of the description only
+    private static final int MAX_DESCRIPTION_CHARS = 1000;
+
+    private final File directory;
+
+    /**
+     * Podcast rows and their episode counts.
+     */
+    public static class PodcastRows {
+        public final long dataVersion;
+        public final List<Podcast> podcasts;
+        public final Map<Long, Integer> counts;
+
+        PodcastRows(long dataVersion, List<Podcast> podcasts, Map<Long, Integer> counts) {
+            this.dataVersion = dataVersion;
+            this.podcasts = podcasts;
+            this.counts = counts;
+        }
+    }
+
+    /**
+     * Episode rows and the podcasts they belong to.
+     */
+    public static class EpisodeRows {
+        public final long dataVersion;
+        public final List<Episode> episodes;
+        public final Map<Long, Podcast> podcasts;
+
+        EpisodeRows(long dataVersion, List<Episode> episodes, Map<Long, Podcast> podcasts) {
+            this.dataVersion = dataVersion;
+            this.episodes = episodes;
+            this.podcasts = podcasts;
+        }
+    }
+
+    public TabSnapshots(Context context) {
+        this(new File(context.getFilesDir(), DIRECTORY));
+    }
+
+    /**
+     * @param directory Directory holding the snapshot files
+     */
+    public TabSnapshots(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Cut a description down to what a list row can show. Snapshots store
+     * descriptions clipped, so compare rows by their clipped descriptions.
+     * @param description The description, may be null
+     * @return The clipped description
+     */
+    public static String clipDescription(String description) {
+        if (description == null || description.length() <= MAX_DESCRIPTION_CHARS) {
+            return description;
+        }
+        return description.substring(0, MAX_DESCRIPTION_CHARS);
+    }
+
+    /**
+     * @param key The tab's snapshot name
+     * @return The snapshot, or null if there is no usable one
+     */
+    public PodcastRows readPodcasts(String key) {
+        try (DataInputStream in = openForRead(key, KIND_PODCASTS)) {
+            if (in == null) {
+                return null;
+            }
+            long dataVersion = in.readLong();
+            int count = in.readInt();
+            List<Podcast> podcasts = new ArrayList<>(count);
+            Map<Long, Integer> counts = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                Podcast podcast = new Podcast(in.readLong(), null, in.readUTF());
+                podcast.setDescription(readNullableString(in));
+                podcast.setArtworkUrl(readNullableString(in));
+                podcasts.add(podcast);
+                counts.put(podcast.getId(), in.readInt());
+            }
+            return new PodcastRows(dataVersion, podcasts, counts);
+        } catch (IOException e) {
+            Log.w(TAG, "Unreadable snapshot " + key, e);
+            return null;
+        }
+    }
+
+    /**
+     * @param key The tab's snapshot name
+     * @param dataVersion Data version read before the rows were queried
+     * @param podcasts The rows, in display order
+     * @param counts Episode count shown for each podcast ID
+     */
+    public void writePodcasts(String key, long dataVersion, List<Podcast> podcasts, Map<Long, Integer> counts) {
+        File temp = new File(directory, key + TEMP_SUFFIX);
+        try (DataOutputStream out = openForWrite(temp, KIND_PODCASTS)) {
+            int count = Math.min(podcasts.size(), MAX_ROWS);
+            out.writeLong(dataVersion);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                Podcast podcast = podcasts.get(i);
+                Integer episodeCount = counts.get(podcast.getId());
+                out.writeLong(podcast.getId());
+                out.writeUTF(nonNull(podcast.getTitle()));
+                writeNullableString(out, clipDescription(podcast.getDescription()));
+                writeNullableString(out, podcast.getArtworkUrl());
+                out.writeInt(episodeCount != null ? episodeCount : 0);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write snapshot " + key, e);
+            temp.delete();
+            return;
+        }
+        commit(key, temp);
+    }
+
+    /**
+     * @param key The tab's snapshot name
+     * @return The snapshot, or null if there is no usable one
+     */
+    public EpisodeRows readEpisodes(String key) {
+        try (DataInputStream in = openForRead(key, KIND_EPISODES)) {
+            if (in == null) {
+                return null;
+            }
+            long dataVersion = in.readLong();
+            int podcastCount = in.readInt();
+            Map<Long, Podcast> podcasts = new HashMap<>();
+            for (int i = 0; i < podcastCount; i++) {
+                Podcast podcast = new Podcast(in.readLong(), null, in.readUTF());
+                podcasts.put(podcast.getId(), podcast);
+            }
+            int count = in.readInt();
+            List<Episode> episodes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long id = in.readLong();
+                long podcastId = in.readLong();
+                String title = in.readUTF();
+                long publishedAt = in.readLong();
+                Episode episode = new Episode(podcastId, null, title, null, publishedAt);
+                episode.setId(id);
+                episode.setDuration(in.readInt());
+                episode.setState(EpisodeState.fromString(in.readUTF()));
+                episode.setDownloadPath(readNullableString(in));
+                episode.setDownloadedAt(in.readBoolean() ? in.readLong() : null);
+                episodes.add(episode);
+            }
+            return new EpisodeRows(dataVersion, episodes, podcasts);
+        } catch (IOException e) {
+            Log.w(TAG, "Unreadable snapshot " + key, e);
+            return null;
+        }
+    }
+
+    /**
+     * @param key The tab's snapshot name
+     * @param dataVersion Data version read before the rows were queried
+     * @param episodes The rows, in display order
+     * @param podcasts Podcasts of the episodes, by ID
+     */
+    public void writeEpisodes(String key, long dataVersion, List<Episode> episodes, Map<Long, Podcast> podcasts) {
+        File temp = new File(directory, key + TEMP_SUFFIX);
+        try (DataOutputStream out = openForWrite(temp, KIND_EPISODES)) {
+            int count = Math.min(episodes.size(), MAX_ROWS);
+
+            // Podcast titles first, once each
+            Map<Long, String> titles = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                Podcast podcast = podcasts.get(episodes.get(i).getPodcastId());
+                if (podcast != null) {
+                    titles.put(podcast.getId(), nonNull(podcast.getTitle()));
+                }
+            }
+            out.writeLong(dataVersion);
+            out.writeInt(titles.size());
+            for (Map.Entry<Long, String> title : titles.entrySet()) {
+                out.writeLong(title.getKey());
+                out.writeUTF(title.getValue());
+            }
+
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                Episode episode = episodes.get(i);
+                out.writeLong(episode.getId());
+                out.writeLong(episode.getPodcastId());
+                out.writeUTF(nonNull(episode.getTitle()));
+                out.writeLong(episode.getPublishedAt());
+                out.writeInt(episode.getDuration());
+                out.writeUTF(episode.getState() != null ? episode.getState().name() : "");
+                writeNullableString(out, episode.getDownloadPath());
+                out.writeBoolean(episode.getDownloadedAt() != null);
+                if (episode.getDownloadedAt() != null) {
+                    out.writeLong(episode.getDownloadedAt());
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write snapshot " + key, e);
+            temp.delete();
+            return;
+        }
+        commit(key, temp);
+    }
+
+    private DataInputStream openForRead(String key, int kind) throws IOException {
+        File file = new File(directory, key);
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        if (in.readInt() != FORMAT_VERSION || in.readInt() != kind) {
+            in.close();
+            return null;
+        }
+        return in;
+    }
+
+    private DataOutputStream openForWrite(File temp, int kind) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Failed to create " + directory);
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(kind);
+        return out;
+    }
+
+    private void commit(String key, File temp) {
+        if (!temp.renameTo(new File(directory, key))) {
+            Log.w(TAG, "Failed to replace snapshot " + key);
+            temp.delete();
+        }
+    }
+
+    private static String nonNull(String value) {
+        return value != null ? value : "";
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -26,7 +26,6 @@ import com.ispringle.dumbcast.data.DatabaseManager;
 import com.ispringle.dumbcast.data.Podcast;
 import com.ispringle.dumbcast.data.PodcastRepository;
 import com.ispringle.dumbcast.utils.PodcastIndexApi;
-import com.ispringle.dumbcast.utils.RssFeed;
 import com.ispringle.dumbcast.utils.RssFeedUtils;
 
 import org.xmlpull.v1.XmlPullParserException;
@@ -504,11 +503,24 @@ public class DiscoveryFragment extends Fragment {
 
                 // Fetch RSS feed using shared utility (C1)
                 Log.d(TAG, "Fetching RSS feed...");
-                RssFeed feed = RssFeedUtils.fetchFeed(result.getFeedUrl());
+                RssFeedUtils.FetchResult fetchResult = RssFeedUtils.fetchFeedResult(result.getFeedUrl());
                 Log.d(TAG, "RSS feed fetched successfully");
 
+                // Subscribe to the feed's permanent location, remembering the directory URL
+                String feedUrl = result.getFeedUrl();
+                if (fetchResult.getPermanentUrl() != null) {
+                    feedUrl = fetchResult.getPermanentUrl();
+                    if (repository.getPodcastByFeedUrl(feedUrl) != null) {
+                        return SubscribeResult.alreadySubscribed();
+                    }
+                }
+
                 // Create podcast object
-                Podcast podcast = new Podcast(0, result.getFeedUrl(), result.getTitle());
+                Podcast podcast = new Podcast(0, feedUrl, result.getTitle());
+                if (fetchResult.getPermanentUrl() != null) {
+                    podcast.setOriginalFeedUrl(result.getFeedUrl());
+                    podcast.setFeedRedirectHops(fetchResult.getPermanentHops());
+                }
                 podcast.setDescription(result.getDescription());
                 podcast.setArtworkUrl(result.getArtworkUrl());
                 podcast.setPodcastIndexId(result.getId());
@@ -551,6 +563,9 @@ public class DiscoveryFragment extends Fragment {
                 // Show error message based on result type (M1)
                 String errorMsg;
                 switch (result.getStatus()) {
+                    case ALREADY_SUBSCRIBED:
+                        errorMsg = fragment.getString(R.string.toast_already_subscribed);
+                        break;
                     case NETWORK_ERROR:
                         errorMsg = fragment.getString(R.string.error_network);
                         break;
@@ -5,6 +5,11 @@ import android.content.DialogInterface;
 import android.content.Intent;
 import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.OperationCanceledException;
+import android.os.SystemClock;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentTransaction;
 import android.util.Log;
@@ -24,24 +29,35 @@ import com.ispringle.dumbcast.MainActivity;
 import com.ispringle.dumbcast.R;
 import com.ispringle.dumbcast.adapters.EpisodeAdapter;
 import com.ispringle.dumbcast.data.DatabaseHelper;
+import com.ispringle.dumbcast.data.EpisodeChangeNotifier;
 import com.ispringle.dumbcast.data.DatabaseManager;
 import com.ispringle.dumbcast.data.Episode;
 import com.ispringle.dumbcast.data.EpisodeRepository;
 import com.ispringle.dumbcast.data.EpisodeState;
 import com.ispringle.dumbcast.data.Podcast;
 import com.ispringle.dumbcast.data.PodcastRepository;
+import com.ispringle.dumbcast.data.QueueRepository;
+import com.ispringle.dumbcast.data.TabSnapshots;
+import com.ispringle.dumbcast.services.AutoDownloadPolicy;
+import com.ispringle.dumbcast.services.DownloadProgressTracker;
 import com.ispringle.dumbcast.services.DownloadService;
 import com.ispringle.dumbcast.services.PlaybackService;
+import com.ispringle.dumbcast.utils.EpisodeSearch;
 import com.ispringle.dumbcast.utils.RssFeed;
 import com.ispringle.dumbcast.utils.RssFeedUtils;
+import com.ispringle.dumbcast.utils.ShowNotesRenderer;
+import com.ispringle.dumbcast.utils.StartupTrace;
 
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Fragment displaying a list of episodes for a specific podcast or episode state.
@@ -62,12 +78,24 @@ public class EpisodeListFragment extends Fragment {
     private static final String ARG_EPISODE_STATE = "episode_state";
     private static final String ARG_PREVIEW_FEED_URL = "preview_feed_url";
     private static final String ARG_PREVIEW_TITLE = "preview_title";
+    private static final String SNAPSHOT_KEY_PREFIX = "episodes_";
+    // Waits for a pause in typing before searching, so fast typists don't queue a search per key
+    private static final long SEARCH_DELAY_MS = 150;
+    private static final int SEARCH_LIMIT = 100;
 
     private ListView listView;
     private TextView emptyText;
+    private TextView searchBar;
+    private CharSequence listEmptyText;
     private EpisodeAdapter adapter;
     private EpisodeRepository episodeRepository;
     private PodcastRepository podcastRepository;
+    private QueueRepository queueRepository;
+    private DatabaseHelper dbHelper;
+    private TabSnapshots snapshots;
+    // Data version of the rows on screen once they come from a query, -1 until then
+    private long shownDataVersion = -1;
+    private boolean traceFirstList = false;
 
     private long podcastId = -1;
     private EpisodeState episodeState = null;
@@ -75,6 +103,17 @@ public class EpisodeListFragment extends Fragment {
     private String previewTitle = null;
     private boolean isPreviewMode = false;
 
+    // Type-to-search: what has been typed, and the search running for it
+    private String searchQuery = "";
+    private SearchTask searchTask;
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable searchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            runSearch();
+        }
+    };
+
     public EpisodeListFragment() {
         // Required empty public constructor
     }
@@ -153,9 +192,24 @@ public class EpisodeListFragment extends Fragment {
         Log.d(TAG, "onCreate - podcastId: " + podcastId + ", episodeState: " + episodeState + ", previewMode: " + isPreviewMode);
 
         // Initialize repositories using singleton DatabaseHelper
-        DatabaseHelper dbHelper = DatabaseManager.getInstance(getContext());
+        dbHelper = DatabaseManager.getInstance(getContext());
         episodeRepository = new EpisodeRepository(dbHelper);
         podcastRepository = new PodcastRepository(dbHelper);
+        queueRepository = new QueueRepository(dbHelper);
+        snapshots = new TabSnapshots(getContext());
+        traceFirstList = getSnapshotKey() != null && StartupTrace.getInstance().claimListTrace();
+    }
+
+    /**
+     * Only lists that are a tab of their own (such as BACKLOG) keep a snapshot;
+     * drill-downs into one podcast and previews don't.
+     * @return The list's snapshot name, or null if it has none
+     */
+    private String getSnapshotKey() {
+        if (isPreviewMode || podcastId != -1 || episodeState == null) {
+            return null;
+        }
+        return SNAPSHOT_KEY_PREFIX + episodeState.name().toLowerCase(Locale.US);
     }
 
     @Override
@@ -165,17 +219,20 @@ public class EpisodeListFragment extends Fragment {
 
         listView = view.findViewById(R.id.episode_list);
         emptyText = view.findViewById(R.id.episode_list_empty);
+        searchBar = view.findViewById(R.id.episode_list_search);
+        listEmptyText = emptyText.getText();
 
         // Initialize adapter with empty list and empty podcast cache
         adapter = new EpisodeAdapter(getContext(), new ArrayList<Episode>(), new HashMap<Long, Podcast>());
         listView.setAdapter(adapter);
+        shownDataVersion = -1;
 
         // Set up click listeners
         listView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
             @Override
             public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
                 Episode episode = adapter.getItem(position);
-                if (episode != null) {
+                if (episode != null && !adapter.isSnapshot()) {
                     handleEpisodeClick(episode);
                 }
             }
@@ -185,7 +242,7 @@ public class EpisodeListFragment extends Fragment {
             @Override
             public boolean onItemLongClick(AdapterView<?> parent, View view, int position, long id) {
                 Episode episode = adapter.getItem(position);
-                if (episode != null) {
+                if (episode != null && !adapter.isSnapshot()) {
                     handleEpisodeLongClick(episode);
                 }
                 return true;
@@ -203,7 +260,7 @@ public class EpisodeListFragment extends Fragment {
                         Log.d(TAG, "Selected position: " + position);
                         if (position >= 0) {
                             Episode episode = adapter.getItem(position);
-                            if (episode != null) {
+                            if (episode != null && !adapter.isSnapshot()) {
                                 handleEpisodeClick(episode);
                                 return true;
                             }
@@ -214,7 +271,7 @@ public class EpisodeListFragment extends Fragment {
                         int position = listView.getSelectedItemPosition();
                         if (position >= 0) {
                             Episode episode = adapter.getItem(position);
-                            if (episode != null) {
+                            if (episode != null && !adapter.isSnapshot()) {
                                 showContextMenu(episode);
                                 return true;
                             }
@@ -239,16 +296,258 @@ public class EpisodeListFragment extends Fragment {
         super.onResume();
         // Refresh data when fragment becomes visible
         loadEpisodes();
+        DownloadProgressTracker.getInstance().addListener(downloadProgressListener);
+        EpisodeChangeNotifier.getInstance().addListener(episodeChangeListener);
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        DownloadProgressTracker.getInstance().removeListener(downloadProgressListener);
+        EpisodeChangeNotifier.getInstance().removeListener(episodeChangeListener);
+        searchHandler.removeCallbacks(searchRunnable);
+        cancelSearch();
+    }
+
+    /**
+     * Type-to-search on the keypad. Digits spell titles the way they are typed
+     * without predictive text (4355 finds "Hello"), 0 separates words, letters from
+     * a keyboard search titles and show notes. Delete and Back take back a character
+     * at a time; the search stays within this list's podcast and state.
+     * Called by MainActivity for keys nothing else handled.
+     * @param keyCode The key code
+     * @param event The key event
+     * @return True if the key was used for search
+     */
+    public boolean onSearchKey(int keyCode, KeyEvent event) {
+        if (isPreviewMode || (podcastId == -1 && episodeState == null) || !isResumed()) {
+            return false;
+        }
+
+        String query = searchQuery;
+        if (keyCode >= KeyEvent.KEYCODE_2 && keyCode <= KeyEvent.KEYCODE_9) {
+            query += (char) ('0' + keyCode - KeyEvent.KEYCODE_0);
+        } else if (keyCode == KeyEvent.KEYCODE_0) {
+            if (query.isEmpty() || query.endsWith(" ")) {
+                return !query.isEmpty();
+            }
+            query += ' ';
+        } else if (keyCode == KeyEvent.KEYCODE_DEL || keyCode == KeyEvent.KEYCODE_BACK) {
+            if (query.isEmpty()) {
+                return false;
+            }
+            query = query.substring(0, query.length() - 1);
+        } else {
+            int c = event.getUnicodeChar();
+            if (!Character.isLetterOrDigit(c) && !(c == ' ' && !query.isEmpty())) {
+                return false;
+            }
+            query += (char) c;
+        }
+
+        searchQuery = query;
+        updateSearchBar(-1);
+        searchHandler.removeCallbacks(searchRunnable);
+        searchHandler.postDelayed(searchRunnable, SEARCH_DELAY_MS);
+        return true;
+    }
+
+    /**
+     * @return True if the list shows search results rather than the whole list
+     */
+    private boolean isSearching() {
+        return searchQuery.trim().length() >= EpisodeSearch.MIN_QUERY_CHARS;
+    }
+
+    /**
+     * Search for what has been typed, replacing any search still running; or go
+     * back to the whole list once the query is cleared.
+     */
+    private void runSearch() {
+        cancelSearch();
+        if (!isSearching()) {
+            emptyText.setText(listEmptyText);
+            if (shownDataVersion == -1) {
+                loadEpisodes();
+            }
+            return;
+        }
+        searchTask = new SearchTask(this, episodeRepository, podcastRepository, searchQuery);
+        searchTask.execute();
+    }
+
+    private void cancelSearch() {
+        if (searchTask != null) {
+            searchTask.cancelSearch();
+            searchTask = null;
+        }
+    }
+
+    /**
+     * Show search results (called on main thread).
+     * @param query The query they are for
+     * @param data The matching episodes
+     */
+    private void showSearchResults(String query, EpisodeData data) {
+        if (!query.equals(searchQuery)) {
+            return;
+        }
+        searchTask = null;
+        adapter.setRows(data.episodes, data.podcastCache, false, listView);
+        // The rows no longer match the list's data version; leaving search reloads it
+        shownDataVersion = -1;
+        emptyText.setText(R.string.episode_search_no_results);
+        updateSearchBar(data.episodes.size());
+        updateEmptyState();
+    }
+
+    /**
+     * @param results Number of results shown for the query, or -1 while typing
+     */
+    private void updateSearchBar(int results) {
+        if (searchQuery.isEmpty()) {
+            searchBar.setVisibility(View.GONE);
+            return;
+        }
+        searchBar.setText(results < 0 ?
+            getString(R.string.episode_search_typing, searchQuery) :
+            getString(R.string.episode_search_results, searchQuery, results));
+        searchBar.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * Patches the progress views of the affected row only, if it's on screen.
+     * Called on the main thread by DownloadProgressTracker.
+     */
+    private final DownloadProgressTracker.Listener downloadProgressListener = new DownloadProgressTracker.Listener() {
+        @Override
+        public void onDownloadProgress(DownloadProgressTracker.Progress progress) {
+            View row = findVisibleRow(progress.episodeId);
+            if (row != null) {
+                adapter.updateProgress(row, progress);
+            }
+        }
+
+        @Override
+        public void onDownloadFinished(long episodeId) {
+            // A finished download is also published as an episode change,
+            // which rebinds the row; a failed one just drops its progress
+            View row = findVisibleRow(episodeId);
+            if (row != null) {
+                adapter.updateProgress(row, null);
+            }
+        }
+    };
+
+    /**
+     * Patches the rows of the changed episodes in place, keeping scroll position and
+     * focus. Changes that may have added rows, or don't name their episodes, reload.
+     * Called on the main thread by EpisodeChangeNotifier.
+     */
+    private final EpisodeChangeNotifier.Listener episodeChangeListener = new EpisodeChangeNotifier.Listener() {
+        @Override
+        public void onEpisodesChanged(EpisodeChangeNotifier.Change change) {
+            // Rows don't show descriptions
+            if (isPreviewMode || !change.changed(EpisodeChangeNotifier.FIELD_STATE |
+                    EpisodeChangeNotifier.FIELD_DOWNLOAD | EpisodeChangeNotifier.FIELD_ROWS)) {
+                return;
+            }
+            if (!change.hasEpisodeIds() || change.changed(EpisodeChangeNotifier.FIELD_ROWS) ||
+                adapter.isSnapshot()) {
+                loadEpisodes();
+                return;
+            }
+            new PatchRowsTask(EpisodeListFragment.this, episodeRepository, change.getEpisodeIds()).execute();
+        }
+    };
+
+    /**
+     * Apply fresh copies of changed episodes to the list. Rows still in the list
+     * are patched, rows that no longer belong are removed, and an episode that now
+     * belongs but isn't shown makes the list reload to put it in place.
+     * @param episodes The changed episodes, as now in the database
+     * @param episodeIds IDs of all changed episodes, including any since deleted
+     */
+    private void patchRows(List<Episode> episodes, Set<Long> episodeIds) {
+        if (adapter.isSnapshot()) {
+            loadEpisodes();
+            return;
+        }
+        boolean reload = false;
+        Set<Long> gone = new HashSet<>(episodeIds);
+        for (Episode episode : episodes) {
+            gone.remove(episode.getId());
+            if (!belongsInList(episode)) {
+                removeRow(episode.getId());
+            } else if (!adapter.patchRow(episode, listView)) {
+                reload = true;
+            }
+        }
+        for (long episodeId : gone) {
+            removeRow(episodeId);
+        }
+        if (reload) {
+            loadEpisodes();
+        } else {
+            updateEmptyState();
+        }
+    }
+
+    private void removeRow(long episodeId) {
+        int position = adapter.getPosition(episodeId);
+        if (position >= 0) {
+            adapter.remove(adapter.getItem(position));
+        }
+    }
+
+    /**
+     * @param episode An episode
+     * @return True if the episode passes this list's podcast and state filters
+     */
+    private boolean belongsInList(Episode episode) {
+        if (podcastId == -1 && episodeState == null) {
+            return false;
+        }
+        return (podcastId == -1 || episode.getPodcastId() == podcastId) &&
+            (episodeState == null || episode.getState() == episodeState);
+    }
+
+    /**
+     * Find the on-screen row view for an episode.
+     * @param episodeId The episode ID
+     * @return The row view, or null if the episode isn't currently visible
+     */
+    private View findVisibleRow(long episodeId) {
+        if (listView == null || adapter == null) {
+            return null;
+        }
+        int first = listView.getFirstVisiblePosition();
+        for (int i = 0; i < listView.getChildCount(); i++) {
+            int position = first + i;
+            if (position < adapter.getCount()) {
+                Episode episode = adapter.getItem(position);
+                if (episode != null && episode.getId() == episodeId) {
+                    return listView.getChildAt(i);
+                }
+            }
+        }
+        return null;
     }
 
     /**
      * Load episodes and related podcasts from database on a background thread.
+     * An empty tab list first shows its snapshot while the query runs.
      */
     private void loadEpisodes() {
-        if (isPreviewMode) {
+        if (isSearching()) {
+            // Changes while searching refresh the results instead
+            runSearch();
+        } else if (isPreviewMode) {
             new LoadPreviewEpisodesTask(this, previewFeedUrl, previewTitle).execute();
         } else {
-            new LoadEpisodesTask(this, episodeRepository, podcastRepository).execute();
+            String snapshotKey = getSnapshotKey();
+            new LoadEpisodesTask(this, episodeRepository, podcastRepository, dbHelper, snapshots,
+                snapshotKey, snapshotKey != null && adapter.isEmpty(), shownDataVersion).execute();
         }
     }
 
@@ -258,31 +557,56 @@ public class EpisodeListFragment extends Fragment {
     private static class EpisodeData {
         List<Episode> episodes;
         Map<Long, Podcast> podcastCache;
+        long dataVersion = -1;
+        boolean fromSnapshot = false;
 
         EpisodeData(List<Episode> episodes, Map<Long, Podcast> podcastCache) {
             this.episodes = episodes;
             this.podcastCache = podcastCache;
         }
+
+        EpisodeData(List<Episode> episodes, Map<Long, Podcast> podcastCache, long dataVersion, boolean fromSnapshot) {
+            this(episodes, podcastCache);
+            this.dataVersion = dataVersion;
+            this.fromSnapshot = fromSnapshot;
+        }
     }
 
     /**
      * Update the UI with loaded episodes (called on main thread).
+     * Rows are replaced in place, and only redrawn if they changed.
      * @param data Episodes and their related podcast data
      */
     private void updateEpisodeList(EpisodeData data) {
-        adapter = new EpisodeAdapter(getContext(), data.episodes, data.podcastCache);
-        listView.setAdapter(adapter);
+        if ((data.fromSnapshot && !adapter.isEmpty()) || isSearching()) {
+            // Something newer got here first, or search results are shown
+            return;
+        }
+        adapter.setRows(data.episodes, data.podcastCache, data.fromSnapshot, listView);
+        if (!data.fromSnapshot) {
+            shownDataVersion = data.dataVersion;
+        }
+        if (traceFirstList) {
+            StartupTrace.getInstance().mark(data.fromSnapshot ?
+                StartupTrace.Milestone.LIST_SNAPSHOT : StartupTrace.Milestone.LIST_FRESH);
+        }
+
+        updateEmptyState();
+
+        Log.d(TAG, "Loaded " + data.episodes.size() + " episodes");
+    }
 
-        // Show/hide empty state
-        if (data.episodes.isEmpty()) {
+    /**
+     * Show the empty text instead of the list when there are no rows.
+     */
+    private void updateEmptyState() {
+        if (adapter.isEmpty()) {
             emptyText.setVisibility(View.VISIBLE);
             listView.setVisibility(View.GONE);
         } else {
             emptyText.setVisibility(View.GONE);
             listView.setVisibility(View.VISIBLE);
         }
-
-        Log.d(TAG, "Loaded " + data.episodes.size() + " episodes");
     }
 
     /**
@@ -334,6 +658,7 @@ public class EpisodeListFragment extends Fragment {
         Intent loadIntent = new Intent(getContext(), PlaybackService.class);
         loadIntent.setAction(PlaybackService.ACTION_LOAD_EPISODE);
         loadIntent.putExtra(PlaybackService.EXTRA_EPISODE_ID, episode.getId());
+        loadIntent.putExtra(PlaybackService.EXTRA_REQUESTED_AT, SystemClock.elapsedRealtime());
         getContext().startService(loadIntent);
 
         // Navigate to PlayerFragment immediately
@@ -377,9 +702,17 @@ public class EpisodeListFragment extends Fragment {
         new SaveToBacklogTask(this, episodeRepository, episode).execute();
     }
 
+    /**
+     * Append an episode to the end of the play queue.
+     * @param episode The episode to queue
+     */
+    private void addToQueue(Episode episode) {
+        new AddToQueueTask(this, queueRepository, episode).execute();
+    }
+
     /**
      * Show podcast settings menu (press * when viewing a podcast).
-     * Currently shows: Reverse Episode Order toggle
+     * Shows: Reverse Episode Order toggle and the podcast's auto-download rule
      */
     private void showPodcastSettings() {
         if (getContext() == null || podcastId == -1) {
@@ -397,6 +730,11 @@ public class EpisodeListFragment extends Fragment {
             "✓ Reverse Episode Order" :
             "Reverse Episode Order";
         menuItems.add(toggleLabel);
+        menuItems.add((podcast.isAutoDownload() ? "✓ " : "") + "Auto-download New Episodes");
+        menuItems.add("Keep Latest: " + podcast.getAutoDownloadKeepLatest());
+        menuItems.add((podcast.isAutoDownloadUnmeteredOnly() ? "✓ " : "") + "Auto-download on Wi-Fi Only");
+        menuItems.add((podcast.isAutoDownloadChargingOnly() ? "✓ " : "") + "Auto-download While Charging Only");
+        menuItems.add("Preview Auto-download");
 
         final CharSequence[] items = menuItems.toArray(new CharSequence[0]);
 
@@ -414,6 +752,11 @@ public class EpisodeListFragment extends Fragment {
                     Toast.makeText(getContext(), message, Toast.LENGTH_SHORT).show();
                     // Reload episodes to apply new order
                     loadEpisodes();
+                } else if (which == 5) {
+                    new AutoDownloadDryRunTask(EpisodeListFragment.this,
+                        new AutoDownloadPolicy(getContext()), podcastId).execute();
+                } else {
+                    updateAutoDownloadRule(podcast, which);
                 }
             }
         });
@@ -421,6 +764,57 @@ public class EpisodeListFragment extends Fragment {
         builder.show();
     }
 
+    /**
+     * Apply a change to the podcast's auto-download rule from the settings menu.
+     * @param podcast The podcast being edited
+     * @param which The selected settings menu index (1-4)
+     */
+    private void updateAutoDownloadRule(Podcast podcast, int which) {
+        boolean enabled = podcast.isAutoDownload();
+        int keepLatest = podcast.getAutoDownloadKeepLatest();
+        boolean unmeteredOnly = podcast.isAutoDownloadUnmeteredOnly();
+        boolean chargingOnly = podcast.isAutoDownloadChargingOnly();
+
+        switch (which) {
+            case 1:
+                enabled = !enabled;
+                break;
+            case 2:
+                keepLatest = nextKeepLatest(keepLatest);
+                break;
+            case 3:
+                unmeteredOnly = !unmeteredOnly;
+                break;
+            case 4:
+                chargingOnly = !chargingOnly;
+                break;
+            default:
+                return;
+        }
+
+        podcastRepository.updateAutoDownloadRule(podcast.getId(), enabled, keepLatest, unmeteredOnly, chargingOnly);
+
+        String message = enabled ?
+            "Auto-download on: keep latest " + keepLatest +
+                (unmeteredOnly ? ", Wi-Fi only" : "") + (chargingOnly ? ", while charging" : "") :
+            "Auto-download off";
+        Toast.makeText(getContext(), message, Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * Cycle through the supported "keep latest" values: 1, 3, 5, 10.
+     */
+    private static int nextKeepLatest(int current) {
+        if (current < 3) {
+            return 3;
+        } else if (current < 5) {
+            return 5;
+        } else if (current < 10) {
+            return 10;
+        }
+        return 1;
+    }
+
     /**
      * Show context menu for an episode with conditional options based on episode state.
      * @param episode The episode to show options for
@@ -467,6 +861,9 @@ public class EpisodeListFragment extends Fragment {
             menuItems.add(getString(R.string.menu_remove_new_episode));
         }
 
+        // Always show Add to Queue last so the state-dependent indices above don't shift
+        menuItems.add(getString(R.string.menu_add_to_queue));
+
         // Convert to array
         final String[] menuArray = menuItems.toArray(new String[0]);
 
@@ -476,7 +873,11 @@ public class EpisodeListFragment extends Fragment {
                 .setItems(menuArray, new DialogInterface.OnClickListener() {
                     @Override
                     public void onClick(DialogInterface dialog, int which) {
-                        handleContextMenuAction(episode, which);
+                        if (which == menuArray.length - 1) {
+                            addToQueue(episode);
+                        } else {
+                            handleContextMenuAction(episode, which);
+                        }
                     }
                 })
                 .show();
@@ -487,6 +888,7 @@ public class EpisodeListFragment extends Fragment {
      * Menu indices depend on episode state:
      * - If downloaded: 0=View Details, 1=Delete Download, 2=Play, 3=Add to Backlog, 4=Remove from Backlog (if BACKLOG), 5=Remove NEW (if NEW)
      * - If not downloaded: 0=View Details, 1=Download, 2=Add to Backlog, 3=Remove from Backlog (if BACKLOG), 4=Remove NEW (if NEW)
+     * Add to Queue is always the last item and is handled by the caller.
      *
      * @param episode The episode to act on
      * @param actionIndex The selected menu item index
@@ -546,26 +948,39 @@ public class EpisodeListFragment extends Fragment {
 
     /**
      * Show detailed information about an episode.
+     * Its show notes are read and rendered in the background first.
      * @param episode The episode to show details for
      */
-    private void showEpisodeDetails(Episode episode) {
+    private void showEpisodeDetails(final Episode episode) {
         if (getContext() == null) {
             return;
         }
 
+        // Preview episodes carry their show notes; stored ones are read by the renderer
+        ShowNotesRenderer.getInstance(getContext()).render(episode.getId(), episode.getDescription(),
+            new ShowNotesRenderer.Callback() {
+                @Override
+                public void onRendered(ShowNotesRenderer.Pages pages) {
+                    showEpisodeDetails(episode, pages);
+                }
+            });
+    }
+
+    /**
+     * @param episode The episode to show details for
+     * @param showNotes Its rendered show notes
+     */
+    private void showEpisodeDetails(Episode episode, ShowNotesRenderer.Pages showNotes) {
+        if (getContext() == null || !isAdded()) {
+            return;
+        }
+
         // Build detailed information
         StringBuilder details = new StringBuilder();
 
         // Description (full, not truncated)
-        if (episode.getDescription() != null && !episode.getDescription().isEmpty()) {
-            // Parse HTML if present
-            CharSequence formattedDescription;
-            if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.N) {
-                formattedDescription = android.text.Html.fromHtml(episode.getDescription(), android.text.Html.FROM_HTML_MODE_COMPACT);
-            } else {
-                formattedDescription = android.text.Html.fromHtml(episode.getDescription());
-            }
-            details.append(formattedDescription.toString().trim()).append("\n\n");
+        for (int i = 0; i < showNotes.getCount(); i++) {
+            details.append(showNotes.get(i)).append("\n\n");
         }
 
         // Published date
@@ -762,19 +1177,49 @@ public class EpisodeListFragment extends Fragment {
     /**
      * AsyncTask to load episodes and related podcasts from database on a background thread.
      */
-    private static class LoadEpisodesTask extends AsyncTask<Void, Void, EpisodeData> {
+    private static class LoadEpisodesTask extends AsyncTask<Void, EpisodeData, EpisodeData> {
         private final WeakReference<EpisodeListFragment> fragmentRef;
         private final EpisodeRepository episodeRepository;
         private final PodcastRepository podcastRepository;
-
-        LoadEpisodesTask(EpisodeListFragment fragment, EpisodeRepository episodeRepository, PodcastRepository podcastRepository) {
+        private final DatabaseHelper dbHelper;
+        private final TabSnapshots snapshots;
+        private final String snapshotKey;
+        private final boolean showSnapshot;
+        private final long shownDataVersion;
+
+        /**
+         * @param snapshotKey The list's snapshot name, or null if it keeps none
+         * @param showSnapshot True to show the snapshot before querying
+         * @param shownDataVersion Data version of the rows on screen, or -1
+         */
+        LoadEpisodesTask(EpisodeListFragment fragment, EpisodeRepository episodeRepository, PodcastRepository podcastRepository,
+                         DatabaseHelper dbHelper, TabSnapshots snapshots, String snapshotKey, boolean showSnapshot,
+                         long shownDataVersion) {
             this.fragmentRef = new WeakReference<>(fragment);
             this.episodeRepository = episodeRepository;
             this.podcastRepository = podcastRepository;
+            this.dbHelper = dbHelper;
+            this.snapshots = snapshots;
+            this.snapshotKey = snapshotKey;
+            this.showSnapshot = showSnapshot;
+            this.shownDataVersion = shownDataVersion;
         }
 
         @Override
         protected EpisodeData doInBackground(Void... voids) {
+            if (showSnapshot) {
+                TabSnapshots.EpisodeRows snapshot = snapshots.readEpisodes(snapshotKey);
+                if (snapshot != null) {
+                    publishProgress(new EpisodeData(snapshot.episodes, snapshot.podcasts, snapshot.dataVersion, true));
+                }
+            }
+
+            long dataVersion = dbHelper.getDataVersion();
+            if (dataVersion == shownDataVersion) {
+                // Nothing the rows show has changed since they were loaded
+                return null;
+            }
+
             EpisodeListFragment fragment = fragmentRef.get();
             if (fragment == null) {
                 Log.w(TAG, "LoadEpisodesTask - fragment is null");
@@ -824,7 +1269,18 @@ public class EpisodeListFragment extends Fragment {
                 }
             }
 
-            return new EpisodeData(episodes, podcastCache);
+            if (snapshotKey != null) {
+                snapshots.writeEpisodes(snapshotKey, dataVersion, episodes, podcastCache);
+            }
+            return new EpisodeData(episodes, podcastCache, dataVersion, false);
+        }
+
+        @Override
+        protected void onProgressUpdate(EpisodeData... snapshot) {
+            EpisodeListFragment fragment = fragmentRef.get();
+            if (fragment != null && fragment.isAdded()) {
+                fragment.updateEpisodeList(snapshot[0]);
+            }
         }
 
         @Override
@@ -836,6 +1292,139 @@ public class EpisodeListFragment extends Fragment {
         }
     }
 
+    /**
+     * AsyncTask to search this list's episodes on a background thread. Cancelling
+     * it also stops its query in SQLite, so a superseded search doesn't hold up
+     * the next one.
+     */
+    private static class SearchTask extends AsyncTask<Void, Void, EpisodeData> {
+        private final WeakReference<EpisodeListFragment> fragmentRef;
+        private final EpisodeRepository episodeRepository;
+        private final PodcastRepository podcastRepository;
+        private final String query;
+        private final long podcastId;
+        private final EpisodeState state;
+        private final CancellationSignal cancellationSignal = new CancellationSignal();
+
+        SearchTask(EpisodeListFragment fragment, EpisodeRepository episodeRepository,
+                   PodcastRepository podcastRepository, String query) {
+            this.fragmentRef = new WeakReference<>(fragment);
+            this.episodeRepository = episodeRepository;
+            this.podcastRepository = podcastRepository;
+            this.query = query;
+            this.podcastId = fragment.podcastId;
+            this.state = fragment.episodeState;
+        }
+
+        void cancelSearch() {
+            cancel(false);
+            cancellationSignal.cancel();
+        }
+
+        @Override
+        protected EpisodeData doInBackground(Void... voids) {
+            long start = SystemClock.elapsedRealtime();
+            List<Episode> episodes;
+            try {
+                episodes = episodeRepository.searchEpisodes(query, podcastId, state, SEARCH_LIMIT, cancellationSignal);
+            } catch (OperationCanceledException e) {
+                return null;
+            }
+
+            Map<Long, Podcast> podcastCache = new HashMap<>();
+            for (Episode episode : episodes) {
+                long pid = episode.getPodcastId();
+                if (!podcastCache.containsKey(pid)) {
+                    Podcast podcast = podcastRepository.getPodcastById(pid);
+                    if (podcast != null) {
+                        podcastCache.put(pid, podcast);
+                    }
+                }
+            }
+            Log.d(TAG, "Search \"" + query + "\" found " + episodes.size() + " episodes in " +
+                  (SystemClock.elapsedRealtime() - start) + " ms");
+            return new EpisodeData(episodes, podcastCache);
+        }
+
+        @Override
+        protected void onPostExecute(EpisodeData data) {
+            EpisodeListFragment fragment = fragmentRef.get();
+            if (fragment != null && fragment.isAdded() && data != null) {
+                fragment.showSearchResults(query, data);
+            }
+        }
+    }
+
+    /**
+     * AsyncTask to evaluate the podcast's auto-download rule against its current
+     * NEW episodes and show what would be downloaded, without queuing anything.
+     */
+    private static class AutoDownloadDryRunTask extends AsyncTask<Void, Void, AutoDownloadPolicy.Plan> {
+        private final WeakReference<EpisodeListFragment> fragmentRef;
+        private final AutoDownloadPolicy policy;
+        private final long podcastId;
+
+        AutoDownloadDryRunTask(EpisodeListFragment fragment, AutoDownloadPolicy policy, long podcastId) {
+            this.fragmentRef = new WeakReference<>(fragment);
+            this.policy = policy;
+            this.podcastId = podcastId;
+        }
+
+        @Override
+        protected AutoDownloadPolicy.Plan doInBackground(Void... voids) {
+            return policy.dryRunForPodcast(podcastId);
+        }
+
+        @Override
+        protected void onPostExecute(AutoDownloadPolicy.Plan plan) {
+            EpisodeListFragment fragment = fragmentRef.get();
+            if (fragment == null || fragment.getContext() == null) {
+                return;
+            }
+
+            new AlertDialog.Builder(fragment.getContext())
+                .setTitle("Auto-download Preview")
+                .setMessage(plan.toReport())
+                .setPositiveButton(R.string.dialog_close, null)
+                .show();
+        }
+    }
+
+    /**
+     * AsyncTask to re-read changed episodes on a background thread, for patching their rows.
+     */
+    private static class PatchRowsTask extends AsyncTask<Void, Void, List<Episode>> {
+        private final WeakReference<EpisodeListFragment> fragmentRef;
+        private final EpisodeRepository repository;
+        private final Set<Long> episodeIds;
+
+        PatchRowsTask(EpisodeListFragment fragment, EpisodeRepository repository, Set<Long> episodeIds) {
+            this.fragmentRef = new WeakReference<>(fragment);
+            this.repository = repository;
+            this.episodeIds = episodeIds;
+        }
+
+        @Override
+        protected List<Episode> doInBackground(Void... voids) {
+            List<Episode> episodes = new ArrayList<>();
+            for (long episodeId : episodeIds) {
+                Episode episode = repository.getEpisodeById(episodeId);
+                if (episode != null) {
+                    episodes.add(episode);
+                }
+            }
+            return episodes;
+        }
+
+        @Override
+        protected void onPostExecute(List<Episode> episodes) {
+            EpisodeListFragment fragment = fragmentRef.get();
+            if (fragment != null && fragment.isAdded()) {
+                fragment.patchRows(episodes, episodeIds);
+            }
+        }
+    }
+
     /**
      * AsyncTask to save episode to backlog on a background thread.
      */
@@ -861,12 +1450,6 @@ public class EpisodeListFragment extends Fragment {
             if (fragment != null && fragment.getContext() != null) {
                 if (rowsUpdated > 0) {
                     Toast.makeText(fragment.getContext(), R.string.toast_saved_to_backlog, Toast.LENGTH_SHORT).show();
-                    // Refresh the list
-                    fragment.loadEpisodes();
-                    // Update tab visibility in MainActivity
-                    if (fragment.getActivity() instanceof MainActivity) {
-                        ((MainActivity) fragment.getActivity()).updateTabVisibility();
-                    }
                 } else {
                     Toast.makeText(fragment.getContext(), R.string.toast_failed_save_backlog, Toast.LENGTH_SHORT).show();
                 }
@@ -874,6 +1457,33 @@ public class EpisodeListFragment extends Fragment {
         }
     }
 
+    private static class AddToQueueTask extends AsyncTask<Void, Void, Boolean> {
+        private final WeakReference<EpisodeListFragment> fragmentRef;
+        private final QueueRepository repository;
+        private final Episode episode;
+
+        AddToQueueTask(EpisodeListFragment fragment, QueueRepository repository, Episode episode) {
+            this.fragmentRef = new WeakReference<>(fragment);
+            this.repository = repository;
+            this.episode = episode;
+        }
+
+        @Override
+        protected Boolean doInBackground(Void... voids) {
+            return repository.addToEnd(episode.getId());
+        }
+
+        @Override
+        protected void onPostExecute(Boolean added) {
+            EpisodeListFragment fragment = fragmentRef.get();
+            if (fragment != null && fragment.getContext() != null) {
+                Toast.makeText(fragment.getContext(),
+                    added ? R.string.toast_added_to_queue : R.string.toast_already_in_queue,
+                    Toast.LENGTH_SHORT).show();
+            }
+        }
+    }
+
     /**
      * AsyncTask to delete downloaded episode file on a background thread.
      */
@@ -913,12 +1523,6 @@ public class EpisodeListFragment extends Fragment {
             if (fragment != null && fragment.getContext() != null) {
                 if (success) {
                     Toast.makeText(fragment.getContext(), R.string.toast_download_deleted, Toast.LENGTH_SHORT).show();
-                    // Refresh the list
-                    fragment.loadEpisodes();
-                    // Update tab visibility in MainActivity
-                    if (fragment.getActivity() instanceof MainActivity) {
-                        ((MainActivity) fragment.getActivity()).updateTabVisibility();
-                    }
                 } else {
                     Toast.makeText(fragment.getContext(), R.string.toast_failed_delete_download, Toast.LENGTH_SHORT).show();
                 }
@@ -951,12 +1555,6 @@ public class EpisodeListFragment extends Fragment {
             if (fragment != null && fragment.getContext() != null) {
                 if (rowsUpdated > 0) {
                     Toast.makeText(fragment.getContext(), R.string.toast_marked_viewed, Toast.LENGTH_SHORT).show();
-                    // Refresh the list
-                    fragment.loadEpisodes();
-                    // Update tab visibility in MainActivity
-                    if (fragment.getActivity() instanceof MainActivity) {
-                        ((MainActivity) fragment.getActivity()).updateTabVisibility();
-                    }
                 } else {
                     Toast.makeText(fragment.getContext(), R.string.toast_failed_update_episode, Toast.LENGTH_SHORT).show();
                 }
@@ -989,12 +1587,6 @@ public class EpisodeListFragment extends Fragment {
             if (fragment != null && fragment.getContext() != null) {
                 if (rowsUpdated > 0) {
                     Toast.makeText(fragment.getContext(), R.string.toast_removed_from_backlog, Toast.LENGTH_SHORT).show();
-                    // Refresh the list
-                    fragment.loadEpisodes();
-                    // Update tab visibility in MainActivity
-                    if (fragment.getActivity() instanceof MainActivity) {
-                        ((MainActivity) fragment.getActivity()).updateTabVisibility();
-                    }
                 } else {
                     Toast.makeText(fragment.getContext(), R.string.toast_failed_update_episode, Toast.LENGTH_SHORT).show();
                 }
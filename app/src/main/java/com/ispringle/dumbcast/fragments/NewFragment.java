@@ -19,10 +19,14 @@ import com.ispringle.dumbcast.R;
 import com.ispringle.dumbcast.adapters.PodcastAdapter;
 import com.ispringle.dumbcast.data.DatabaseHelper;
 import com.ispringle.dumbcast.data.DatabaseManager;
+import com.ispringle.dumbcast.data.EpisodeChangeNotifier;
 import com.ispringle.dumbcast.data.EpisodeRepository;
 import com.ispringle.dumbcast.data.EpisodeState;
 import com.ispringle.dumbcast.data.Podcast;
 import com.ispringle.dumbcast.data.PodcastRepository;
+import com.ispringle.dumbcast.data.TabSnapshots;
+import com.ispringle.dumbcast.services.AutoDownloadPolicy;
+import com.ispringle.dumbcast.utils.StartupTrace;
 
 import org.xmlpull.v1.XmlPullParserException;
 
@@ -41,12 +45,18 @@ import java.util.Map;
 public class NewFragment extends Fragment {
 
     private static final String TAG = "NewFragment";
+    private static final String SNAPSHOT_KEY = "new";
 
     private ListView listView;
     private TextView emptyText;
     private PodcastAdapter adapter;
     private PodcastRepository podcastRepository;
     private EpisodeRepository episodeRepository;
+    private DatabaseHelper dbHelper;
+    private TabSnapshots snapshots;
+    // Data version of the rows on screen once they come from a query, -1 until then
+    private long shownDataVersion = -1;
+    private boolean traceFirstList = false;
 
     public NewFragment() {
         // Required empty public constructor
@@ -60,9 +70,11 @@ public class NewFragment extends Fragment {
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         // Initialize repositories using singleton DatabaseHelper
-        DatabaseHelper dbHelper = DatabaseManager.getInstance(getContext());
+        dbHelper = DatabaseManager.getInstance(getContext());
         podcastRepository = new PodcastRepository(dbHelper);
         episodeRepository = new EpisodeRepository(dbHelper);
+        snapshots = new TabSnapshots(getContext());
+        traceFirstList = StartupTrace.getInstance().claimListTrace();
     }
 
     @Override
@@ -78,6 +90,7 @@ public class NewFragment extends Fragment {
         // Initialize adapter with empty list and empty count map
         adapter = new PodcastAdapter(getContext(), new ArrayList<Podcast>(), new HashMap<Long, Integer>());
         listView.setAdapter(adapter);
+        shownDataVersion = -1;
 
         // Set up click listener to navigate to episode list
         listView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
@@ -86,7 +99,7 @@ public class NewFragment extends Fragment {
                 Log.d(TAG, "Item clicked at position: " + position);
                 Podcast podcast = adapter.getItem(position);
                 Log.d(TAG, "Podcast: " + (podcast != null ? podcast.getTitle() : "null"));
-                if (podcast != null) {
+                if (podcast != null && !adapter.isSnapshot()) {
                     navigateToEpisodeList(podcast);
                 }
             }
@@ -120,7 +133,7 @@ public class NewFragment extends Fragment {
                     } else if (event.getAction() == KeyEvent.ACTION_UP) {
                         long pressDuration = System.currentTimeMillis() - keyPressStartTime;
 
-                        if (podcast != null) {
+                        if (podcast != null && !adapter.isSnapshot()) {
                             if (pressDuration >= LONG_PRESS_DURATION) {
                                 // Long press - refresh podcast
                                 Log.d(TAG, "Long press detected - refreshing podcast: " + podcast.getTitle());
@@ -147,13 +160,35 @@ public class NewFragment extends Fragment {
         Log.d(TAG, "onResume called");
         // Refresh data when fragment becomes visible
         loadPodcasts();
+        EpisodeChangeNotifier.getInstance().addListener(episodeChangeListener);
     }
 
+    @Override
+    public void onPause() {
+        super.onPause();
+        EpisodeChangeNotifier.getInstance().removeListener(episodeChangeListener);
+    }
+
+    /**
+     * Reloads the rows when the NEW counts they show may have changed; unchanged
+     * rows are left alone. Called on the main thread by EpisodeChangeNotifier.
+     */
+    private final EpisodeChangeNotifier.Listener episodeChangeListener = new EpisodeChangeNotifier.Listener() {
+        @Override
+        public void onEpisodesChanged(EpisodeChangeNotifier.Change change) {
+            if (change.changed(EpisodeChangeNotifier.FIELD_STATE | EpisodeChangeNotifier.FIELD_ROWS)) {
+                loadPodcasts();
+            }
+        }
+    };
+
     /**
      * Load podcasts and episode counts from database on a background thread.
+     * An empty list first shows the tab's snapshot while the query runs.
      */
     private void loadPodcasts() {
-        new LoadPodcastsTask(this, podcastRepository, episodeRepository).execute();
+        new LoadPodcastsTask(this, podcastRepository, episodeRepository, dbHelper, snapshots,
+            adapter.isEmpty(), shownDataVersion).execute();
     }
 
     /**
@@ -162,20 +197,35 @@ public class NewFragment extends Fragment {
     private static class PodcastData {
         List<Podcast> podcasts;
         Map<Long, Integer> episodeCounts;
+        long dataVersion;
+        boolean fromSnapshot;
 
-        PodcastData(List<Podcast> podcasts, Map<Long, Integer> episodeCounts) {
+        PodcastData(List<Podcast> podcasts, Map<Long, Integer> episodeCounts, long dataVersion, boolean fromSnapshot) {
             this.podcasts = podcasts;
             this.episodeCounts = episodeCounts;
+            this.dataVersion = dataVersion;
+            this.fromSnapshot = fromSnapshot;
         }
     }
 
     /**
      * Update the UI with loaded podcasts (called on main thread).
+     * Rows are replaced in place, and only redrawn if they changed.
      * @param data Podcasts and their episode counts
      */
     private void updatePodcastList(PodcastData data) {
-        adapter = new PodcastAdapter(getContext(), data.podcasts, data.episodeCounts);
-        listView.setAdapter(adapter);
+        if (data.fromSnapshot && !adapter.isEmpty()) {
+            // Something newer got here first
+            return;
+        }
+        adapter.setRows(data.podcasts, data.episodeCounts, data.fromSnapshot, listView);
+        if (!data.fromSnapshot) {
+            shownDataVersion = data.dataVersion;
+        }
+        if (traceFirstList) {
+            StartupTrace.getInstance().mark(data.fromSnapshot ?
+                StartupTrace.Milestone.LIST_SNAPSHOT : StartupTrace.Milestone.LIST_FRESH);
+        }
 
         // Show/hide empty message (will say "No new episodes")
         if (data.podcasts.isEmpty()) {
@@ -220,29 +270,67 @@ public class NewFragment extends Fragment {
         android.widget.Toast.makeText(getContext(),
             "Refreshing " + podcast.getTitle() + "...",
             android.widget.Toast.LENGTH_SHORT).show();
-        new RefreshPodcastTask(this, podcastRepository, podcast).execute();
+        new RefreshPodcastTask(this, podcastRepository, podcast, new AutoDownloadPolicy(getContext())).execute();
     }
 
     /**
      * AsyncTask to load podcasts with NEW episodes from database on a background thread.
      */
-    private static class LoadPodcastsTask extends AsyncTask<Void, Void, PodcastData> {
+    private static class LoadPodcastsTask extends AsyncTask<Void, PodcastData, PodcastData> {
         private final WeakReference<NewFragment> fragmentRef;
         private final PodcastRepository podcastRepository;
         private final EpisodeRepository episodeRepository;
-
-        LoadPodcastsTask(NewFragment fragment, PodcastRepository podcastRepository, EpisodeRepository episodeRepository) {
+        private final DatabaseHelper dbHelper;
+        private final TabSnapshots snapshots;
+        private final boolean showSnapshot;
+        private final long shownDataVersion;
+
+        /**
+         * @param showSnapshot True to show the tab's snapshot before querying
+         * @param shownDataVersion Data version of the rows on screen, or -1
+         */
+        LoadPodcastsTask(NewFragment fragment, PodcastRepository podcastRepository, EpisodeRepository episodeRepository,
+                         DatabaseHelper dbHelper, TabSnapshots snapshots, boolean showSnapshot, long shownDataVersion) {
             this.fragmentRef = new WeakReference<>(fragment);
             this.podcastRepository = podcastRepository;
             this.episodeRepository = episodeRepository;
+            this.dbHelper = dbHelper;
+            this.snapshots = snapshots;
+            this.showSnapshot = showSnapshot;
+            this.shownDataVersion = shownDataVersion;
         }
 
         @Override
         protected PodcastData doInBackground(Void... voids) {
+            TabSnapshots.PodcastRows snapshot = showSnapshot ? snapshots.readPodcasts(SNAPSHOT_KEY) : null;
+            if (snapshot != null) {
+                publishProgress(new PodcastData(snapshot.podcasts, snapshot.counts, snapshot.dataVersion, true));
+            }
+
+            long dataVersion = dbHelper.getDataVersion();
+            if (dataVersion == shownDataVersion) {
+                // Nothing the rows show has changed since they were loaded
+                return null;
+            }
+
             List<Podcast> allPodcasts = podcastRepository.getAllPodcasts();
             List<Podcast> podcastsWithNew = new ArrayList<>();
             Map<Long, Integer> newEpisodeCounts = new HashMap<>();
 
+            if (snapshot != null && snapshot.dataVersion == dataVersion &&
+                snapshot.podcasts.size() < TabSnapshots.MAX_ROWS) {
+                // The snapshot is current and complete: keep its podcasts and counts
+                // rather than counting each podcast's NEW episodes again
+                for (Podcast podcast : allPodcasts) {
+                    Integer newCount = snapshot.counts.get(podcast.getId());
+                    if (newCount != null) {
+                        podcastsWithNew.add(podcast);
+                        newEpisodeCounts.put(podcast.getId(), newCount);
+                    }
+                }
+                return new PodcastData(podcastsWithNew, newEpisodeCounts, dataVersion, false);
+            }
+
             // Only include podcasts that have NEW episodes
             for (Podcast podcast : allPodcasts) {
                 int newCount = episodeRepository.getEpisodeCountByPodcastAndState(
@@ -255,7 +343,16 @@ public class NewFragment extends Fragment {
                 }
             }
 
-            return new PodcastData(podcastsWithNew, newEpisodeCounts);
+            snapshots.writePodcasts(SNAPSHOT_KEY, dataVersion, podcastsWithNew, newEpisodeCounts);
+            return new PodcastData(podcastsWithNew, newEpisodeCounts, dataVersion, false);
+        }
+
+        @Override
+        protected void onProgressUpdate(PodcastData... snapshot) {
+            NewFragment fragment = fragmentRef.get();
+            if (fragment != null && fragment.isAdded()) {
+                fragment.updatePodcastList(snapshot[0]);
+            }
         }
 
         @Override
@@ -274,18 +371,24 @@ public class NewFragment extends Fragment {
         private final WeakReference<NewFragment> fragmentRef;
         private final PodcastRepository podcastRepository;
         private final Podcast podcast;
+        private final AutoDownloadPolicy autoDownloadPolicy;
 
-        RefreshPodcastTask(NewFragment fragment, PodcastRepository podcastRepository, Podcast podcast) {
+        RefreshPodcastTask(NewFragment fragment, PodcastRepository podcastRepository, Podcast podcast,
+                           AutoDownloadPolicy autoDownloadPolicy) {
             this.fragmentRef = new WeakReference<>(fragment);
             this.podcastRepository = podcastRepository;
             this.podcast = podcast;
+            this.autoDownloadPolicy = autoDownloadPolicy;
         }
 
         @Override
         protected String doInBackground(Void... voids) {
             try {
                 Log.d(TAG, "Refreshing podcast: " + podcast.getTitle());
-                podcastRepository.refreshPodcast(podcast.getId());
+                List<Long> newEpisodeIds = podcastRepository.refreshPodcast(podcast.getId());
+                if (!newEpisodeIds.isEmpty()) {
+                    autoDownloadPolicy.apply(newEpisodeIds);
+                }
                 return "SUCCESS";
             } catch (IOException e) {
                 Log.e(TAG, "Network error while refreshing podcast", e);
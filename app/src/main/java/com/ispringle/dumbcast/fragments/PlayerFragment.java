@@ -6,6 +6,7 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.ServiceConnection;
+import android.graphics.Typeface;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.IBinder;
@@ -18,6 +19,7 @@ import android.view.KeyEvent;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.ProgressBar;
@@ -25,6 +27,7 @@ import android.widget.ScrollView;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.ispringle.dumbcast.BuildConfig;
 import com.ispringle.dumbcast.R;
 import com.ispringle.dumbcast.data.DatabaseHelper;
 import com.ispringle.dumbcast.data.DatabaseManager;
@@ -32,11 +35,19 @@ import com.ispringle.dumbcast.data.Episode;
 import com.ispringle.dumbcast.data.EpisodeRepository;
 import com.ispringle.dumbcast.data.Podcast;
 import com.ispringle.dumbcast.data.PodcastRepository;
+import com.ispringle.dumbcast.data.QueueRepository;
+import com.ispringle.dumbcast.services.ChapterIndex;
 import com.ispringle.dumbcast.services.PlaybackService;
+import com.ispringle.dumbcast.services.PlaybackStartupStats;
 import com.ispringle.dumbcast.utils.ImageLoader;
+import com.ispringle.dumbcast.utils.ShowNotesRenderer;
+import com.ispringle.dumbcast.utils.StartupTrace;
 
 import java.io.File;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Fragment for audio playback control.
@@ -46,17 +57,20 @@ import java.lang.ref.WeakReference;
  * - Displays currently playing episode metadata
  * - Shows real-time playback progress
  * - Play/pause/skip controls via keypad
- * - Chapter support (UI ready)
+ * - Chapter display, chapter list and chapter skipping
  * - Simple text-based UI for performance
  *
  * Keypad Controls:
  * - 5 or Enter: Play/Pause
  * - *: Skip backward 30s
  * - #: Skip forward 30s
+ * - 4: Previous chapter (skip backward 30s if the episode has no chapters)
+ * - 6: Next chapter (skip forward 30s if the episode has no chapters)
  */
 public class PlayerFragment extends Fragment implements PlaybackService.PlaybackListener {
 
     private static final String TAG = "PlayerFragment";
+    private static final long POSITION_UPDATE_MS = 1000;
 
     // UI Components
     private ImageView artworkImage;
@@ -76,6 +90,7 @@ public class PlayerFragment extends Fragment implements PlaybackService.Playback
     // Data
     private PodcastRepository podcastRepository;
     private EpisodeRepository episodeRepository;
+    private QueueRepository queueRepository;
 
     public PlayerFragment() {
         // Required empty public constructor
@@ -95,6 +110,7 @@ public class PlayerFragment extends Fragment implements PlaybackService.Playback
         DatabaseHelper dbHelper = DatabaseManager.getInstance(getContext());
         podcastRepository = new PodcastRepository(dbHelper);
         episodeRepository = new EpisodeRepository(dbHelper);
+        queueRepository = new QueueRepository(dbHelper);
     }
 
     @Override
@@ -155,7 +171,7 @@ public class PlayerFragment extends Fragment implements PlaybackService.Playback
         super.onStop();
         // Unbind from service
         if (serviceBound) {
-            playbackService.setPlaybackListener(null);
+            playbackService.removePlaybackListener(PlayerFragment.this);
             getContext().unbindService(serviceConnection);
             serviceBound = false;
         }
@@ -171,8 +187,8 @@ public class PlayerFragment extends Fragment implements PlaybackService.Playback
             playbackService = binder.getService();
             serviceBound = true;
 
-            // Register as playback listener
-            playbackService.setPlaybackListener(PlayerFragment.this);
+            // Register as playback listener; the progress display only changes once a second
+            playbackService.addPlaybackListener(PlayerFragment.this, POSITION_UPDATE_MS);
 
             // Update UI with current state
             updateUI();
@@ -201,6 +217,14 @@ public class PlayerFragment extends Fragment implements PlaybackService.Playback
                 // # key: Skip forward
                 skipForward();
                 return true;
+            case KeyEvent.KEYCODE_4:
+                // 4 key: Previous chapter
+                previousChapter();
+                return true;
+            case KeyEvent.KEYCODE_6:
+                // 6 key: Next chapter
+                nextChapter();
+                return true;
             case KeyEvent.KEYCODE_5:
             case KeyEvent.KEYCODE_ENTER:
             case KeyEvent.KEYCODE_DPAD_CENTER:
@@ -258,6 +282,39 @@ public class PlayerFragment extends Fragment implements PlaybackService.Playback
         Toast.makeText(getContext(), "Skip forward", Toast.LENGTH_SHORT).show();
     }
 
+    /**
+     * Jump to the previous chapter, or skip backward if there are no chapters
+     */
+    private void previousChapter() {
+        if (!serviceBound || playbackService == null) {
+            showError("Playback service not available");
+            return;
+        }
+
+        if (!playbackService.previousChapter()) {
+            skipBackward();
+        }
+    }
+
+    /**
+     * Jump to the next chapter, or skip forward if there are no chapters
+     */
+    private void nextChapter() {
+        if (!serviceBound || playbackService == null) {
+            showError("Playback service not available");
+            return;
+        }
+
+        if (playbackService.nextChapter()) {
+            return;
+        }
+        if (playbackService.getChapterIndex().isEmpty()) {
+            skipForward();
+        } else {
+            Toast.makeText(getContext(), R.string.player_last_chapter, Toast.LENGTH_SHORT).show();
+        }
+    }
+
     /**
      * Update UI with current playback state
      */
@@ -342,6 +399,16 @@ public class PlayerFragment extends Fragment implements PlaybackService.Playback
         } else {
             progressBar.setProgress(0);
         }
+
+        // Show the current chapter once chapters have loaded
+        String chapterTitle = serviceBound && playbackService != null ?
+            playbackService.getCurrentChapterTitle() : null;
+        if (chapterTitle != null && !chapterTitle.isEmpty()) {
+            chapterNameText.setText(chapterTitle);
+            chapterNameText.setVisibility(View.VISIBLE);
+        } else {
+            chapterNameText.setVisibility(View.GONE);
+        }
     }
 
     /**
@@ -371,84 +438,69 @@ public class PlayerFragment extends Fragment implements PlaybackService.Playback
     @Override
     public void onPlaybackStarted(Episode episode) {
         Log.d(TAG, "Playback started: " + episode.getTitle());
-        if (getActivity() != null) {
-            getActivity().runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    playPauseButton.setText("");
-                }
-            });
+        if (getView() == null) {
+            return;
+        }
+        // Playback may have advanced to the next backlog episode on its own
+        if (!episode.getTitle().contentEquals(episodeTitleText.getText())) {
+            updateUI();
         }
+        playPauseButton.setText("");
     }
 
     @Override
     public void onPlaybackPaused(Episode episode) {
         Log.d(TAG, "Playback paused: " + episode.getTitle());
-        if (getActivity() != null) {
-            getActivity().runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    playPauseButton.setText("");
-                }
-            });
+        if (getView() == null) {
+            return;
         }
+        playPauseButton.setText("");
     }
 
     @Override
     public void onPlaybackStopped() {
         Log.d(TAG, "Playback stopped");
-        if (getActivity() != null) {
-            getActivity().runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    showNoEpisodeState();
-                }
-            });
+        if (getView() == null) {
+            return;
         }
+        showNoEpisodeState();
     }
 
     @Override
     public void onPlaybackCompleted(Episode episode) {
         Log.d(TAG, "Playback completed: " + episode.getTitle());
-        if (getActivity() != null) {
-            getActivity().runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    playPauseButton.setText("");
-                    statusMessage.setText("Finished");
-                    statusMessage.setVisibility(View.VISIBLE);
-                    Toast.makeText(getContext(), "Episode finished", Toast.LENGTH_SHORT).show();
-                }
-            });
+        if (getView() == null) {
+            return;
+        }
+        playPauseButton.setText("");
+        statusMessage.setText("Finished");
+        statusMessage.setVisibility(View.VISIBLE);
+        long savedMs = serviceBound && playbackService != null ?
+            playbackService.getSilenceSavedMs(episode.getId()) : 0;
+        if (savedMs >= 1000) {
+            Toast.makeText(getContext(), getString(R.string.player_finished_silence_saved,
+                formatTime((int) (savedMs / 1000))), Toast.LENGTH_SHORT).show();
+        } else {
+            Toast.makeText(getContext(), "Episode finished", Toast.LENGTH_SHORT).show();
         }
     }
 
     @Override
     public void onPositionChanged(final int position, final int duration) {
-        // Update UI on main thread
-        if (getActivity() != null) {
-            getActivity().runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    updateProgress(position, duration);
-                }
-            });
+        if (getView() != null) {
+            updateProgress(position, duration);
         }
     }
 
     @Override
     public void onError(final String error) {
         Log.e(TAG, "Playback error: " + error);
-        if (getActivity() != null) {
-            getActivity().runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    showError(error);
-                    statusMessage.setText("Error: " + error);
-                    statusMessage.setVisibility(View.VISIBLE);
-                }
-            });
+        if (getView() == null) {
+            return;
         }
+        showError(error);
+        statusMessage.setText("Error: " + error);
+        statusMessage.setVisibility(View.VISIBLE);
     }
 
     /**
@@ -470,13 +522,21 @@ public class PlayerFragment extends Fragment implements PlaybackService.Playback
             return;
         }
 
-        // Build menu items in fixed order
-        final String[] menuArray = new String[] {
+        // Build menu items in fixed order; debug builds get the startup timing screen last
+        List<String> items = new ArrayList<>(Arrays.asList(
             getString(R.string.player_menu_delete_episode),
             getString(R.string.player_menu_view_chapters),
             getString(R.string.player_menu_skip_to_timestamp),
-            getString(R.string.player_menu_view_show_notes)
-        };
+            getString(R.string.player_menu_view_show_notes),
+            getString(R.string.player_menu_up_next),
+            getString(R.string.player_menu_play_next_in_queue),
+            getString(playbackService.isTrimSilenceEnabled() ?
+                R.string.player_menu_trim_silence_off : R.string.player_menu_trim_silence_on)
+        ));
+        if (BuildConfig.DEBUG) {
+            items.add(getString(R.string.player_menu_startup_timing));
+        }
+        final String[] menuArray = items.toArray(new String[0]);
 
         // Show AlertDialog
         AlertDialog.Builder builder = new AlertDialog.Builder(getContext());
@@ -497,6 +557,10 @@ public class PlayerFragment extends Fragment implements PlaybackService.Playback
      * - 1: View Chapters
      * - 2: Skip to Timestamp
      * - 3: View Show Notes
+     * - 4: Up Next
+     * - 5: Play Next in Queue
+     * - 6: Trim Silence on/off
+     * - 7: Startup Timing (debug builds only)
      *
      * @param episode The episode to act on
      * @param actionIndex The selected menu item index
@@ -515,12 +579,71 @@ public class PlayerFragment extends Fragment implements PlaybackService.Playback
             case 3: // View Show Notes
                 viewShowNotes(episode);
                 break;
+            case 4: // Up Next
+                showQueue();
+                break;
+            case 5: // Play Next in Queue
+                playbackService.playNextInQueue();
+                break;
+            case 6: // Trim Silence
+                toggleTrimSilence(episode);
+                break;
+            case 7: // Startup Timing
+                showStartupTiming();
+                break;
             default:
                 Log.w(TAG, "Unknown menu action index: " + actionIndex);
                 break;
         }
     }
 
+    /**
+     * Turn silence trimming on or off, saying how much it has saved in this episode.
+     * @param episode The current episode
+     */
+    private void toggleTrimSilence(Episode episode) {
+        if (getContext() == null) {
+            return;
+        }
+        boolean enabled = !playbackService.isTrimSilenceEnabled();
+        playbackService.setTrimSilenceEnabled(enabled);
+
+        String message;
+        if (!enabled) {
+            message = getString(R.string.player_trim_silence_disabled);
+        } else if (!episode.isDownloaded()) {
+            message = getString(R.string.player_trim_silence_needs_download);
+        } else {
+            long savedMs = playbackService.getSilenceSavedMs(episode.getId());
+            message = getString(R.string.player_trim_silence_enabled, formatTime((int) (savedMs / 1000)));
+        }
+        Toast.makeText(getContext(), message, Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * Show the app's cold start timing and the playback startup histograms
+     * collected since the app started.
+     */
+    private void showStartupTiming() {
+        if (getContext() == null) {
+            return;
+        }
+        TextView text = new TextView(getContext());
+        text.setText(StartupTrace.getInstance().summary() + " ms\n\n" +
+            PlaybackStartupStats.getInstance().dump() +
+            "\nListener ticks: " + playbackService.getWakeupsSavedPerHour() + "/hour saved\n");
+        text.setTypeface(Typeface.MONOSPACE);
+        text.setTextSize(10);
+        ScrollView scroll = new ScrollView(getContext());
+        scroll.addView(text);
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(getContext());
+        builder.setTitle(R.string.player_menu_startup_timing);
+        builder.setView(scroll);
+        builder.setPositiveButton(R.string.dialog_close, null);
+        builder.show();
+    }
+
     /**
      * Delete downloaded file for the currently playing episode.
      * Shows confirmation dialog before deleting.
@@ -561,16 +684,36 @@ public class PlayerFragment extends Fragment implements PlaybackService.Playback
             return;
         }
 
-        // Check if episode has chapters
-        String chaptersUrl = episode.getChaptersUrl();
-        if (chaptersUrl == null || chaptersUrl.isEmpty()) {
-            Toast.makeText(getContext(), R.string.player_no_chapters, Toast.LENGTH_SHORT).show();
+        // Chapters are loaded by the service when the episode starts
+        final ChapterIndex chapters = playbackService.getChapterIndex();
+        if (chapters.isEmpty()) {
+            String chaptersUrl = episode.getChaptersUrl();
+            int message = chaptersUrl == null || chaptersUrl.isEmpty() ?
+                R.string.player_no_chapters : R.string.player_chapters_loading;
+            Toast.makeText(getContext(), message, Toast.LENGTH_SHORT).show();
             return;
         }
 
-        // TODO: Implement chapter parsing and display
-        // For now, show placeholder message
-        Toast.makeText(getContext(), R.string.player_chapters_not_implemented, Toast.LENGTH_SHORT).show();
+        int current = chapters.indexAt(playbackService.getCurrentPosition() * 1000L);
+        final String[] items = new String[chapters.size()];
+        for (int i = 0; i < items.length; i++) {
+            String title = chapters.getTitle(i);
+            items[i] = (i == current ? "▶ " : "") + formatTime((int) (chapters.getStartMs(i) / 1000)) +
+                "  " + (title != null ? title : getString(R.string.player_chapter_untitled, i + 1));
+        }
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(getContext());
+        builder.setTitle(R.string.player_chapters_title);
+        builder.setItems(items, new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                if (serviceBound && playbackService != null) {
+                    playbackService.seekToChapter(which);
+                }
+            }
+        });
+        builder.setPositiveButton(R.string.dialog_close, null);
+        builder.show();
     }
 
     /**
@@ -683,6 +826,7 @@ public class PlayerFragment extends Fragment implements PlaybackService.Playback
      *   - content:encoded (rich HTML show notes)
      *   - itunes:summary (iTunes-specific summary, up to 4000 chars)
      *   - description (basic RSS description)
+     * The HTML is read and rendered off the main thread, usually ahead of time by PlaybackService.
      * @param episode The episode to view show notes for
      */
     private void viewShowNotes(Episode episode) {
@@ -690,23 +834,33 @@ public class PlayerFragment extends Fragment implements PlaybackService.Playback
             return;
         }
 
-        String description = episode.getDescription();
-        if (description == null || description.isEmpty()) {
-            Toast.makeText(getContext(), R.string.player_no_show_notes, Toast.LENGTH_SHORT).show();
+        // Stored episodes don't carry their show notes; the renderer reads them
+        ShowNotesRenderer.getInstance(getContext()).render(episode.getId(), episode.getDescription(),
+            new ShowNotesRenderer.Callback() {
+                @Override
+                public void onRendered(ShowNotesRenderer.Pages pages) {
+                    showShowNotesDialog(pages);
+                }
+            });
+    }
+
+    /**
+     * Show rendered show notes a page at a time. "More" appends the next page,
+     * so long show notes never lay out more text than the reader gets to.
+     * @param pages The rendered show notes
+     */
+    private void showShowNotesDialog(final ShowNotesRenderer.Pages pages) {
+        if (getContext() == null || !isAdded()) {
             return;
         }
-
-        // Parse HTML in description for proper formatting
-        CharSequence formattedDescription;
-        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.N) {
-            formattedDescription = android.text.Html.fromHtml(description, android.text.Html.FROM_HTML_MODE_COMPACT);
-        } else {
-            formattedDescription = android.text.Html.fromHtml(description);
+        if (pages.getCount() == 0) {
+            Toast.makeText(getContext(), R.string.player_no_show_notes, Toast.LENGTH_SHORT).show();
+            return;
         }
 
         // Create TextView with clickable links
-        TextView textView = new TextView(getContext());
-        textView.setText(formattedDescription);
+        final TextView textView = new TextView(getContext());
+        textView.setText(pages.get(0));
         textView.setMovementMethod(LinkMovementMethod.getInstance()); // Make links clickable
         textView.setPadding(48, 16, 48, 16); // Add padding for readability
 
@@ -719,9 +873,169 @@ public class PlayerFragment extends Fragment implements PlaybackService.Playback
         builder.setTitle(R.string.player_show_notes_title);
         builder.setView(scrollView);
         builder.setPositiveButton(R.string.dialog_close, null);
+        if (pages.getCount() > 1) {
+            builder.setNeutralButton(R.string.player_show_notes_more, null);
+        }
+        AlertDialog dialog = builder.show();
+
+        if (pages.getCount() > 1) {
+            // Set after show() so pressing it doesn't dismiss the dialog
+            final Button moreButton = dialog.getButton(AlertDialog.BUTTON_NEUTRAL);
+            moreButton.setOnClickListener(new View.OnClickListener() {
+                private int shownPages = 1;
+
+                @Override
+                public void onClick(View v) {
+                    textView.append("\n\n");
+                    textView.append(pages.get(shownPages++));
+                    if (shownPages >= pages.getCount()) {
+                        moreButton.setVisibility(View.GONE);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Load the play queue and show it as a list.
+     */
+    private void showQueue() {
+        new LoadQueueTask(this, queueRepository).execute();
+    }
+
+    /**
+     * Show the loaded queue. Selecting an entry offers actions for it.
+     * @param queue Queued episodes in play order
+     */
+    private void showQueueDialog(final List<Episode> queue) {
+        if (getContext() == null) {
+            return;
+        }
+
+        if (queue.isEmpty()) {
+            Toast.makeText(getContext(), R.string.player_queue_empty, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        final String[] titles = new String[queue.size()];
+        for (int i = 0; i < queue.size(); i++) {
+            titles[i] = (i + 1) + ". " + queue.get(i).getTitle();
+        }
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(getContext());
+        builder.setTitle(R.string.player_queue_title);
+        builder.setItems(titles, new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                showQueueEntryMenu(queue.get(which));
+            }
+        });
+        builder.setPositiveButton(R.string.dialog_close, null);
+        builder.show();
+    }
+
+    /**
+     * Show actions for a single queue entry.
+     * Fixed menu indices: 0=Play Now, 1=Move Up, 2=Move Down, 3=Remove from Queue
+     * @param episode The queued episode
+     */
+    private void showQueueEntryMenu(final Episode episode) {
+        if (getContext() == null) {
+            return;
+        }
+
+        final String[] menuArray = new String[] {
+            getString(R.string.player_queue_play_now),
+            getString(R.string.player_queue_move_up),
+            getString(R.string.player_queue_move_down),
+            getString(R.string.player_queue_remove)
+        };
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(getContext());
+        builder.setTitle(episode.getTitle());
+        builder.setItems(menuArray, new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                if (which == 0) {
+                    if (serviceBound && playbackService != null) {
+                        playbackService.loadEpisode(episode);
+                    }
+                } else {
+                    new QueueActionTask(PlayerFragment.this, queueRepository, episode.getId(), which).execute();
+                }
+            }
+        });
         builder.show();
     }
 
+    /**
+     * AsyncTask to load the play queue on a background thread.
+     */
+    private static class LoadQueueTask extends AsyncTask<Void, Void, List<Episode>> {
+        private final WeakReference<PlayerFragment> fragmentRef;
+        private final QueueRepository repository;
+
+        LoadQueueTask(PlayerFragment fragment, QueueRepository repository) {
+            this.fragmentRef = new WeakReference<>(fragment);
+            this.repository = repository;
+        }
+
+        @Override
+        protected List<Episode> doInBackground(Void... voids) {
+            return repository.getQueue();
+        }
+
+        @Override
+        protected void onPostExecute(List<Episode> queue) {
+            PlayerFragment fragment = fragmentRef.get();
+            if (fragment == null || fragment.getContext() == null) return;
+            fragment.showQueueDialog(queue);
+        }
+    }
+
+    /**
+     * AsyncTask to reorder or remove a queue entry, then reopen the queue.
+     */
+    private static class QueueActionTask extends AsyncTask<Void, Void, Void> {
+        private final WeakReference<PlayerFragment> fragmentRef;
+        private final QueueRepository repository;
+        private final long episodeId;
+        private final int action;
+
+        /**
+         * @param action Queue entry menu index: 1=Move Up, 2=Move Down, 3=Remove
+         */
+        QueueActionTask(PlayerFragment fragment, QueueRepository repository, long episodeId, int action) {
+            this.fragmentRef = new WeakReference<>(fragment);
+            this.repository = repository;
+            this.episodeId = episodeId;
+            this.action = action;
+        }
+
+        @Override
+        protected Void doInBackground(Void... voids) {
+            switch (action) {
+                case 1:
+                    repository.moveUp(episodeId);
+                    break;
+                case 2:
+                    repository.moveDown(episodeId);
+                    break;
+                case 3:
+                    repository.remove(episodeId);
+                    break;
+            }
+            return null;
+        }
+
+        @Override
+        protected void onPostExecute(Void result) {
+            PlayerFragment fragment = fragmentRef.get();
+            if (fragment == null || fragment.getContext() == null) return;
+            fragment.showQueue();
+        }
+    }
+
     /**
      * AsyncTask to delete episode download on a background thread.
      */
@@ -22,11 +22,17 @@ import com.ispringle.dumbcast.R;
 import com.ispringle.dumbcast.adapters.PodcastAdapter;
 import com.ispringle.dumbcast.data.DatabaseHelper;
 import com.ispringle.dumbcast.data.DatabaseManager;
+import com.ispringle.dumbcast.data.EpisodeChangeNotifier;
 import com.ispringle.dumbcast.data.Episode;
+import com.ispringle.dumbcast.data.ChapterRepository;
 import com.ispringle.dumbcast.data.EpisodeRepository;
 import com.ispringle.dumbcast.data.EpisodeState;
+import com.ispringle.dumbcast.data.ListeningStatsRepository;
 import com.ispringle.dumbcast.data.Podcast;
 import com.ispringle.dumbcast.data.PodcastRepository;
+import com.ispringle.dumbcast.data.TabSnapshots;
+import com.ispringle.dumbcast.services.AutoDownloadPolicy;
+import com.ispringle.dumbcast.utils.StartupTrace;
 
 import org.xmlpull.v1.XmlPullParserException;
 
@@ -45,12 +51,21 @@ import java.util.Map;
 public class SubscriptionsFragment extends Fragment {
 
     private static final String TAG = "SubscriptionsFragment";
+    private static final int CHAPTER_PREFETCH_LIMIT = 10;
+    private static final String SNAPSHOT_KEY = "subscriptions";
 
     private ListView listView;
     private TextView emptyText;
     private PodcastAdapter adapter;
     private PodcastRepository podcastRepository;
     private EpisodeRepository episodeRepository;
+    private ChapterRepository chapterRepository;
+    private ListeningStatsRepository statsRepository;
+    private DatabaseHelper dbHelper;
+    private TabSnapshots snapshots;
+    // Data version of the rows on screen once they come from a query, -1 until then
+    private long shownDataVersion = -1;
+    private boolean traceFirstList = false;
 
     public SubscriptionsFragment() {
         // Required empty public constructor
@@ -64,9 +79,13 @@ public class SubscriptionsFragment extends Fragment {
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         // Initialize repositories using singleton DatabaseHelper
-        DatabaseHelper dbHelper = DatabaseManager.getInstance(getContext());
+        dbHelper = DatabaseManager.getInstance(getContext());
         podcastRepository = new PodcastRepository(dbHelper);
         episodeRepository = new EpisodeRepository(dbHelper);
+        chapterRepository = new ChapterRepository(dbHelper);
+        statsRepository = new ListeningStatsRepository(dbHelper);
+        snapshots = new TabSnapshots(getContext());
+        traceFirstList = StartupTrace.getInstance().claimListTrace();
     }
 
     @Override
@@ -82,6 +101,7 @@ public class SubscriptionsFragment extends Fragment {
         // Initialize adapter with empty list and empty count map
         adapter = new PodcastAdapter(getContext(), new ArrayList<Podcast>(), new HashMap<Long, Integer>());
         listView.setAdapter(adapter);
+        shownDataVersion = -1;
 
         // Set up click listener to navigate to episode list
         listView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
@@ -90,7 +110,7 @@ public class SubscriptionsFragment extends Fragment {
                 Log.d(TAG, "Item clicked at position: " + position);
                 Podcast podcast = adapter.getItem(position);
                 Log.d(TAG, "Podcast: " + (podcast != null ? podcast.getTitle() : "null"));
-                if (podcast != null) {
+                if (podcast != null && !adapter.isSnapshot()) {
                     navigateToEpisodeList(podcast);
                 }
             }
@@ -114,7 +134,7 @@ public class SubscriptionsFragment extends Fragment {
                         int position = listView.getSelectedItemPosition();
                         if (position >= 0) {
                             Podcast podcast = adapter.getItem(position);
-                            if (podcast != null) {
+                            if (podcast != null && !adapter.isSnapshot()) {
                                 navigateToEpisodeList(podcast);
                                 return true;
                             }
@@ -127,7 +147,7 @@ public class SubscriptionsFragment extends Fragment {
                         int position = listView.getSelectedItemPosition();
                         if (position >= 0) {
                             Podcast podcast = adapter.getItem(position);
-                            if (podcast != null) {
+                            if (podcast != null && !adapter.isSnapshot()) {
                                 showContextMenu(podcast);
                                 return true;
                             }
@@ -147,13 +167,35 @@ public class SubscriptionsFragment extends Fragment {
         Log.d(TAG, "onResume called");
         // Refresh data when fragment becomes visible
         loadPodcasts();
+        EpisodeChangeNotifier.getInstance().addListener(episodeChangeListener);
     }
 
+    @Override
+    public void onPause() {
+        super.onPause();
+        EpisodeChangeNotifier.getInstance().removeListener(episodeChangeListener);
+    }
+
+    /**
+     * Reloads the rows when the Episode counts they show may have changed; unchanged
+     * rows are left alone. Called on the main thread by EpisodeChangeNotifier.
+     */
+    private final EpisodeChangeNotifier.Listener episodeChangeListener = new EpisodeChangeNotifier.Listener() {
+        @Override
+        public void onEpisodesChanged(EpisodeChangeNotifier.Change change) {
+            if (change.changed(EpisodeChangeNotifier.FIELD_ROWS)) {
+                loadPodcasts();
+            }
+        }
+    };
+
     /**
      * Load podcasts and episode counts from database on a background thread.
+     * An empty list first shows the tab's snapshot while the query runs.
      */
     private void loadPodcasts() {
-        new LoadPodcastsTask(this, podcastRepository, episodeRepository).execute();
+        new LoadPodcastsTask(this, podcastRepository, episodeRepository, dbHelper, snapshots,
+            adapter.isEmpty(), shownDataVersion).execute();
     }
 
     /**
@@ -162,20 +204,35 @@ public class SubscriptionsFragment extends Fragment {
     private static class PodcastData {
         List<Podcast> podcasts;
         Map<Long, Integer> episodeCounts;
+        long dataVersion;
+        boolean fromSnapshot;
 
-        PodcastData(List<Podcast> podcasts, Map<Long, Integer> episodeCounts) {
+        PodcastData(List<Podcast> podcasts, Map<Long, Integer> episodeCounts, long dataVersion, boolean fromSnapshot) {
             this.podcasts = podcasts;
             this.episodeCounts = episodeCounts;
+            this.dataVersion = dataVersion;
+            this.fromSnapshot = fromSnapshot;
         }
     }
 
     /**
      * Update the UI with loaded podcasts (called on main thread).
+     * Rows are replaced in place, and only redrawn if they changed.
      * @param data Podcasts and their episode counts
      */
     private void updatePodcastList(PodcastData data) {
-        adapter = new PodcastAdapter(getContext(), data.podcasts, data.episodeCounts);
-        listView.setAdapter(adapter);
+        if (data.fromSnapshot && !adapter.isEmpty()) {
+            // Something newer got here first
+            return;
+        }
+        adapter.setRows(data.podcasts, data.episodeCounts, data.fromSnapshot, listView);
+        if (!data.fromSnapshot) {
+            shownDataVersion = data.dataVersion;
+        }
+        if (traceFirstList) {
+            StartupTrace.getInstance().mark(data.fromSnapshot ?
+                StartupTrace.Milestone.LIST_SNAPSHOT : StartupTrace.Milestone.LIST_FRESH);
+        }
 
         // Show/hide empty message
         if (data.podcasts.isEmpty()) {
@@ -225,7 +282,8 @@ public class SubscriptionsFragment extends Fragment {
             getString(R.string.menu_refresh),
             getString(R.string.menu_refresh_all),
             getString(R.string.menu_unsubscribe),
-            getString(R.string.menu_remove_new)
+            getString(R.string.menu_remove_new),
+            getString(R.string.menu_listening_stats)
         };
 
         AlertDialog.Builder builder = new AlertDialog.Builder(getContext());
@@ -261,6 +319,9 @@ public class SubscriptionsFragment extends Fragment {
             case 4:
                 removeNewFromAllEpisodes(podcast);
                 break;
+            case 5:
+                new LoadListeningStatsTask(this, statsRepository, podcast).execute();
+                break;
             default:
                 Log.w(TAG, "Unknown menu action index: " + actionIndex);
                 break;
@@ -323,6 +384,62 @@ public class SubscriptionsFragment extends Fragment {
         builder.show();
     }
 
+    /**
+     * Show listening statistics for a podcast, plus the last week across all podcasts.
+     * @param podcast The podcast
+     * @param stats The podcast's all-time totals
+     * @param days The last week's daily totals, oldest first
+     */
+    private void showListeningStats(Podcast podcast, ListeningStatsRepository.PodcastStats stats,
+                                    List<ListeningStatsRepository.DayStats> days) {
+        if (getContext() == null) {
+            return;
+        }
+
+        StringBuilder text = new StringBuilder();
+        if (stats.isEmpty()) {
+            text.append(getString(R.string.listening_stats_never_played)).append("\n\n");
+        } else {
+            text.append(getString(R.string.listening_stats_listened, formatListenedTime(stats.listenedMs),
+                stats.sessions)).append("\n\n");
+            text.append(getString(R.string.listening_stats_completed, stats.episodesCompleted,
+                stats.episodesStarted, Math.round(stats.getCompletionRate() * 100))).append("\n\n");
+            text.append(getString(R.string.listening_stats_skipped, stats.seeksForward,
+                formatListenedTime(stats.skippedMs))).append("\n");
+            text.append(getString(R.string.listening_stats_rewound, stats.seeksBack,
+                formatListenedTime(stats.rewoundMs))).append("\n\n");
+        }
+
+        text.append(getString(R.string.listening_stats_last_week)).append("\n");
+        if (days.isEmpty()) {
+            text.append(getString(R.string.listening_stats_no_listening));
+        } else {
+            java.text.SimpleDateFormat dayFormat = new java.text.SimpleDateFormat("EEE MMM d", java.util.Locale.getDefault());
+            for (ListeningStatsRepository.DayStats day : days) {
+                text.append(dayFormat.format(new java.util.Date(day.getStartMillis())))
+                    .append(": ").append(formatListenedTime(day.listenedMs)).append("\n");
+            }
+        }
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(getContext());
+        builder.setTitle(podcast.getTitle());
+        builder.setMessage(text.toString().trim());
+        builder.setPositiveButton(getString(R.string.dialog_close), null);
+        builder.show();
+    }
+
+    /**
+     * @param ms Duration in milliseconds
+     * @return The duration as "2h 05m" or "12m"
+     */
+    private static String formatListenedTime(long ms) {
+        long minutes = ms / 60000;
+        if (minutes >= 60) {
+            return String.format(java.util.Locale.US, "%dh %02dm", minutes / 60, minutes % 60);
+        }
+        return minutes + "m";
+    }
+
     /**
      * Format a timestamp (milliseconds) into a human-readable date/time string.
      * @param timestamp The timestamp in milliseconds
@@ -350,7 +467,8 @@ public class SubscriptionsFragment extends Fragment {
         Toast.makeText(getContext(), message, Toast.LENGTH_SHORT).show();
 
         // Start async task to refresh via PodcastRepository
-        new RefreshPodcastTask(this, podcast, podcastRepository, episodeRepository).execute();
+        new RefreshPodcastTask(this, podcast, podcastRepository, episodeRepository,
+            new AutoDownloadPolicy(getContext())).execute();
     }
 
     /**
@@ -366,7 +484,8 @@ public class SubscriptionsFragment extends Fragment {
         Toast.makeText(getContext(), getString(R.string.toast_refreshing_all), Toast.LENGTH_SHORT).show();
 
         // Start async task to refresh all podcasts
-        new RefreshAllPodcastsTask(this, podcastRepository, episodeRepository).execute();
+        new RefreshAllPodcastsTask(this, podcastRepository, episodeRepository, chapterRepository,
+            new AutoDownloadPolicy(getContext())).execute();
     }
 
     /**
@@ -406,29 +525,70 @@ public class SubscriptionsFragment extends Fragment {
     /**
      * AsyncTask to load podcasts and episode counts from database on a background thread.
      */
-    private static class LoadPodcastsTask extends AsyncTask<Void, Void, PodcastData> {
+    private static class LoadPodcastsTask extends AsyncTask<Void, PodcastData, PodcastData> {
         private final WeakReference<SubscriptionsFragment> fragmentRef;
         private final PodcastRepository podcastRepository;
         private final EpisodeRepository episodeRepository;
-
-        LoadPodcastsTask(SubscriptionsFragment fragment, PodcastRepository podcastRepository, EpisodeRepository episodeRepository) {
+        private final DatabaseHelper dbHelper;
+        private final TabSnapshots snapshots;
+        private final boolean showSnapshot;
+        private final long shownDataVersion;
+
+        /**
+         * @param showSnapshot True to show the tab's snapshot before querying
+         * @param shownDataVersion Data version of the rows on screen, or -1
+         */
+        LoadPodcastsTask(SubscriptionsFragment fragment, PodcastRepository podcastRepository, EpisodeRepository episodeRepository,
+                         DatabaseHelper dbHelper, TabSnapshots snapshots, boolean showSnapshot, long shownDataVersion) {
             this.fragmentRef = new WeakReference<>(fragment);
             this.podcastRepository = podcastRepository;
             this.episodeRepository = episodeRepository;
+            this.dbHelper = dbHelper;
+            this.snapshots = snapshots;
+            this.showSnapshot = showSnapshot;
+            this.shownDataVersion = shownDataVersion;
         }
 
         @Override
         protected PodcastData doInBackground(Void... voids) {
+            TabSnapshots.PodcastRows snapshot = showSnapshot ? snapshots.readPodcasts(SNAPSHOT_KEY) : null;
+            if (snapshot != null) {
+                publishProgress(new PodcastData(snapshot.podcasts, snapshot.counts, snapshot.dataVersion, true));
+            }
+
+            long dataVersion = dbHelper.getDataVersion();
+            if (dataVersion == shownDataVersion) {
+                // Nothing the rows show has changed since they were loaded
+                return null;
+            }
+
             List<Podcast> podcasts = podcastRepository.getAllPodcasts();
             Map<Long, Integer> episodeCounts = new HashMap<>();
 
+            if (snapshot != null && snapshot.dataVersion == dataVersion &&
+                snapshot.podcasts.size() < TabSnapshots.MAX_ROWS) {
+                // The snapshot is current and complete: reuse its counts rather than
+                // counting each podcast's episodes again
+                episodeCounts.putAll(snapshot.counts);
+                return new PodcastData(podcasts, episodeCounts, dataVersion, false);
+            }
+
             // Preload episode counts for all podcasts
             for (Podcast podcast : podcasts) {
                 int count = episodeRepository.getEpisodeCountByPodcast(podcast.getId());
                 episodeCounts.put(podcast.getId(), count);
             }
 
-            return new PodcastData(podcasts, episodeCounts);
+            snapshots.writePodcasts(SNAPSHOT_KEY, dataVersion, podcasts, episodeCounts);
+            return new PodcastData(podcasts, episodeCounts, dataVersion, false);
+        }
+
+        @Override
+        protected void onProgressUpdate(PodcastData... snapshot) {
+            SubscriptionsFragment fragment = fragmentRef.get();
+            if (fragment != null && fragment.isAdded()) {
+                fragment.updatePodcastList(snapshot[0]);
+            }
         }
 
         @Override
@@ -486,6 +646,41 @@ public class SubscriptionsFragment extends Fragment {
         }
     }
 
+    /**
+     * AsyncTask to read a podcast's listening statistics on a background thread.
+     */
+    private static class LoadListeningStatsTask extends AsyncTask<Void, Void, Void> {
+        private static final int DAYS_SHOWN = 7;
+
+        private final WeakReference<SubscriptionsFragment> fragmentRef;
+        private final ListeningStatsRepository statsRepository;
+        private final Podcast podcast;
+        private ListeningStatsRepository.PodcastStats stats;
+        private List<ListeningStatsRepository.DayStats> days;
+
+        LoadListeningStatsTask(SubscriptionsFragment fragment, ListeningStatsRepository statsRepository, Podcast podcast) {
+            this.fragmentRef = new WeakReference<>(fragment);
+            this.statsRepository = statsRepository;
+            this.podcast = podcast;
+        }
+
+        @Override
+        protected Void doInBackground(Void... voids) {
+            long today = ListeningStatsRepository.dayOf(System.currentTimeMillis());
+            stats = statsRepository.getPodcastStats(podcast.getId());
+            days = statsRepository.getDailyStats(today - (DAYS_SHOWN - 1), today);
+            return null;
+        }
+
+        @Override
+        protected void onPostExecute(Void result) {
+            SubscriptionsFragment fragment = fragmentRef.get();
+            if (fragment != null) {
+                fragment.showListeningStats(podcast, stats, days);
+            }
+        }
+    }
+
     /**
      * Result class for podcast refresh operation.
      */
@@ -518,12 +713,15 @@ public class SubscriptionsFragment extends Fragment {
         private final Podcast podcast;
         private final PodcastRepository podcastRepository;
         private final EpisodeRepository episodeRepository;
+        private final AutoDownloadPolicy autoDownloadPolicy;
 
-        RefreshPodcastTask(SubscriptionsFragment fragment, Podcast podcast, PodcastRepository podcastRepository, EpisodeRepository episodeRepository) {
+        RefreshPodcastTask(SubscriptionsFragment fragment, Podcast podcast, PodcastRepository podcastRepository,
+                           EpisodeRepository episodeRepository, AutoDownloadPolicy autoDownloadPolicy) {
             this.fragmentRef = new WeakReference<>(fragment);
             this.podcast = podcast;
             this.podcastRepository = podcastRepository;
             this.episodeRepository = episodeRepository;
+            this.autoDownloadPolicy = autoDownloadPolicy;
         }
 
         @Override
@@ -533,12 +731,17 @@ public class SubscriptionsFragment extends Fragment {
                 int episodeCountBefore = episodeRepository.getEpisodeCountByPodcast(podcast.getId());
 
                 // Use PodcastRepository.refreshPodcast() which has timestamp filtering
-                podcastRepository.refreshPodcast(podcast.getId());
+                List<Long> newEpisodeIds = podcastRepository.refreshPodcast(podcast.getId());
 
                 // Get episode count after refresh to calculate new episodes
                 int episodeCountAfter = episodeRepository.getEpisodeCountByPodcast(podcast.getId());
                 int newEpisodeCount = episodeCountAfter - episodeCountBefore;
 
+                // Hand NEW episodes to the auto-download policy
+                if (!newEpisodeIds.isEmpty()) {
+                    autoDownloadPolicy.apply(newEpisodeIds);
+                }
+
                 return new RefreshResult(RefreshResult.Status.SUCCESS, newEpisodeCount);
 
             } catch (IOException e) {
@@ -597,11 +800,13 @@ public class SubscriptionsFragment extends Fragment {
         int totalNewEpisodes;
         int successCount;
         int failCount;
+        int redirectRoundTripsSaved;
 
-        RefreshAllResult(int totalNewEpisodes, int successCount, int failCount) {
+        RefreshAllResult(int totalNewEpisodes, int successCount, int failCount, int redirectRoundTripsSaved) {
             this.totalNewEpisodes = totalNewEpisodes;
             this.successCount = successCount;
             this.failCount = failCount;
+            this.redirectRoundTripsSaved = redirectRoundTripsSaved;
         }
     }
 
@@ -613,21 +818,29 @@ public class SubscriptionsFragment extends Fragment {
         private final WeakReference<SubscriptionsFragment> fragmentRef;
         private final PodcastRepository podcastRepository;
         private final EpisodeRepository episodeRepository;
+        private final ChapterRepository chapterRepository;
+        private final AutoDownloadPolicy autoDownloadPolicy;
 
-        RefreshAllPodcastsTask(SubscriptionsFragment fragment, PodcastRepository podcastRepository, EpisodeRepository episodeRepository) {
+        RefreshAllPodcastsTask(SubscriptionsFragment fragment, PodcastRepository podcastRepository,
+                               EpisodeRepository episodeRepository, ChapterRepository chapterRepository,
+                               AutoDownloadPolicy autoDownloadPolicy) {
             this.fragmentRef = new WeakReference<>(fragment);
             this.podcastRepository = podcastRepository;
             this.episodeRepository = episodeRepository;
+            this.chapterRepository = chapterRepository;
+            this.autoDownloadPolicy = autoDownloadPolicy;
         }
 
         @Override
         protected RefreshAllResult doInBackground(Void... voids) {
             // Get all podcasts
             List<Podcast> podcasts = podcastRepository.getAllPodcasts();
+            podcastRepository.takeRedirectRoundTripsSaved();
 
             int totalNewEpisodes = 0;
             int successCount = 0;
             int failCount = 0;
+            List<Long> newEpisodeIds = new ArrayList<>();
 
             // Iterate through each podcast
             for (Podcast podcast : podcasts) {
@@ -636,7 +849,7 @@ public class SubscriptionsFragment extends Fragment {
                     int episodeCountBefore = episodeRepository.getEpisodeCountByPodcast(podcast.getId());
 
                     // Use PodcastRepository.refreshPodcast() which has timestamp filtering
-                    podcastRepository.refreshPodcast(podcast.getId());
+                    newEpisodeIds.addAll(podcastRepository.refreshPodcast(podcast.getId()));
 
                     // Get episode count after refresh to calculate new episodes
                     int episodeCountAfter = episodeRepository.getEpisodeCountByPodcast(podcast.getId());
@@ -664,7 +877,18 @@ public class SubscriptionsFragment extends Fragment {
                 }
             }
 
-            return new RefreshAllResult(totalNewEpisodes, successCount, failCount);
+            // Feed every NEW episode into the download pipeline as one batch
+            if (!newEpisodeIds.isEmpty()) {
+                autoDownloadPolicy.apply(newEpisodeIds);
+            }
+
+            // Chapters files are small; fetch them now for episodes likely to be played soon
+            chapterRepository.fetchPendingChapters(CHAPTER_PREFETCH_LIMIT);
+
+            int roundTripsSaved = podcastRepository.takeRedirectRoundTripsSaved();
+            Log.d(TAG, "Refresh all skipped " + roundTripsSaved + " feed redirect round trips");
+
+            return new RefreshAllResult(totalNewEpisodes, successCount, failCount, roundTripsSaved);
         }
 
         @Override
@@ -713,6 +937,10 @@ public class SubscriptionsFragment extends Fragment {
                 result.successCount,
                 totalPodcasts
             );
+            if (result.redirectRoundTripsSaved > 0) {
+                message += "\n" + fragment.getString(R.string.toast_refresh_all_redirects_saved,
+                    result.redirectRoundTripsSaved);
+            }
             Toast.makeText(fragment.getContext(), message, Toast.LENGTH_LONG).show();
 
             // Refresh the podcast list to update episode counts
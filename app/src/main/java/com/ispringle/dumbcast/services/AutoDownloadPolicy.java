@@ -0,0 +1,447 @@
+package com.ispringle.dumbcast.services;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import android.os.Environment;
+import android.util.Log;
+
+import com.ispringle.dumbcast.data.DatabaseHelper;
+import com.ispringle.dumbcast.data.DatabaseManager;
+import com.ispringle.dumbcast.data.Episode;
+import com.ispringle.dumbcast.data.EpisodeRepository;
+import com.ispringle.dumbcast.data.EpisodeState;
+import com.ispringle.dumbcast.data.Podcast;
+import com.ispringle.dumbcast.data.PodcastRepository;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides which NEW episodes found by a refresh get downloaded automatically.
+ *
+ * Rules are stored per podcast (see {@link Podcast#isAutoDownload()}):
+ * - keep latest N: never hold more than N downloaded, unplayed episodes for the podcast
+ * - unmetered only: the download waits for Wi-Fi (enforced by DownloadManager)
+ * - charging only: the download waits for a charger (enforced by DownloadManager)
+ *
+ * On top of the per-podcast rules, a global storage budget caps the space that
+ * downloads may occupy. Downloads already queued in DownloadManager count against
+ * both, since they may wait hours for Wi-Fi or a charger before they land on disk.
+ * {@link #evaluate(List, Conditions)} takes the device conditions as input and
+ * doesn't touch the network, so a dry run reports exactly what a real run would queue.
+ */
+public class AutoDownloadPolicy {
+
+    private static final String TAG = "AutoDownloadPolicy";
+    private static final String PREFS_NAME = "auto_download_prefs";
+    private static final String KEY_STORAGE_BUDGET_MB = "storage_budget_mb";
+    private static final int DEFAULT_STORAGE_BUDGET_MB = 2048;
+
+    // Used when a feed doesn't declare an enclosure length (roughly an hour at 128 kbps)
+    private static final long UNKNOWN_SIZE_ESTIMATE_BYTES = 60L * 1024 * 1024;
+
+    private final Context context;
+    private final EpisodeRepository episodeRepository;
+    private final PodcastRepository podcastRepository;
+
+    public AutoDownloadPolicy(Context context) {
+        this(context, DatabaseManager.getInstance(context));
+    }
+
+    public AutoDownloadPolicy(Context context, DatabaseHelper dbHelper) {
+        this.context = context.getApplicationContext();
+        this.episodeRepository = new EpisodeRepository(dbHelper);
+        this.podcastRepository = new PodcastRepository(dbHelper);
+    }
+
+    /**
+     * Snapshot of the device state the policy is evaluated against.
+     */
+    public static class Conditions {
+        public final boolean unmetered;
+        public final boolean charging;
+        public final long usedBytes;
+        public final long freeBytes;
+        public final long budgetBytes;
+
+        public Conditions(boolean unmetered, boolean charging, long usedBytes, long freeBytes, long budgetBytes) {
+            this.unmetered = unmetered;
+            this.charging = charging;
+            this.usedBytes = usedBytes;
+            this.freeBytes = freeBytes;
+            this.budgetBytes = budgetBytes;
+        }
+    }
+
+    /**
+     * The outcome for a single candidate episode.
+     */
+    public static class Decision {
+        public final Episode episode;
+        public final Podcast podcast;
+        public final boolean download;
+        public final String reason;
+
+        Decision(Episode episode, Podcast podcast, boolean download, String reason) {
+            this.episode = episode;
+            this.podcast = podcast;
+            this.download = download;
+            this.reason = reason;
+        }
+    }
+
+    /**
+     * The full set of decisions for one batch of candidates.
+     */
+    public static class Plan {
+        public final Conditions conditions;
+        public final List<Decision> decisions;
+
+        Plan(Conditions conditions, List<Decision> decisions) {
+            this.conditions = conditions;
+            this.decisions = decisions;
+        }
+
+        /**
+         * @return IDs of the episodes that should be queued, in decision order
+         */
+        public long[] getEpisodeIdsToDownload() {
+            List<Long> ids = new ArrayList<>();
+            for (Decision decision : decisions) {
+                if (decision.download) {
+                    ids.add(decision.episode.getId());
+                }
+            }
+            long[] result = new long[ids.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = ids.get(i);
+            }
+            return result;
+        }
+
+        /**
+         * @return Human-readable summary, one line per candidate episode
+         */
+        public String toReport() {
+            StringBuilder report = new StringBuilder();
+            report.append(conditions.unmetered ? "Network: unmetered" : "Network: metered or offline");
+            report.append(conditions.charging ? ", charging" : ", on battery");
+            report.append("\nStorage: ").append(formatMb(conditions.usedBytes))
+                .append(" of ").append(formatMb(conditions.budgetBytes)).append(" used\n");
+
+            if (decisions.isEmpty()) {
+                report.append("\nNo NEW episodes to consider.");
+                return report.toString();
+            }
+
+            for (Decision decision : decisions) {
+                report.append('\n')
+                    .append(decision.download ? "+ " : "- ")
+                    .append(decision.episode.getTitle())
+                    .append(" (").append(decision.reason).append(')');
+            }
+            return report.toString();
+        }
+    }
+
+    /**
+     * Evaluate and queue downloads for the given NEW episodes in a single batch.
+     * Must be called from a background thread.
+     * @param newEpisodeIds Episode IDs returned by a refresh
+     * @return The plan that was executed
+     */
+    public Plan apply(List<Long> newEpisodeIds) {
+        Plan plan = evaluate(newEpisodeIds, readDeviceConditions());
+        long[] ids = plan.getEpisodeIdsToDownload();
+        if (ids.length > 0) {
+            DownloadService.startAutoDownloads(context, ids);
+        }
+        Log.d(TAG, "Auto-download queued " + ids.length + " of " + plan.decisions.size() + " candidates");
+        return plan;
+    }
+
+    /**
+     * Choose which upcoming queue entries to download ahead of time.
+     * Takes episodes in queue order and stops at the first one that would
+     * exceed the storage budget or free space, so the cap is never overshot.
+     * Walks the downloads directory, so call from a background thread.
+     * @param upcoming Queued episodes after the one playing, in play order
+     * @return IDs of the episodes to download
+     */
+    public long[] selectQueuePrefetch(List<Episode> upcoming) {
+        Conditions conditions = readDeviceConditions();
+        InFlight inFlight = readInFlight();
+        long projectedBytes = conditions.usedBytes + inFlight.bytes;
+        long projectedFree = conditions.freeBytes - inFlight.bytes;
+        List<Long> ids = new ArrayList<>();
+
+        for (Episode episode : upcoming) {
+            if (episode.isDownloaded() || episode.getEnclosureUrl() == null || episode.getEnclosureUrl().isEmpty() ||
+                    inFlight.episodeIds.contains(episode.getId())) {
+                continue;
+            }
+            long size = estimateSize(episode);
+            if (projectedBytes + size > conditions.budgetBytes || size > projectedFree) {
+                Log.d(TAG, "Queue prefetch stopped at storage cap before: " + episode.getTitle());
+                break;
+            }
+            projectedBytes += size;
+            projectedFree -= size;
+            ids.add(episode.getId());
+        }
+
+        long[] result = new long[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Report what would be downloaded for a podcast's current NEW episodes, without queuing anything.
+     * Must be called from a background thread.
+     * @param podcastId The podcast to preview
+     * @return The plan a real run would execute
+     */
+    public Plan dryRunForPodcast(long podcastId) {
+        List<Long> ids = new ArrayList<>();
+        for (Episode episode : episodeRepository.getEpisodesByPodcastAndState(podcastId, EpisodeState.NEW)) {
+            ids.add(episode.getId());
+        }
+        Plan plan = evaluate(ids, readDeviceConditions());
+        Log.d(TAG, "Dry run for podcast " + podcastId + ":\n" + plan.toReport());
+        return plan;
+    }
+
+    /**
+     * Decide which of the candidate episodes should be downloaded.
+     * Doesn't touch the network or queue anything, so it can be used for dry runs
+     * and exercised with synthetic conditions.
+     * @param episodeIds Candidate episode IDs
+     * @param conditions Device conditions to evaluate against
+     * @return The resulting plan
+     */
+    public Plan evaluate(List<Long> episodeIds, Conditions conditions) {
+        // Group candidates by podcast so "keep latest N" is applied per feed
+        Map<Long, List<Episode>> byPodcast = new LinkedHashMap<>();
+        for (Long id : episodeIds) {
+            Episode episode = episodeRepository.getEpisodeById(id);
+            if (episode == null) {
+                continue;
+            }
+            List<Episode> group = byPodcast.get(episode.getPodcastId());
+            if (group == null) {
+                group = new ArrayList<>();
+                byPodcast.put(episode.getPodcastId(), group);
+            }
+            group.add(episode);
+        }
+
+        List<Decision> decisions = new ArrayList<>();
+        InFlight inFlight = readInFlight();
+        long projectedBytes = conditions.usedBytes + inFlight.bytes;
+        long projectedFree = conditions.freeBytes - inFlight.bytes;
+        Map<Long, Podcast> podcastCache = new HashMap<>();
+
+        for (Map.Entry<Long, List<Episode>> entry : byPodcast.entrySet()) {
+            Podcast podcast = podcastCache.get(entry.getKey());
+            if (podcast == null) {
+                podcast = podcastRepository.getPodcastById(entry.getKey());
+                if (podcast == null) {
+                    continue;
+                }
+                podcastCache.put(podcast.getId(), podcast);
+            }
+
+            List<Episode> candidates = entry.getValue();
+            Collections.sort(candidates, new Comparator<Episode>() {
+                @Override
+                public int compare(Episode a, Episode b) {
+                    return Long.compare(b.getPublishedAt(), a.getPublishedAt());
+                }
+            });
+
+            Integer queued = inFlight.countByPodcast.get(podcast.getId());
+            int slots = podcast.getAutoDownloadKeepLatest() -
+                episodeRepository.getDownloadedUnplayedCountByPodcast(podcast.getId()) -
+                (queued != null ? queued : 0);
+
+            for (Episode episode : candidates) {
+                if (!podcast.isAutoDownload()) {
+                    decisions.add(new Decision(episode, podcast, false, "auto-download off"));
+                    continue;
+                }
+                if (episode.isDownloaded()) {
+                    decisions.add(new Decision(episode, podcast, false, "already downloaded"));
+                    continue;
+                }
+                if (inFlight.episodeIds.contains(episode.getId())) {
+                    decisions.add(new Decision(episode, podcast, false, "already queued"));
+                    continue;
+                }
+                if (episode.getEnclosureUrl() == null || episode.getEnclosureUrl().isEmpty()) {
+                    decisions.add(new Decision(episode, podcast, false, "no audio enclosure"));
+                    continue;
+                }
+                if (slots <= 0) {
+                    decisions.add(new Decision(episode, podcast, false,
+                        "keeping latest " + podcast.getAutoDownloadKeepLatest()));
+                    continue;
+                }
+
+                long size = estimateSize(episode);
+                if (projectedBytes + size > conditions.budgetBytes) {
+                    decisions.add(new Decision(episode, podcast, false, "over storage budget"));
+                    continue;
+                }
+                if (size > projectedFree) {
+                    decisions.add(new Decision(episode, podcast, false, "not enough free space"));
+                    continue;
+                }
+
+                projectedBytes += size;
+                projectedFree -= size;
+                slots--;
+                decisions.add(new Decision(episode, podcast, true, describeWait(podcast, conditions)));
+            }
+        }
+
+        return new Plan(conditions, decisions);
+    }
+
+    /**
+     * Downloads queued in DownloadManager that haven't finished yet. Neither the
+     * downloaded-unplayed count nor the size of the downloads directory includes them.
+     */
+    private static class InFlight {
+        final Set<Long> episodeIds;
+        final Map<Long, Integer> countByPodcast = new HashMap<>();
+        long bytes = 0;
+
+        InFlight(Set<Long> episodeIds) {
+            this.episodeIds = episodeIds;
+        }
+    }
+
+    /**
+     * Look up the episodes behind the persisted download mapping.
+     * @return Per-podcast counts and expected size of the downloads still in flight
+     */
+    private InFlight readInFlight() {
+        InFlight inFlight = new InFlight(DownloadService.getQueuedEpisodeIds(context));
+        for (Long episodeId : inFlight.episodeIds) {
+            Episode episode = episodeRepository.getEpisodeById(episodeId);
+            if (episode == null || episode.isDownloaded()) {
+                // Already on disk, so counted with the rest of the downloads
+                continue;
+            }
+            inFlight.bytes += estimateSize(episode);
+            Integer count = inFlight.countByPodcast.get(episode.getPodcastId());
+            inFlight.countByPodcast.put(episode.getPodcastId(), count != null ? count + 1 : 1);
+        }
+        return inFlight;
+    }
+
+    private static long estimateSize(Episode episode) {
+        return episode.getEnclosureLength() > 0 ? episode.getEnclosureLength() : UNKNOWN_SIZE_ESTIMATE_BYTES;
+    }
+
+    /**
+     * Describe when a queued download will actually run.
+     * The constraints themselves are handed to DownloadManager, so a download queued
+     * on cellular simply waits for Wi-Fi instead of being dropped.
+     */
+    private static String describeWait(Podcast podcast, Conditions conditions) {
+        boolean waitForWifi = podcast.isAutoDownloadUnmeteredOnly() && !conditions.unmetered;
+        boolean waitForCharger = podcast.isAutoDownloadChargingOnly() && !conditions.charging;
+        if (waitForWifi && waitForCharger) {
+            return "queued, waits for Wi-Fi and charger";
+        } else if (waitForWifi) {
+            return "queued, waits for Wi-Fi";
+        } else if (waitForCharger) {
+            return "queued, waits for charger";
+        }
+        return "downloads now";
+    }
+
+    /**
+     * Read the current network, charging and storage state.
+     * Walks the downloads directory, so call from a background thread.
+     * @return Current device conditions
+     */
+    public Conditions readDeviceConditions() {
+        boolean unmetered = false;
+        ConnectivityManager connectivityManager =
+            (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager != null) {
+            NetworkInfo activeNetwork = connectivityManager.getActiveNetworkInfo();
+            unmetered = activeNetwork != null && activeNetwork.isConnected() &&
+                !connectivityManager.isActiveNetworkMetered();
+        }
+
+        boolean charging = false;
+        Intent batteryStatus = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (batteryStatus != null) {
+            int status = batteryStatus.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+            charging = status == BatteryManager.BATTERY_STATUS_CHARGING ||
+                status == BatteryManager.BATTERY_STATUS_FULL;
+        }
+
+        long usedBytes = 0;
+        long freeBytes = 0;
+        File podcastsDir = context.getExternalFilesDir(Environment.DIRECTORY_PODCASTS);
+        if (podcastsDir != null) {
+            usedBytes = directorySize(podcastsDir);
+            freeBytes = podcastsDir.getUsableSpace();
+        }
+
+        return new Conditions(unmetered, charging, usedBytes, freeBytes, getStorageBudgetBytes());
+    }
+
+    /**
+     * @return The maximum number of bytes downloads may occupy
+     */
+    public long getStorageBudgetBytes() {
+        return getPrefs().getInt(KEY_STORAGE_BUDGET_MB, DEFAULT_STORAGE_BUDGET_MB) * 1024L * 1024L;
+    }
+
+    /**
+     * Set the maximum space downloads may occupy.
+     * @param budgetMb Budget in megabytes
+     */
+    public void setStorageBudgetMb(int budgetMb) {
+        getPrefs().edit().putInt(KEY_STORAGE_BUDGET_MB, Math.max(0, budgetMb)).apply();
+    }
+
+    private SharedPreferences getPrefs() {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static long directorySize(File dir) {
+        long size = 0;
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        for (File file : files) {
+            size += file.isDirectory() ? directorySize(file) : file.length();
+        }
+        return size;
+    }
+
+    private static String formatMb(long bytes) {
+        return (bytes / (1024 * 1024)) + " MB";
+    }
+}
@@ -0,0 +1,98 @@
+package com.ispringle.dumbcast.services;
+
+import com.ispringle.dumbcast.data.Chapter;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable, sorted chapter start times for the episode being played.
+ *
+ * Lookups are a binary search over a primitive array, so finding the chapter
+ * for the current position (once a second for the UI) or the next/previous
+ * chapter boundary costs O(log n) with no allocation.
+ */
+public class ChapterIndex {
+
+    public static final ChapterIndex EMPTY = new ChapterIndex(new long[0], new String[0]);
+
+    // Pressing "previous" this soon after a chapter starts goes to the chapter before it,
+    // like a CD player; later than this it restarts the current chapter
+    private static final long PREVIOUS_GRACE_MS = 3000;
+
+    private final long[] startMs;
+    private final String[] titles;
+
+    private ChapterIndex(long[] startMs, String[] titles) {
+        this.startMs = startMs;
+        this.titles = titles;
+    }
+
+    /**
+     * @param chapters Chapters sorted by start time
+     * @return An index over them, or {@link #EMPTY}
+     */
+    public static ChapterIndex of(List<Chapter> chapters) {
+        if (chapters == null || chapters.isEmpty()) {
+            return EMPTY;
+        }
+        long[] starts = new long[chapters.size()];
+        String[] titles = new String[chapters.size()];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = chapters.get(i).getStartMs();
+            titles[i] = chapters.get(i).getTitle();
+        }
+        return new ChapterIndex(starts, titles);
+    }
+
+    public int size() {
+        return startMs.length;
+    }
+
+    public boolean isEmpty() {
+        return startMs.length == 0;
+    }
+
+    public long getStartMs(int index) {
+        return startMs[index];
+    }
+
+    public String getTitle(int index) {
+        return titles[index];
+    }
+
+    /**
+     * @param positionMs Playback position
+     * @return Index of the chapter containing the position, or -1 if it is before the first chapter
+     */
+    public int indexAt(long positionMs) {
+        int found = Arrays.binarySearch(startMs, positionMs);
+        // Not found: binarySearch returns -(insertion point) - 1; the chapter is the one before that point
+        return found >= 0 ? found : -found - 2;
+    }
+
+    /**
+     * @param positionMs Playback position
+     * @return Start of the next chapter, or -1 if the position is in the last chapter
+     */
+    public long nextStart(long positionMs) {
+        int next = indexAt(positionMs) + 1;
+        return next < startMs.length ? startMs[next] : -1;
+    }
+
+    /**
+     * @param positionMs Playback position
+     * @return Start of the current chapter, or of the previous one if the current
+     *         chapter has only just begun; -1 if there is nothing earlier
+     */
+    public long previousStart(long positionMs) {
+        int current = indexAt(positionMs);
+        if (current < 0) {
+            return -1;
+        }
+        if (positionMs - startMs[current] < PREVIOUS_GRACE_MS) {
+            return current > 0 ? startMs[current - 1] : 0;
+        }
+        return startMs[current];
+    }
+}
@@ -0,0 +1,127 @@
+package com.ispringle.dumbcast.services;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Observable stream of in-progress download state, keyed by episode ID.
+ *
+ * DownloadService samples DownloadManager on its own background thread at a
+ * bounded rate and publishes here. Listeners are always called on the main
+ * thread, so UI code never touches a DownloadManager cursor.
+ */
+public class DownloadProgressTracker {
+
+    private static DownloadProgressTracker instance;
+
+    private final Map<Long, Progress> latest = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new ArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * A single progress sample for one episode.
+     */
+    public static class Progress {
+        public final long episodeId;
+        public final long bytesDownloaded;
+        public final long totalBytes; // -1 if the server didn't send a length
+        public final long bytesPerSecond;
+
+        public Progress(long episodeId, long bytesDownloaded, long totalBytes, long bytesPerSecond) {
+            this.episodeId = episodeId;
+            this.bytesDownloaded = bytesDownloaded;
+            this.totalBytes = totalBytes;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        /**
+         * @return Completion percentage (0-100), or -1 if the total size is unknown
+         */
+        public int getPercent() {
+            if (totalBytes <= 0) {
+                return -1;
+            }
+            return (int) Math.min(100, bytesDownloaded * 100 / totalBytes);
+        }
+    }
+
+    /**
+     * Receives progress updates on the main thread.
+     */
+    public interface Listener {
+        void onDownloadProgress(Progress progress);
+        void onDownloadFinished(long episodeId);
+    }
+
+    private DownloadProgressTracker() {
+    }
+
+    public static synchronized DownloadProgressTracker getInstance() {
+        if (instance == null) {
+            instance = new DownloadProgressTracker();
+        }
+        return instance;
+    }
+
+    /**
+     * Register a listener. Must be called on the main thread.
+     */
+    public void addListener(Listener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * Unregister a listener. Must be called on the main thread.
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Get the latest sample for an episode, for binding rows that scroll into view.
+     * @param episodeId The episode ID
+     * @return The most recent progress, or null if the episode isn't downloading
+     */
+    public Progress getProgress(long episodeId) {
+        return latest.get(episodeId);
+    }
+
+    /**
+     * Publish a new sample. Safe to call from any thread.
+     */
+    void publish(final Progress progress) {
+        latest.put(progress.episodeId, progress);
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Listener listener : new ArrayList<>(listeners)) {
+                    listener.onDownloadProgress(progress);
+                }
+            }
+        });
+    }
+
+    /**
+     * Mark an episode's download as finished (successfully or not). Safe to call from any thread.
+     */
+    void finish(final long episodeId) {
+        if (latest.remove(episodeId) == null) {
+            return;
+        }
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Listener listener : new ArrayList<>(listeners)) {
+                    listener.onDownloadFinished(episodeId);
+                }
+            }
+        });
+    }
+}
@@ -9,12 +9,14 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.SharedPreferences;
-import android.support.v4.content.LocalBroadcastManager;
 import android.database.Cursor;
+import android.net.ConnectivityManager;
+import android.net.Network;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Environment;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
 import android.util.Log;
 
@@ -23,25 +25,27 @@ import android.support.v4.app.NotificationCompat;
 import com.ispringle.dumbcast.R;
 import com.ispringle.dumbcast.data.DatabaseHelper;
 import com.ispringle.dumbcast.data.DatabaseManager;
+import com.ispringle.dumbcast.data.DownloadStatsRepository;
 import com.ispringle.dumbcast.data.Episode;
 import com.ispringle.dumbcast.data.EpisodeRepository;
 import com.ispringle.dumbcast.data.EpisodeState;
 import com.ispringle.dumbcast.data.Podcast;
 import com.ispringle.dumbcast.data.PodcastRepository;
+import com.ispringle.dumbcast.utils.MemoryBudget;
+import com.ispringle.dumbcast.utils.RedirectCache;
 import com.ispringle.dumbcast.utils.RssFeed;
-import com.ispringle.dumbcast.utils.RssParser;
 
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.lang.ref.WeakReference;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service for managing episode downloads using Android's DownloadManager.
@@ -54,35 +58,73 @@ public class DownloadService extends Service {
     private static final String PREFS_NAME = "download_prefs";
     private static final String CHANNEL_ID = "download_channel";
 
-    // Broadcast action for episode state changes
-    public static final String ACTION_EPISODE_STATE_CHANGED = "com.ispringle.dumbcast.EPISODE_STATE_CHANGED";
+    // DownloadManager is sampled this often while a transfer is running. Pending and
+    // paused downloads (just enqueued, or waiting for Wi-Fi or a charger) are looked
+    // at less often until they start; the network and charger callbacks below look
+    // again straight away when that may have changed.
+    private static final long PROGRESS_POLL_INTERVAL_MS = 500;
+    private static final long WAITING_POLL_INTERVAL_MS = 5000;
 
     private DownloadManager downloadManager;
     private EpisodeRepository episodeRepository;
     private PodcastRepository podcastRepository;
     private SharedPreferences prefs;
     private DownloadCompleteReceiver downloadCompleteReceiver;
+    private DownloadStatsRepository downloadStatsRepository;
 
     // Map to track download ID -> episode ID mapping
     private Map<Long, Long> downloadEpisodeMap;
 
+    // Progress sampling runs on its own thread so nothing polls DownloadManager on the UI thread
+    private HandlerThread progressThread;
+    private Handler progressHandler;
+    private final Map<Long, long[]> lastProgressSamples = new HashMap<>(); // downloadId -> {bytes, timeMs, bytesPerSecond}
+
+    // A queued download may start when a network comes up or the charger goes in
+    private ConnectivityManager connectivityManager;
+    private final ConnectivityManager.NetworkCallback networkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onAvailable(Network network) {
+            startProgressPolling();
+        }
+    };
+    private final BroadcastReceiver powerConnectedReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            startProgressPolling();
+        }
+    };
+
     @Override
     public void onCreate() {
         super.onCreate();
+        // Feed item limits come from the memory budget
+        MemoryBudget.getInstance(this);
 
         try {
             downloadManager = (DownloadManager) getSystemService(DOWNLOAD_SERVICE);
             DatabaseHelper dbHelper = DatabaseManager.getInstance(this);
             episodeRepository = new EpisodeRepository(dbHelper);
             podcastRepository = new PodcastRepository(dbHelper);
+            downloadStatsRepository = new DownloadStatsRepository(dbHelper);
             prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-            downloadEpisodeMap = new HashMap<>();
+            downloadEpisodeMap = new ConcurrentHashMap<>();
+
+            progressThread = new HandlerThread("DownloadProgress");
+            progressThread.start();
+            progressHandler = new Handler(progressThread.getLooper());
 
             // Register broadcast receiver for download completion
             downloadCompleteReceiver = new DownloadCompleteReceiver(this);
             IntentFilter filter = new IntentFilter(DownloadManager.ACTION_DOWNLOAD_COMPLETE);
             registerReceiver(downloadCompleteReceiver, filter);
 
+            registerReceiver(powerConnectedReceiver, new IntentFilter(Intent.ACTION_POWER_CONNECTED));
+            connectivityManager = (ConnectivityManager) getSystemService(CONNECTIVITY_SERVICE);
+            if (connectivityManager != null) {
+                connectivityManager.registerDefaultNetworkCallback(networkCallback);
+            }
+
             // Create notification channel for download notifications
             createNotificationChannel();
 
@@ -128,6 +170,17 @@ public class DownloadService extends Service {
                         }
                     }).start();
                 }
+            } else if ("ACTION_DOWNLOAD_EPISODES".equals(action)) {
+                final long[] episodeIds = intent.getLongArrayExtra("episode_ids");
+                if (episodeIds != null && episodeIds.length > 0) {
+                    // Queue the whole batch from one background thread
+                    new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            queueAutoDownloads(episodeIds);
+                        }
+                    }).start();
+                }
             } else if ("ACTION_CANCEL_DOWNLOAD".equals(action)) {
                 long episodeId = intent.getLongExtra("episode_id", -1);
                 if (episodeId != -1) {
@@ -149,6 +202,25 @@ public class DownloadService extends Service {
     public void onDestroy() {
         super.onDestroy();
 
+        if (progressThread != null) {
+            progressHandler.removeCallbacks(progressPoller);
+            progressThread.quitSafely();
+            progressThread = null;
+        }
+
+        if (connectivityManager != null) {
+            try {
+                connectivityManager.unregisterNetworkCallback(networkCallback);
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Network callback already unregistered", e);
+            }
+        }
+        try {
+            unregisterReceiver(powerConnectedReceiver);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Power receiver already unregistered", e);
+        }
+
         // Unregister broadcast receiver safely
         if (downloadCompleteReceiver != null) {
             try {
@@ -170,6 +242,19 @@ public class DownloadService extends Service {
      * @param podcastName The name of the podcast (for organizing files)
      */
     public void downloadEpisode(Episode episode, String podcastName) {
+        downloadEpisode(episode, podcastName, false, false);
+    }
+
+    /**
+     * Queue an episode for download, letting DownloadManager hold it until the
+     * network and charging constraints are met.
+     *
+     * @param episode The episode to download
+     * @param podcastName The name of the podcast (for organizing files)
+     * @param unmeteredOnly Only transfer over an unmetered network
+     * @param chargingOnly Only transfer while the device is charging
+     */
+    public void downloadEpisode(Episode episode, String podcastName, boolean unmeteredOnly, boolean chargingOnly) {
         if (episode.isDownloaded()) {
             Log.d(TAG, "Episode already downloaded: " + episode.getTitle());
             return;
@@ -186,48 +271,37 @@ public class DownloadService extends Service {
             // Resolve redirects manually because:
             // 1. DownloadManager doesn't handle HTTP->HTTPS redirects
             // 2. DownloadManager has a low redirect limit (~5) but podcast analytics chains can be longer
+            // The chain is shared with streaming through RedirectCache, so it's usually already known
             Log.d(TAG, "Resolving URL: " + enclosureUrl);
-            String finalUrl = resolveRedirects(enclosureUrl, 15); // Allow up to 15 redirects
+            String finalUrl = RedirectCache.getInstance().resolve(enclosureUrl);
             Log.d(TAG, "Final URL: " + finalUrl);
 
-            // Extract file extension from URL
-            String fileExtension = getFileExtension(finalUrl);
-
-            // Sanitize names for file system
-            String sanitizedPodcastName = sanitizeFileName(podcastName);
-            String sanitizedEpisodeName = sanitizeFileName(episode.getTitle());
-
-            // Build destination path: Podcasts/{podcast_name}/{episode_name}.{ext}
-            File podcastDir = new File(
-                getExternalFilesDir(Environment.DIRECTORY_PODCASTS),
-                sanitizedPodcastName
-            );
-
-            // Create podcast directory if it doesn't exist
-            if (!podcastDir.exists() && !podcastDir.mkdirs()) {
-                Log.e(TAG, "Failed to create podcast directory: " + podcastDir.getAbsolutePath());
+            File destinationFile = getDownloadFile(this, podcastName, episode.getTitle(), finalUrl);
+            if (destinationFile == null) {
                 showErrorNotification("Download failed", "Could not create directory");
                 return;
             }
 
-            String fileName = sanitizedEpisodeName + "." + fileExtension;
-            File destinationFile = new File(podcastDir, fileName);
-
             // Configure download request
             DownloadManager.Request request = new DownloadManager.Request(Uri.parse(finalUrl))
                 .setTitle(episode.getTitle())
                 .setDescription("Downloading from " + podcastName)
                 .setNotificationVisibility(DownloadManager.Request.VISIBILITY_VISIBLE)
                 .setDestinationUri(Uri.fromFile(destinationFile))
-                .setAllowedOverMetered(true)
+                .setAllowedOverMetered(!unmeteredOnly)
                 .setAllowedOverRoaming(false);
 
+            if (chargingOnly && Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                request.setRequiresCharging(true);
+            }
+
             // Queue the download
             long downloadId = downloadManager.enqueue(request);
 
             // Store mapping of download ID to episode ID
             downloadEpisodeMap.put(downloadId, episode.getId());
             saveDownloadMapping(downloadId, episode.getId());
+            startProgressPolling();
 
             Log.d(TAG, "Queued download for episode: " + episode.getTitle() +
                   " (Download ID: " + downloadId + ", Path: " + destinationFile.getAbsolutePath() + ")");
@@ -238,6 +312,44 @@ public class DownloadService extends Service {
         }
     }
 
+    /**
+     * Queue a batch of episodes chosen by {@link AutoDownloadPolicy}.
+     * Each download carries its podcast's network and charging constraints.
+     *
+     * @param episodeIds The IDs of the episodes to download
+     */
+    private void queueAutoDownloads(long[] episodeIds) {
+        Map<Long, Podcast> podcastCache = new HashMap<>();
+        int queued = 0;
+        for (long episodeId : episodeIds) {
+            if (isDownloadQueued(episodeId)) {
+                // Queue prefetch asks again every time playback starts
+                continue;
+            }
+
+            Episode episode = episodeRepository.getEpisodeById(episodeId);
+            if (episode == null) {
+                Log.e(TAG, "Episode not found with ID: " + episodeId);
+                continue;
+            }
+
+            Podcast podcast = podcastCache.get(episode.getPodcastId());
+            if (podcast == null) {
+                podcast = podcastRepository.getPodcastById(episode.getPodcastId());
+                if (podcast == null) {
+                    Log.e(TAG, "Podcast not found for episode ID: " + episodeId);
+                    continue;
+                }
+                podcastCache.put(podcast.getId(), podcast);
+            }
+
+            downloadEpisode(episode, podcast.getTitle(),
+                podcast.isAutoDownloadUnmeteredOnly(), podcast.isAutoDownloadChargingOnly());
+            queued++;
+        }
+        Log.d(TAG, "Queued " + queued + " auto-downloads");
+    }
+
     /**
      * Cancel an in-progress download for an episode.
      *
@@ -258,6 +370,7 @@ public class DownloadService extends Service {
             if (removed > 0) {
                 downloadEpisodeMap.remove(downloadId);
                 removeDownloadMapping(downloadId);
+                DownloadProgressTracker.getInstance().finish(episodeId);
                 Log.d(TAG, "Cancelled download for episode ID: " + episodeId);
             } else {
                 Log.w(TAG, "Failed to cancel download for episode ID: " + episodeId);
@@ -274,6 +387,9 @@ public class DownloadService extends Service {
      * @param downloadId The ID of the completed download
      */
     void handleDownloadComplete(long downloadId) {
+        // The next queued download may start now
+        startProgressPolling();
+
         // Get episode ID for this download
         Long episodeId = downloadEpisodeMap.get(downloadId);
         if (episodeId == null) {
@@ -327,6 +443,7 @@ public class DownloadService extends Service {
                         // Update database - mark as downloaded
                         long downloadedAt = System.currentTimeMillis();
                         int updated = episodeRepository.updateEpisodeDownload(episodeId, filePath, downloadedAt);
+                        recordTransferStats(downloadId, episodeId, cursor, file.length(), downloadedAt);
 
                         if (updated > 0) {
                             // Move episode to BACKLOG state (downloaded episodes go to backlog)
@@ -339,10 +456,6 @@ public class DownloadService extends Service {
 
                                 showSuccessNotification(episode.getTitle());
                                 Log.d(TAG, "Download completed successfully: " + episode.getTitle());
-
-                                // Broadcast episode state change to update MainActivity tabs
-                                Intent broadcast = new Intent(ACTION_EPISODE_STATE_CHANGED);
-                                LocalBroadcastManager.getInstance(this).sendBroadcast(broadcast);
                             }
                         } else {
                             Log.e(TAG, "Failed to update database for episode ID: " + episodeId);
@@ -368,6 +481,151 @@ public class DownloadService extends Service {
         // Clean up mapping
         downloadEpisodeMap.remove(downloadId);
         removeDownloadMapping(downloadId);
+        DownloadProgressTracker.getInstance().finish(episodeId);
+    }
+
+    /**
+     * Record throughput for a completed transfer.
+     * Duration is measured from enqueue, so it includes time spent waiting in DownloadManager's queue.
+     *
+     * @param downloadId The DownloadManager ID
+     * @param episodeId The downloaded episode
+     * @param cursor DownloadManager cursor positioned on the download
+     * @param bytes Size of the downloaded file
+     * @param completedAt Completion timestamp
+     */
+    private void recordTransferStats(long downloadId, long episodeId, Cursor cursor, long bytes, long completedAt) {
+        long startedAt = prefs.getLong("download_started_" + downloadId, 0);
+        if (startedAt <= 0) {
+            // Enqueued before stats were tracked, or mapping lost
+            return;
+        }
+
+        String host = null;
+        int uriIndex = cursor.getColumnIndex(DownloadManager.COLUMN_URI);
+        if (uriIndex >= 0 && cursor.getString(uriIndex) != null) {
+            host = Uri.parse(cursor.getString(uriIndex)).getHost();
+        }
+
+        downloadStatsRepository.recordTransfer(episodeId, host, bytes, completedAt - startedAt);
+    }
+
+    /**
+     * Sample DownloadManager now, and keep sampling while a download is running or waiting to run.
+     */
+    private void startProgressPolling() {
+        if (progressHandler != null) {
+            progressHandler.removeCallbacks(progressPoller);
+            progressHandler.post(progressPoller);
+        }
+    }
+
+    /**
+     * Samples byte counts for all tracked downloads, derives a smoothed speed and
+     * publishes to {@link DownloadProgressTracker}. Reschedules itself quickly while a
+     * download is running and slowly while one is pending or paused, so a download
+     * that was just enqueued is picked up once DownloadManager starts it.
+     */
+    private final Runnable progressPoller = new Runnable() {
+        @Override
+        public void run() {
+            if (downloadEpisodeMap.isEmpty()) {
+                lastProgressSamples.clear();
+                return;
+            }
+
+            long[] ids = new long[downloadEpisodeMap.size()];
+            int i = 0;
+            for (Long downloadId : downloadEpisodeMap.keySet()) {
+                if (i < ids.length) {
+                    ids[i++] = downloadId;
+                }
+            }
+
+            DownloadManager.Query query = new DownloadManager.Query();
+            query.setFilterById(ids);
+            query.setFilterByStatus(DownloadManager.STATUS_RUNNING |
+                DownloadManager.STATUS_PENDING | DownloadManager.STATUS_PAUSED);
+
+            long now = System.currentTimeMillis();
+            boolean running = false;
+            boolean waiting = false;
+            Cursor cursor = null;
+            try {
+                cursor = downloadManager.query(query);
+                if (cursor != null) {
+                    int idIndex = cursor.getColumnIndex(DownloadManager.COLUMN_ID);
+                    int statusIndex = cursor.getColumnIndex(DownloadManager.COLUMN_STATUS);
+                    int bytesIndex = cursor.getColumnIndex(DownloadManager.COLUMN_BYTES_DOWNLOADED_SO_FAR);
+                    int totalIndex = cursor.getColumnIndex(DownloadManager.COLUMN_TOTAL_SIZE_BYTES);
+
+                    while (cursor.moveToNext()) {
+                        long downloadId = cursor.getLong(idIndex);
+                        Long episodeId = downloadEpisodeMap.get(downloadId);
+                        if (episodeId == null) {
+                            continue;
+                        }
+
+                        if (cursor.getInt(statusIndex) == DownloadManager.STATUS_RUNNING) {
+                            running = true;
+                        } else {
+                            waiting = true;
+                        }
+                        long bytes = cursor.getLong(bytesIndex);
+                        long total = cursor.getLong(totalIndex);
+                        long speed = 0;
+
+                        long[] last = lastProgressSamples.get(downloadId);
+                        if (last != null && now > last[1]) {
+                            long instant = (bytes - last[0]) * 1000 / (now - last[1]);
+                            // Exponential smoothing so one slow sample doesn't make the number jump
+                            speed = last[2] == 0 ? instant : (last[2] * 3 + instant) / 4;
+                        }
+                        lastProgressSamples.put(downloadId, new long[]{bytes, now, speed});
+
+                        DownloadProgressTracker.getInstance().publish(
+                            new DownloadProgressTracker.Progress(episodeId, bytes, total, speed));
+                    }
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "Failed to sample download progress", e);
+            } finally {
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+
+            if (running) {
+                progressHandler.postDelayed(this, PROGRESS_POLL_INTERVAL_MS);
+            } else if (waiting) {
+                progressHandler.postDelayed(this, WAITING_POLL_INTERVAL_MS);
+            }
+        }
+    };
+
+    /**
+     * Build the destination for an episode file: Podcasts/{podcast_name}/{episode_name}.{ext}.
+     * Creates the podcast directory if needed. Shared with the streaming cache so a
+     * fully streamed episode ends up exactly where a download would have.
+     *
+     * @param context Context for locating external storage
+     * @param podcastName The name of the podcast
+     * @param episodeTitle The episode title
+     * @param url The (resolved) enclosure URL, used for the file extension
+     * @return The destination file, or null if the directory can't be created
+     */
+    public static File getDownloadFile(Context context, String podcastName, String episodeTitle, String url) {
+        File podcastDir = new File(
+            context.getExternalFilesDir(Environment.DIRECTORY_PODCASTS),
+            sanitizeFileName(podcastName)
+        );
+
+        if (!podcastDir.exists() && !podcastDir.mkdirs()) {
+            Log.e(TAG, "Failed to create podcast directory: " + podcastDir.getAbsolutePath());
+            return null;
+        }
+
+        return new File(podcastDir, sanitizeFileName(episodeTitle) + "." + getFileExtension(url));
     }
 
     /**
@@ -377,7 +635,7 @@ public class DownloadService extends Service {
      * @param url The URL to extract extension from
      * @return The file extension (without dot)
      */
-    private String getFileExtension(String url) {
+    private static String getFileExtension(String url) {
         if (url == null || url.isEmpty()) {
             return "mp3";
         }
@@ -401,53 +659,6 @@ public class DownloadService extends Service {
         return "mp3";
     }
 
-    /**
-     * Resolve redirects for a URL and return the final URL.
-     * DownloadManager doesn't handle HTTP->HTTPS redirects well, so we pre-resolve them.
-     *
-     * @param url The URL to resolve
-     * @param maxRedirects Maximum number of redirects to follow
-     * @return The final URL after following redirects
-     * @throws IOException If network error occurs or too many redirects
-     */
-    private String resolveRedirects(String url, int maxRedirects) throws IOException {
-        if (maxRedirects <= 0) {
-            throw new IOException("Too many redirects");
-        }
-
-        HttpURLConnection connection = null;
-        try {
-            URL urlObj = new URL(url);
-            connection = (HttpURLConnection) urlObj.openConnection();
-            connection.setRequestMethod("HEAD");  // Use HEAD to avoid downloading content
-            connection.setInstanceFollowRedirects(false);  // Handle redirects manually
-            connection.setConnectTimeout(10000);
-            connection.setReadTimeout(10000);
-            connection.setRequestProperty("User-Agent", "Dumbcast/1.0");
-
-            int responseCode = connection.getResponseCode();
-
-            // Handle redirects (301, 302, 303, 307, 308)
-            if (responseCode >= 300 && responseCode < 400) {
-                String newUrl = connection.getHeaderField("Location");
-                if (newUrl == null) {
-                    throw new IOException("Redirect with no Location header");
-                }
-
-                Log.d(TAG, "Following redirect: " + url + " -> " + newUrl);
-                return resolveRedirects(newUrl, maxRedirects - 1);
-            }
-
-            // Not a redirect, return the URL as-is
-            return url;
-
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
-        }
-    }
-
     /**
      * Sanitize a string for use as a file name.
      * Removes or replaces characters that are invalid in file names.
@@ -511,13 +722,17 @@ public class DownloadService extends Service {
 
     /**
      * Save download ID to episode ID mapping in SharedPreferences.
-     * Used for persistence across service restarts.
+     * Used for persistence across service restarts. Also records the enqueue
+     * time so completed transfers can be timed.
      *
      * @param downloadId The download ID
      * @param episodeId The episode ID
      */
     private void saveDownloadMapping(long downloadId, long episodeId) {
-        prefs.edit().putLong("download_" + downloadId, episodeId).apply();
+        prefs.edit()
+            .putLong("download_" + downloadId, episodeId)
+            .putLong("download_started_" + downloadId, System.currentTimeMillis())
+            .apply();
     }
 
     /**
@@ -531,13 +746,45 @@ public class DownloadService extends Service {
         return episodeId != -1 ? episodeId : null;
     }
 
+    /**
+     * Check whether an episode already has a download in flight.
+     *
+     * @param episodeId The episode ID
+     * @return true if a download ID is mapped to this episode
+     */
+    private boolean isDownloadQueued(long episodeId) {
+        return downloadEpisodeMap.containsValue(episodeId) || getQueuedEpisodeIds(this).contains(episodeId);
+    }
+
+    /**
+     * Get the episodes with a download queued or running in DownloadManager, from
+     * the persisted download ID mapping. These have no download path until they finish.
+     *
+     * @param context Context for the download preferences
+     * @return IDs of the episodes
+     */
+    public static Set<Long> getQueuedEpisodeIds(Context context) {
+        Set<Long> episodeIds = new HashSet<>();
+        SharedPreferences downloadPrefs = context.getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        for (Map.Entry<String, ?> entry : downloadPrefs.getAll().entrySet()) {
+            if (entry.getKey().startsWith("download_") && !entry.getKey().startsWith("download_started_") &&
+                entry.getValue() instanceof Long) {
+                episodeIds.add((Long) entry.getValue());
+            }
+        }
+        return episodeIds;
+    }
+
     /**
      * Remove download ID mapping from SharedPreferences.
      *
      * @param downloadId The download ID to remove
      */
     private void removeDownloadMapping(long downloadId) {
-        prefs.edit().remove("download_" + downloadId).apply();
+        prefs.edit()
+            .remove("download_" + downloadId)
+            .remove("download_started_" + downloadId)
+            .apply();
     }
 
     /**
@@ -652,6 +899,19 @@ public class DownloadService extends Service {
         context.startService(intent);
     }
 
+    /**
+     * Helper method to queue a batch of auto-downloads.
+     *
+     * @param context Application context
+     * @param episodeIds The IDs of the episodes to download
+     */
+    public static void startAutoDownloads(Context context, long[] episodeIds) {
+        Intent intent = new Intent(context, DownloadService.class);
+        intent.setAction("ACTION_DOWNLOAD_EPISODES");
+        intent.putExtra("episode_ids", episodeIds);
+        context.startService(intent);
+    }
+
     /**
      * Helper method to cancel download for an episode.
      *
@@ -688,7 +948,7 @@ public class DownloadService extends Service {
                     }
 
                     // Fetch and parse RSS feed
-                    RssFeed feed = fetchRssFeed(podcast.getFeedUrl());
+                    RssFeed feed = fetchRssFeed(podcast);
                     if (feed == null) {
                         Log.w(TAG, "Cannot fetch description: RSS feed unavailable for " + podcast.getTitle());
                         return;
@@ -737,216 +997,159 @@ public class DownloadService extends Service {
     }
 
     /**
-     * Fetch RSS feed from URL with redirect handling.
+     * Fetch a podcast's RSS feed the same way a refresh does, so cached temporary
+     * redirects are used and a permanent redirect rewrites the stored feed URL.
      * Returns null if fetch fails (non-critical - description fetch is optional).
      *
-     * @param feedUrl The RSS feed URL
-     * @return Parsed RssFeed object, or null if fetch/parse fails
-     */
-    private RssFeed fetchRssFeed(String feedUrl) {
-        return fetchRssFeedWithRedirects(feedUrl, 5);
-    }
-
-    /**
-     * Fetch RSS feed with manual redirect following.
-     * Returns null if fetch fails.
-     *
-     * @param feedUrl The RSS feed URL
-     * @param maxRedirects Maximum number of redirects to follow
+     * @param podcast The podcast whose feed to fetch
      * @return Parsed RssFeed object, or null if fetch/parse fails
      */
-    private RssFeed fetchRssFeedWithRedirects(String feedUrl, int maxRedirects) {
-        if (maxRedirects <= 0) {
-            Log.w(TAG, "Too many redirects for RSS feed: " + feedUrl);
-            return null;
-        }
-
-        HttpURLConnection connection = null;
+    private RssFeed fetchRssFeed(Podcast podcast) {
         try {
-            URL url = new URL(feedUrl);
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(15000);
-            connection.setReadTimeout(15000);
-            connection.setRequestProperty("User-Agent", "Dumbcast/1.0");
-            connection.setInstanceFollowRedirects(false);
-
-            int responseCode = connection.getResponseCode();
-
-            // Handle redirects (301, 302, 303, 307, 308)
-            if (responseCode >= 300 && responseCode < 400) {
-                String newUrl = connection.getHeaderField("Location");
-                if (newUrl == null) {
-                    Log.w(TAG, "Redirect with no Location header for: " + feedUrl);
-                    return null;
-                }
-
-                Log.d(TAG, "Following redirect: " + feedUrl + " -> " + newUrl);
-                connection.disconnect();
-                return fetchRssFeedWithRedirects(newUrl, maxRedirects - 1);
-            }
-
-            if (responseCode != HttpURLConnection.HTTP_OK) {
-                Log.w(TAG, "HTTP error code " + responseCode + " for RSS feed: " + feedUrl);
-                return null;
-            }
-
-            InputStream inputStream = connection.getInputStream();
-            RssParser parser = new RssParser();
-            return parser.parse(inputStream);
-
+            return podcastRepository.fetchFeed(podcast);
         } catch (IOException | XmlPullParserException e) {
-            Log.w(TAG, "Failed to fetch RSS feed: " + feedUrl, e);
+            Log.w(TAG, "Failed to fetch RSS feed: " + podcast.getFeedUrl(), e);
             return null;
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
         }
     }
 
     /**
      * Scan for orphaned downloaded files and update database.
      * This handles cases where download completes but the broadcast is missed.
-     * Should be called on app startup to recover from interrupted downloads.
+     * Walks every file under the podcasts directory, so it runs on the calling
+     * thread and belongs in deferred maintenance, not on the startup path.
      *
      * @param context Application context
+     * @return Number of downloads recovered
      */
-    public static void recoverOrphanedDownloads(final Context context) {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    Log.d(TAG, "Starting orphaned download recovery scan");
+    public static int scanOrphanedDownloads(Context context) {
+        Log.d(TAG, "Starting orphaned download recovery scan");
 
-                    DatabaseHelper dbHelper = DatabaseManager.getInstance(context);
-                    EpisodeRepository episodeRepository = new EpisodeRepository(dbHelper);
-                    PodcastRepository podcastRepository = new PodcastRepository(dbHelper);
+        DatabaseHelper dbHelper = DatabaseManager.getInstance(context);
+        EpisodeRepository episodeRepository = new EpisodeRepository(dbHelper);
+        PodcastRepository podcastRepository = new PodcastRepository(dbHelper);
 
-                    File podcastsDir = context.getExternalFilesDir(Environment.DIRECTORY_PODCASTS);
-                    if (podcastsDir == null || !podcastsDir.exists()) {
-                        Log.d(TAG, "No podcasts directory found, nothing to recover");
-                        return;
-                    }
+        File podcastsDir = context.getExternalFilesDir(Environment.DIRECTORY_PODCASTS);
+        if (podcastsDir == null || !podcastsDir.exists()) {
+            Log.d(TAG, "No podcasts directory found, nothing to recover");
+            return 0;
+        }
 
-                    int recoveredCount = 0;
-                    int verifiedCount = 0;
+        int recoveredCount = 0;
+        int verifiedCount = 0;
 
-                    // Iterate through podcast directories
-                    File[] podcastDirs = podcastsDir.listFiles();
-                    if (podcastDirs == null) {
-                        Log.d(TAG, "Podcasts directory is empty");
-                        return;
-                    }
+        // Iterate through podcast directories
+        File[] podcastDirs = podcastsDir.listFiles();
+        if (podcastDirs == null) {
+            Log.d(TAG, "Podcasts directory is empty");
+            return 0;
+        }
 
-                    for (File podcastDir : podcastDirs) {
-                        if (!podcastDir.isDirectory()) {
-                            continue;
-                        }
+        List<Podcast> allPodcasts = podcastRepository.getAllPodcasts();
 
-                        String sanitizedPodcastName = podcastDir.getName();
+        for (File podcastDir : podcastDirs) {
+            if (!podcastDir.isDirectory()) {
+                continue;
+            }
 
-                        // Get all podcasts and find matching podcast by sanitized name
-                        List<Podcast> allPodcasts = podcastRepository.getAllPodcasts();
-                        Podcast matchingPodcast = null;
+            String sanitizedPodcastName = podcastDir.getName();
 
-                        for (Podcast podcast : allPodcasts) {
-                            if (sanitizeFileName(podcast.getTitle()).equals(sanitizedPodcastName)) {
-                                matchingPodcast = podcast;
-                                break;
-                            }
-                        }
+            // Find matching podcast by sanitized name
+            Podcast matchingPodcast = null;
 
-                        if (matchingPodcast == null) {
-                            Log.w(TAG, "Found orphaned podcast directory (no matching podcast in DB): " + sanitizedPodcastName);
-                            continue;
-                        }
+            for (Podcast podcast : allPodcasts) {
+                if (sanitizeFileName(podcast.getTitle()).equals(sanitizedPodcastName)) {
+                    matchingPodcast = podcast;
+                    break;
+                }
+            }
 
-                        // Get all episodes for this podcast
-                        List<Episode> episodes = episodeRepository.getEpisodesByPodcast(matchingPodcast.getId());
+            if (matchingPodcast == null) {
+                Log.w(TAG, "Found orphaned podcast directory (no matching podcast in DB): " + sanitizedPodcastName);
+                continue;
+            }
 
-                        // Scan episode files in this podcast directory
-                        File[] episodeFiles = podcastDir.listFiles();
-                        if (episodeFiles == null) {
-                            continue;
-                        }
+            // Get all episodes for this podcast
+            List<Episode> episodes = episodeRepository.getEpisodesByPodcast(matchingPodcast.getId());
 
-                        for (File episodeFile : episodeFiles) {
-                            if (!episodeFile.isFile()) {
-                                continue;
-                            }
+            // Scan episode files in this podcast directory
+            File[] episodeFiles = podcastDir.listFiles();
+            if (episodeFiles == null) {
+                continue;
+            }
 
-                            String fileName = episodeFile.getName();
-                            String filePath = episodeFile.getAbsolutePath();
+            for (File episodeFile : episodeFiles) {
+                if (!episodeFile.isFile()) {
+                    continue;
+                }
 
-                            // Try to match file to an episode
-                            Episode matchedEpisode = null;
+                String fileName = episodeFile.getName();
+                String filePath = episodeFile.getAbsolutePath();
 
-                            // First, check if any episode already has this exact download path
-                            for (Episode episode : episodes) {
-                                if (filePath.equals(episode.getDownloadPath())) {
-                                    // Episode already knows about this file
-                                    verifiedCount++;
-                                    matchedEpisode = episode;
-                                    break;
-                                }
-                            }
+                // Try to match file to an episode
+                Episode matchedEpisode = null;
 
-                            if (matchedEpisode != null) {
-                                continue; // Already tracked in database
-                            }
+                // First, check if any episode already has this exact download path
+                for (Episode episode : episodes) {
+                    if (filePath.equals(episode.getDownloadPath())) {
+                        // Episode already knows about this file
+                        verifiedCount++;
+                        matchedEpisode = episode;
+                        break;
+                    }
+                }
 
-                            // File exists but no episode claims it - try to match by filename
-                            String fileNameWithoutExt = fileName;
-                            int lastDotIndex = fileName.lastIndexOf('.');
-                            if (lastDotIndex > 0) {
-                                fileNameWithoutExt = fileName.substring(0, lastDotIndex);
-                            }
+                if (matchedEpisode != null) {
+                    continue; // Already tracked in database
+                }
 
-                            // Find episode with matching sanitized title
-                            for (Episode episode : episodes) {
-                                String sanitizedEpisodeTitle = sanitizeFileName(episode.getTitle());
-
-                                if (sanitizedEpisodeTitle.equals(fileNameWithoutExt)) {
-                                    // Check if file actually exists (defensive check)
-                                    if (episodeFile.exists() && episodeFile.length() > 0) {
-                                        // Only update if episode doesn't already have a download path
-                                        if (episode.getDownloadPath() == null || episode.getDownloadPath().isEmpty()) {
-                                            // Update database to mark as downloaded
-                                            long downloadedAt = episodeFile.lastModified();
-                                            int updated = episodeRepository.updateEpisodeDownload(
-                                                episode.getId(),
-                                                filePath,
-                                                downloadedAt
-                                            );
-
-                                            if (updated > 0) {
-                                                // Move to BACKLOG state
-                                                episodeRepository.updateEpisodeState(episode.getId(), EpisodeState.BACKLOG);
-                                                recoveredCount++;
-                                                Log.d(TAG, "Recovered orphaned download: " + episode.getTitle() +
-                                                      " (File: " + filePath + ")");
-                                            }
-                                        }
-                                    }
-                                    matchedEpisode = episode;
-                                    break;
-                                }
-                            }
+                // File exists but no episode claims it - try to match by filename
+                String fileNameWithoutExt = fileName;
+                int lastDotIndex = fileName.lastIndexOf('.');
+                if (lastDotIndex > 0) {
+                    fileNameWithoutExt = fileName.substring(0, lastDotIndex);
+                }
 
-                            if (matchedEpisode == null) {
-                                Log.w(TAG, "Found orphaned file with no matching episode: " + filePath);
+                // Find episode with matching sanitized title
+                for (Episode episode : episodes) {
+                    String sanitizedEpisodeTitle = sanitizeFileName(episode.getTitle());
+
+                    if (sanitizedEpisodeTitle.equals(fileNameWithoutExt)) {
+                        // Check if file actually exists (defensive check)
+                        if (episodeFile.exists() && episodeFile.length() > 0) {
+                            // Only update if episode doesn't already have a download path
+                            if (episode.getDownloadPath() == null || episode.getDownloadPath().isEmpty()) {
+                                // Update database to mark as downloaded
+                                long downloadedAt = episodeFile.lastModified();
+                                int updated = episodeRepository.updateEpisodeDownload(
+                                    episode.getId(),
+                                    filePath,
+                                    downloadedAt
+                                );
+
+                                if (updated > 0) {
+                                    // Move to BACKLOG state
+                                    episodeRepository.updateEpisodeState(episode.getId(), EpisodeState.BACKLOG);
+                                    recoveredCount++;
+                                    Log.d(TAG, "Recovered orphaned download: " + episode.getTitle() +
+                                          " (File: " + filePath + ")");
+                                }
                             }
                         }
+                        matchedEpisode = episode;
+                        break;
                     }
+                }
 
-                    Log.d(TAG, "Download recovery complete. Recovered: " + recoveredCount +
-                          ", Verified: " + verifiedCount);
-
-                } catch (Exception e) {
-                    Log.e(TAG, "Error during orphaned download recovery", e);
+                if (matchedEpisode == null) {
+                    Log.w(TAG, "Found orphaned file with no matching episode: " + filePath);
                 }
             }
-        }).start();
+        }
+
+        Log.d(TAG, "Download recovery complete. Recovered: " + recoveredCount +
+              ", Verified: " + verifiedCount);
+
+        return recoveredCount;
     }
 }
@@ -0,0 +1,153 @@
+package com.ispringle.dumbcast.services;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.ispringle.dumbcast.data.Episode;
+import com.ispringle.dumbcast.data.ListeningEvent;
+import com.ispringle.dumbcast.data.ListeningStatsRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Collects listening history events from playback and writes them in batches.
+ *
+ * Events are buffered in memory and handed to the database as one transaction
+ * when playback pauses, stops or completes, or once {@link #MAX_BUFFERED_EVENTS}
+ * have piled up from seeking around. That keeps it to about one write per
+ * listening session. Listened time is measured on the elapsed-time clock, so it
+ * counts real time spent listening, not how far the position moved.
+ *
+ * Public methods are called on the main thread. Writes run on the supplied
+ * executor, which must be single-threaded so batches land in order.
+ */
+public class ListeningLog {
+
+    private static final String TAG = "ListeningLog";
+    private static final int MAX_BUFFERED_EVENTS = 32;
+
+    private final ListeningStatsRepository repository;
+    private final Executor executor;
+    private List<ListeningEvent> buffer = new ArrayList<>();
+
+    // The session being listened to; null while paused
+    private Episode sessionEpisode;
+    private long sessionStartedAt;
+    private long sessionPositionMs;
+    private float speed = 1f;
+
+    /**
+     * @param repository Repository the batches are written to
+     * @param executor Single-threaded executor for database writes
+     */
+    public ListeningLog(ListeningStatsRepository repository, Executor executor) {
+        this.repository = repository;
+        this.executor = executor;
+    }
+
+    /**
+     * Playback started or resumed.
+     * @param episode The episode playing
+     * @param positionMs Position playback started from
+     * @param speed Playback speed
+     */
+    public void onStart(Episode episode, long positionMs, float speed) {
+        if (sessionEpisode != null) {
+            // Switched episodes without a pause in between; positionMs belongs to the new one
+            onStop(sessionPositionMs);
+        }
+        sessionEpisode = episode;
+        sessionStartedAt = SystemClock.elapsedRealtime();
+        sessionPositionMs = positionMs;
+        this.speed = speed;
+        add(episode, ListeningEvent.Type.START, positionMs, 0);
+    }
+
+    /**
+     * Playback position update while playing, so a session cut short by the next
+     * episode starting can still be closed where it was left.
+     * @param positionMs Current position
+     */
+    public void onProgress(long positionMs) {
+        if (sessionEpisode != null) {
+            sessionPositionMs = positionMs;
+        }
+    }
+
+    /**
+     * Playback paused or stopped. Writes out everything buffered.
+     * @param positionMs Position playback stopped at
+     */
+    public void onStop(long positionMs) {
+        if (sessionEpisode != null) {
+            long listenedMs = SystemClock.elapsedRealtime() - sessionStartedAt;
+            add(sessionEpisode, ListeningEvent.Type.STOP, positionMs, listenedMs);
+            sessionEpisode = null;
+        }
+        flush();
+    }
+
+    /**
+     * The user jumped to another position in the episode.
+     * @param episode The current episode
+     * @param fromMs Position before the seek
+     * @param toMs Position after the seek
+     */
+    public void onSeek(Episode episode, long fromMs, long toMs) {
+        if (fromMs != toMs) {
+            add(episode, ListeningEvent.Type.SEEK, fromMs, toMs);
+        }
+        if (sessionEpisode != null && sessionEpisode.getId() == episode.getId()) {
+            sessionPositionMs = toMs;
+        }
+    }
+
+    /**
+     * The episode played to its end. Closes the session and writes out everything buffered.
+     * @param episode The finished episode
+     * @param durationMs The episode's duration
+     */
+    public void onComplete(Episode episode, long durationMs) {
+        if (sessionEpisode != null) {
+            long listenedMs = SystemClock.elapsedRealtime() - sessionStartedAt;
+            add(sessionEpisode, ListeningEvent.Type.STOP, durationMs, listenedMs);
+            sessionEpisode = null;
+        }
+        add(episode, ListeningEvent.Type.COMPLETE, durationMs, 0);
+        flush();
+    }
+
+    /**
+     * Hand any buffered events to the executor. An open session stays open; its
+     * STOP is written with a later batch.
+     */
+    public void flush() {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        final List<ListeningEvent> batch = buffer;
+        buffer = new ArrayList<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    repository.appendEvents(batch);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Failed to write " + batch.size() + " listening events", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Dropped " + batch.size() + " listening events, executor is shut down");
+        }
+    }
+
+    private void add(Episode episode, ListeningEvent.Type type, long positionMs, long value) {
+        buffer.add(new ListeningEvent(episode.getId(), episode.getPodcastId(), type,
+            System.currentTimeMillis(), positionMs, value, speed));
+        if (buffer.size() >= MAX_BUFFERED_EVENTS) {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.ispringle.dumbcast.services;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.ispringle.dumbcast.data.Episode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Delivers playback events from PlaybackService to whoever is watching.
+ *
+ * Each listener registers with the position update rate it wants. The service
+ * asks {@link #getTickIntervalMs()} how often to tick for listeners while
+ * playing: the fastest requested rate, or not at all when nobody is watching.
+ * Position updates are then handed to each listener no more often than it
+ * asked for. Journaling the position has its own timer in the service and
+ * doesn't depend on anyone listening.
+ *
+ * Every callback runs on the main thread. Events raised there are delivered
+ * straight away; events raised on a background thread are posted once, so
+ * listeners never need to hop threads themselves.
+ */
+public class PlaybackEventBus {
+
+    /** Fastest rate a listener may ask for */
+    public static final long MIN_INTERVAL_MS = 250;
+    // What the service ticked at before listeners asked for a rate; the baseline for savings
+    private static final long LEGACY_INTERVAL_MS = 1000;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Registration> registrations = new ArrayList<>();
+
+    // Tick accounting for the savings report
+    private long ticks = 0;
+    private long playingMs = 0;
+    private long playingSince = -1;
+
+    private static class Registration {
+        final PlaybackService.PlaybackListener listener;
+        final long intervalMs;
+        long lastPositionAt = -1;
+
+        Registration(PlaybackService.PlaybackListener listener, long intervalMs) {
+            this.listener = listener;
+            this.intervalMs = intervalMs;
+        }
+    }
+
+    /**
+     * Register a listener, or change the rate of one already registered.
+     * @param listener The listener
+     * @param intervalMs How often it wants position updates, at least {@link #MIN_INTERVAL_MS}
+     */
+    public void register(PlaybackService.PlaybackListener listener, long intervalMs) {
+        unregister(listener);
+        registrations.add(new Registration(listener, Math.max(intervalMs, MIN_INTERVAL_MS)));
+    }
+
+    /**
+     * @param listener The listener to stop delivering to; ignored if not registered
+     */
+    public void unregister(PlaybackService.PlaybackListener listener) {
+        for (int i = registrations.size() - 1; i >= 0; i--) {
+            if (registrations.get(i).listener == listener) {
+                registrations.remove(i);
+            }
+        }
+    }
+
+    /**
+     * @return True if any listener is registered
+     */
+    public boolean hasListeners() {
+        return !registrations.isEmpty();
+    }
+
+    /**
+     * @return How long the service should wait between listener ticks while playing,
+     *         or -1 if nobody is listening and it needn't tick at all
+     */
+    public long getTickIntervalMs() {
+        long interval = -1;
+        for (Registration registration : registrations) {
+            if (interval < 0 || registration.intervalMs < interval) {
+                interval = registration.intervalMs;
+            }
+        }
+        return interval;
+    }
+
+    /**
+     * Deliver a position tick to every listener whose interval has come round.
+     * Called by the service on each tick.
+     * @param position Position in seconds
+     * @param duration Duration in seconds
+     */
+    public void dispatchPosition(int position, int duration) {
+        ticks++;
+        long now = SystemClock.elapsedRealtime();
+        // Copy so listeners can unregister from inside the callback
+        for (Registration registration : new ArrayList<>(registrations)) {
+            // A tick landing a little early still counts, or jitter would halve the rate
+            if (registration.lastPositionAt < 0 ||
+                now - registration.lastPositionAt >= registration.intervalMs - registration.intervalMs / 4) {
+                registration.lastPositionAt = now;
+                registration.listener.onPositionChanged(position, duration);
+            }
+        }
+    }
+
+    public void dispatchStarted(Episode episode) {
+        playbackRunning(true);
+        deliver(listener -> listener.onPlaybackStarted(episode));
+    }
+
+    public void dispatchPaused(Episode episode) {
+        playbackRunning(false);
+        deliver(listener -> listener.onPlaybackPaused(episode));
+    }
+
+    public void dispatchStopped() {
+        playbackRunning(false);
+        deliver(PlaybackService.PlaybackListener::onPlaybackStopped);
+    }
+
+    public void dispatchCompleted(Episode episode) {
+        playbackRunning(false);
+        deliver(listener -> listener.onPlaybackCompleted(episode));
+    }
+
+    public void dispatchError(String error) {
+        deliver(listener -> listener.onError(error));
+    }
+
+    /**
+     * @return Listener ticks made so far
+     */
+    public long getTickCount() {
+        return ticks;
+    }
+
+    /**
+     * @return Listener ticks per hour of playback saved against ticking every second
+     */
+    public long getWakeupsSavedPerHour() {
+        long played = playingMs;
+        if (playingSince >= 0) {
+            played += SystemClock.elapsedRealtime() - playingSince;
+        }
+        if (played < LEGACY_INTERVAL_MS) {
+            return 0;
+        }
+        long saved = played / LEGACY_INTERVAL_MS - ticks;
+        return Math.max(0, saved) * 3600000L / played;
+    }
+
+    private void playbackRunning(boolean running) {
+        long now = SystemClock.elapsedRealtime();
+        if (playingSince >= 0) {
+            playingMs += now - playingSince;
+        }
+        playingSince = running ? now : -1;
+    }
+
+    private interface Event {
+        void deliverTo(PlaybackService.PlaybackListener listener);
+    }
+
+    private void deliver(Event event) {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            mainHandler.post(() -> deliver(event));
+            return;
+        }
+        for (Registration registration : new ArrayList<>(registrations)) {
+            event.deliverTo(registration.listener);
+        }
+    }
+}
@@ -8,6 +8,7 @@ import android.app.Service;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.database.sqlite.SQLiteDatabase;
 import android.media.MediaPlayer;
 import android.os.Binder;
@@ -15,20 +16,35 @@ import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.PowerManager;
+import android.os.SystemClock;
 import android.support.v4.app.NotificationCompat;
 import android.util.Log;
 
 import com.ispringle.dumbcast.MainActivity;
 import com.ispringle.dumbcast.R;
+import com.ispringle.dumbcast.data.Chapter;
+import com.ispringle.dumbcast.data.ChapterRepository;
 import com.ispringle.dumbcast.data.DatabaseHelper;
 import com.ispringle.dumbcast.data.DatabaseManager;
 import com.ispringle.dumbcast.data.Episode;
 import com.ispringle.dumbcast.data.EpisodeRepository;
 import com.ispringle.dumbcast.data.EpisodeState;
+import com.ispringle.dumbcast.data.ListeningStatsRepository;
+import com.ispringle.dumbcast.data.Podcast;
+import com.ispringle.dumbcast.data.PodcastRepository;
+import com.ispringle.dumbcast.data.QueueRepository;
 
+import com.ispringle.dumbcast.utils.MemoryBudget;
+import com.ispringle.dumbcast.utils.RedirectCache;
+import com.ispringle.dumbcast.utils.ShowNotesRenderer;
+
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Background service for audio playback with MediaPlayer integration.
@@ -36,7 +52,14 @@ import java.util.concurrent.Executors;
  * Features:
  * - Foreground service with persistent notification
  * - Play/pause/skip forward/backward controls
- * - Periodic position tracking (every 10 seconds)
+ * - Next/previous chapter seeking, with chapters fetched lazily on first play
+ * - Journaled position tracking (see PositionTracker)
+ * - Listening history: plays, pauses, seeks and completions logged in batches (see ListeningLog)
+ * - Persistent play queue, with the next few queued episodes downloaded ahead of time
+ * - Look-ahead player that prepares the next queued (or backlog) episode near the end of the current one
+ * - Streams go through a local caching proxy (see StreamProxy); fully streamed episodes become downloads
+ * - Optional silence trimming for downloaded episodes: long pauses found by SilenceAnalyzer are skipped
+ * - Playback events fanned out through PlaybackEventBus; the position tick runs only as fast as listeners need
  * - Wakelock for screen-off playback
  * - MediaPlayer lifecycle management
  */
@@ -47,7 +70,23 @@ public class PlaybackService extends Service {
     private static final int NOTIFICATION_ID = 1;
     private static final int SKIP_FORWARD_MS = 30000; // 30 seconds
     private static final int SKIP_BACKWARD_MS = 30000; // 30 seconds
-    private static final int POSITION_UPDATE_INTERVAL_MS = 10000; // 10 seconds
+    private static final String POSITION_JOURNAL_FILE = "position.journal";
+    // Journal every second while playing, whoever is watching, so process death loses at most a second
+    private static final long JOURNAL_INTERVAL_MS = 1000;
+    private static final int REDIRECT_PREWARM_COUNT = 5;
+    private static final int LOOKAHEAD_WINDOW_SECONDS = 60;
+    private static final int QUEUE_PREFETCH_COUNT = 2;
+    private static final String STREAM_CACHE_DIR = "streams";
+    private static final long STREAM_CACHE_MAX_BYTES = 256L * 1024 * 1024;
+    private static final String PREFS_NAME = "playback";
+    private static final String PREF_TRIM_SILENCE = "trim_silence";
+    private static final String PREF_SILENCE_SAVED_PREFIX = "silence_saved_";
+    private static final String SILENCE_CACHE_DIR = "silence";
+    // Seeking costs a few ms of audio glitch, not worth it for the tail end of a silence
+    private static final long SILENCE_MIN_SKIP_MS = 150;
+    private static final String STARTUP_STATS_FILE = "playback_startup.txt";
+    private static final long FIRST_AUDIO_POLL_MS = 10;
+    private static final long FIRST_AUDIO_TIMEOUT_MS = 10000;
 
     // Actions for notification buttons and service control
     public static final String ACTION_PLAY = "com.ispringle.dumbcast.ACTION_PLAY";
@@ -57,28 +96,79 @@ public class PlaybackService extends Service {
     public static final String ACTION_STOP = "com.ispringle.dumbcast.ACTION_STOP";
     public static final String ACTION_LOAD_EPISODE = "LOAD_EPISODE";
     public static final String EXTRA_EPISODE_ID = "episode_id";
+    // SystemClock.elapsedRealtime() when the user pressed play, for startup timing
+    public static final String EXTRA_REQUESTED_AT = "requested_at";
+
+    // Lets the activity skip binding (and so creating the service) at startup when nothing is playing
+    private static volatile boolean running = false;
 
     private MediaPlayer mediaPlayer;
     private PowerManager.WakeLock wakeLock;
     private DatabaseHelper dbHelper;
     private EpisodeRepository episodeRepo;
+    private PodcastRepository podcastRepo;
+    private QueueRepository queueRepo;
+    private ChapterRepository chapterRepo;
+    private StreamProxy streamProxy;
+    private long prefetchedForEpisodeId = -1;
     private Episode currentEpisode;
-    private PlaybackListener listener;
+    private PlaybackEventBus eventBus;
     private final IBinder binder = new PlaybackBinder();
 
     // Position tracking
     private Handler positionHandler;
     private Runnable positionRunnable;
-    private long lastPositionSave = 0;
+    private Runnable journalRunnable;
+    private PositionTracker positionTracker;
+    private ListeningLog listeningLog;
+    private MemoryBudget memoryBudget;
+    private final MemoryBudget.Trimmable lookAheadTrimmer = this::trimLookAhead;
 
     // Playback state
     private boolean isPlaying = false;
 
+    // Look-ahead player for the next episode. lookAheadEpisode is set as soon as
+    // the next episode is known; lookAheadPlayer may be null while resolving or after a trim.
+    private MediaPlayer lookAheadPlayer;
+    private Episode lookAheadEpisode;
+    private boolean lookAheadRequested = false;
+    private boolean lookAheadPrepared = false;
+    private boolean advancePending = false;
+    // Look-ahead transitions are timed from here to the next episode's first audio
+    private long completedAt = 0;
+
+    // Stream start timing, measured from load request to MediaPlayer prepared
+    private long loadRequestedAt = 0;
+    private boolean redirectsFromCache = false;
+
+    // Phase timing of the start in progress; null once audio is playing or the start was abandoned
+    private PlaybackStartupStats.Trace startupTrace;
+    private Runnable firstAudioRunnable;
+    private long firstAudioFromMs = 0;
+    private long firstAudioDeadline = 0;
+
+    // Chapters of the current episode; EMPTY until loaded or if it has none
+    private ChapterIndex chapterIndex = ChapterIndex.EMPTY;
+
+    // Silences to skip in the current episode, filled in as analysis progresses
+    private SilenceMap silenceMap = SilenceMap.EMPTY;
+    private SilenceAnalyzer silenceAnalyzer;
+    private Future<?> silenceTask;
+    private Runnable silenceSkipRunnable;
+    private long silenceSavedMs = 0;
+    private SharedPreferences prefs;
+
     // Background thread for database operations
     private ExecutorService dbExecutor;
+    // Chapters may need a network fetch, so they get their own thread rather than blocking dbExecutor
+    private ExecutorService chapterExecutor;
+    // Decoding for silence analysis is CPU heavy and slow, so it never holds up the other two
+    private ExecutorService silenceExecutor;
+    // Keeping a streamed episode may copy tens of MB across filesystems, too long to hold up dbExecutor
+    private ExecutorService promoteExecutor;
 
     /**
-     * Interface for playback state callbacks
+     * Interface for playback state callbacks, always called on the main thread
      */
     public interface PlaybackListener {
         void onPlaybackStarted(Episode episode);
@@ -101,39 +191,48 @@ public class PlaybackService extends Service {
     @Override
     public void onCreate() {
         super.onCreate();
+        running = true;
         Log.d(TAG, "Service created");
 
         dbHelper = DatabaseManager.getInstance(this);
         episodeRepo = new EpisodeRepository(dbHelper);
+        podcastRepo = new PodcastRepository(dbHelper);
+        queueRepo = new QueueRepository(dbHelper);
+        chapterRepo = new ChapterRepository(dbHelper);
 
         // Initialize background executor for database operations
         dbExecutor = Executors.newSingleThreadExecutor();
+        chapterExecutor = Executors.newSingleThreadExecutor();
+        silenceExecutor = Executors.newSingleThreadExecutor();
+        promoteExecutor = Executors.newSingleThreadExecutor();
+        silenceAnalyzer = new SilenceAnalyzer(new File(getCacheDir(), SILENCE_CACHE_DIR));
+        prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+
+        // Streams are read through a loopback proxy so their bytes are only fetched once.
+        // If it can't start, MediaPlayer falls back to streaming from the origin directly.
+        streamProxy = new StreamProxy(new File(getCacheDir(), STREAM_CACHE_DIR));
+        streamProxy.setListener((episodeId, cache) -> {
+            if (!promoteExecutor.isShutdown()) {
+                promoteExecutor.execute(() -> promoteStreamCache(episodeId, cache));
+            }
+        });
+        try {
+            streamProxy.start();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to start stream proxy, streaming directly", e);
+            streamProxy = null;
+        }
+
+        // Recover any position journaled before the last process death. Runs first on
+        // dbExecutor so it lands before any episode is read back from the database.
+        positionTracker = new PositionTracker(new java.io.File(getFilesDir(), POSITION_JOURNAL_FILE),
+            episodeRepo, dbExecutor);
+        dbExecutor.execute(positionTracker::recover);
+        listeningLog = new ListeningLog(new ListeningStatsRepository(dbHelper), dbExecutor);
 
         // Initialize MediaPlayer
         mediaPlayer = new MediaPlayer();
-        mediaPlayer.setOnCompletionListener(mp -> onPlaybackCompleted());
-        mediaPlayer.setOnErrorListener((mp, what, extra) -> {
-            Log.e(TAG, "MediaPlayer error: what=" + what + ", extra=" + extra);
-
-            // Error code -38 is MEDIA_ERROR_NOT_VALID_FOR_PROGRESSIVE_PLAYBACK
-            // This is a spurious error that occurs during prepareAsync() but doesn't
-            // actually prevent playback. The file plays successfully despite this error.
-            // See: https://issuetracker.google.com/issues/36905654
-            if (what == -38) {
-                Log.d(TAG, "Ignoring spurious error -38 (MEDIA_ERROR_NOT_VALID_FOR_PROGRESSIVE_PLAYBACK)");
-                return true; // Error handled, don't show toast
-            }
-
-            // For other errors, log details and notify user
-            String errorMsg = "Playback error: " + getErrorDescription(what, extra);
-            Log.e(TAG, errorMsg);
-            notifyError(errorMsg);
-            return true;
-        });
-        mediaPlayer.setOnPreparedListener(mp -> {
-            Log.d(TAG, "MediaPlayer prepared");
-            startPlayback();
-        });
+        attachPlayerListeners(mediaPlayer);
 
         // Acquire wakelock for screen-off playback
         PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
@@ -141,38 +240,117 @@ public class PlaybackService extends Service {
         wakeLock.setReferenceCounted(false);
 
         // Initialize position tracking
+        eventBus = new PlaybackEventBus();
         positionHandler = new Handler();
-        positionRunnable = new Runnable() {
+        journalRunnable = new Runnable() {
             @Override
             public void run() {
                 if (isPlaying && mediaPlayer != null) {
                     try {
-                        int position = mediaPlayer.getCurrentPosition() / 1000; // Convert to seconds
+                        int positionMs = mediaPlayer.getCurrentPosition();
+                        int position = positionMs / 1000; // Convert to seconds
                         int duration = mediaPlayer.getDuration() / 1000;
 
-                        // Save position to database every 10 seconds
-                        long now = System.currentTimeMillis();
-                        if (now - lastPositionSave >= POSITION_UPDATE_INTERVAL_MS) {
-                            savePlaybackPosition(position);
-                            lastPositionSave = now;
-                        }
+                        // Journal the position; the tracker decides when to hit the database
+                        savePlaybackPosition(position);
+                        listeningLog.onProgress(positionMs);
 
-                        // Notify listener of position change
-                        if (listener != null) {
-                            listener.onPositionChanged(position, duration);
+                        // Get the next episode ready before this one ends
+                        if (!lookAheadRequested && duration > 0 &&
+                            duration - position <= LOOKAHEAD_WINDOW_SECONDS) {
+                            prepareLookAhead();
                         }
 
-                        positionHandler.postDelayed(this, 1000); // Update every second
+                        positionHandler.postDelayed(this, JOURNAL_INTERVAL_MS);
                     } catch (IllegalStateException e) {
                         Log.e(TAG, "Error getting playback position", e);
                     }
                 }
             }
         };
+        positionRunnable = new Runnable() {
+            @Override
+            public void run() {
+                long interval = eventBus.getTickIntervalMs();
+                if (isPlaying && mediaPlayer != null && interval > 0) {
+                    try {
+                        int position = mediaPlayer.getCurrentPosition() / 1000; // Convert to seconds
+                        int duration = mediaPlayer.getDuration() / 1000;
+
+                        // Notify listeners whose interval has come round
+                        eventBus.dispatchPosition(position, duration);
+
+                        // As fast as the most eager listener; stops once nobody is listening
+                        positionHandler.postDelayed(this, interval);
+                    } catch (IllegalStateException e) {
+                        Log.e(TAG, "Error getting playback position", e);
+                    }
+                }
+            }
+        };
+
+        silenceSkipRunnable = this::skipSilence;
+
+        // Under memory pressure the redirect cache goes before the look-ahead player
+        memoryBudget = MemoryBudget.getInstance(this);
+        memoryBudget.register(RedirectCache.getInstance(), MemoryBudget.ORDER_PARSED);
+        memoryBudget.register(lookAheadTrimmer, MemoryBudget.ORDER_PLAYBACK);
+        firstAudioRunnable = this::checkFirstAudio;
 
         createNotificationChannel();
     }
 
+    /**
+     * Wire completion, error and prepared callbacks onto a player.
+     * Used for the main player and for a look-ahead player once it is promoted.
+     */
+    private void attachPlayerListeners(MediaPlayer player) {
+        player.setOnCompletionListener(mp -> {
+            if (mp == mediaPlayer) {
+                onPlaybackCompleted();
+            }
+        });
+        player.setOnErrorListener((mp, what, extra) -> {
+            Log.e(TAG, "MediaPlayer error: what=" + what + ", extra=" + extra);
+
+            if (mp == lookAheadPlayer) {
+                // The look-ahead failing shouldn't interrupt the current episode
+                Log.w(TAG, "Look-ahead player failed, dropping it");
+                releaseLookAhead();
+                return true;
+            }
+
+            // Error code -38 is MEDIA_ERROR_NOT_VALID_FOR_PROGRESSIVE_PLAYBACK
+            // This is a spurious error that occurs during prepareAsync() but doesn't
+            // actually prevent playback. The file plays successfully despite this error.
+            // See: https://issuetracker.google.com/issues/36905654
+            if (what == -38) {
+                Log.d(TAG, "Ignoring spurious error -38 (MEDIA_ERROR_NOT_VALID_FOR_PROGRESSIVE_PLAYBACK)");
+                return true; // Error handled, don't show toast
+            }
+
+            // For other errors, log details and notify user
+            dropStartupTrace("playback error");
+            String errorMsg = "Playback error: " + getErrorDescription(what, extra);
+            Log.e(TAG, errorMsg);
+            notifyError(errorMsg);
+            return true;
+        });
+        player.setOnPreparedListener(mp -> {
+            if (startupTrace != null) {
+                startupTrace.mark(PlaybackStartupStats.Phase.PREPARE);
+            }
+            long prepareMs = SystemClock.elapsedRealtime() - loadRequestedAt;
+            if (currentEpisode != null && !currentEpisode.isDownloaded()) {
+                Log.d(TAG, "MediaPlayer prepared stream in " + prepareMs + " ms (redirects " +
+                      (redirectsFromCache ? "cached" : "resolved") + ")");
+            } else {
+                Log.d(TAG, "MediaPlayer prepared in " + prepareMs + " ms");
+            }
+            startPlayback();
+        });
+    }
+
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         if (intent != null && intent.getAction() != null) {
@@ -186,6 +364,15 @@ public class PlaybackService extends Service {
         return binder;
     }
 
+    @Override
+    public void onTaskRemoved(Intent rootIntent) {
+        super.onTaskRemoved(rootIntent);
+        // The process may be killed without onDestroy once the task is swiped away
+        if (listeningLog != null) {
+            listeningLog.flush();
+        }
+    }
+
     @Override
     public void onDestroy() {
         Log.d(TAG, "Service destroyed");
@@ -193,17 +380,37 @@ public class PlaybackService extends Service {
         // Stop position tracking
         if (positionHandler != null) {
             positionHandler.removeCallbacks(positionRunnable);
+            positionHandler.removeCallbacks(journalRunnable);
+            positionHandler.removeCallbacks(silenceSkipRunnable);
+            positionHandler.removeCallbacks(firstAudioRunnable);
         }
 
         // Save final position
         if (currentEpisode != null && mediaPlayer != null) {
             try {
-                int position = mediaPlayer.getCurrentPosition() / 1000;
-                savePlaybackPosition(position);
+                int positionMs = mediaPlayer.getCurrentPosition();
+                savePlaybackPosition(positionMs / 1000);
+                listeningLog.onStop(positionMs);
             } catch (IllegalStateException e) {
                 Log.e(TAG, "Error saving final position", e);
             }
         }
+        // Whatever is still buffered goes out before dbExecutor shuts down
+        if (listeningLog != null) {
+            listeningLog.flush();
+        }
+        if (positionTracker != null) {
+            positionTracker.close();
+        }
+
+        releaseLookAhead();
+        if (memoryBudget != null) {
+            memoryBudget.unregister(lookAheadTrimmer);
+        }
+
+        if (streamProxy != null) {
+            streamProxy.stop();
+        }
 
         // Release MediaPlayer
         if (mediaPlayer != null) {
@@ -223,21 +430,77 @@ public class PlaybackService extends Service {
         if (dbExecutor != null) {
             dbExecutor.shutdown();
         }
+        if (chapterExecutor != null) {
+            chapterExecutor.shutdownNow();
+        }
+        if (silenceExecutor != null) {
+            silenceExecutor.shutdownNow();
+        }
+        if (promoteExecutor != null) {
+            promoteExecutor.shutdown();
+        }
 
+        running = false;
         super.onDestroy();
     }
 
     /**
-     * Set the playback listener for callbacks
+     * @return True if the service exists in this process, so it may have an episode loaded
      */
-    public void setPlaybackListener(PlaybackListener listener) {
-        this.listener = listener;
+    public static boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Register for playback callbacks, all delivered on the main thread.
+     * Registering again changes the listener's position update rate.
+     * @param listener The listener
+     * @param positionIntervalMs How often it wants {@link PlaybackListener#onPositionChanged}
+     */
+    public void addPlaybackListener(PlaybackListener listener, long positionIntervalMs) {
+        eventBus.register(listener, positionIntervalMs);
+        restartPositionTick();
+    }
+
+    /**
+     * Stop delivering playback callbacks to a listener. Once nobody is listening
+     * the listener tick stops; the position is still journaled every second.
+     * @param listener The listener to remove
+     */
+    public void removePlaybackListener(PlaybackListener listener) {
+        eventBus.unregister(listener);
+        restartPositionTick();
+    }
+
+    /**
+     * @return Listener ticks per hour of playback saved by ticking only as fast as listeners ask
+     */
+    public long getWakeupsSavedPerHour() {
+        return eventBus.getWakeupsSavedPerHour();
+    }
+
+    /**
+     * Tick now so a new rate takes effect straight away rather than after the old interval.
+     */
+    private void restartPositionTick() {
+        if (isPlaying) {
+            positionHandler.removeCallbacks(positionRunnable);
+            positionHandler.post(positionRunnable);
+        }
     }
 
     /**
      * Load and prepare an episode for playback
      */
     public void loadEpisode(Episode episode) {
+        loadEpisode(episode, PlaybackStartupStats.getInstance().startTrace(SystemClock.elapsedRealtime()));
+    }
+
+    /**
+     * @param trace Startup timing for this load
+     */
+    private void loadEpisode(Episode episode, PlaybackStartupStats.Trace trace) {
+        dropStartupTrace(null);
         if (episode == null) {
             Log.e(TAG, "Cannot load null episode");
             notifyError("Invalid episode");
@@ -254,8 +517,34 @@ public class PlaybackService extends Service {
         if (isPlaying) {
             pause();
         }
+        positionTracker.flush();
+
+        // Picking the episode the look-ahead already prepared is an instant swap
+        if (lookAheadPlayer != null && lookAheadPrepared && lookAheadEpisode.getId() == episode.getId()) {
+            // The tracker may know a newer position than the one the look-ahead was seeked to
+            int trackedPosition = positionTracker.getPosition(episode.getId());
+            if (trackedPosition >= 0 && trackedPosition != lookAheadEpisode.getPlaybackPosition()) {
+                lookAheadEpisode.setPlaybackPosition(trackedPosition);
+                lookAheadPlayer.seekTo(trackedPosition * 1000);
+            }
+            promoteLookAhead(trace);
+            return;
+        }
+        releaseLookAhead();
+
+        // The tracker may know a newer position than the list this episode came from
+        int trackedPosition = positionTracker.getPosition(episode.getId());
+        if (trackedPosition >= 0) {
+            episode.setPlaybackPosition(trackedPosition);
+        }
 
         currentEpisode = episode;
+        loadRequestedAt = SystemClock.elapsedRealtime();
+        startupTrace = trace;
+        trace.setSource(episode.isDownloaded() ?
+            PlaybackStartupStats.Source.DOWNLOADED : PlaybackStartupStats.Source.STREAM);
+        loadChapters(episode);
+        loadSilenceMap(episode);
 
         // Get audio URL (prefer downloaded file)
         String audioUrl;
@@ -271,6 +560,119 @@ public class PlaybackService extends Service {
             return;
         }
 
+        if (episode.isDownloaded()) {
+            prepareDataSource(episode, audioUrl);
+        } else {
+            // Hand MediaPlayer the end of the redirect chain so it doesn't re-walk
+            // analytics redirects on every stream start
+            RedirectCache.getInstance().resolveAsync(audioUrl, (finalUrl, fromCache) -> {
+                if (currentEpisode != episode) {
+                    Log.d(TAG, "Episode changed while resolving redirects, dropping stale load");
+                    return;
+                }
+                redirectsFromCache = fromCache;
+                if (startupTrace != null) {
+                    startupTrace.mark(PlaybackStartupStats.Phase.RESOLVE);
+                }
+                prepareDataSource(episode, getStreamUrl(episode, finalUrl));
+            });
+        }
+
+        prewarmBacklogRedirects(episode.getId());
+        prerenderShowNotes(episode);
+    }
+
+    /**
+     * Route a stream through the caching proxy. Caches of episodes that are
+     * neither playing nor prepared next are closed, and old ones trimmed.
+     * @param episode The episode to stream
+     * @param resolvedUrl The enclosure URL with redirects resolved
+     * @return The proxy URL, or resolvedUrl if the proxy isn't available
+     */
+    private String getStreamUrl(Episode episode, String resolvedUrl) {
+        if (streamProxy == null) {
+            return resolvedUrl;
+        }
+        try {
+            String proxyUrl = streamProxy.getProxyUrl(episode.getId(), resolvedUrl);
+            long currentId = currentEpisode != null ? currentEpisode.getId() : -1;
+            long lookAheadId = lookAheadEpisode != null ? lookAheadEpisode.getId() : -1;
+            final StreamProxy proxy = streamProxy;
+            if (dbExecutor != null && !dbExecutor.isShutdown()) {
+                dbExecutor.execute(() -> {
+                    proxy.retainOnly(episode.getId(), currentId, lookAheadId);
+                    proxy.trimCache(STREAM_CACHE_MAX_BYTES);
+                });
+            }
+            return proxyUrl;
+        } catch (IOException e) {
+            Log.w(TAG, "Stream proxy unavailable, streaming directly", e);
+            return resolvedUrl;
+        }
+    }
+
+    /**
+     * Turn a fully streamed episode into a regular download, so it plays from
+     * disk from now on and is managed like any other download.
+     * Runs on promoteExecutor.
+     * @param episodeId The episode that finished caching
+     * @param cache Its complete cache file
+     */
+    private void promoteStreamCache(long episodeId, SparseCacheFile cache) {
+        Episode episode = episodeRepo.getEpisodeById(episodeId);
+        if (episode == null || episode.isDownloaded()) {
+            return;
+        }
+        Podcast podcast = podcastRepo.getPodcastById(episode.getPodcastId());
+        String podcastName = podcast != null ? podcast.getTitle() : null;
+
+        // The resolved URL carries the real file extension more often than the tracking URL
+        String finalUrl = RedirectCache.getInstance().getCachedFinalUrl(episode.getEnclosureUrl());
+        File destination = DownloadService.getDownloadFile(this, podcastName, episode.getTitle(),
+            finalUrl != null ? finalUrl : episode.getEnclosureUrl());
+        if (destination == null) {
+            return;
+        }
+
+        try {
+            cache.promoteTo(destination);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to promote streamed episode to a download: " + episode.getTitle(), e);
+            return;
+        }
+
+        final String path = destination.getAbsolutePath();
+        final long downloadedAt = System.currentTimeMillis();
+        episodeRepo.updateEpisodeDownload(episodeId, path, downloadedAt);
+        // Downloaded episodes go to the backlog, as when DownloadService finishes one
+        final boolean toBacklog = episode.getState() != EpisodeState.BACKLOG &&
+            episode.getState() != EpisodeState.LISTENED;
+        if (toBacklog) {
+            episodeRepo.updateEpisodeState(episodeId, EpisodeState.BACKLOG);
+        }
+        Log.d(TAG, "Streamed episode kept as download: " + path);
+
+        new Handler(getMainLooper()).post(() -> {
+            if (currentEpisode != null && currentEpisode.getId() == episodeId) {
+                currentEpisode.setDownloadPath(path);
+                currentEpisode.setDownloadedAt(downloadedAt);
+                if (toBacklog) {
+                    currentEpisode.setState(EpisodeState.BACKLOG);
+                }
+            }
+        });
+    }
+
+    /**
+     * Point MediaPlayer at the given source and start preparing it.
+     * @param episode The episode being loaded
+     * @param audioUrl Local file path or resolved stream URL
+     */
+    private void prepareDataSource(Episode episode, String audioUrl) {
+        if (mediaPlayer == null) {
+            return;
+        }
+
         try {
             mediaPlayer.reset();
 
@@ -287,12 +689,18 @@ public class PlaybackService extends Service {
             }
 
             mediaPlayer.setDataSource(audioUrl);
+            if (startupTrace != null) {
+                startupTrace.mark(PlaybackStartupStats.Phase.SET_DATA_SOURCE);
+            }
 
             // Restore playback position
             int savedPosition = episode.getPlaybackPosition();
             if (savedPosition > 0) {
                 mediaPlayer.setOnSeekCompleteListener(mp -> {
                     Log.d(TAG, "Seek to saved position complete: " + savedPosition);
+                    if (startupTrace != null) {
+                        startupTrace.seekCompleted();
+                    }
                     mediaPlayer.setOnSeekCompleteListener(null);
                 });
             }
@@ -306,11 +714,13 @@ public class PlaybackService extends Service {
             mediaPlayer.setOnSeekCompleteListener(null);
             // Reset currentEpisode since load failed
             currentEpisode = null;
+            dropStartupTrace("load failed");
             notifyError("Failed to load episode: " + e.getMessage());
         } catch (IllegalStateException e) {
             Log.e(TAG, "MediaPlayer in invalid state", e);
             mediaPlayer.setOnSeekCompleteListener(null);
             currentEpisode = null;
+            dropStartupTrace("load failed");
             notifyError("Playback error - please try again");
         }
     }
@@ -351,12 +761,27 @@ public class PlaybackService extends Service {
 
         // Seek to saved position if needed
         int savedPosition = currentEpisode.getPlaybackPosition();
-        if (savedPosition > 0 && mediaPlayer.getCurrentPosition() == 0) {
-            mediaPlayer.seekTo(savedPosition * 1000);
+        long startPositionMs = mediaPlayer.getCurrentPosition();
+        if (savedPosition > 0 && startPositionMs == 0) {
+            startPositionMs = savedPosition * 1000L;
+            if (startupTrace != null) {
+                startupTrace.seekStarted();
+            }
+            mediaPlayer.seekTo((int) startPositionMs);
         }
 
         mediaPlayer.start();
         isPlaying = true;
+        scheduleSilenceSkip(startPositionMs);
+        listeningLog.onStart(currentEpisode, startPositionMs, getPlaybackSpeed());
+
+        if (startupTrace != null) {
+            startupTrace.mark(PlaybackStartupStats.Phase.START);
+            firstAudioFromMs = startPositionMs;
+            firstAudioDeadline = SystemClock.elapsedRealtime() + FIRST_AUDIO_TIMEOUT_MS;
+            positionHandler.removeCallbacks(firstAudioRunnable);
+            positionHandler.post(firstAudioRunnable);
+        }
 
         // Acquire wakelock
         if (wakeLock != null && !wakeLock.isHeld()) {
@@ -364,18 +789,23 @@ public class PlaybackService extends Service {
         }
 
         // Start position tracking
-        lastPositionSave = System.currentTimeMillis();
+        positionHandler.removeCallbacks(journalRunnable);
+        positionHandler.removeCallbacks(positionRunnable);
+        positionHandler.post(journalRunnable);
         positionHandler.post(positionRunnable);
 
         // Update notification
         startForeground(NOTIFICATION_ID, buildNotification());
 
-        // Notify listener
-        if (listener != null) {
-            listener.onPlaybackStarted(currentEpisode);
-        }
+        // Notify listeners
+        eventBus.dispatchStarted(currentEpisode);
 
         Log.d(TAG, "Playback started: " + currentEpisode.getTitle());
+
+        if (currentEpisode.getId() != prefetchedForEpisodeId) {
+            prefetchedForEpisodeId = currentEpisode.getId();
+            prefetchQueue(currentEpisode.getId());
+        }
     }
 
     /**
@@ -385,6 +815,8 @@ public class PlaybackService extends Service {
         if (mediaPlayer != null && isPlaying) {
             mediaPlayer.pause();
             isPlaying = false;
+            positionHandler.removeCallbacks(silenceSkipRunnable);
+            saveSilenceSaved();
 
             // Release wakelock
             if (wakeLock != null && wakeLock.isHeld()) {
@@ -393,11 +825,14 @@ public class PlaybackService extends Service {
 
             // Stop position tracking
             positionHandler.removeCallbacks(positionRunnable);
+            positionHandler.removeCallbacks(journalRunnable);
 
             // Save current position
             if (currentEpisode != null) {
-                int position = mediaPlayer.getCurrentPosition() / 1000;
-                savePlaybackPosition(position);
+                int positionMs = mediaPlayer.getCurrentPosition();
+                savePlaybackPosition(positionMs / 1000);
+                positionTracker.flush();
+                listeningLog.onStop(positionMs);
             }
 
             // Update notification
@@ -405,12 +840,13 @@ public class PlaybackService extends Service {
                 (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
             notificationManager.notify(NOTIFICATION_ID, buildNotification());
 
-            // Notify listener
-            if (listener != null && currentEpisode != null) {
-                listener.onPlaybackPaused(currentEpisode);
+            // Notify listeners
+            if (currentEpisode != null) {
+                eventBus.dispatchPaused(currentEpisode);
             }
 
-            Log.d(TAG, "Playback paused");
+            Log.d(TAG, "Playback paused, listener ticks saving " + eventBus.getWakeupsSavedPerHour() +
+                  " ticks/hour");
         }
     }
 
@@ -422,6 +858,8 @@ public class PlaybackService extends Service {
             if (isPlaying) {
                 mediaPlayer.stop();
                 isPlaying = false;
+                positionHandler.removeCallbacks(silenceSkipRunnable);
+                saveSilenceSaved();
             }
 
             // Release wakelock
@@ -431,23 +869,26 @@ public class PlaybackService extends Service {
 
             // Stop position tracking
             positionHandler.removeCallbacks(positionRunnable);
+            positionHandler.removeCallbacks(journalRunnable);
 
             // Save final position
             if (currentEpisode != null) {
-                int position = mediaPlayer.getCurrentPosition() / 1000;
-                savePlaybackPosition(position);
+                int positionMs = mediaPlayer.getCurrentPosition();
+                savePlaybackPosition(positionMs / 1000);
+                positionTracker.flush();
+                listeningLog.onStop(positionMs);
             }
         }
 
+        releaseLookAhead();
+        dropStartupTrace("stopped");
         currentEpisode = null;
 
         // Stop foreground service
         stopForeground(true);
 
-        // Notify listener
-        if (listener != null) {
-            listener.onPlaybackStopped();
-        }
+        // Notify listeners
+        eventBus.dispatchStopped();
 
         Log.d(TAG, "Playback stopped");
     }
@@ -464,6 +905,8 @@ public class PlaybackService extends Service {
 
                 mediaPlayer.seekTo(newPosition);
                 savePlaybackPosition(newPosition / 1000);
+                scheduleSilenceSkip(newPosition);
+                listeningLog.onSeek(currentEpisode, currentPosition, newPosition);
 
                 Log.d(TAG, "Skipped forward to: " + (newPosition / 1000) + "s");
             } catch (IllegalStateException e) {
@@ -483,6 +926,8 @@ public class PlaybackService extends Service {
 
                 mediaPlayer.seekTo(newPosition);
                 savePlaybackPosition(newPosition / 1000);
+                scheduleSilenceSkip(newPosition);
+                listeningLog.onSeek(currentEpisode, currentPosition, newPosition);
 
                 Log.d(TAG, "Skipped backward to: " + (newPosition / 1000) + "s");
             } catch (IllegalStateException e) {
@@ -491,6 +936,285 @@ public class PlaybackService extends Service {
         }
     }
 
+    /**
+     * Jump to the start of the next chapter.
+     * @return false if the episode has no chapters or is already in the last one
+     */
+    public boolean nextChapter() {
+        if (mediaPlayer == null || currentEpisode == null || chapterIndex.isEmpty()) {
+            return false;
+        }
+        try {
+            long target = chapterIndex.nextStart(mediaPlayer.getCurrentPosition());
+            if (target < 0) {
+                return false;
+            }
+            seekToMs(target);
+            return true;
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Error skipping to next chapter", e);
+            return false;
+        }
+    }
+
+    /**
+     * Jump to the start of the current chapter, or to the previous chapter if
+     * the current one has only just started.
+     * @return false if the episode has no chapters
+     */
+    public boolean previousChapter() {
+        if (mediaPlayer == null || currentEpisode == null || chapterIndex.isEmpty()) {
+            return false;
+        }
+        try {
+            long target = chapterIndex.previousStart(mediaPlayer.getCurrentPosition());
+            seekToMs(Math.max(0, target));
+            return true;
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Error skipping to previous chapter", e);
+            return false;
+        }
+    }
+
+    /**
+     * Jump to a chapter by its position in {@link #getChapterIndex()}.
+     * @param index Chapter index
+     */
+    public void seekToChapter(int index) {
+        if (mediaPlayer == null || currentEpisode == null || index < 0 || index >= chapterIndex.size()) {
+            return;
+        }
+        try {
+            seekToMs(chapterIndex.getStartMs(index));
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Error seeking to chapter", e);
+        }
+    }
+
+    /**
+     * @return Chapters of the current episode; empty until they have loaded
+     */
+    public ChapterIndex getChapterIndex() {
+        return chapterIndex;
+    }
+
+    /**
+     * @return Title of the chapter at the current position, or null if there is none
+     */
+    public String getCurrentChapterTitle() {
+        if (mediaPlayer == null || chapterIndex.isEmpty()) {
+            return null;
+        }
+        try {
+            int index = chapterIndex.indexAt(mediaPlayer.getCurrentPosition());
+            return index >= 0 ? chapterIndex.getTitle(index) : null;
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    private void seekToMs(long positionMs) {
+        listeningLog.onSeek(currentEpisode, mediaPlayer.getCurrentPosition(), positionMs);
+        mediaPlayer.seekTo((int) positionMs);
+        savePlaybackPosition((int) (positionMs / 1000));
+        scheduleSilenceSkip(positionMs);
+        Log.d(TAG, "Seeked to chapter at: " + (positionMs / 1000) + "s");
+    }
+
+    /**
+     * Load the episode's chapters in the background, fetching the chapters file
+     * if this is the first time the episode is played.
+     * @param episode The episode that just became current
+     */
+    private void loadChapters(final Episode episode) {
+        chapterIndex = ChapterIndex.EMPTY;
+        if (chapterExecutor == null || chapterExecutor.isShutdown()) {
+            return;
+        }
+        final Handler mainHandler = new Handler(getMainLooper());
+        chapterExecutor.execute(() -> {
+            List<Chapter> chapters = chapterRepo.getOrFetchChapters(episode);
+            if (chapters.isEmpty()) {
+                return;
+            }
+            final ChapterIndex index = ChapterIndex.of(chapters);
+            mainHandler.post(() -> {
+                if (currentEpisode != null && currentEpisode.getId() == episode.getId()) {
+                    chapterIndex = index;
+                    Log.d(TAG, "Loaded " + index.size() + " chapters for: " + episode.getTitle());
+                }
+            });
+        });
+    }
+
+    /**
+     * Polled right after start() until the position moves, which is the closest
+     * MediaPlayer gets to telling us audio is coming out.
+     */
+    private void checkFirstAudio() {
+        if (startupTrace == null || mediaPlayer == null) {
+            return;
+        }
+        if (!isPlaying) {
+            dropStartupTrace("paused before audio");
+            return;
+        }
+        try {
+            if (mediaPlayer.getCurrentPosition() > firstAudioFromMs) {
+                startupTrace.finish();
+                startupTrace = null;
+                if (dbExecutor != null && !dbExecutor.isShutdown()) {
+                    final File statsFile = new File(getFilesDir(), STARTUP_STATS_FILE);
+                    dbExecutor.execute(() -> PlaybackStartupStats.getInstance().writeTo(statsFile));
+                }
+                return;
+            }
+        } catch (IllegalStateException e) {
+            dropStartupTrace("player reset");
+            return;
+        }
+        if (SystemClock.elapsedRealtime() > firstAudioDeadline) {
+            dropStartupTrace("no audio after " + FIRST_AUDIO_TIMEOUT_MS + " ms");
+            return;
+        }
+        positionHandler.postDelayed(firstAudioRunnable, FIRST_AUDIO_POLL_MS);
+    }
+
+    /**
+     * Stop timing the current start without recording it.
+     * @param why Reason to log, or null to drop silently
+     */
+    private void dropStartupTrace(String why) {
+        if (startupTrace != null && why != null) {
+            Log.d(TAG, "Startup timing abandoned: " + why);
+        }
+        startupTrace = null;
+        positionHandler.removeCallbacks(firstAudioRunnable);
+    }
+
+    /**
+     * @return True if long silences in downloaded episodes are skipped
+     */
+    public boolean isTrimSilenceEnabled() {
+        return prefs.getBoolean(PREF_TRIM_SILENCE, false);
+    }
+
+    /**
+     * Turn silence trimming on or off. Takes effect immediately for the current episode.
+     * @param enabled Whether to skip long silences
+     */
+    public void setTrimSilenceEnabled(boolean enabled) {
+        prefs.edit().putBoolean(PREF_TRIM_SILENCE, enabled).apply();
+        if (currentEpisode != null) {
+            saveSilenceSaved();
+            loadSilenceMap(currentEpisode);
+        }
+    }
+
+    /**
+     * @param episodeId The episode ID
+     * @return Listening time silence trimming has saved in the episode so far
+     */
+    public long getSilenceSavedMs(long episodeId) {
+        if (currentEpisode != null && currentEpisode.getId() == episodeId) {
+            return silenceSavedMs;
+        }
+        return prefs.getLong(PREF_SILENCE_SAVED_PREFIX + episodeId, 0);
+    }
+
+    /**
+     * Start finding the silences in the episode that just became current. Only
+     * downloaded episodes are analyzed; streams play untrimmed.
+     * @param episode The episode that just became current
+     */
+    private void loadSilenceMap(final Episode episode) {
+        if (silenceTask != null) {
+            silenceTask.cancel(true);
+            silenceTask = null;
+        }
+        positionHandler.removeCallbacks(silenceSkipRunnable);
+        silenceMap = SilenceMap.EMPTY;
+        silenceSavedMs = prefs.getLong(PREF_SILENCE_SAVED_PREFIX + episode.getId(), 0);
+
+        if (!isTrimSilenceEnabled() || !episode.isDownloaded() ||
+            silenceExecutor == null || silenceExecutor.isShutdown()) {
+            return;
+        }
+        final File audioFile = new File(episode.getDownloadPath());
+        final Handler mainHandler = new Handler(getMainLooper());
+        silenceTask = silenceExecutor.submit(() -> {
+            SilenceMap map = silenceAnalyzer.analyze(episode.getId(), audioFile,
+                partial -> mainHandler.post(() -> applySilenceMap(episode.getId(), partial)));
+            if (map != null) {
+                mainHandler.post(() -> applySilenceMap(episode.getId(), map));
+            }
+        });
+    }
+
+    private void applySilenceMap(long episodeId, SilenceMap map) {
+        if (currentEpisode == null || currentEpisode.getId() != episodeId || !isTrimSilenceEnabled()) {
+            return;
+        }
+        silenceMap = map;
+        if (map.isComplete()) {
+            Log.d(TAG, "Trimming " + map.size() + " silences (" + (map.getTotalMs() / 1000) + " s) from: " +
+                  currentEpisode.getTitle());
+        }
+        if (isPlaying && mediaPlayer != null) {
+            try {
+                scheduleSilenceSkip(mediaPlayer.getCurrentPosition());
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "Error scheduling silence skip", e);
+            }
+        }
+    }
+
+    /**
+     * Arrange to jump over the next silence once playback reaches it.
+     * @param positionMs Current playback position; passed in because MediaPlayer
+     *                   may still report the old position right after a seek
+     */
+    private void scheduleSilenceSkip(long positionMs) {
+        positionHandler.removeCallbacks(silenceSkipRunnable);
+        if (!isPlaying || silenceMap.isEmpty()) {
+            return;
+        }
+        int index = silenceMap.indexFrom(positionMs);
+        if (index >= 0) {
+            positionHandler.postDelayed(silenceSkipRunnable, Math.max(0, silenceMap.getStartMs(index) - positionMs));
+        }
+    }
+
+    private void skipSilence() {
+        if (!isPlaying || mediaPlayer == null) {
+            return;
+        }
+        try {
+            long position = mediaPlayer.getCurrentPosition();
+            int index = silenceMap.indexFrom(position);
+            if (index < 0) {
+                return;
+            }
+            long end = silenceMap.getEndMs(index);
+            if (position < silenceMap.getStartMs(index) || end - position < SILENCE_MIN_SKIP_MS) {
+                // Woke up early, or too close to the end of the silence to bother
+                scheduleSilenceSkip(position < silenceMap.getStartMs(index) ? position : end);
+                return;
+            }
+            mediaPlayer.seekTo(end, MediaPlayer.SEEK_CLOSEST);
+            silenceSavedMs += end - position;
+            scheduleSilenceSkip(end);
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Error skipping silence", e);
+        }
+    }
+
+    private void saveSilenceSaved() {
+        if (currentEpisode != null && silenceSavedMs > 0) {
+            prefs.edit().putLong(PREF_SILENCE_SAVED_PREFIX + currentEpisode.getId(), silenceSavedMs).apply();
+        }
+    }
+
     /**
      * Seek to specific position in seconds
      */
@@ -500,8 +1224,10 @@ public class PlaybackService extends Service {
                 int duration = mediaPlayer.getDuration() / 1000;
                 int clampedPosition = Math.max(0, Math.min(positionSeconds, duration));
 
+                listeningLog.onSeek(currentEpisode, mediaPlayer.getCurrentPosition(), clampedPosition * 1000L);
                 mediaPlayer.seekTo(clampedPosition * 1000);
                 savePlaybackPosition(clampedPosition);
+                scheduleSilenceSkip(clampedPosition * 1000L);
 
                 Log.d(TAG, "Seeked to: " + clampedPosition + "s");
             } catch (IllegalStateException e) {
@@ -510,6 +1236,14 @@ public class PlaybackService extends Service {
         }
     }
 
+    private float getPlaybackSpeed() {
+        try {
+            return mediaPlayer.getPlaybackParams().getSpeed();
+        } catch (IllegalStateException e) {
+            return 1f;
+        }
+    }
+
     /**
      * Get current playback position in seconds
      */
@@ -557,6 +1291,7 @@ public class PlaybackService extends Service {
      */
     private void onPlaybackCompleted() {
         Log.d(TAG, "Playback completed");
+        completedAt = SystemClock.elapsedRealtime();
 
         isPlaying = false;
 
@@ -567,12 +1302,22 @@ public class PlaybackService extends Service {
 
         // Stop position tracking
         positionHandler.removeCallbacks(positionRunnable);
+        positionHandler.removeCallbacks(journalRunnable);
+        positionHandler.removeCallbacks(silenceSkipRunnable);
 
         // Save final position and update state
         if (currentEpisode != null) {
+            listeningLog.onComplete(currentEpisode, getDuration() * 1000L);
+            saveSilenceSaved();
+            if (silenceSavedMs > 0) {
+                Log.d(TAG, "Silence trimming saved " + (silenceSavedMs / 1000) + " s of " +
+                      currentEpisode.getTitle());
+            }
+
             int duration = getDuration();
             int currentPosition = getCurrentPosition();
             savePlaybackPosition(duration);
+            positionTracker.flush();
 
             // Check if episode was played >90% - mark as LISTENED
             if (duration > 0) {
@@ -593,10 +1338,19 @@ public class PlaybackService extends Service {
                 Log.d(TAG, "Episode auto-removed from BACKLOG on completion");
             }
 
-            // Notify listener
-            if (listener != null) {
-                listener.onPlaybackCompleted(currentEpisode);
+            // A finished episode leaves the queue
+            final long completedId = currentEpisode.getId();
+            if (dbExecutor != null && !dbExecutor.isShutdown()) {
+                dbExecutor.execute(() -> queueRepo.remove(completedId));
             }
+
+            // Notify listeners
+            eventBus.dispatchCompleted(currentEpisode);
+        }
+
+        // Continue with the next episode if one was looked ahead
+        if (lookAheadEpisode != null) {
+            advanceToLookAhead();
         }
 
         // Update notification
@@ -615,7 +1369,10 @@ public class PlaybackService extends Service {
                 if (intent != null && intent.hasExtra(EXTRA_EPISODE_ID)) {
                     long episodeId = intent.getLongExtra(EXTRA_EPISODE_ID, -1);
                     if (episodeId != -1) {
-                        loadEpisodeById(episodeId);
+                        PlaybackStartupStats.Trace trace = PlaybackStartupStats.getInstance().startTrace(
+                            intent.getLongExtra(EXTRA_REQUESTED_AT, SystemClock.elapsedRealtime()));
+                        trace.mark(PlaybackStartupStats.Phase.INTENT);
+                        loadEpisodeById(episodeId, trace);
                     }
                 }
                 break;
@@ -641,16 +1398,18 @@ public class PlaybackService extends Service {
     /**
      * Load an episode by ID from the database
      */
-    private void loadEpisodeById(long episodeId) {
+    private void loadEpisodeById(long episodeId, PlaybackStartupStats.Trace trace) {
         // Load episode on background thread
         if (dbExecutor != null && !dbExecutor.isShutdown()) {
             dbExecutor.execute(() -> {
                 try {
                     Episode episode = episodeRepo.getEpisodeById(episodeId);
+                    trace.mark(PlaybackStartupStats.Phase.DB_LOAD);
                     if (episode != null) {
                         // Load episode on main thread
                         new android.os.Handler(getMainLooper()).post(() -> {
-                            loadEpisode(episode);
+                            trace.mark(PlaybackStartupStats.Phase.MAIN_HOP);
+                            loadEpisode(episode, trace);
                         });
                     } else {
                         Log.e(TAG, "Episode not found: " + episodeId);
@@ -665,34 +1424,320 @@ public class PlaybackService extends Service {
     }
 
     /**
-     * Save playback position to database
-     * Uses background thread to avoid blocking playback
+     * Skip to the next episode in the queue, dropping the current one from it.
+     */
+    public void playNextInQueue() {
+        if (dbExecutor == null || dbExecutor.isShutdown()) {
+            return;
+        }
+        final long currentId = currentEpisode != null ? currentEpisode.getId() : -1;
+        dbExecutor.execute(() -> {
+            Episode next = queueRepo.getNext(currentId);
+            if (currentId != -1) {
+                queueRepo.remove(currentId);
+            }
+            if (next == null) {
+                notifyError("Queue is empty");
+                return;
+            }
+            new Handler(getMainLooper()).post(() -> loadEpisode(next));
+        });
+    }
+
+    /**
+     * Download the next few queued episodes in the background, within the
+     * storage budget, so they play from disk when their turn comes.
+     * @param currentEpisodeId The episode that just started
+     */
+    private void prefetchQueue(long currentEpisodeId) {
+        if (dbExecutor == null || dbExecutor.isShutdown()) {
+            return;
+        }
+        dbExecutor.execute(() -> {
+            List<Episode> upcoming = queueRepo.getUpcoming(currentEpisodeId, QUEUE_PREFETCH_COUNT);
+            long[] ids = new AutoDownloadPolicy(this, dbHelper).selectQueuePrefetch(upcoming);
+            if (ids.length > 0) {
+                Log.d(TAG, "Prefetching " + ids.length + " queued episodes");
+                DownloadService.startAutoDownloads(this, ids);
+            }
+        });
+    }
+
+    /**
+     * Find the next episode and start preparing it on a second player.
+     */
+    private void prepareLookAhead() {
+        if (currentEpisode == null || dbExecutor == null || dbExecutor.isShutdown()) {
+            return;
+        }
+        lookAheadRequested = true;
+
+        final long currentId = currentEpisode.getId();
+        dbExecutor.execute(() -> {
+            Episode next = findNextEpisode(currentId);
+            if (next != null) {
+                new Handler(getMainLooper()).post(() -> startLookAhead(next, currentId));
+            }
+        });
+    }
+
+    /**
+     * Pick the episode to play after the current one. The queue comes first; with
+     * nothing queued, fall back to the backlog.
+     * @param currentId The episode playing now
+     * @return The next playable episode, or null if there is none
+     */
+    private Episode findNextEpisode(long currentId) {
+        Episode queued = queueRepo.getNext(currentId);
+        if (queued != null) {
+            return queued;
+        }
+        return findNextBacklogEpisode(currentId);
+    }
+
+    /**
+     * Pick the episode after the current one in backlog list order, or the top of
+     * the backlog if the current episode isn't in it.
+     * @param currentId The episode playing now
+     * @return The next playable backlog episode, or null if there is none
+     */
+    private Episode findNextBacklogEpisode(long currentId) {
+        List<Episode> backlog = episodeRepo.getEpisodesByState(EpisodeState.BACKLOG);
+        int currentIndex = -1;
+        for (int i = 0; i < backlog.size(); i++) {
+            if (backlog.get(i).getId() == currentId) {
+                currentIndex = i;
+                break;
+            }
+        }
+        for (int i = currentIndex + 1; i < backlog.size(); i++) {
+            Episode candidate = backlog.get(i);
+            if (candidate.isDownloaded() || candidate.getEnclosureUrl() != null) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resolve the next episode's source and open the look-ahead player on it.
+     * @param next The episode to prepare
+     * @param currentId The episode that was playing when the look-ahead was requested
+     */
+    private void startLookAhead(final Episode next, final long currentId) {
+        if (currentEpisode == null || currentEpisode.getId() != currentId || lookAheadEpisode != null) {
+            return;
+        }
+        lookAheadEpisode = next;
+
+        // Fetch its chapters now so they're stored by the time it starts
+        if (next.getChaptersUrl() != null && chapterExecutor != null && !chapterExecutor.isShutdown()) {
+            chapterExecutor.execute(() -> chapterRepo.getOrFetchChapters(next));
+        }
+
+        if (next.isDownloaded()) {
+            openLookAhead(next, next.getDownloadPath());
+        } else {
+            RedirectCache.getInstance().resolveAsync(next.getEnclosureUrl(), (finalUrl, fromCache) -> {
+                if (lookAheadEpisode == next && lookAheadPlayer == null &&
+                    currentEpisode != null && currentEpisode.getId() == currentId) {
+                    openLookAhead(next, getStreamUrl(next, finalUrl));
+                }
+            });
+        }
+    }
+
+    private void openLookAhead(Episode next, String audioUrl) {
+        MediaPlayer player = new MediaPlayer();
+        attachPlayerListeners(player);
+        player.setOnPreparedListener(this::onLookAheadPrepared);
+        try {
+            player.setDataSource(audioUrl);
+            player.prepareAsync();
+        } catch (IOException | IllegalStateException e) {
+            Log.w(TAG, "Failed to open look-ahead for: " + next.getTitle(), e);
+            player.release();
+            return;
+        }
+        lookAheadPlayer = player;
+        lookAheadPrepared = false;
+        Log.d(TAG, "Preparing look-ahead: " + next.getTitle());
+    }
+
+    private void onLookAheadPrepared(MediaPlayer player) {
+        if (player != lookAheadPlayer || lookAheadEpisode == null) {
+            return;
+        }
+        lookAheadPrepared = true;
+
+        int savedPosition = lookAheadEpisode.getPlaybackPosition();
+        if (savedPosition > 0) {
+            player.seekTo(savedPosition * 1000);
+        }
+
+        if (advancePending) {
+            // The current episode already finished while we were preparing
+            promoteLookAhead(PlaybackStartupStats.getInstance().startTrace(completedAt));
+            return;
+        }
+
+        try {
+            // Gapless hand-off: MediaPlayer starts this one the moment the current one completes
+            mediaPlayer.setNextMediaPlayer(player);
+            Log.d(TAG, "Look-ahead ready and chained: " + lookAheadEpisode.getTitle());
+        } catch (IllegalStateException e) {
+            Log.w(TAG, "Could not chain look-ahead, will swap on completion", e);
+        }
+    }
+
+    /**
+     * Move on to the looked-ahead episode after the current one completed.
+     */
+    private void advanceToLookAhead() {
+        if (lookAheadPlayer != null && lookAheadPrepared) {
+            promoteLookAhead(PlaybackStartupStats.getInstance().startTrace(completedAt));
+        } else if (lookAheadPlayer != null) {
+            advancePending = true;
+        } else {
+            // Look-ahead was dropped under memory pressure; fall back to a cold load
+            Episode next = lookAheadEpisode;
+            releaseLookAhead();
+            loadEpisode(next);
+        }
+    }
+
+    /**
+     * Make the look-ahead player the main player and start (or continue) playback on it.
+     * @param trace Timing of this transition, recorded as a look-ahead start once the position advances
+     */
+    private void promoteLookAhead(PlaybackStartupStats.Trace trace) {
+        MediaPlayer previous = mediaPlayer;
+        Episode next = lookAheadEpisode;
+
+        mediaPlayer = lookAheadPlayer;
+        lookAheadPlayer = null;
+        lookAheadEpisode = null;
+        lookAheadPrepared = false;
+        lookAheadRequested = false;
+        advancePending = false;
+
+        attachPlayerListeners(mediaPlayer);
+        if (previous != null) {
+            previous.release();
+        }
+
+        currentEpisode = next;
+        loadChapters(next);
+        loadSilenceMap(next);
+        dropStartupTrace(null);
+        trace.setSource(PlaybackStartupStats.Source.LOOK_AHEAD);
+        startupTrace = trace;
+        startPlayback();
+
+        prewarmBacklogRedirects(next.getId());
+    }
+
+    /**
+     * Drop the look-ahead player and forget the next episode.
+     */
+    private void releaseLookAhead() {
+        if (lookAheadPlayer != null) {
+            if (mediaPlayer != null) {
+                try {
+                    mediaPlayer.setNextMediaPlayer(null);
+                } catch (IllegalStateException e) {
+                    // Main player already released or reset
+                }
+            }
+            lookAheadPlayer.release();
+            lookAheadPlayer = null;
+        }
+        lookAheadEpisode = null;
+        lookAheadRequested = false;
+        lookAheadPrepared = false;
+        advancePending = false;
+    }
+
+    /**
+     * Last tier MemoryBudget sheds: only reached at RUNNING_CRITICAL, COMPLETE and onLowMemory.
+     */
+    private void trimLookAhead(int level) {
+        if (lookAheadPlayer != null) {
+            // Keep lookAheadEpisode so completion can still advance, just without a warm player
+            Log.d(TAG, "Releasing look-ahead player under memory pressure (level " + level + ")");
+            try {
+                mediaPlayer.setNextMediaPlayer(null);
+            } catch (IllegalStateException e) {
+                // Main player not in a state that accepts this; releasing below is enough
+            }
+            lookAheadPlayer.release();
+            lookAheadPlayer = null;
+            lookAheadPrepared = false;
+        }
+    }
+
+    /**
+     * Resolve redirect chains for the next few streamable queued and backlog episodes so
+     * starting one of them doesn't wait on analytics redirects.
+     * @param currentEpisodeId The episode being loaded, skipped when pre-warming
+     */
+    private void prewarmBacklogRedirects(long currentEpisodeId) {
+        if (dbExecutor == null || dbExecutor.isShutdown()) {
+            return;
+        }
+        dbExecutor.execute(() -> {
+            List<String> urls = new ArrayList<>();
+            List<Episode> candidates = queueRepo.getUpcoming(currentEpisodeId, REDIRECT_PREWARM_COUNT);
+            candidates.addAll(episodeRepo.getEpisodesByState(EpisodeState.BACKLOG));
+            for (Episode episode : candidates) {
+                if (urls.size() >= REDIRECT_PREWARM_COUNT) {
+                    break;
+                }
+                if (episode.getId() != currentEpisodeId && !episode.isDownloaded() &&
+                    episode.getEnclosureUrl() != null) {
+                    urls.add(episode.getEnclosureUrl());
+                }
+            }
+            if (!urls.isEmpty()) {
+                RedirectCache.getInstance().prewarm(urls);
+            }
+        });
+    }
+
+    /**
+     * Render the show notes of the episode being loaded and of the one that plays
+     * after it, so opening them from the player doesn't wait on HTML parsing.
+     * @param episode The episode being loaded
+     */
+    private void prerenderShowNotes(final Episode episode) {
+        final ShowNotesRenderer renderer = ShowNotesRenderer.getInstance(this);
+        renderer.prerender(episode.getId());
+        if (dbExecutor == null || dbExecutor.isShutdown()) {
+            return;
+        }
+        dbExecutor.execute(() -> {
+            Episode next = findNextEpisode(episode.getId());
+            if (next != null) {
+                new Handler(getMainLooper()).post(() -> renderer.prerender(next.getId()));
+            }
+        });
+    }
+
+    /**
+     * Record playback position
+     * Journaled immediately; written to the database by PositionTracker on
+     * pause, stop, episode switch or its coarse flush interval
      */
     private void savePlaybackPosition(int positionSeconds) {
         if (currentEpisode == null) {
             return;
         }
 
-        final long episodeId = currentEpisode.getId();
-        final int position = positionSeconds;
-
         // Update in-memory episode immediately
         currentEpisode.setPlaybackPosition(positionSeconds);
 
-        // Save to database on background thread
         if (dbExecutor != null && !dbExecutor.isShutdown()) {
-            dbExecutor.execute(() -> {
-                try {
-                    int rowsAffected = episodeRepo.updateEpisodePlaybackPosition(episodeId, position);
-                    if (rowsAffected > 0) {
-                        Log.d(TAG, "Saved position: " + position + "s for episode ID: " + episodeId);
-                    } else {
-                        Log.w(TAG, "Failed to save position - episode may have been deleted: " + episodeId);
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error saving playback position to database", e);
-                }
-            });
+            positionTracker.update(currentEpisode.getId(), positionSeconds);
         }
     }
 
@@ -871,12 +1916,10 @@ public class PlaybackService extends Service {
     }
 
     /**
-     * Notify listener of error
+     * Notify listeners of error
      */
     private void notifyError(String error) {
-        if (listener != null) {
-            listener.onError(error);
-        }
+        eventBus.dispatchError(error);
     }
 
     /**
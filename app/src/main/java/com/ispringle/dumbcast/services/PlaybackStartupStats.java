@@ -0,0 +1,226 @@
+package com.ispringle.dumbcast.services;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.ispringle.dumbcast.BuildConfig;
+import com.ispringle.dumbcast.utils.LatencyHistogram;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Phase-level timing of playback startup, from pressing play to audio coming out.
+ *
+ * Every start is split into the phases below and each phase goes into its own
+ * {@link LatencyHistogram}, separately for downloaded files and streams, since
+ * their costs differ by orders of magnitude. Moving on to an episode the
+ * look-ahead player already prepared is a third source: it is timed from the
+ * previous episode's completion (or from play pressed, when the prepared episode
+ * is picked by hand), and everything before start() counts as START.
+ * Histograms live for the lifetime of the process; {@link #writeTo(File)} exports
+ * them so startup latency can be compared between builds.
+ */
+public class PlaybackStartupStats {
+
+    private static final String TAG = "PlaybackStartupStats";
+
+    /**
+     * Startup phases, in the order they happen.
+     */
+    public enum Phase {
+        /** Play pressed until the service received the load intent */
+        INTENT,
+        /** Reading the episode from the database on dbExecutor */
+        DB_LOAD,
+        /** Posting the loaded episode back to the main thread */
+        MAIN_HOP,
+        /** Resolving the enclosure's redirects (streams only) */
+        RESOLVE,
+        /** MediaPlayer.reset() and setDataSource() */
+        SET_DATA_SOURCE,
+        /** prepareAsync() until onPrepared */
+        PREPARE,
+        /** Seeking to the saved position and calling start() */
+        START,
+        /** start() until the playback position first advances */
+        FIRST_AUDIO,
+        /** Saved-position seek until onSeekComplete; overlaps START and FIRST_AUDIO */
+        SEEK,
+        /** Play pressed until audio, end to end */
+        TOTAL
+    }
+
+    /**
+     * Where the audio of a start comes from.
+     */
+    public enum Source {
+        DOWNLOADED("Downloaded"),
+        STREAM("Stream"),
+        LOOK_AHEAD("Look-ahead");
+
+        private final String label;
+
+        Source(String label) {
+            this.label = label;
+        }
+    }
+
+    private static PlaybackStartupStats instance;
+
+    private final LatencyHistogram[][] histograms =
+        new LatencyHistogram[Source.values().length][Phase.values().length];
+
+    private PlaybackStartupStats() {
+        for (LatencyHistogram[] bySource : histograms) {
+            for (int i = 0; i < bySource.length; i++) {
+                bySource[i] = new LatencyHistogram();
+            }
+        }
+    }
+
+    public static synchronized PlaybackStartupStats getInstance() {
+        if (instance == null) {
+            instance = new PlaybackStartupStats();
+        }
+        return instance;
+    }
+
+    /**
+     * Begin timing a playback start.
+     * @param requestedAt SystemClock.elapsedRealtime() when play was pressed
+     * @return A trace to mark phases on
+     */
+    public Trace startTrace(long requestedAt) {
+        return new Trace(requestedAt);
+    }
+
+    /**
+     * @param source Where the audio came from
+     * @param phase The phase
+     * @return The histogram for that phase
+     */
+    public LatencyHistogram getHistogram(Source source, Phase phase) {
+        return histograms[source.ordinal()][phase.ordinal()];
+    }
+
+    /**
+     * @return Every histogram as text, one phase per line
+     */
+    public String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append("Playback startup, build ").append(BuildConfig.VERSION_NAME)
+            .append(" (").append(BuildConfig.VERSION_CODE).append(")\n");
+        for (Source source : Source.values()) {
+            appendSource(out, source);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Write {@link #dump()} to a file, replacing what was there.
+     * @param file Destination
+     */
+    public void writeTo(File file) {
+        String stamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).format(new Date());
+        try (Writer writer = new FileWriter(file)) {
+            writer.write("# " + stamp + "\n");
+            writer.write(dump());
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write startup stats to " + file, e);
+        }
+    }
+
+    private void appendSource(StringBuilder out, Source source) {
+        out.append('\n').append(source.label).append(":\n");
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = getHistogram(source, phase);
+            if (histogram.getCount() > 0) {
+                out.append(String.format(Locale.US, "  %-16s %s%n", phase.name(), histogram));
+            }
+        }
+    }
+
+    /**
+     * Timing of one playback start. Each {@link #mark} closes the phase that has
+     * been running since the previous mark. Marks are made on the main thread,
+     * except DB_LOAD which is made on dbExecutor before the main-thread hop.
+     */
+    public class Trace {
+        private final long requestedAt;
+        private final long[] durations = new long[Phase.values().length];
+        private volatile long lastMarkAt;
+        private Source source = Source.DOWNLOADED;
+        private long seekStartedAt = -1;
+
+        private Trace(long requestedAt) {
+            this.requestedAt = requestedAt;
+            this.lastMarkAt = requestedAt;
+            Arrays.fill(durations, -1);
+        }
+
+        /**
+         * @param source Where the audio of this start comes from
+         */
+        public void setSource(Source source) {
+            this.source = source;
+        }
+
+        /**
+         * End a phase now.
+         * @param phase The phase that just finished
+         */
+        public void mark(Phase phase) {
+            long now = SystemClock.elapsedRealtime();
+            durations[phase.ordinal()] = now - lastMarkAt;
+            lastMarkAt = now;
+        }
+
+        /**
+         * Note that the saved-position seek was issued. Doesn't end a phase.
+         */
+        public void seekStarted() {
+            seekStartedAt = SystemClock.elapsedRealtime();
+        }
+
+        /**
+         * Note that the saved-position seek finished.
+         */
+        public void seekCompleted() {
+            if (seekStartedAt >= 0) {
+                durations[Phase.SEEK.ordinal()] = SystemClock.elapsedRealtime() - seekStartedAt;
+                seekStartedAt = -1;
+            }
+        }
+
+        /**
+         * Audio is coming out: close the last phase and record the whole trace.
+         * @return Time from play pressed to audio
+         */
+        public long finish() {
+            mark(Phase.FIRST_AUDIO);
+            long total = lastMarkAt - requestedAt;
+            durations[Phase.TOTAL.ordinal()] = total;
+
+            StringBuilder line = new StringBuilder(source.label)
+                .append(" start took ").append(total).append(" ms:");
+            for (Phase phase : Phase.values()) {
+                long duration = durations[phase.ordinal()];
+                if (duration >= 0) {
+                    getHistogram(source, phase).record(duration);
+                    if (phase != Phase.TOTAL) {
+                        line.append(' ').append(phase.name().toLowerCase(Locale.US)).append('=').append(duration);
+                    }
+                }
+            }
+            Log.d(TAG, line.toString());
+            return total;
+        }
+    }
+}
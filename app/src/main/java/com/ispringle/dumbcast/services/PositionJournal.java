@@ -0,0 +1,135 @@
+package com.ispringle.dumbcast.services;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Tiny crash-safe journal of playback positions.
+ *
+ * The file is a fixed ring of small records, each overwritten in place and
+ * opened in "rwd" mode so every write reaches storage before returning. That
+ * costs one small synchronous write per second of playback instead of a full
+ * SQLite transaction. On startup the record with the highest sequence number
+ * and a valid checksum is the last known position; a torn write only damages
+ * the slot being written, never an older record.
+ *
+ * Record layout (28 bytes): sequence (long), episode ID (long),
+ * position in seconds (int), flags (int), CRC32 of the preceding 24 bytes (int).
+ *
+ * Not thread-safe; callers serialize access on a single background thread.
+ */
+class PositionJournal {
+
+    static final int FLAG_FLUSHED = 1;
+
+    private static final int RECORD_SIZE = 28;
+    private static final int PAYLOAD_SIZE = 24;
+    private static final int SLOT_COUNT = 64;
+
+    private final File file;
+    private RandomAccessFile raf;
+    private long nextSequence = 1;
+
+    /**
+     * A single journaled position.
+     */
+    static class Record {
+        final long sequence;
+        final long episodeId;
+        final int positionSeconds;
+        final int flags;
+
+        Record(long sequence, long episodeId, int positionSeconds, int flags) {
+            this.sequence = sequence;
+            this.episodeId = episodeId;
+            this.positionSeconds = positionSeconds;
+            this.flags = flags;
+        }
+
+        boolean isFlushed() {
+            return (flags & FLAG_FLUSHED) != 0;
+        }
+    }
+
+    PositionJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Open the journal and find the most recent valid record.
+     * @return The latest record, or null if the journal is empty or unreadable
+     * @throws IOException If the file can't be opened
+     */
+    Record open() throws IOException {
+        raf = new RandomAccessFile(file, "rwd");
+        if (raf.length() != (long) RECORD_SIZE * SLOT_COUNT) {
+            raf.setLength((long) RECORD_SIZE * SLOT_COUNT);
+        }
+
+        byte[] contents = new byte[RECORD_SIZE * SLOT_COUNT];
+        raf.seek(0);
+        raf.readFully(contents);
+
+        Record latest = null;
+        ByteBuffer buffer = ByteBuffer.wrap(contents);
+        CRC32 crc = new CRC32();
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            int offset = slot * RECORD_SIZE;
+            crc.reset();
+            crc.update(contents, offset, PAYLOAD_SIZE);
+            if ((int) crc.getValue() != buffer.getInt(offset + PAYLOAD_SIZE)) {
+                continue;
+            }
+            long sequence = buffer.getLong(offset);
+            if (sequence > 0 && (latest == null || sequence > latest.sequence)) {
+                latest = new Record(sequence, buffer.getLong(offset + 8),
+                    buffer.getInt(offset + 16), buffer.getInt(offset + 20));
+            }
+        }
+
+        if (latest != null) {
+            nextSequence = latest.sequence + 1;
+        }
+        return latest;
+    }
+
+    /**
+     * Append a record, overwriting the oldest slot in the ring.
+     * @param episodeId The episode being played
+     * @param positionSeconds Playback position
+     * @param flags Record flags, e.g. {@link #FLAG_FLUSHED}
+     * @throws IOException If the write fails
+     */
+    void append(long episodeId, int positionSeconds, int flags) throws IOException {
+        if (raf == null) {
+            throw new IOException("Journal not open");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+        buffer.putLong(nextSequence);
+        buffer.putLong(episodeId);
+        buffer.putInt(positionSeconds);
+        buffer.putInt(flags);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, PAYLOAD_SIZE);
+        buffer.putInt((int) crc.getValue());
+
+        raf.seek((nextSequence % SLOT_COUNT) * RECORD_SIZE);
+        raf.write(buffer.array());
+        nextSequence++;
+    }
+
+    void close() {
+        if (raf != null) {
+            try {
+                raf.close();
+            } catch (IOException ignored) {
+            }
+            raf = null;
+        }
+    }
+}
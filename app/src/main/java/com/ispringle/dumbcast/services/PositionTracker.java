@@ -0,0 +1,150 @@
+package com.ispringle.dumbcast.services;
+
+import android.util.Log;
+
+import com.ispringle.dumbcast.data.EpisodeRepository;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+/**
+ * Keeps the playback position in memory and persists it cheaply.
+ *
+ * Every position change is appended to a {@link PositionJournal}, so nothing is
+ * lost if the process dies. SQLite is only written when playback pauses or
+ * stops, when the episode changes, or every {@link #FLUSH_INTERVAL_MS} while
+ * playing. On the next start {@link #recover()} copies any position that never
+ * reached the database out of the journal.
+ *
+ * Public methods are called on the main thread. All I/O runs on the supplied
+ * executor, which must be single-threaded so journal and database writes stay ordered.
+ */
+public class PositionTracker {
+
+    private static final String TAG = "PositionTracker";
+    private static final long FLUSH_INTERVAL_MS = 5 * 60 * 1000; // 5 minutes
+
+    private final PositionJournal journal;
+    private final EpisodeRepository episodeRepo;
+    private final Executor executor;
+
+    private long episodeId = -1;
+    private int position = -1;
+    private int flushedPosition = -1;
+    private long lastFlushAt = 0;
+
+    // Session counters, touched only on the executor thread
+    private int journalWrites = 0;
+    private int dbWrites = 0;
+
+    /**
+     * @param journalFile Location of the journal file
+     * @param episodeRepo Repository used to flush positions
+     * @param executor Single-threaded executor for journal and database I/O
+     */
+    public PositionTracker(File journalFile, EpisodeRepository episodeRepo, Executor executor) {
+        this.journal = new PositionJournal(journalFile);
+        this.episodeRepo = episodeRepo;
+        this.executor = executor;
+    }
+
+    /**
+     * Open the journal and write back any position that was journaled but never flushed.
+     * Must run on the executor before anything reads positions from the database.
+     */
+    public void recover() {
+        try {
+            PositionJournal.Record latest = journal.open();
+            if (latest != null && !latest.isFlushed()) {
+                int rows = episodeRepo.updateEpisodePlaybackPosition(latest.episodeId, latest.positionSeconds);
+                journal.append(latest.episodeId, latest.positionSeconds, PositionJournal.FLAG_FLUSHED);
+                Log.d(TAG, "Recovered position " + latest.positionSeconds + "s for episode ID: " +
+                      latest.episodeId + (rows > 0 ? "" : " (episode no longer exists)"));
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to open position journal", e);
+        }
+    }
+
+    /**
+     * Record the current position. Journals the change and flushes to the
+     * database if the coarse interval has elapsed.
+     * @param episodeId The episode being played
+     * @param positionSeconds Current position
+     */
+    public void update(final long episodeId, final int positionSeconds) {
+        if (episodeId != this.episodeId) {
+            // Episode switched without an explicit flush; persist the old one first
+            flush();
+            this.episodeId = episodeId;
+            this.flushedPosition = -1;
+            this.lastFlushAt = System.currentTimeMillis();
+        } else if (positionSeconds == position) {
+            return;
+        }
+        position = positionSeconds;
+
+        executor.execute(() -> {
+            try {
+                journal.append(episodeId, positionSeconds, 0);
+                journalWrites++;
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to journal position", e);
+            }
+        });
+
+        if (System.currentTimeMillis() - lastFlushAt >= FLUSH_INTERVAL_MS) {
+            flush();
+        }
+    }
+
+    /**
+     * Write the in-memory position to the database if it changed since the last flush.
+     */
+    public void flush() {
+        if (episodeId == -1 || position == -1 || position == flushedPosition) {
+            return;
+        }
+
+        final long flushEpisodeId = episodeId;
+        final int flushPosition = position;
+        flushedPosition = position;
+        lastFlushAt = System.currentTimeMillis();
+
+        executor.execute(() -> {
+            try {
+                int rowsAffected = episodeRepo.updateEpisodePlaybackPosition(flushEpisodeId, flushPosition);
+                dbWrites++;
+                if (rowsAffected > 0) {
+                    Log.d(TAG, "Saved position: " + flushPosition + "s for episode ID: " + flushEpisodeId +
+                          " (" + dbWrites + " DB writes, " + journalWrites + " journal records this session)");
+                } else {
+                    Log.w(TAG, "Failed to save position - episode may have been deleted: " + flushEpisodeId);
+                }
+                journal.append(flushEpisodeId, flushPosition, PositionJournal.FLAG_FLUSHED);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to mark position as flushed", e);
+            } catch (Exception e) {
+                Log.e(TAG, "Error saving playback position to database", e);
+            }
+        });
+    }
+
+    /**
+     * Get the in-memory position for an episode, which may be newer than the database.
+     * @param episodeId The episode ID
+     * @return Position in seconds, or -1 if this episode isn't being tracked
+     */
+    public int getPosition(long episodeId) {
+        return episodeId == this.episodeId ? position : -1;
+    }
+
+    /**
+     * Flush and close the journal.
+     */
+    public void close() {
+        flush();
+        executor.execute(journal::close);
+    }
+}
@@ -0,0 +1,250 @@
+package com.ispringle.dumbcast.services;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * Decodes a downloaded episode to PCM and runs it through a {@link SilenceTrimmer}
+ * to find the silences playback should skip.
+ *
+ * Decoding a long episode takes a while on slow phones, so partial results are
+ * reported as analysis goes and playback can start trimming straight away. The
+ * finished map is saved next to the other per-episode caches so each file is
+ * only ever decoded once.
+ */
+public class SilenceAnalyzer {
+
+    private static final String TAG = "SilenceAnalyzer";
+    private static final int MAP_MAGIC = 0x534c4d31; // "SLM1"
+    private static final long DEQUEUE_TIMEOUT_US = 10000;
+    // Report progress after roughly this much newly analyzed audio
+    private static final long PROGRESS_INTERVAL_MS = 5 * 60 * 1000;
+
+    /**
+     * Receives maps that cover the audio analyzed so far.
+     */
+    public interface ProgressListener {
+        void onProgress(SilenceMap partial);
+    }
+
+    private final File cacheDir;
+
+    /**
+     * @param cacheDir Where finished maps are stored
+     */
+    public SilenceAnalyzer(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Get the silence map for an episode, decoding the audio if it hasn't been analyzed before.
+     * Blocks for as long as decoding takes, so call from a background thread; stops
+     * early if that thread is interrupted.
+     * @param episodeId The episode ID, used as the cache key
+     * @param audioFile The downloaded audio
+     * @param listener Receives partial maps while decoding, may be null
+     * @return The complete map, or null if decoding failed or was interrupted
+     */
+    public SilenceMap analyze(long episodeId, File audioFile, ProgressListener listener) {
+        File mapFile = getMapFile(episodeId);
+        SilenceMap cached = load(mapFile, audioFile);
+        if (cached != null) {
+            return cached;
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        SilenceTrimmer trimmer;
+        try {
+            trimmer = decode(audioFile, listener);
+        } catch (IOException | IllegalStateException e) {
+            Log.w(TAG, "Failed to analyze " + audioFile, e);
+            return null;
+        }
+        if (trimmer == null) {
+            Log.d(TAG, "Analysis of episode " + episodeId + " interrupted");
+            return null;
+        }
+
+        SilenceMap map = trimmer.toSilenceMap();
+        long audioMs = trimmer.getFramesProcessed() * 1000 / trimmer.getSampleRate();
+        Log.d(TAG, "Episode " + episodeId + ": " + map.size() + " silences, " +
+              (trimmer.getTimeSavedMs() / 1000) + " s of " + (audioMs / 1000) + " s trimmable, analyzed in " +
+              (SystemClock.elapsedRealtime() - start) + " ms");
+        save(mapFile, audioFile, map);
+        return map;
+    }
+
+    private File getMapFile(long episodeId) {
+        return new File(cacheDir, episodeId + ".silence");
+    }
+
+    private SilenceTrimmer decode(File audioFile, ProgressListener listener) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        try {
+            extractor.setDataSource(audioFile.getPath());
+            MediaFormat format = null;
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat candidate = extractor.getTrackFormat(i);
+                String mime = candidate.getString(MediaFormat.KEY_MIME);
+                if (mime != null && mime.startsWith("audio/")) {
+                    extractor.selectTrack(i);
+                    format = candidate;
+                    break;
+                }
+            }
+            if (format == null) {
+                throw new IOException("No audio track in " + audioFile);
+            }
+
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            codec.configure(format, null, null, 0);
+            codec.start();
+            return drainCodec(extractor, codec, format, listener);
+        } finally {
+            if (codec != null) {
+                try {
+                    codec.stop();
+                } catch (IllegalStateException ignored) {
+                    // Never got started
+                }
+                codec.release();
+            }
+            extractor.release();
+        }
+    }
+
+    private SilenceTrimmer drainCodec(MediaExtractor extractor, MediaCodec codec, MediaFormat format,
+                                      ProgressListener listener) {
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        SilenceTrimmer trimmer = null;
+        short[] pcm = new short[0];
+        int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+        int channels = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+        boolean inputDone = false;
+        long nextProgressMs = PROGRESS_INTERVAL_MS;
+
+        while (true) {
+            if (Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+
+            if (!inputDone) {
+                int inIndex = codec.dequeueInputBuffer(DEQUEUE_TIMEOUT_US);
+                if (inIndex >= 0) {
+                    ByteBuffer input = codec.getInputBuffer(inIndex);
+                    int size = extractor.readSampleData(input, 0);
+                    if (size < 0) {
+                        codec.queueInputBuffer(inIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                        inputDone = true;
+                    } else {
+                        codec.queueInputBuffer(inIndex, 0, size, extractor.getSampleTime(), 0);
+                        extractor.advance();
+                    }
+                }
+            }
+
+            int outIndex = codec.dequeueOutputBuffer(info, DEQUEUE_TIMEOUT_US);
+            if (outIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                // The decoder's real output format wins over what the container claimed
+                MediaFormat output = codec.getOutputFormat();
+                sampleRate = output.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                channels = output.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+            } else if (outIndex >= 0) {
+                if (info.size > 0) {
+                    if (trimmer == null) {
+                        trimmer = new SilenceTrimmer(sampleRate, channels);
+                    }
+                    ByteBuffer output = codec.getOutputBuffer(outIndex);
+                    output.position(info.offset);
+                    output.limit(info.offset + info.size);
+                    ShortBuffer samples = output.order(ByteOrder.nativeOrder()).asShortBuffer();
+                    int count = samples.remaining();
+                    if (pcm.length < count) {
+                        pcm = new short[count];
+                    }
+                    samples.get(pcm, 0, count);
+                    trimmer.process(pcm, 0, count);
+                }
+                codec.releaseOutputBuffer(outIndex, false);
+
+                if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                    if (trimmer == null) {
+                        trimmer = new SilenceTrimmer(sampleRate, channels);
+                    }
+                    trimmer.finish();
+                    return trimmer;
+                }
+
+                if (trimmer != null && listener != null &&
+                    trimmer.getFramesProcessed() * 1000 / sampleRate >= nextProgressMs) {
+                    nextProgressMs += PROGRESS_INTERVAL_MS;
+                    listener.onProgress(trimmer.toSilenceMap().withComplete(false));
+                }
+            }
+        }
+    }
+
+    private static SilenceMap load(File mapFile, File audioFile) {
+        if (!mapFile.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mapFile)))) {
+            // A re-downloaded file of a different size gets analyzed again
+            if (in.readInt() != MAP_MAGIC || in.readLong() != audioFile.length()) {
+                return null;
+            }
+            int count = in.readInt();
+            long[] starts = new long[count];
+            long[] ends = new long[count];
+            for (int i = 0; i < count; i++) {
+                starts[i] = in.readLong();
+                ends[i] = in.readLong();
+            }
+            return SilenceMap.of(starts, ends);
+        } catch (IOException e) {
+            Log.w(TAG, "Ignoring unreadable silence map " + mapFile, e);
+            return null;
+        }
+    }
+
+    private static void save(File mapFile, File audioFile, SilenceMap map) {
+        File dir = mapFile.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            Log.w(TAG, "Failed to create " + dir);
+            return;
+        }
+        File tmp = new File(mapFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAP_MAGIC);
+            out.writeLong(audioFile.length());
+            out.writeInt(map.size());
+            for (int i = 0; i < map.size(); i++) {
+                out.writeLong(map.getStartMs(i));
+                out.writeLong(map.getEndMs(i));
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to save silence map " + mapFile, e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(mapFile)) {
+            tmp.delete();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.ispringle.dumbcast.services;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, sorted list of the silent spans playback jumps over when silence
+ * trimming is on. Each span runs from where the cut starts to where playback
+ * resumes, in milliseconds of the original audio.
+ *
+ * Like {@link ChapterIndex}, lookups are a binary search over primitive arrays.
+ */
+public class SilenceMap {
+
+    public static final SilenceMap EMPTY = new SilenceMap(new long[0], new long[0], true);
+
+    private final long[] startMs;
+    private final long[] endMs;
+    private final boolean complete;
+
+    private SilenceMap(long[] startMs, long[] endMs, boolean complete) {
+        this.startMs = startMs;
+        this.endMs = endMs;
+        this.complete = complete;
+    }
+
+    /**
+     * @param startMs Span starts, ascending
+     * @param endMs Span ends; each after its start and no later than the next start
+     * @return A map over the spans, or {@link #EMPTY}
+     */
+    public static SilenceMap of(long[] startMs, long[] endMs) {
+        if (startMs.length != endMs.length) {
+            throw new IllegalArgumentException("Span starts and ends differ in length");
+        }
+        if (startMs.length == 0) {
+            return EMPTY;
+        }
+        return new SilenceMap(startMs.clone(), endMs.clone(), true);
+    }
+
+    /**
+     * @param complete False while the audio after the last span is still being analyzed
+     * @return This map, marked as complete or not
+     */
+    public SilenceMap withComplete(boolean complete) {
+        return complete == this.complete ? this : new SilenceMap(startMs, endMs, complete);
+    }
+
+    public int size() {
+        return startMs.length;
+    }
+
+    public boolean isEmpty() {
+        return startMs.length == 0;
+    }
+
+    /**
+     * @return False if analysis hasn't reached the end of the episode yet
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public long getStartMs(int index) {
+        return startMs[index];
+    }
+
+    public long getEndMs(int index) {
+        return endMs[index];
+    }
+
+    /**
+     * @param positionMs Playback position
+     * @return Index of the span containing the position or the first one after it, or -1 if there is none
+     */
+    public int indexFrom(long positionMs) {
+        // The first span ending after the position either contains it or lies ahead of it
+        int found = Arrays.binarySearch(endMs, positionMs);
+        int index = found >= 0 ? found + 1 : -found - 1;
+        return index < endMs.length ? index : -1;
+    }
+
+    /**
+     * @return Total length of all spans
+     */
+    public long getTotalMs() {
+        long total = 0;
+        for (int i = 0; i < startMs.length; i++) {
+            total += endMs[i] - startMs[i];
+        }
+        return total;
+    }
+}
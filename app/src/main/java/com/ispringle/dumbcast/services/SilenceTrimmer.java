@@ -0,0 +1,279 @@
+package com.ispringle.dumbcast.services;
+
+import java.util.Arrays;
+
+/**
+ * Finds silent stretches in 16-bit PCM and plans the cuts that shorten them.
+ *
+ * Audio is fed in as interleaved short[] buffers of any size and measured in
+ * 10 ms windows. A silence starts when a window's RMS level drops below the close
+ * threshold and only ends once the level has stayed above the higher open
+ * threshold for {@link #OPEN_WINDOWS} windows, so breaths, room tone and single
+ * clicks don't chop a pause into pieces. Pauses shorter than the minimum are left
+ * alone; longer ones are cut down to the keep length, half of it on each side, so
+ * speech still gets a natural gap.
+ *
+ * Plain Java with no Android dependencies, so it can be tested and benchmarked on
+ * a desktop JVM with synthetic audio. Not thread safe.
+ */
+public class SilenceTrimmer {
+
+    public static final double DEFAULT_CLOSE_THRESHOLD_DB = -45;
+    public static final double DEFAULT_OPEN_THRESHOLD_DB = -38;
+    public static final int DEFAULT_MIN_SILENCE_MS = 800;
+    public static final int DEFAULT_KEEP_SILENCE_MS = 300;
+
+    private static final int WINDOW_MS = 10;
+    // Consecutive loud windows needed to end a silence
+    private static final int OPEN_WINDOWS = 3;
+
+    private final int sampleRate;
+    private final int channels;
+    private final int windowSamples;
+    private final double closeSumSquares;
+    private final double openSumSquares;
+    private final int minSilenceWindows;
+    private final int keepHeadWindows;
+    private final int keepTailWindows;
+
+    // Current window
+    private long sumSquares = 0;
+    private int samplesInWindow = 0;
+    private long windowIndex = 0;
+    private long samplesProcessed = 0;
+
+    // Current silence, in windows; -1 while there is sound
+    private long silenceStart = -1;
+    private long loudStart = -1;
+    private int loudRun = 0;
+
+    // Planned cuts in frames, as start/end pairs
+    private long[] cuts = new long[32];
+    private int cutCount = 0;
+    private long framesCut = 0;
+    private boolean finished = false;
+
+    /**
+     * Create a trimmer with the default thresholds.
+     * @param sampleRate Sample rate in Hz
+     * @param channels Number of interleaved channels
+     */
+    public SilenceTrimmer(int sampleRate, int channels) {
+        this(sampleRate, channels, DEFAULT_CLOSE_THRESHOLD_DB, DEFAULT_OPEN_THRESHOLD_DB,
+            DEFAULT_MIN_SILENCE_MS, DEFAULT_KEEP_SILENCE_MS);
+    }
+
+    /**
+     * @param sampleRate Sample rate in Hz
+     * @param channels Number of interleaved channels
+     * @param closeThresholdDb RMS level in dBFS below which a silence starts
+     * @param openThresholdDb RMS level in dBFS above which a silence ends; at least closeThresholdDb
+     * @param minSilenceMs Shortest pause worth shortening
+     * @param keepSilenceMs How much of a shortened pause is left in place
+     */
+    public SilenceTrimmer(int sampleRate, int channels, double closeThresholdDb, double openThresholdDb,
+                          int minSilenceMs, int keepSilenceMs) {
+        if (sampleRate <= 0 || channels <= 0) {
+            throw new IllegalArgumentException("Invalid format: " + sampleRate + " Hz, " + channels + " channels");
+        }
+        if (openThresholdDb < closeThresholdDb || keepSilenceMs > minSilenceMs) {
+            throw new IllegalArgumentException("Open threshold and minimum silence must not be below " +
+                "close threshold and keep length");
+        }
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        int windowFrames = Math.max(1, sampleRate * WINDOW_MS / 1000);
+        this.windowSamples = windowFrames * channels;
+        // Compare sums of squares against precomputed limits so the hot loop needs no sqrt or division
+        this.closeSumSquares = sumSquaresFor(closeThresholdDb, windowSamples);
+        this.openSumSquares = sumSquaresFor(openThresholdDb, windowSamples);
+        this.minSilenceWindows = minSilenceMs / WINDOW_MS;
+        this.keepHeadWindows = keepSilenceMs / WINDOW_MS / 2;
+        this.keepTailWindows = keepSilenceMs / WINDOW_MS - keepHeadWindows;
+    }
+
+    /**
+     * Measure the next stretch of audio. Buffers don't need to line up with windows or frames.
+     * @param pcm Interleaved 16-bit samples
+     * @param offset Index of the first sample
+     * @param length Number of samples (not frames)
+     */
+    public void process(short[] pcm, int offset, int length) {
+        if (finished) {
+            throw new IllegalStateException("Trimmer already finished");
+        }
+        int end = offset + length;
+        long sum = sumSquares;
+        int inWindow = samplesInWindow;
+        for (int i = offset; i < end; i++) {
+            int sample = pcm[i];
+            sum += sample * sample;
+            if (++inWindow == windowSamples) {
+                onWindow(sum, closeSumSquares, openSumSquares);
+                sum = 0;
+                inWindow = 0;
+            }
+        }
+        sumSquares = sum;
+        samplesInWindow = inWindow;
+        samplesProcessed += length;
+    }
+
+    /**
+     * Mark the end of the stream, closing any silence that runs to the end.
+     */
+    public void finish() {
+        if (finished) {
+            return;
+        }
+        if (samplesInWindow > 0) {
+            // Scale the thresholds to the partial window
+            double scale = samplesInWindow / (double) windowSamples;
+            onWindow(sumSquares, closeSumSquares * scale, openSumSquares * scale);
+            sumSquares = 0;
+            samplesInWindow = 0;
+        }
+        if (silenceStart >= 0) {
+            endSilence(silenceStart, loudRun > 0 ? loudStart : windowIndex, getFramesProcessed());
+            silenceStart = -1;
+        }
+        finished = true;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * @return Number of cuts planned so far; a silence only becomes a cut once it has ended
+     */
+    public int getCutCount() {
+        return cutCount;
+    }
+
+    /**
+     * @param index Cut index, in stream order
+     * @return First frame removed by the cut
+     */
+    public long getCutStartFrame(int index) {
+        return cuts[index * 2];
+    }
+
+    /**
+     * @param index Cut index, in stream order
+     * @return Frame playback resumes at after the cut
+     */
+    public long getCutEndFrame(int index) {
+        return cuts[index * 2 + 1];
+    }
+
+    /**
+     * @return Number of frames measured so far
+     */
+    public long getFramesProcessed() {
+        return samplesProcessed / channels;
+    }
+
+    /**
+     * @return Number of frames removed by the planned cuts
+     */
+    public long getFramesCut() {
+        return framesCut;
+    }
+
+    /**
+     * @return Listening time the planned cuts save
+     */
+    public long getTimeSavedMs() {
+        return framesToMs(framesCut);
+    }
+
+    /**
+     * @return The cuts planned so far, in milliseconds
+     */
+    public SilenceMap toSilenceMap() {
+        long[] starts = new long[cutCount];
+        long[] ends = new long[cutCount];
+        for (int i = 0; i < cutCount; i++) {
+            starts[i] = framesToMs(cuts[i * 2]);
+            ends[i] = framesToMs(cuts[i * 2 + 1]);
+        }
+        return SilenceMap.of(starts, ends);
+    }
+
+    /**
+     * Apply the planned cuts to audio that was measured by this trimmer.
+     * @param pcm Interleaved samples starting at the first frame this trimmer processed
+     * @param length Number of samples in pcm
+     * @return The audio with every planned cut removed
+     */
+    public short[] compress(short[] pcm, int length) {
+        short[] out = new short[length];
+        int written = 0;
+        long frame = 0;
+        long totalFrames = length / channels;
+        for (int i = 0; i <= cutCount && frame < totalFrames; i++) {
+            long keepUntil = i < cutCount ? Math.min(cuts[i * 2], totalFrames) : totalFrames;
+            int count = (int) ((keepUntil - frame) * channels);
+            System.arraycopy(pcm, (int) (frame * channels), out, written, count);
+            written += count;
+            if (i < cutCount) {
+                frame = cuts[i * 2 + 1];
+            }
+        }
+        return Arrays.copyOf(out, written);
+    }
+
+    private void onWindow(long sum, double closeLimit, double openLimit) {
+        if (silenceStart < 0) {
+            if (sum < closeLimit) {
+                silenceStart = windowIndex;
+                loudRun = 0;
+            }
+        } else if (sum > openLimit) {
+            if (loudRun++ == 0) {
+                loudStart = windowIndex;
+            }
+            if (loudRun >= OPEN_WINDOWS) {
+                endSilence(silenceStart, loudStart, Long.MAX_VALUE);
+                silenceStart = -1;
+                loudRun = 0;
+            }
+        } else {
+            loudRun = 0;
+        }
+        windowIndex++;
+    }
+
+    private void endSilence(long startWindow, long endWindow, long lastFrame) {
+        if (endWindow - startWindow < minSilenceWindows) {
+            return;
+        }
+        long windowFrames = windowSamples / channels;
+        long start = (startWindow + keepHeadWindows) * windowFrames;
+        long end = Math.min((endWindow - keepTailWindows) * windowFrames, lastFrame);
+        if (end <= start) {
+            return;
+        }
+        if (cutCount * 2 == cuts.length) {
+            cuts = Arrays.copyOf(cuts, cuts.length * 2);
+        }
+        cuts[cutCount * 2] = start;
+        cuts[cutCount * 2 + 1] = end;
+        cutCount++;
+        framesCut += end - start;
+    }
+
+    private long framesToMs(long frames) {
+        return frames * 1000 / sampleRate;
+    }
+
+    private static double sumSquaresFor(double db, int samples) {
+        double amplitude = Math.pow(10, db / 20) * Short.MAX_VALUE;
+        return amplitude * amplitude * samples;
+    }
+}
@@ -0,0 +1,347 @@
+package com.ispringle.dumbcast.services;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A partially downloaded file plus the list of byte ranges it actually holds.
+ *
+ * Bytes are written at their real offsets, so the data file may contain holes
+ * where nothing has been fetched yet. The cached ranges live in a small
+ * ".ranges" file next to it and survive restarts, so a stream that was half
+ * listened to yesterday only fetches the missing half today.
+ *
+ * The index is saved every {@link #INDEX_SAVE_INTERVAL_BYTES} of new data and on
+ * close. Data is always written before its range is recorded, so a crash can
+ * only make the cache forget bytes it has, never claim bytes it doesn't.
+ *
+ * All methods are synchronized; one instance may be shared by several proxy connections.
+ */
+public class SparseCacheFile {
+
+    private static final int INDEX_MAGIC = 0x53504331; // "SPC1"
+    private static final long INDEX_SAVE_INTERVAL_BYTES = 512 * 1024;
+
+    private final File indexFile;
+    private File dataFile;
+    private RandomAccessFile raf;
+
+    // Start offset -> end offset (exclusive) of each cached run, never overlapping or touching
+    private final TreeMap<Long, Long> ranges = new TreeMap<>();
+    private long length = -1;
+    private long cachedBytes = 0;
+    private long unsavedBytes = 0;
+    private boolean promoted = false;
+    private boolean closed = false;
+
+    /**
+     * Open or create a cache file. Any ranges recorded by an earlier session are reloaded.
+     * @param dataFile Location of the data; the index is stored alongside it
+     * @throws IOException If the data file can't be opened
+     */
+    public SparseCacheFile(File dataFile) throws IOException {
+        this.dataFile = dataFile;
+        this.indexFile = new File(dataFile.getPath() + ".ranges");
+        loadIndex();
+        raf = new RandomAccessFile(dataFile, "rw");
+    }
+
+    /**
+     * @return Total length of the resource, or -1 if not yet known
+     */
+    public synchronized long getLength() {
+        return length;
+    }
+
+    /**
+     * Record the total length of the resource. If it differs from a previously
+     * recorded length the origin file has changed, and everything cached is dropped.
+     * @param length Total length in bytes
+     * @throws IOException If the data file can't be truncated
+     */
+    public synchronized void setLength(long length) throws IOException {
+        if (this.length == length) {
+            return;
+        }
+        if (this.length != -1) {
+            ranges.clear();
+            cachedBytes = 0;
+            raf.setLength(0);
+        }
+        this.length = length;
+        saveIndex();
+    }
+
+    /**
+     * @param position Byte offset
+     * @return Number of contiguous cached bytes starting at position, 0 if position isn't cached
+     */
+    public synchronized long cachedRunFrom(long position) {
+        Map.Entry<Long, Long> run = ranges.floorEntry(position);
+        if (run == null || run.getValue() <= position) {
+            return 0;
+        }
+        return run.getValue() - position;
+    }
+
+    /**
+     * @param position Byte offset
+     * @return Start of the first cached run at or after position, or Long.MAX_VALUE if there is none
+     */
+    public synchronized long nextCachedStart(long position) {
+        if (cachedRunFrom(position) > 0) {
+            return position;
+        }
+        Long next = ranges.ceilingKey(position);
+        return next != null ? next : Long.MAX_VALUE;
+    }
+
+    /**
+     * Read cached bytes. Never reads past the cached run that contains position.
+     * @param position Byte offset to read from
+     * @param buffer Destination buffer
+     * @param offset Offset into buffer
+     * @param count Maximum number of bytes to read
+     * @return Number of bytes read, or 0 if position isn't cached
+     * @throws IOException If the read fails
+     */
+    public synchronized int read(long position, byte[] buffer, int offset, int count) throws IOException {
+        int available = (int) Math.min(count, cachedRunFrom(position));
+        if (available <= 0) {
+            return 0;
+        }
+        raf.seek(position);
+        raf.readFully(buffer, offset, available);
+        return available;
+    }
+
+    /**
+     * Store bytes at their offset and mark them as cached.
+     * @param position Byte offset of the first byte
+     * @param buffer Source buffer
+     * @param offset Offset into buffer
+     * @param count Number of bytes
+     * @throws IOException If the write fails
+     */
+    public synchronized void write(long position, byte[] buffer, int offset, int count) throws IOException {
+        if (promoted || count <= 0) {
+            return;
+        }
+        raf.seek(position);
+        raf.write(buffer, offset, count);
+        addRange(position, position + count);
+
+        unsavedBytes += count;
+        if (unsavedBytes >= INDEX_SAVE_INTERVAL_BYTES || isComplete()) {
+            saveIndex();
+        }
+    }
+
+    /**
+     * @return Number of bytes held in the cache
+     */
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * @return True once every byte of the resource is cached
+     */
+    public synchronized boolean isComplete() {
+        if (length <= 0 || ranges.size() != 1) {
+            return false;
+        }
+        Map.Entry<Long, Long> run = ranges.firstEntry();
+        return run.getKey() == 0 && run.getValue() >= length;
+    }
+
+    /**
+     * @return The file currently holding the data
+     */
+    public synchronized File getFile() {
+        return dataFile;
+    }
+
+    /**
+     * @return True if the data has been moved out of the cache by {@link #promoteTo}
+     */
+    public synchronized boolean isPromoted() {
+        return promoted;
+    }
+
+    /**
+     * Move a complete cache file to its permanent location. Reads keep working
+     * and are served from the new location afterwards.
+     *
+     * The data is complete and no longer changes, so when the destination is on
+     * another filesystem (internal cache -> external storage) the copy is made
+     * without holding the lock; only the final rename and reopen block readers.
+     * @param destination Where the finished file should live
+     * @throws IOException If the cache isn't complete or the file can't be moved
+     */
+    public void promoteTo(File destination) throws IOException {
+        File source;
+        synchronized (this) {
+            if (promoted) {
+                return;
+            }
+            if (!isComplete()) {
+                throw new IOException("Cache is incomplete: " + cachedBytes + " of " + length + " bytes");
+            }
+            raf.setLength(length);
+
+            // Same filesystem: the rename is instant
+            if (dataFile.renameTo(destination)) {
+                finishPromotion(destination);
+                return;
+            }
+            source = dataFile;
+        }
+
+        File tmp = new File(destination.getPath() + ".tmp");
+        try {
+            copyFile(source, tmp);
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+
+        synchronized (this) {
+            if (promoted) {
+                tmp.delete();
+                return;
+            }
+            if (!tmp.renameTo(destination)) {
+                tmp.delete();
+                throw new IOException("Failed to move cache into place: " + destination);
+            }
+            finishPromotion(destination);
+            if (!source.delete()) {
+                source.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Save the index and close the data file.
+     */
+    public synchronized void close() {
+        closed = true;
+        try {
+            if (!promoted) {
+                saveIndex();
+            }
+            raf.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Close and delete both the data and the index. Does nothing once promoted.
+     */
+    public synchronized void delete() {
+        close();
+        if (!promoted) {
+            dataFile.delete();
+            indexFile.delete();
+        }
+    }
+
+    private void finishPromotion(File destination) throws IOException {
+        raf.close();
+        dataFile = destination;
+        promoted = true;
+        indexFile.delete();
+        if (!closed) {
+            raf = new RandomAccessFile(destination, "r");
+        }
+    }
+
+    private void addRange(long start, long end) {
+        Map.Entry<Long, Long> before = ranges.floorEntry(start);
+        if (before != null && before.getValue() >= start) {
+            start = before.getKey();
+            end = Math.max(end, before.getValue());
+        }
+
+        // Swallow every run that starts inside or right at the end of the new one
+        Iterator<Map.Entry<Long, Long>> it = ranges.subMap(start, true, end, true).entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Long> run = it.next();
+            end = Math.max(end, run.getValue());
+            cachedBytes -= run.getValue() - run.getKey();
+            it.remove();
+        }
+
+        ranges.put(start, end);
+        cachedBytes += end - start;
+    }
+
+    private void loadIndex() {
+        long dataLength = dataFile.length();
+        if (!indexFile.exists()) {
+            // Data without an index can't be trusted
+            dataFile.delete();
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != INDEX_MAGIC) {
+                return;
+            }
+            length = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long start = in.readLong();
+                long end = Math.min(in.readLong(), dataLength);
+                if (end > start) {
+                    addRange(start, end);
+                }
+            }
+        } catch (IOException e) {
+            ranges.clear();
+            cachedBytes = 0;
+            length = -1;
+        }
+    }
+
+    private void saveIndex() throws IOException {
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeLong(length);
+            out.writeInt(ranges.size());
+            for (Map.Entry<Long, Long> run : ranges.entrySet()) {
+                out.writeLong(run.getKey());
+                out.writeLong(run.getValue());
+            }
+        }
+        if (!tmp.renameTo(indexFile)) {
+            throw new IOException("Failed to replace cache index: " + indexFile);
+        }
+        unsavedBytes = 0;
+    }
+
+    private static void copyFile(File source, File destination) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(source);
+             OutputStream out = new FileOutputStream(destination)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.ispringle.dumbcast.services;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.ispringle.dumbcast.data.DatabaseManager;
+import com.ispringle.dumbcast.data.EpisodeRepository;
+
+/**
+ * Database and file housekeeping that used to run on every launch, now run
+ * once the app is idle after startup and only when there is work to do:
+ *
+ * - Decay of NEW episodes runs when the earliest NEW episode is due, which a
+ *   single indexed query answers; most launches skip it.
+ * - Downloaded episodes left outside the backlog are moved into it whenever
+ *   the index of downloaded episodes finds one, so it follows download changes.
+ * - The orphaned download scan walks the podcasts directory, so it runs at
+ *   most once a day.
+ * - The database is vacuumed only when much of it is free pages, as after
+ *   show notes moved out of the episodes table; two PRAGMAs decide.
+ *
+ * Blocking; call from a background thread.
+ */
+public class StartupMaintenance {
+
+    private static final String TAG = "StartupMaintenance";
+    private static final String PREFS_NAME = "maintenance";
+    private static final String KEY_LAST_ORPHAN_SCAN_AT = "last_orphan_scan_at";
+    private static final long ORPHAN_SCAN_INTERVAL_MS = 24 * 60 * 60 * 1000L;
+
+    private final Context context;
+    private final EpisodeRepository episodeRepository;
+
+    /**
+     * @param context Any context; the application context is kept
+     */
+    public StartupMaintenance(Context context) {
+        this.context = context.getApplicationContext();
+        this.episodeRepository = new EpisodeRepository(DatabaseManager.getInstance(this.context));
+    }
+
+    /**
+     * Run whatever maintenance is due.
+     * @return True if episode states may have changed, so tab visibility should be refreshed
+     */
+    public boolean runDue() {
+        long start = System.currentTimeMillis();
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        boolean changed = false;
+
+        if (episodeRepository.hasDownloadsOutsideBacklog()) {
+            // Downloaded episodes should be in BACKLOG state, not NEW
+            episodeRepository.fixDownloadedEpisodesState();
+            changed = true;
+        }
+
+        long now = System.currentTimeMillis();
+        if (episodeRepository.getNextDecayAt() <= now) {
+            int decayed = episodeRepository.decayNewEpisodes();
+            Log.d(TAG, "Decayed " + decayed + " NEW episodes");
+            changed |= decayed > 0;
+        }
+
+        long lastScanAt = prefs.getLong(KEY_LAST_ORPHAN_SCAN_AT, 0);
+        if (now - lastScanAt >= ORPHAN_SCAN_INTERVAL_MS || now < lastScanAt) {
+            try {
+                changed |= DownloadService.scanOrphanedDownloads(context) > 0;
+            } catch (Exception e) {
+                Log.e(TAG, "Error during orphaned download recovery", e);
+            }
+            prefs.edit().putLong(KEY_LAST_ORPHAN_SCAN_AT, now).apply();
+        }
+
+        try {
+            if (DatabaseManager.getInstance(context).vacuumIfSparse()) {
+                Log.d(TAG, "Vacuumed database");
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error vacuuming database", e);
+        }
+
+        Log.d(TAG, "Maintenance finished in " + (System.currentTimeMillis() - start) + " ms" +
+              (changed ? ", episode states changed" : ""));
+        return changed;
+    }
+}
@@ -0,0 +1,532 @@
+package com.ispringle.dumbcast.services;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loopback HTTP server that MediaPlayer streams through.
+ *
+ * Each streamed episode gets a local URL. Requests for it are answered from a
+ * {@link SparseCacheFile}; only the byte ranges that aren't cached yet are
+ * fetched from the origin, and whatever is fetched is kept. Seeking back,
+ * resuming after MediaPlayer drops its connection, or replaying an episode
+ * therefore costs no network once the bytes have been seen.
+ *
+ * When every byte of an episode is cached the {@link Listener} is told, so the
+ * file can be promoted to a regular download.
+ */
+public class StreamProxy {
+
+    private static final String TAG = "StreamProxy";
+    private static final int BUFFER_SIZE = 32 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 30000;
+    private static final String PATH_PREFIX = "/episode/";
+    private static final String CACHE_SUFFIX = ".stream";
+
+    /**
+     * Called on a proxy thread when an episode is fully cached.
+     */
+    public interface Listener {
+        void onCacheComplete(long episodeId, SparseCacheFile cache);
+    }
+
+    private static class Source {
+        final long episodeId;
+        final SparseCacheFile cache;
+        volatile String originUrl;
+        volatile String contentType;
+        boolean completionReported = false;
+
+        Source(long episodeId, SparseCacheFile cache, String originUrl) {
+            this.episodeId = episodeId;
+            this.cache = cache;
+            this.originUrl = originUrl;
+        }
+    }
+
+    private final File cacheDir;
+    private final Map<Long, Source> sources = new ConcurrentHashMap<>();
+    private final AtomicLong originBytes = new AtomicLong();
+    private final AtomicLong servedBytes = new AtomicLong();
+    private ServerSocket serverSocket;
+    private ExecutorService connectionExecutor;
+    private volatile Listener listener;
+
+    /**
+     * @param cacheDir Directory for partially streamed files
+     */
+    public StreamProxy(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Bind to a free loopback port and start accepting connections.
+     * @throws IOException If the socket can't be bound
+     */
+    public synchronized void start() throws IOException {
+        if (serverSocket != null) {
+            return;
+        }
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            throw new IOException("Could not create stream cache directory: " + cacheDir);
+        }
+
+        serverSocket = new ServerSocket(0, 8, InetAddress.getByName("127.0.0.1"));
+        connectionExecutor = Executors.newCachedThreadPool();
+        final ServerSocket socket = serverSocket;
+        Thread acceptThread = new Thread(() -> acceptLoop(socket), "StreamProxy");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        Log.d(TAG, "Listening on port " + socket.getLocalPort());
+    }
+
+    /**
+     * Stop accepting connections and close every cache file.
+     */
+    public synchronized void stop() {
+        if (serverSocket == null) {
+            return;
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+        serverSocket = null;
+        connectionExecutor.shutdownNow();
+        for (Source source : sources.values()) {
+            source.cache.close();
+        }
+        sources.clear();
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Get the local URL MediaPlayer should open for an episode.
+     * @param episodeId The episode being streamed
+     * @param originUrl Where missing bytes are fetched from, ideally with redirects already resolved
+     * @return A loopback URL served by this proxy
+     * @throws IOException If the proxy isn't running or the cache file can't be opened
+     */
+    public String getProxyUrl(long episodeId, String originUrl) throws IOException {
+        int port;
+        synchronized (this) {
+            if (serverSocket == null) {
+                throw new IOException("Proxy not started");
+            }
+            port = serverSocket.getLocalPort();
+
+            Source source = sources.get(episodeId);
+            if (source == null) {
+                SparseCacheFile cache = new SparseCacheFile(getCacheFile(episodeId));
+                sources.put(episodeId, new Source(episodeId, cache, originUrl));
+                Log.d(TAG, "Streaming episode " + episodeId + " with " + cache.getCachedBytes() +
+                      " bytes already cached");
+            } else {
+                // Redirect targets rotate; always fill gaps from the latest one
+                source.originUrl = originUrl;
+            }
+        }
+        return "http://127.0.0.1:" + port + PATH_PREFIX + episodeId;
+    }
+
+    /**
+     * @param episodeId The episode
+     * @return Its cache file, or null if the episode isn't registered
+     */
+    public SparseCacheFile getCache(long episodeId) {
+        Source source = sources.get(episodeId);
+        return source != null ? source.cache : null;
+    }
+
+    /**
+     * Close the cache files of every episode except the given ones. Cached
+     * bytes stay on disk until {@link #trimCache} removes them.
+     * @param keepEpisodeIds Episodes that are still playing or about to play
+     */
+    public synchronized void retainOnly(long... keepEpisodeIds) {
+        Set<Long> keep = new HashSet<>();
+        for (long id : keepEpisodeIds) {
+            keep.add(id);
+        }
+        for (Source source : new ArrayList<>(sources.values())) {
+            if (!keep.contains(source.episodeId)) {
+                sources.remove(source.episodeId);
+                source.cache.close();
+            }
+        }
+    }
+
+    /**
+     * Delete the least recently used stream caches until the directory fits in maxBytes.
+     * Caches of registered episodes are never deleted.
+     * @param maxBytes Size limit for the cache directory
+     */
+    public synchronized void trimCache(long maxBytes) {
+        File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(CACHE_SUFFIX));
+        if (files == null) {
+            return;
+        }
+
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (total <= maxBytes) {
+                break;
+            }
+            if (isRegistered(file)) {
+                continue;
+            }
+            total -= file.length();
+            file.delete();
+            new File(file.getPath() + ".ranges").delete();
+            Log.d(TAG, "Evicted stream cache: " + file.getName());
+        }
+    }
+
+    /**
+     * @return Bytes fetched from origin servers since the proxy was created
+     */
+    public long getOriginBytesFetched() {
+        return originBytes.get();
+    }
+
+    /**
+     * @return Bytes handed to clients since the proxy was created
+     */
+    public long getBytesServed() {
+        return servedBytes.get();
+    }
+
+    private File getCacheFile(long episodeId) {
+        return new File(cacheDir, episodeId + CACHE_SUFFIX);
+    }
+
+    private boolean isRegistered(File file) {
+        for (Source source : sources.values()) {
+            if (source.cache.getFile().equals(file)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void acceptLoop(ServerSocket socket) {
+        while (!socket.isClosed()) {
+            try {
+                final Socket client = socket.accept();
+                connectionExecutor.execute(() -> handleConnection(client));
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    Log.w(TAG, "Accept failed", e);
+                }
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+                return;
+            }
+        }
+    }
+
+    private void handleConnection(Socket client) {
+        try (Socket socket = client) {
+            socket.setSoTimeout(READ_TIMEOUT_MS);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+
+            String requestLine = readLine(in);
+            if (requestLine == null) {
+                return;
+            }
+            String rangeHeader = null;
+            String line;
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Range")) {
+                    rangeHeader = line.substring(colon + 1).trim();
+                }
+            }
+
+            String[] parts = requestLine.split(" ");
+            if (parts.length < 2 || !(parts[0].equals("GET") || parts[0].equals("HEAD"))) {
+                writeHeaders(out, "405 Method Not Allowed", null, 0, null);
+                return;
+            }
+
+            Source source = findSource(parts[1]);
+            if (source == null) {
+                writeHeaders(out, "404 Not Found", null, 0, null);
+                return;
+            }
+
+            serve(source, parts[0].equals("HEAD"), rangeHeader, out);
+        } catch (SocketException e) {
+            // MediaPlayer hangs up whenever it seeks; that's normal
+            Log.d(TAG, "Client disconnected: " + e.getMessage());
+        } catch (IOException e) {
+            Log.w(TAG, "Proxy request failed", e);
+        }
+    }
+
+    private Source findSource(String path) {
+        if (!path.startsWith(PATH_PREFIX)) {
+            return null;
+        }
+        try {
+            return sources.get(Long.parseLong(path.substring(PATH_PREFIX.length())));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void serve(Source source, boolean headOnly, String rangeHeader, OutputStream out) throws IOException {
+        long length = ensureLength(source);
+
+        long start = 0;
+        long end = length - 1;
+        boolean partial = false;
+        if (rangeHeader != null && rangeHeader.startsWith("bytes=") && !rangeHeader.contains(",")) {
+            String spec = rangeHeader.substring("bytes=".length()).trim();
+            int dash = spec.indexOf('-');
+            try {
+                if (dash == 0) {
+                    // Suffix range: the last N bytes
+                    start = Math.max(0, length - Long.parseLong(spec.substring(1)));
+                } else if (dash > 0) {
+                    start = Long.parseLong(spec.substring(0, dash));
+                    if (dash < spec.length() - 1) {
+                        end = Math.min(end, Long.parseLong(spec.substring(dash + 1)));
+                    }
+                }
+                partial = true;
+            } catch (NumberFormatException e) {
+                // Ignore a malformed range and send the whole file
+            }
+        }
+
+        if (start >= length || start > end) {
+            writeHeaders(out, "416 Range Not Satisfiable", null, 0, "bytes */" + length);
+            out.flush();
+            return;
+        }
+
+        writeHeaders(out, partial ? "206 Partial Content" : "200 OK", source.contentType, end - start + 1,
+            partial ? "bytes " + start + "-" + end + "/" + length : null);
+        if (headOnly) {
+            out.flush();
+            return;
+        }
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long position = start;
+        while (position <= end) {
+            int n = source.cache.read(position, buffer, 0, (int) Math.min(buffer.length, end - position + 1));
+            if (n > 0) {
+                out.write(buffer, 0, n);
+                servedBytes.addAndGet(n);
+                position += n;
+                continue;
+            }
+            // Fetch only up to the next run we already have
+            long gapEnd = Math.min(source.cache.nextCachedStart(position), end + 1);
+            position = fillFromOrigin(source, position, gapEnd, out, buffer);
+        }
+        out.flush();
+    }
+
+    /**
+     * Fetch [from, to) from the origin, caching it while passing it on to the client.
+     * @return The position after the last byte sent
+     */
+    private long fillFromOrigin(Source source, long from, long to, OutputStream out, byte[] buffer)
+            throws IOException {
+        HttpURLConnection connection = openOrigin(source, "bytes=" + from + "-" + (to - 1));
+        try {
+            int responseCode = connection.getResponseCode();
+            long position;
+            if (responseCode == HttpURLConnection.HTTP_PARTIAL) {
+                position = from;
+            } else if (responseCode == HttpURLConnection.HTTP_OK) {
+                // Origin ignores ranges; cache what comes before the gap instead of discarding it
+                position = 0;
+            } else {
+                throw new IOException("Origin returned HTTP " + responseCode);
+            }
+
+            InputStream in = connection.getInputStream();
+            while (position < to) {
+                int n = in.read(buffer, 0, (int) Math.min(buffer.length, to - position));
+                if (n == -1) {
+                    throw new IOException("Origin closed early at " + position + " of " + to);
+                }
+                originBytes.addAndGet(n);
+                source.cache.write(position, buffer, 0, n);
+
+                // Only bytes from the requested position onwards go to the client
+                int skip = (int) Math.max(0, Math.min(n, from - position));
+                if (n > skip) {
+                    out.write(buffer, skip, n - skip);
+                    servedBytes.addAndGet(n - skip);
+                }
+                position += n;
+            }
+            return position;
+        } finally {
+            connection.disconnect();
+            reportIfComplete(source);
+        }
+    }
+
+    /**
+     * Make sure the total length is known, asking the origin for a single byte if not.
+     */
+    private long ensureLength(Source source) throws IOException {
+        long length = source.cache.getLength();
+        if (length > 0) {
+            // Known from an earlier session; MediaPlayer sniffs the format anyway
+            if (source.contentType == null) {
+                source.contentType = guessContentType(source.originUrl);
+            }
+            return length;
+        }
+
+        HttpURLConnection connection = openOrigin(source, "bytes=0-0");
+        try {
+            int responseCode = connection.getResponseCode();
+            source.contentType = connection.getContentType();
+            if (responseCode == HttpURLConnection.HTTP_PARTIAL) {
+                String contentRange = connection.getHeaderField("Content-Range");
+                int slash = contentRange != null ? contentRange.lastIndexOf('/') : -1;
+                if (slash > 0 && !contentRange.endsWith("*")) {
+                    length = Long.parseLong(contentRange.substring(slash + 1).trim());
+                }
+                drain(connection.getInputStream());
+            } else if (responseCode == HttpURLConnection.HTTP_OK) {
+                length = connection.getContentLengthLong();
+            } else {
+                throw new IOException("Origin returned HTTP " + responseCode);
+            }
+        } finally {
+            connection.disconnect();
+        }
+
+        if (length <= 0) {
+            throw new IOException("Origin did not report a length");
+        }
+        if (source.contentType == null) {
+            source.contentType = guessContentType(source.originUrl);
+        }
+        source.cache.setLength(length);
+        return length;
+    }
+
+    private HttpURLConnection openOrigin(Source source, String range) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(source.originUrl).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setRequestProperty("User-Agent", "Dumbcast/1.0");
+        connection.setRequestProperty("Range", range);
+        // Compressed responses would break byte offsets
+        connection.setRequestProperty("Accept-Encoding", "identity");
+        return connection;
+    }
+
+    private void reportIfComplete(Source source) {
+        Listener current = listener;
+        synchronized (source) {
+            if (source.completionReported || !source.cache.isComplete()) {
+                return;
+            }
+            source.completionReported = true;
+        }
+        Log.d(TAG, "Episode " + source.episodeId + " fully cached (" + originBytes.get() +
+              " bytes fetched, " + servedBytes.get() + " served this session)");
+        if (current != null) {
+            current.onCacheComplete(source.episodeId, source.cache);
+        }
+    }
+
+    private void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[256];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            originBytes.addAndGet(n);
+        }
+    }
+
+    private static String guessContentType(String url) {
+        String path = url;
+        int query = path.indexOf('?');
+        if (query > 0) {
+            path = path.substring(0, query);
+        }
+        String guessed = URLConnection.guessContentTypeFromName(path);
+        return guessed != null ? guessed : "audio/mpeg";
+    }
+
+    private static void writeHeaders(OutputStream out, String status, String contentType,
+                                     long contentLength, String contentRange) throws IOException {
+        StringBuilder headers = new StringBuilder();
+        headers.append("HTTP/1.1 ").append(status).append("\r\n");
+        if (contentType != null) {
+            headers.append("Content-Type: ").append(contentType).append("\r\n");
+        }
+        headers.append("Content-Length: ").append(contentLength).append("\r\n");
+        headers.append("Accept-Ranges: bytes\r\n");
+        if (contentRange != null) {
+            headers.append("Content-Range: ").append(contentRange).append("\r\n");
+        }
+        headers.append("Connection: close\r\n\r\n");
+        out.write(headers.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int len = line.length();
+                if (len > 0 && line.charAt(len - 1) == '\r') {
+                    line.setLength(len - 1);
+                }
+                return line.toString();
+            }
+            line.append((char) c);
+        }
+        return line.length() > 0 ? line.toString() : null;
+    }
+}
@@ -0,0 +1,150 @@
+package com.ispringle.dumbcast.utils;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.MalformedJsonException;
+
+import com.ispringle.dumbcast.data.Chapter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parser for Podcasting 2.0 chapters files (the JSON behind podcast:chapters).
+ *
+ * The file is read token by token with JsonReader, so only the fields we keep
+ * (startTime, title, toc) are ever materialized. Images, links and location
+ * data, which make up most of a large chapters file, are skipped unread.
+ */
+public class ChaptersParser {
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 15000;
+    private static final int MAX_CHAPTERS = 500;
+    private static final int MAX_TITLE_LENGTH = 200;
+
+    /**
+     * The chapters file is missing or unusable; retrying won't help.
+     */
+    public static class InvalidChaptersException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        InvalidChaptersException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * Download and parse a chapters file.
+     *
+     * @param chaptersUrl URL of the chapters JSON
+     * @return Chapters sorted by start time
+     * @throws InvalidChaptersException If the server rejects the request or the file is malformed
+     * @throws IOException If a network or I/O error occurs
+     */
+    public static List<Chapter> fetch(String chaptersUrl) throws IOException {
+        String url = RedirectCache.getInstance().resolve(chaptersUrl);
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            connection.setRequestProperty("User-Agent", "Dumbcast/1.0");
+            connection.setRequestProperty("Accept", "application/json+chapters, application/json");
+
+            int responseCode = connection.getResponseCode();
+            if (responseCode >= 400 && responseCode < 500) {
+                throw new InvalidChaptersException("HTTP error code: " + responseCode, null);
+            }
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP error code: " + responseCode);
+            }
+            return parse(connection.getInputStream());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Parse a chapters JSON document. Chapters marked "toc": false are
+     * dropped since they aren't meant to be navigated to.
+     *
+     * @param in The JSON stream; closed when done
+     * @return Chapters sorted by start time, at most one per start time
+     * @throws InvalidChaptersException If the document isn't valid chapters JSON
+     * @throws IOException If the stream can't be read
+     */
+    public static List<Chapter> parse(InputStream in) throws IOException {
+        List<Chapter> chapters = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            reader.setLenient(true);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("chapters") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    readChapters(reader, chapters);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException | NumberFormatException | MalformedJsonException e) {
+            // JsonReader reports structural problems as unchecked exceptions
+            throw new InvalidChaptersException("Malformed chapters file", e);
+        }
+
+        Collections.sort(chapters, (a, b) -> Long.compare(a.getStartMs(), b.getStartMs()));
+
+        // Keep one chapter per start time; the table is keyed on it
+        List<Chapter> unique = new ArrayList<>(chapters.size());
+        for (Chapter chapter : chapters) {
+            if (unique.isEmpty() || unique.get(unique.size() - 1).getStartMs() != chapter.getStartMs()) {
+                unique.add(chapter);
+            }
+        }
+        return unique;
+    }
+
+    private static void readChapters(JsonReader reader, List<Chapter> chapters) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT || chapters.size() >= MAX_CHAPTERS) {
+                reader.skipValue();
+                continue;
+            }
+
+            double startTime = -1;
+            String title = null;
+            boolean toc = true;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                JsonToken token = reader.peek();
+                if (name.equals("startTime") && (token == JsonToken.NUMBER || token == JsonToken.STRING)) {
+                    startTime = reader.nextDouble();
+                } else if (name.equals("title") && token == JsonToken.STRING) {
+                    title = reader.nextString().trim();
+                } else if (name.equals("toc") && token == JsonToken.BOOLEAN) {
+                    toc = reader.nextBoolean();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (startTime < 0 || !toc) {
+                continue;
+            }
+            if (title != null && title.length() > MAX_TITLE_LENGTH) {
+                title = title.substring(0, MAX_TITLE_LENGTH);
+            }
+            chapters.add(new Chapter(Math.round(startTime * 1000), title));
+        }
+        reader.endArray();
+    }
+}
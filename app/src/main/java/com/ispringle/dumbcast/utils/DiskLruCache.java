@@ -0,0 +1,360 @@
+package com.ispringle.dumbcast.utils;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded file cache with least-recently-used eviction.
+ *
+ * The index of entries and their sizes is kept in memory, in access order, and
+ * read from a journal file once on first use. Every change is appended to the
+ * journal as one line:
+ *
+ *   CLEAN key size   entry written
+ *   READ key         entry used, moves it to the most recently used end
+ *   REMOVE key       entry deleted or evicted
+ *
+ * So writing an entry costs a rename and one journal line, whatever the size
+ * of the cache; nothing lists or sorts the directory. The journal is
+ * rewritten from the index once it holds far more lines than entries. If the
+ * journal is missing (first run, or a cache written before there was one)
+ * the index is rebuilt from the directory, oldest file first.
+ *
+ * Keys must not contain whitespace; hashes are a good fit. Thread-safe.
+ */
+public class DiskLruCache {
+
+    private static final String TAG = "DiskLruCache";
+    static final String JOURNAL_FILE = "journal";
+    private static final String JOURNAL_FILE_TEMP = "journal.tmp";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String CLEAN = "CLEAN";
+    private static final String READ = "READ";
+    private static final String REMOVE = "REMOVE";
+    // Journal lines allowed beyond one per entry before it is compacted
+    private static final int COMPACT_SLACK = 2000;
+
+    private final File directory;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0;
+    private int journalLines = 0;
+    private Writer journal;
+    private boolean opened = false;
+    // Numbers temporary files, so concurrent writes of one key never share a file
+    private long writeCounter = 0;
+
+    /**
+     * @param directory Directory holding the entries and the journal
+     * @param maxBytes Total size to evict down to
+     */
+    public DiskLruCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param key The entry's key
+     * @return The entry's file, or null if it isn't cached
+     */
+    public synchronized File get(String key) {
+        open();
+        if (entries.get(key) == null) {
+            return null;
+        }
+        File file = new File(directory, key);
+        if (!file.exists()) {
+            // Deleted behind our back
+            removeEntry(key);
+            return null;
+        }
+        appendJournal(READ + " " + key);
+        return file;
+    }
+
+    /**
+     * Start writing an entry. Fill the returned file, then {@link #commit} or {@link #abort} it.
+     * Every call gets a file of its own, so two writes of the same key can run at
+     * once; whichever commits last wins.
+     * @param key The entry's key
+     * @return A temporary file to write to
+     */
+    public synchronized File beginWrite(String key) {
+        open();
+        return new File(directory, key + "." + (writeCounter++) + TEMP_SUFFIX);
+    }
+
+    /**
+     * Move a finished write into place with a rename, which replaces any earlier
+     * file atomically, then evict old entries if the cache is now too big.
+     * @param key The entry's key
+     * @param tempFile The file returned by {@link #beginWrite}
+     * @return The entry's file, or null if it couldn't be moved into place
+     */
+    public synchronized File commit(String key, File tempFile) {
+        open();
+        File file = new File(directory, key);
+        if (!tempFile.renameTo(file)) {
+            Log.e(TAG, "Failed to commit cache entry " + key);
+            abort(tempFile);
+            return null;
+        }
+        Long previous = entries.put(key, file.length());
+        if (previous != null) {
+            size -= previous;
+        }
+        size += file.length();
+        appendJournal(CLEAN + " " + key + " " + file.length());
+        trimToSize();
+        return file;
+    }
+
+    /**
+     * Throw away an unfinished write.
+     * @param tempFile The file returned by {@link #beginWrite}
+     */
+    public void abort(File tempFile) {
+        if (tempFile.exists() && !tempFile.delete()) {
+            Log.w(TAG, "Failed to delete partial cache entry: " + tempFile.getName());
+        }
+    }
+
+    /**
+     * @param key The entry to delete
+     */
+    public synchronized void remove(String key) {
+        open();
+        if (entries.containsKey(key)) {
+            removeEntry(key);
+        }
+    }
+
+    /**
+     * @return Total size of all entries in bytes
+     */
+    public synchronized long getSize() {
+        open();
+        return size;
+    }
+
+    /**
+     * @return Number of entries
+     */
+    public synchronized int getEntryCount() {
+        open();
+        return entries.size();
+    }
+
+    /**
+     * Flush and close the journal. The cache reopens itself on next use.
+     */
+    public synchronized void close() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to close journal", e);
+            }
+            journal = null;
+        }
+        opened = false;
+    }
+
+    private void open() {
+        if (opened) {
+            return;
+        }
+        opened = true;
+        entries.clear();
+        size = 0;
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.w(TAG, "Failed to create cache directory " + directory);
+        }
+
+        long start = System.currentTimeMillis();
+        File journalFile = new File(directory, JOURNAL_FILE);
+        if (journalFile.exists()) {
+            readJournal(journalFile);
+        } else {
+            rebuildFromDirectory();
+        }
+        deleteStrayFiles();
+        trimToSize();
+        rewriteJournal();
+        Log.d(TAG, "Opened " + entries.size() + " entries, " + (size / 1024) + "KB, in " +
+              (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private void readJournal(File journalFile) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(journalFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                if (parts.length >= 3 && CLEAN.equals(parts[0])) {
+                    long length;
+                    try {
+                        length = Long.parseLong(parts[2]);
+                    } catch (NumberFormatException e) {
+                        continue;
+                    }
+                    Long previous = entries.put(parts[1], length);
+                    if (previous != null) {
+                        size -= previous;
+                    }
+                    size += length;
+                } else if (parts.length >= 2 && READ.equals(parts[0])) {
+                    entries.get(parts[1]);
+                } else if (parts.length >= 2 && REMOVE.equals(parts[0])) {
+                    Long previous = entries.remove(parts[1]);
+                    if (previous != null) {
+                        size -= previous;
+                    }
+                }
+                // Anything else is a torn last line from a crash; skip it
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read journal, rebuilding from directory", e);
+            entries.clear();
+            size = 0;
+            rebuildFromDirectory();
+            return;
+        }
+
+        // Drop entries whose file has gone
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            if (!new File(directory, entry.getKey()).exists()) {
+                size -= entry.getValue();
+                it.remove();
+            }
+        }
+    }
+
+    private void rebuildFromDirectory() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, (f1, f2) -> Long.compare(f1.lastModified(), f2.lastModified()));
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isFile() && !isJournalFile(name) && !name.endsWith(TEMP_SUFFIX)) {
+                entries.put(name, file.length());
+                size += file.length();
+            }
+        }
+    }
+
+    /**
+     * Delete unfinished writes and files the index doesn't know about.
+     */
+    private void deleteStrayFiles() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (!isJournalFile(name) && !entries.containsKey(name) && !file.delete()) {
+                Log.w(TAG, "Failed to delete stray cache file: " + name);
+            }
+        }
+    }
+
+    private static boolean isJournalFile(String name) {
+        return JOURNAL_FILE.equals(name) || JOURNAL_FILE_TEMP.equals(name);
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (size > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            size -= eldest.getValue();
+            File file = new File(directory, eldest.getKey());
+            if (file.exists() && !file.delete()) {
+                Log.w(TAG, "Failed to delete evicted cache file: " + eldest.getKey());
+            }
+            appendJournal(REMOVE + " " + eldest.getKey());
+        }
+    }
+
+    private void removeEntry(String key) {
+        Long length = entries.remove(key);
+        if (length != null) {
+            size -= length;
+        }
+        File file = new File(directory, key);
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Failed to delete cache file: " + key);
+        }
+        appendJournal(REMOVE + " " + key);
+    }
+
+    private void appendJournal(String line) {
+        if (journal == null) {
+            // Still opening; rewriteJournal() captures the result
+            return;
+        }
+        try {
+            journal.write(line);
+            journal.write('\n');
+            journal.flush();
+            journalLines++;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to append to journal", e);
+        }
+        if (journalLines > entries.size() + COMPACT_SLACK) {
+            rewriteJournal();
+        }
+    }
+
+    /**
+     * Write the index out as a fresh journal, least recently used first, and
+     * swap it in with a rename so a crash leaves either the old or the new one.
+     */
+    private void rewriteJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to close journal", e);
+            }
+            journal = null;
+        }
+
+        File journalFile = new File(directory, JOURNAL_FILE);
+        File tempFile = new File(directory, JOURNAL_FILE_TEMP);
+        try (Writer writer = new BufferedWriter(new FileWriter(tempFile))) {
+            for (Map.Entry<String, Long> entry : entries.entrySet()) {
+                writer.write(CLEAN + " " + entry.getKey() + " " + entry.getValue() + "\n");
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write journal", e);
+            return;
+        }
+        if (!tempFile.renameTo(journalFile)) {
+            Log.w(TAG, "Failed to replace journal");
+            return;
+        }
+        journalLines = entries.size();
+
+        try {
+            journal = new BufferedWriter(new FileWriter(journalFile, true));
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to open journal for appending", e);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.ispringle.dumbcast.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Query building and ranking for the episode search index (see DatabaseHelper
+ * and EpisodeRepository#searchEpisodes).
+ *
+ * The index has three columns: title, show notes text, and the title spelled
+ * in keypad digits ("Hello World" is "43556 96753"). What was typed decides
+ * which are searched:
+ * - Only digits and spaces, as typed on a phone keypad without predictive text:
+ *   the digit column, so "4355" finds "Hello" and "help"
+ * - Anything else: title and show notes
+ * Every word is matched as a prefix, so results follow each key press.
+ *
+ * Pure string processing; safe on any thread.
+ */
+public final class EpisodeSearch {
+
+    // Fewer characters than this match too much to be worth a query
+    public static final int MIN_QUERY_CHARS = 2;
+
+    // Keys 2 to 9
+    private static final String[] KEYPAD_LETTERS = {
+        "abc", "def", "ghi", "jkl", "mno", "pqrs", "tuv", "wxyz"
+    };
+
+    // Per index column, in table order: title, notes, keypad digits
+    private static final double[] COLUMN_WEIGHTS = {4.0, 1.0, 4.0};
+
+    private EpisodeSearch() {
+    }
+
+    /**
+     * Spell text in keypad digits. Letters become their key's digit, accents are
+     * dropped first; digits are kept, everything else becomes a space.
+     * @param text The text
+     * @return The digits
+     */
+    public static String toKeypadDigits(String text) {
+        String plain = Normalizer.normalize(text, Normalizer.Form.NFD).toLowerCase(Locale.US);
+        StringBuilder digits = new StringBuilder(plain.length());
+        for (int i = 0; i < plain.length(); i++) {
+            char c = plain.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            } else if (c >= 'a' && c <= 'z') {
+                digits.append(keypadDigit(c));
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                digits.append(' ');
+            }
+        }
+        return digits.toString();
+    }
+
+    /**
+     * The same as {@link #toKeypadDigits} in SQL, for the triggers that keep the
+     * index in step with titles. Only ASCII letters are mapped; SQLite has no
+     * accent folding, and the index tokenizer splits on whatever is left.
+     * @param column A text column or expression
+     * @return An SQL expression of its keypad digits
+     */
+    public static String keypadDigitsSql(String column) {
+        StringBuilder sql = new StringBuilder();
+        int letters = 0;
+        for (String keys : KEYPAD_LETTERS) {
+            letters += keys.length();
+        }
+        for (int i = 0; i < letters; i++) {
+            sql.append("replace(");
+        }
+        sql.append("lower(").append(column).append(")");
+        for (int key = 0; key < KEYPAD_LETTERS.length; key++) {
+            for (char c : KEYPAD_LETTERS[key].toCharArray()) {
+                sql.append(", '").append(c).append("', '").append(key + 2).append("')");
+            }
+        }
+        return sql.toString();
+    }
+
+    /**
+     * @param input What was typed
+     * @return True if it is keypad digits, to be matched against titles spelled in digits
+     */
+    public static boolean isKeypadInput(String input) {
+        boolean digits = false;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+            } else if (c != ' ') {
+                return false;
+            }
+        }
+        return digits;
+    }
+
+    /**
+     * Turn what was typed into an index MATCH expression. Words are reduced to
+     * letters and digits, so nothing typed is read as query syntax.
+     * @param input What was typed
+     * @param digitsColumn Name of the index column of titles in keypad digits
+     * @return The expression, or null if there is nothing to search for
+     */
+    public static String toMatchQuery(String input, String digitsColumn) {
+        if (input == null || input.trim().length() < MIN_QUERY_CHARS) {
+            return null;
+        }
+        boolean keypad = isKeypadInput(input);
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        String folded = Normalizer.normalize(input, Normalizer.Form.NFD).toLowerCase(Locale.US);
+        for (int i = 0; i <= folded.length(); i++) {
+            char c = i < folded.length() ? folded.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK && word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (words.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder query = new StringBuilder();
+        for (String w : words) {
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            if (keypad) {
+                query.append(digitsColumn).append(':');
+            }
+            query.append(w).append('*');
+        }
+        return query.toString();
+    }
+
+    /**
+     * Rank a match from the index's matchinfo(..., 'pcx'): for each word and
+     * column, how often it occurs in this episode relative to the whole index,
+     * weighted so title matches count more than show notes matches.
+     * @param matchinfo The matchinfo blob, in native byte order
+     * @return The score; higher is better
+     */
+    public static double score(byte[] matchinfo) {
+        ByteBuffer info = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder());
+        int phrases = info.getInt(0);
+        int columns = info.getInt(4);
+        double score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns; column++) {
+                int offset = 8 + 12 * (phrase * columns + column);
+                int hitsHere = info.getInt(offset);
+                int hitsEverywhere = info.getInt(offset + 4);
+                if (hitsHere > 0) {
+                    double weight = column < COLUMN_WEIGHTS.length ? COLUMN_WEIGHTS[column] : 1.0;
+                    score += weight * hitsHere / Math.max(1, hitsEverywhere);
+                }
+            }
+        }
+        return score;
+    }
+
+    private static char keypadDigit(char letter) {
+        for (int key = 0; key < KEYPAD_LETTERS.length; key++) {
+            if (KEYPAD_LETTERS[key].indexOf(letter) >= 0) {
+                return (char) ('2' + key);
+            }
+        }
+        return ' ';
+    }
+}
@@ -3,10 +3,13 @@ package com.ispringle.dumbcast.utils;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v4.content.ContextCompat;
 import android.support.v4.util.LruCache;
+import android.util.DisplayMetrics;
 import android.util.Log;
+import android.view.ViewGroup;
 import android.widget.ImageView;
 
 import com.ispringle.dumbcast.R;
@@ -15,59 +18,92 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.ref.WeakReference;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Image loading utility with memory and disk caching.
  *
  * Features:
- * - LruCache for memory caching of recently used images
- * - Disk cache to avoid re-downloading images
- * - AsyncTask for background loading without blocking UI
+ * - LruCache for memory caching of recently used images, keyed by URL and target size;
+ *   sized and trimmed by MemoryBudget
+ * - Journaled disk LRU cache (see DiskLruCache) of the original image bytes to avoid re-downloading images
+ * - Images decoded bounds-first and subsampled to the ImageView's size, so
+ *   3000x3000 artwork never lands on the heap at full resolution
+ * - Small dedicated executor; requests for the same URLs and size share one load,
+ *   on-screen views go ahead of prefetches, and requests whose views were
+ *   recycled are dropped before downloading or decoding
  * - WeakReference to prevent memory leaks
  * - Graceful error handling with placeholder fallback
  *
  * Usage:
  *   ImageLoader.getInstance(context).loadImage(context, imageUrl, imageView);
+ *
+ * Load and prefetch calls are made on the main thread.
  */
 public class ImageLoader {
 
     private static final String TAG = "ImageLoader";
     private static final String CACHE_DIR_NAME = "artwork";
-    private static final int MAX_MEMORY_CACHE_SIZE = 4 * 1024 * 1024; // 4MB
-    private static final long MAX_DISK_CACHE_SIZE = 50 * 1024 * 1024; // 50MB
+    // Downloads are mostly waiting on the network, decodes are short; two threads keep both busy
+    private static final int LOADER_THREADS = 2;
+    private static final int PRIORITY_VISIBLE = 0;
+    private static final int PRIORITY_PREFETCH = 1;
 
     private static ImageLoader instance;
     private final LruCache<String, Bitmap> memoryCache;
-    private final File diskCacheDir;
+    private final DiskLruCache diskCache;
+    private final DisplayMetrics displayMetrics;
+    private final ThreadPoolExecutor loaderExecutor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicLong requestSequence = new AtomicLong();
+    // Main thread only: loads not yet delivered, by request key, and what each view is waiting for
+    private final Map<String, LoadRequest> inFlight = new HashMap<>();
+    private final Map<ImageView, LoadRequest> waitingViews = new WeakHashMap<>();
+    // Cache keys being downloaded. Loads are coalesced by URL pair and size, so two
+    // of them can want the same URL; the second waits and finds it cached.
+    private final Set<String> downloading = new HashSet<>();
 
     /**
      * Private constructor for singleton pattern.
      */
     private ImageLoader(Context context) {
-        // Initialize memory cache
-        memoryCache = new LruCache<String, Bitmap>(MAX_MEMORY_CACHE_SIZE) {
+        MemoryBudget budget = MemoryBudget.getInstance(context);
+
+        // Initialize memory cache, sized for the device and shed first under memory pressure
+        memoryCache = new LruCache<String, Bitmap>(budget.getBitmapCacheBytes()) {
             @Override
             protected int sizeOf(String key, Bitmap bitmap) {
                 // Return size in bytes
                 return bitmap.getByteCount();
             }
         };
+        budget.register(level -> MemoryBudget.trimLruCache(memoryCache, level), MemoryBudget.ORDER_UI);
 
-        // Initialize disk cache directory
-        diskCacheDir = new File(context.getCacheDir(), CACHE_DIR_NAME);
-        if (!diskCacheDir.exists()) {
-            if (!diskCacheDir.mkdirs()) {
-                Log.w(TAG, "Failed to create disk cache directory");
-            }
-        }
+        // Initialize disk cache; its index is read on first use, off the main thread
+        File diskCacheDir = new File(context.getCacheDir(), CACHE_DIR_NAME);
+        diskCache = new DiskLruCache(diskCacheDir, budget.getDiskCacheBytes());
+
+        displayMetrics = context.getResources().getDisplayMetrics();
+
+        loaderExecutor = new ThreadPoolExecutor(LOADER_THREADS, LOADER_THREADS, 0, TimeUnit.MILLISECONDS,
+            new PriorityBlockingQueue<Runnable>());
 
         Log.d(TAG, "ImageLoader initialized with cache dir: " + diskCacheDir.getAbsolutePath());
     }
@@ -105,6 +141,9 @@ public class ImageLoader {
      * @param imageView ImageView to load image into
      */
     public void loadImageWithFallback(Context context, String primaryUrl, String fallbackUrl, ImageView imageView) {
+        // Whatever this view was waiting for before it was recycled is no longer wanted
+        detachView(imageView);
+
         // Handle case where both URLs are null/empty
         if ((primaryUrl == null || primaryUrl.trim().isEmpty()) &&
             (fallbackUrl == null || fallbackUrl.trim().isEmpty())) {
@@ -112,10 +151,13 @@ public class ImageLoader {
             return;
         }
 
+        int reqWidth = getTargetWidth(imageView);
+        int reqHeight = getTargetHeight(imageView);
+
         // Check memory cache for both URLs
         // Try primary URL first
         if (primaryUrl != null && !primaryUrl.trim().isEmpty()) {
-            Bitmap cachedBitmap = memoryCache.get(primaryUrl);
+            Bitmap cachedBitmap = memoryCache.get(getMemCacheKey(primaryUrl, reqWidth, reqHeight));
             if (cachedBitmap != null) {
                 Log.d(TAG, "Image loaded from memory cache (primary): " + primaryUrl);
                 imageView.setImageBitmap(cachedBitmap);
@@ -127,7 +169,7 @@ public class ImageLoader {
 
         // Try fallback URL in cache
         if (fallbackUrl != null && !fallbackUrl.trim().isEmpty()) {
-            Bitmap cachedBitmap = memoryCache.get(fallbackUrl);
+            Bitmap cachedBitmap = memoryCache.get(getMemCacheKey(fallbackUrl, reqWidth, reqHeight));
             if (cachedBitmap != null) {
                 Log.d(TAG, "Image loaded from memory cache (fallback): " + fallbackUrl);
                 imageView.setImageBitmap(cachedBitmap);
@@ -140,12 +182,171 @@ public class ImageLoader {
         // Show placeholder while loading
         setPlaceholder(context, imageView);
 
-        // Set tag to a composite key representing both URLs for race condition checking
-        String compositeKey = (primaryUrl != null ? primaryUrl : "") + "|" + (fallbackUrl != null ? fallbackUrl : "");
-        imageView.setTag(compositeKey);
+        String key = getRequestKey(primaryUrl, fallbackUrl, reqWidth, reqHeight);
+        imageView.setTag(key);
+
+        // Join a load already under way for the same images, or start one
+        LoadRequest request = inFlight.get(key);
+        if (request == null) {
+            request = new LoadRequest(key, primaryUrl, fallbackUrl, reqWidth, reqHeight, PRIORITY_VISIBLE);
+            inFlight.put(key, request);
+            loaderExecutor.execute(request);
+        } else if (request.priority != PRIORITY_VISIBLE) {
+            promote(request);
+        }
+        request.views.add(new WeakReference<>(imageView));
+        waitingViews.put(imageView, request);
+    }
+
+    /**
+     * Warm the caches for an image that is likely to be shown soon, such as
+     * the rows just past the bottom of a list. Runs behind every on-screen load.
+     *
+     * @param imageUrl URL of the image (can be null)
+     * @param sizedLike A view the same size as the one it will be shown in
+     */
+    public void prefetch(String imageUrl, ImageView sizedLike) {
+        int reqWidth = getTargetWidth(sizedLike);
+        int reqHeight = getTargetHeight(sizedLike);
+        if (imageUrl == null || imageUrl.trim().isEmpty() ||
+            memoryCache.get(getMemCacheKey(imageUrl, reqWidth, reqHeight)) != null) {
+            return;
+        }
+        String key = getRequestKey(imageUrl, null, reqWidth, reqHeight);
+        if (!inFlight.containsKey(key)) {
+            LoadRequest request = new LoadRequest(key, imageUrl, null, reqWidth, reqHeight, PRIORITY_PREFETCH);
+            inFlight.put(key, request);
+            loaderExecutor.execute(request);
+        }
+    }
+
+    /**
+     * Stop a view waiting on its current request. A visible-priority request
+     * left with nobody waiting is cancelled; if it hasn't started it never will.
+     */
+    private void detachView(ImageView imageView) {
+        LoadRequest request = waitingViews.remove(imageView);
+        if (request == null) {
+            return;
+        }
+        for (int i = request.views.size() - 1; i >= 0; i--) {
+            ImageView view = request.views.get(i).get();
+            if (view == null || view == imageView) {
+                request.views.remove(i);
+            }
+        }
+        if (request.views.isEmpty() && request.priority == PRIORITY_VISIBLE) {
+            request.cancelled = true;
+            inFlight.remove(request.key);
+            loaderExecutor.remove(request);
+        }
+    }
+
+    /**
+     * Move a queued prefetch ahead of other prefetches now that a view is waiting on it.
+     */
+    private void promote(LoadRequest request) {
+        if (loaderExecutor.remove(request)) {
+            request.priority = PRIORITY_VISIBLE;
+            loaderExecutor.execute(request);
+        } else {
+            // Already running; it just needs to stop counting as a prefetch
+            request.priority = PRIORITY_VISIBLE;
+        }
+    }
+
+    /**
+     * Key that identifies one load: the URLs tried and the size decoded for.
+     */
+    private static String getRequestKey(String primaryUrl, String fallbackUrl, int reqWidth, int reqHeight) {
+        return (primaryUrl != null ? primaryUrl : "") + "|" + (fallbackUrl != null ? fallbackUrl : "") +
+            "@" + reqWidth + "x" + reqHeight;
+    }
+
+    /**
+     * Width to decode for: the view's measured width, else its layout width,
+     * else the screen width when the view hasn't been laid out yet.
+     */
+    private int getTargetWidth(ImageView imageView) {
+        if (imageView.getWidth() > 0) {
+            return imageView.getWidth();
+        }
+        ViewGroup.LayoutParams params = imageView.getLayoutParams();
+        if (params != null && params.width > 0) {
+            return params.width;
+        }
+        return displayMetrics.widthPixels;
+    }
+
+    /**
+     * Height to decode for, worked out the same way as {@link #getTargetWidth}.
+     */
+    private int getTargetHeight(ImageView imageView) {
+        if (imageView.getHeight() > 0) {
+            return imageView.getHeight();
+        }
+        ViewGroup.LayoutParams params = imageView.getLayoutParams();
+        if (params != null && params.height > 0) {
+            return params.height;
+        }
+        return displayMetrics.heightPixels;
+    }
+
+    /**
+     * Memory cache key: the same image decoded for two sizes is two entries.
+     */
+    private static String getMemCacheKey(String imageUrl, int reqWidth, int reqHeight) {
+        return imageUrl + "@" + reqWidth + "x" + reqHeight;
+    }
+
+    /**
+     * Largest power-of-two subsampling factor that keeps both sides at least
+     * as big as requested, so the image still fills the view after scaling.
+     *
+     * @param width Width of the encoded image
+     * @param height Height of the encoded image
+     * @param reqWidth Width it will be shown at
+     * @param reqHeight Height it will be shown at
+     * @return Value for BitmapFactory.Options.inSampleSize
+     */
+    private static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int inSampleSize = 1;
+        if (reqWidth <= 0 || reqHeight <= 0) {
+            return inSampleSize;
+        }
+        while (width / (inSampleSize * 2) >= reqWidth && height / (inSampleSize * 2) >= reqHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    /**
+     * Decode an image file at roughly the requested size. Reads the bounds first,
+     * then decodes subsampled. JPEGs have no alpha, so they are decoded as
+     * RGB_565 at half the memory of ARGB_8888.
+     */
+    private Bitmap decodeSampledBitmap(File file, int reqWidth, int reqHeight) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
 
-        // Load image in background with fallback support
-        new LoadImageTask(context, imageView, primaryUrl, fallbackUrl).execute();
+        int sourceWidth = options.outWidth;
+        int sourceHeight = options.outHeight;
+        options.inSampleSize = calculateInSampleSize(sourceWidth, sourceHeight, reqWidth, reqHeight);
+        options.inPreferredConfig = "image/jpeg".equals(options.outMimeType) ?
+            Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        options.inJustDecodeBounds = false;
+
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+        if (bitmap != null) {
+            Log.d(TAG, "Decoded " + sourceWidth + "x" + sourceHeight + " as " + bitmap.getWidth() + "x" +
+                  bitmap.getHeight() + " (" + (bitmap.getByteCount() / 1024) + "KB) for " +
+                  reqWidth + "x" + reqHeight);
+        }
+        return bitmap;
     }
 
     /**
@@ -174,21 +375,13 @@ public class ImageLoader {
     }
 
     /**
-     * Get file path for disk cache entry.
+     * Load bitmap from disk cache, decoded for the requested size.
      */
-    private File getDiskCacheFile(String imageUrl) {
-        String filename = md5(imageUrl);
-        return new File(diskCacheDir, filename);
-    }
-
-    /**
-     * Load bitmap from disk cache.
-     */
-    private Bitmap loadFromDiskCache(String imageUrl) {
-        File cacheFile = getDiskCacheFile(imageUrl);
-        if (cacheFile.exists()) {
+    private Bitmap loadFromDiskCache(String imageUrl, int reqWidth, int reqHeight) {
+        File cacheFile = diskCache.get(md5(imageUrl));
+        if (cacheFile != null) {
             try {
-                Bitmap bitmap = BitmapFactory.decodeFile(cacheFile.getAbsolutePath());
+                Bitmap bitmap = decodeSampledBitmap(cacheFile, reqWidth, reqHeight);
                 if (bitmap != null) {
                     Log.d(TAG, "Image loaded from disk cache: " + imageUrl);
                     return bitmap;
@@ -201,39 +394,38 @@ public class ImageLoader {
     }
 
     /**
-     * Save bitmap to disk cache.
+     * Download an image into the disk cache as-is. The original bytes are kept
+     * rather than a re-encoded bitmap, so the full-size image is never decoded.
+     *
+     * @return True if the image is now in the disk cache
      */
-    private void saveToDiskCache(String imageUrl, Bitmap bitmap) {
-        File cacheFile = getDiskCacheFile(imageUrl);
-        FileOutputStream fos = null;
-        try {
-            fos = new FileOutputStream(cacheFile);
-            // Use JPEG for smaller cache size (PNG ignores quality parameter)
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 90, fos);
-            fos.flush();
-            Log.d(TAG, "Image saved to disk cache: " + imageUrl);
-
-            // Clean up disk cache if needed
-            cleanupDiskCacheIfNeeded();
-        } catch (IOException e) {
-            Log.e(TAG, "Error saving to disk cache: " + e.getMessage());
-        } finally {
-            if (fos != null) {
+    private boolean downloadToDiskCache(String imageUrl) {
+        String key = md5(imageUrl);
+        synchronized (downloading) {
+            while (downloading.contains(key)) {
                 try {
-                    fos.close();
-                } catch (IOException e) {
-                    Log.e(TAG, "Error closing file output stream: " + e.getMessage());
+                    downloading.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
                 }
             }
+            downloading.add(key);
+        }
+        try {
+            // Another load may have fetched it while this one waited
+            return diskCache.get(key) != null || download(imageUrl, key);
+        } finally {
+            synchronized (downloading) {
+                downloading.remove(key);
+                downloading.notifyAll();
+            }
         }
     }
 
-    /**
-     * Download bitmap from URL.
-     */
-    private Bitmap downloadBitmap(String imageUrl) {
+    private boolean download(String imageUrl, String key) {
         HttpURLConnection connection = null;
-        InputStream inputStream = null;
+        File tempFile = diskCache.beginWrite(key);
 
         try {
             URL url = new URL(imageUrl);
@@ -246,31 +438,32 @@ public class ImageLoader {
             int responseCode = connection.getResponseCode();
             if (responseCode != HttpURLConnection.HTTP_OK) {
                 Log.e(TAG, "HTTP error downloading image: " + responseCode);
-                return null;
+                return false;
             }
 
-            inputStream = connection.getInputStream();
-            Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
-
-            if (bitmap != null) {
-                Log.d(TAG, "Image downloaded from URL: " + imageUrl);
-            } else {
-                Log.e(TAG, "Failed to decode bitmap from stream");
+            try (InputStream inputStream = connection.getInputStream();
+                 OutputStream outputStream = new FileOutputStream(tempFile)) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, read);
+                }
             }
 
-            return bitmap;
+            // Moved into place only once complete, so a half-written file is never decoded.
+            // Evicts least recently used images if the cache is now over its limit.
+            File cacheFile = diskCache.commit(key, tempFile);
+            if (cacheFile == null) {
+                return false;
+            }
+            Log.d(TAG, "Image downloaded from URL: " + imageUrl + " (" + (cacheFile.length() / 1024) + "KB)");
+            return true;
 
         } catch (IOException e) {
             Log.e(TAG, "Error downloading image: " + e.getMessage());
-            return null;
+            return false;
         } finally {
-            if (inputStream != null) {
-                try {
-                    inputStream.close();
-                } catch (IOException e) {
-                    Log.e(TAG, "Error closing input stream: " + e.getMessage());
-                }
-            }
+            diskCache.abort(tempFile);
             if (connection != null) {
                 connection.disconnect();
             }
@@ -297,173 +490,128 @@ public class ImageLoader {
     }
 
     /**
-     * Clean up disk cache if it exceeds the maximum size.
-     * Deletes oldest files first until cache size is under limit.
-     */
-    private void cleanupDiskCacheIfNeeded() {
-        if (!diskCacheDir.exists()) {
-            return;
-        }
-
-        // Calculate current cache size
-        File[] cacheFiles = diskCacheDir.listFiles();
-        if (cacheFiles == null || cacheFiles.length == 0) {
-            return;
-        }
-
-        long totalSize = 0;
-        for (File file : cacheFiles) {
-            totalSize += file.length();
-        }
-
-        // If under limit, no cleanup needed
-        if (totalSize <= MAX_DISK_CACHE_SIZE) {
-            Log.d(TAG, "Disk cache size: " + (totalSize / 1024) + "KB (under limit)");
-            return;
-        }
-
-        Log.d(TAG, "Disk cache size: " + (totalSize / 1024) + "KB (exceeds limit, cleaning up)");
-
-        // Sort files by last modified time (oldest first)
-        Arrays.sort(cacheFiles, new Comparator<File>() {
-            @Override
-            public int compare(File f1, File f2) {
-                return Long.compare(f1.lastModified(), f2.lastModified());
-            }
-        });
-
-        // Delete oldest files until we're under the limit
-        for (File file : cacheFiles) {
-            if (totalSize <= MAX_DISK_CACHE_SIZE) {
-                break;
-            }
-
-            long fileSize = file.length();
-            if (file.delete()) {
-                totalSize -= fileSize;
-                Log.d(TAG, "Deleted old cache file: " + file.getName());
-            } else {
-                Log.w(TAG, "Failed to delete cache file: " + file.getName());
-            }
-        }
-
-        Log.d(TAG, "Disk cache cleanup complete. New size: " + (totalSize / 1024) + "KB");
-    }
-
-    /**
-     * AsyncTask to load image in background thread with fallback support.
-     * Uses WeakReference to prevent memory leaks.
+     * One load on the loader executor, shared by every view waiting for the same
+     * images at the same size. Runs in priority order, oldest first within a priority.
      */
-    private class LoadImageTask extends AsyncTask<Void, Void, Bitmap> {
+    private class LoadRequest implements Runnable, Comparable<LoadRequest> {
 
-        private final WeakReference<Context> contextRef;
-        private final WeakReference<ImageView> imageViewRef;
+        private final String key;
         private final String primaryUrl;
         private final String fallbackUrl;
-        private String successfulUrl; // Track which URL successfully loaded
-
-        LoadImageTask(Context context, ImageView imageView, String primaryUrl, String fallbackUrl) {
-            this.contextRef = new WeakReference<>(context);
-            this.imageViewRef = new WeakReference<>(imageView);
+        private final int reqWidth;
+        private final int reqHeight;
+        private final long sequence = requestSequence.getAndIncrement();
+        // Views are only touched on the main thread
+        private final List<WeakReference<ImageView>> views = new ArrayList<>();
+        private volatile int priority;
+        private volatile boolean cancelled = false;
+
+        LoadRequest(String key, String primaryUrl, String fallbackUrl, int reqWidth, int reqHeight, int priority) {
+            this.key = key;
             this.primaryUrl = primaryUrl;
             this.fallbackUrl = fallbackUrl;
-            this.successfulUrl = null;
+            this.reqWidth = reqWidth;
+            this.reqHeight = reqHeight;
+            this.priority = priority;
+        }
+
+        @Override
+        public int compareTo(LoadRequest other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(sequence, other.sequence);
         }
 
         @Override
-        protected Bitmap doInBackground(Void... params) {
+        public void run() {
+            String successfulUrl = null;
             Bitmap bitmap = null;
 
             // Try primary URL first (if valid)
             if (primaryUrl != null && !primaryUrl.trim().isEmpty()) {
-                // Check if task was cancelled before expensive operation
-                if (isCancelled()) {
-                    Log.d(TAG, "Task cancelled before loading primary URL");
-                    return null;
-                }
-
-                Log.d(TAG, "Trying primary URL: " + primaryUrl);
                 bitmap = loadBitmapFromUrl(primaryUrl);
                 if (bitmap != null) {
                     successfulUrl = primaryUrl;
-                    return bitmap;
+                } else if (!cancelled) {
+                    Log.d(TAG, "Primary URL failed, trying fallback");
                 }
-                Log.d(TAG, "Primary URL failed, trying fallback");
             }
 
             // Try fallback URL if primary failed or was null
-            if (fallbackUrl != null && !fallbackUrl.trim().isEmpty()) {
-                // Check if task was cancelled before expensive operation
-                if (isCancelled()) {
-                    Log.d(TAG, "Task cancelled before loading fallback URL");
-                    return null;
-                }
-
-                Log.d(TAG, "Trying fallback URL: " + fallbackUrl);
+            if (bitmap == null && fallbackUrl != null && !fallbackUrl.trim().isEmpty()) {
                 bitmap = loadBitmapFromUrl(fallbackUrl);
                 if (bitmap != null) {
                     successfulUrl = fallbackUrl;
-                    return bitmap;
                 }
-                Log.d(TAG, "Fallback URL also failed");
             }
 
-            return null;
+            final Bitmap result = bitmap;
+            final String resultUrl = successfulUrl;
+            mainHandler.post(() -> deliver(result, resultUrl));
         }
 
         /**
          * Load bitmap from a single URL (check cache, then download).
+         * Gives up before each expensive step once nobody wants the result.
          */
         private Bitmap loadBitmapFromUrl(String url) {
+            if (cancelled) {
+                return null;
+            }
+
             // Try disk cache first
-            Bitmap bitmap = loadFromDiskCache(url);
-            if (bitmap != null) {
+            Bitmap bitmap = loadFromDiskCache(url, reqWidth, reqHeight);
+            if (bitmap != null || cancelled) {
                 return bitmap;
             }
 
-            // Download from network
-            bitmap = downloadBitmap(url);
-            if (bitmap != null) {
-                // Save to disk cache
-                saveToDiskCache(url, bitmap);
+            // Download into the disk cache, then decode from there at the target size
+            if (downloadToDiskCache(url) && !cancelled) {
+                bitmap = loadFromDiskCache(url, reqWidth, reqHeight);
             }
 
             return bitmap;
         }
 
-        @Override
-        protected void onPostExecute(Bitmap bitmap) {
-            ImageView imageView = imageViewRef.get();
-            Context context = contextRef.get();
-
-            if (imageView == null || context == null) {
-                // ImageView or Context was garbage collected
-                return;
+        /**
+         * Hand the result to every view still waiting for it. Main thread.
+         */
+        private void deliver(Bitmap bitmap, String successfulUrl) {
+            if (inFlight.get(key) == this) {
+                inFlight.remove(key);
             }
 
-            // Check if ImageView is still waiting for this URL pair (race condition check)
-            String expectedCompositeKey = (primaryUrl != null ? primaryUrl : "") + "|" + (fallbackUrl != null ? fallbackUrl : "");
-            Object tag = imageView.getTag();
-            if (tag == null || !tag.equals(expectedCompositeKey)) {
-                // ImageView is now being used for a different URL, don't set bitmap
-                Log.d(TAG, "ImageView tag mismatch, skipping update (race condition avoided)");
+            if (bitmap != null && successfulUrl != null) {
+                // Cached even if every view moved on; a prefetch or a scroll back will want it
+                addBitmapToMemCache(getMemCacheKey(successfulUrl, reqWidth, reqHeight), bitmap);
+            }
+            if (cancelled) {
                 return;
             }
 
-            if (bitmap != null && successfulUrl != null) {
-                // Add to memory cache using the successful URL as key
-                addBitmapToMemCache(successfulUrl, bitmap);
-
-                // Set bitmap to ImageView
-                imageView.setImageBitmap(bitmap);
-                imageView.setBackgroundColor(0); // Clear background
-                imageView.setTag(successfulUrl); // Update tag to successful URL
+            for (WeakReference<ImageView> ref : views) {
+                ImageView imageView = ref.get();
+                if (imageView == null || waitingViews.get(imageView) != this) {
+                    // Garbage collected, or recycled for a different image
+                    continue;
+                }
+                waitingViews.remove(imageView);
+
+                if (bitmap != null && successfulUrl != null) {
+                    imageView.setImageBitmap(bitmap);
+                    imageView.setBackgroundColor(0); // Clear background
+                    imageView.setTag(successfulUrl); // Update tag to successful URL
+                } else {
+                    // Error loading image from both URLs, show placeholder
+                    setPlaceholder(imageView.getContext(), imageView);
+                }
+            }
 
-                Log.d(TAG, "Successfully loaded image from: " + successfulUrl);
-            } else {
-                // Error loading image from both URLs, show placeholder
+            if (bitmap != null) {
+                Log.d(TAG, "Loaded " + successfulUrl + " for " + views.size() + " view(s)");
+            } else if (!views.isEmpty()) {
                 Log.w(TAG, "Failed to load image from primary and fallback URLs, showing placeholder");
-                setPlaceholder(context, imageView);
             }
         }
     }
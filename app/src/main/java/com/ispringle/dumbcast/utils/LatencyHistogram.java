@@ -0,0 +1,104 @@
+package com.ispringle.dumbcast.utils;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size histogram of latencies in milliseconds.
+ *
+ * Samples are counted into roughly logarithmic buckets (1-2-3-5-7 steps up to a
+ * minute), so memory stays constant however many samples are recorded and
+ * percentiles are accurate to a bucket. Count, mean and max are exact.
+ * Thread safe.
+ */
+public class LatencyHistogram {
+
+    private static final long[] BUCKET_BOUNDS_MS = {
+        1, 2, 3, 5, 7, 10, 15, 20, 30, 50, 70, 100, 150, 200, 300, 500, 700,
+        1000, 1500, 2000, 3000, 5000, 7000, 10000, 15000, 20000, 30000, 60000
+    };
+
+    // One extra bucket for anything slower than the last bound
+    private final long[] counts = new long[BUCKET_BOUNDS_MS.length + 1];
+    private long count = 0;
+    private long sum = 0;
+    private long max = 0;
+
+    /**
+     * @param ms Latency to record; negative values are ignored
+     */
+    public synchronized void record(long ms) {
+        if (ms < 0) {
+            return;
+        }
+        counts[bucketFor(ms)]++;
+        count++;
+        sum += ms;
+        max = Math.max(max, ms);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /**
+     * @return Mean latency, or 0 if nothing has been recorded
+     */
+    public synchronized long getMean() {
+        return count > 0 ? sum / count : 0;
+    }
+
+    /**
+     * @param percentile Between 0 and 100
+     * @return Upper bound of the bucket holding that percentile, capped at the
+     *         largest sample; 0 if nothing has been recorded
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i < BUCKET_BOUNDS_MS.length ? Math.min(BUCKET_BOUNDS_MS[i], max) : max;
+            }
+        }
+        return max;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    /**
+     * @return One-line summary, e.g. "n=12 p50=300 p90=700 p99=812 max=812 mean=350"
+     */
+    @Override
+    public synchronized String toString() {
+        return "n=" + count + " p50=" + getPercentile(50) + " p90=" + getPercentile(90) +
+            " p99=" + getPercentile(99) + " max=" + max + " mean=" + getMean();
+    }
+
+    private static int bucketFor(long ms) {
+        int low = 0;
+        int high = BUCKET_BOUNDS_MS.length;
+        // First bound >= ms, or the overflow bucket
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (BUCKET_BOUNDS_MS[mid] < ms) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,218 @@
+package com.ispringle.dumbcast.utils;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Central memory budget: sizes the app's caches for the device and sheds them
+ * under memory pressure.
+ *
+ * Cache sizes come from the per-app heap limit (ActivityManager.getMemoryClass())
+ * and whether the device reports itself as low-RAM, so a 256 MB feature phone
+ * gets a fraction of what a phone with a 256 MB heap limit does.
+ *
+ * Caches register as {@link Trimmable} with a shed order. On each
+ * onTrimMemory level the orders up to {@link #getShedDepth(int)} are told to
+ * trim, cheapest to rebuild first:
+ *
+ *   {@link #ORDER_UI}        decoded bitmaps, rendered show notes and list snapshots; shed as soon as the UI is hidden
+ *   {@link #ORDER_PARSED}    parsed and resolved network data held for reuse, such as redirect chains
+ *   {@link #ORDER_PLAYBACK}  the look-ahead player; only at RUNNING_CRITICAL, COMPLETE or onLowMemory,
+ *                           since RUNNING_LOW is routine during foreground playback on low-RAM devices
+ *
+ * Registration and trimming happen on the main thread.
+ */
+public class MemoryBudget implements ComponentCallbacks2 {
+
+    private static final String TAG = "MemoryBudget";
+
+    public static final int ORDER_UI = 0;
+    public static final int ORDER_PARSED = 1;
+    public static final int ORDER_PLAYBACK = 2;
+    private static final int ORDER_COUNT = 3;
+
+    private static final long MB = 1024 * 1024;
+
+    private static MemoryBudget instance;
+
+    private final int memoryClassMb;
+    private final boolean lowRam;
+    private final List<List<Trimmable>> trimmables = new ArrayList<>();
+
+    /**
+     * A cache that can give memory back.
+     */
+    public interface Trimmable {
+        /**
+         * @param level The ComponentCallbacks2 TRIM_MEMORY_* level; see {@link #isSevere(int)}
+         */
+        void onTrimMemory(int level);
+    }
+
+    /**
+     * @param memoryClassMb Per-app heap limit in MB
+     * @param lowRam True on devices that report themselves as low-RAM
+     */
+    public MemoryBudget(int memoryClassMb, boolean lowRam) {
+        this.memoryClassMb = memoryClassMb;
+        this.lowRam = lowRam;
+        for (int i = 0; i < ORDER_COUNT; i++) {
+            trimmables.add(new ArrayList<Trimmable>());
+        }
+    }
+
+    /**
+     * Get the budget for this device, registering for trim callbacks on first use.
+     */
+    public static synchronized MemoryBudget getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            ActivityManager activityManager = (ActivityManager) appContext.getSystemService(Context.ACTIVITY_SERVICE);
+            instance = new MemoryBudget(activityManager.getMemoryClass(), activityManager.isLowRamDevice());
+            appContext.registerComponentCallbacks(instance);
+            Log.d(TAG, "Memory class " + instance.memoryClassMb + " MB" + (instance.lowRam ? ", low-RAM device" : "") +
+                  ": bitmaps " + (instance.getBitmapCacheBytes() / 1024) + "KB, artwork disk " +
+                  (instance.getDiskCacheBytes() / MB) + "MB, feed items " + instance.getMaxFeedItems());
+        }
+        return instance;
+    }
+
+    /**
+     * @return The budget if any component has created it yet, otherwise null
+     */
+    public static synchronized MemoryBudget peek() {
+        return instance;
+    }
+
+    /**
+     * @return Bytes of decoded bitmaps to keep in memory
+     */
+    public int getBitmapCacheBytes() {
+        // An eighth of the heap normally, a sixteenth on low-RAM devices
+        long bytes = memoryClassMb * MB / (lowRam ? 16 : 8);
+        return (int) Math.max(MB, Math.min(bytes, 16 * MB));
+    }
+
+    /**
+     * @return Bytes of artwork to keep on disk
+     */
+    public long getDiskCacheBytes() {
+        return lowRam ? 15 * MB : 50 * MB;
+    }
+
+    /**
+     * @return Characters of rendered show notes to keep in memory
+     */
+    public int getShowNotesCacheChars() {
+        return lowRam ? 64 * 1024 : 256 * 1024;
+    }
+
+    /**
+     * @return Most items to read from one feed
+     */
+    public int getMaxFeedItems() {
+        return lowRam ? 200 : 500;
+    }
+
+    /**
+     * @return True if the device reports itself as low-RAM
+     */
+    public boolean isLowRam() {
+        return lowRam;
+    }
+
+    /**
+     * @param trimmable The cache
+     * @param order When it is shed, one of the ORDER_ constants
+     */
+    public void register(Trimmable trimmable, int order) {
+        List<Trimmable> group = trimmables.get(order);
+        if (!group.contains(trimmable)) {
+            group.add(trimmable);
+        }
+    }
+
+    /**
+     * @param trimmable The cache to stop trimming; ignored if not registered
+     */
+    public void unregister(Trimmable trimmable) {
+        for (List<Trimmable> group : trimmables) {
+            group.remove(trimmable);
+        }
+    }
+
+    /**
+     * How many shed orders a trim level reaches. Levels aren't ordered by
+     * severity across foreground and background, so this is a table, not a comparison.
+     * @param level A TRIM_MEMORY_* level
+     * @return Orders below this are trimmed
+     */
+    public static int getShedDepth(int level) {
+        switch (level) {
+            case TRIM_MEMORY_RUNNING_MODERATE:
+            case TRIM_MEMORY_UI_HIDDEN:
+            case TRIM_MEMORY_BACKGROUND:
+                return ORDER_UI + 1;
+            case TRIM_MEMORY_MODERATE:
+            case TRIM_MEMORY_RUNNING_LOW:
+                return ORDER_PARSED + 1;
+            case TRIM_MEMORY_RUNNING_CRITICAL:
+            case TRIM_MEMORY_COMPLETE:
+                return ORDER_COUNT;
+            default:
+                // Unknown future level: treat by its rough magnitude
+                return level >= TRIM_MEMORY_MODERATE ? ORDER_COUNT : ORDER_UI + 1;
+        }
+    }
+
+    /**
+     * @param level A TRIM_MEMORY_* level
+     * @return True if caches should be emptied rather than cut down
+     */
+    public static boolean isSevere(int level) {
+        return level == TRIM_MEMORY_RUNNING_LOW || level == TRIM_MEMORY_RUNNING_CRITICAL ||
+            level >= TRIM_MEMORY_MODERATE;
+    }
+
+    /**
+     * Trim a memory cache for a level: halve it for mild pressure, empty it when severe.
+     * @param cache The cache
+     * @param level A TRIM_MEMORY_* level
+     */
+    public static void trimLruCache(LruCache<?, ?> cache, int level) {
+        if (isSevere(level)) {
+            cache.evictAll();
+        } else {
+            cache.trimToSize(cache.maxSize() / 2);
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        int depth = getShedDepth(level);
+        Log.d(TAG, "Trim level " + level + ", shedding " + depth + " of " + ORDER_COUNT + " cache tiers");
+        for (int order = 0; order < depth; order++) {
+            // Copy so a cache can unregister itself while trimming
+            for (Trimmable trimmable : new ArrayList<>(trimmables.get(order))) {
+                trimmable.onTrimMemory(level);
+            }
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        // Nothing to do
+    }
+}
@@ -0,0 +1,304 @@
+package com.ispringle.dumbcast.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Shared cache of redirect hops for enclosure URLs.
+ *
+ * Podcast enclosures usually sit behind a chain of analytics redirects. Without
+ * this cache, every download and every stream start walks that chain again.
+ * Each hop is cached on its own and expires according to its status:
+ * - permanent redirects (301/308) are kept for a week
+ * - temporary ones (302/303/307) for half an hour, since trackers rotate them
+ * - a URL that answered without redirecting is remembered as the end of the chain
+ *
+ * Only those five statuses with a Location header are followed; any other
+ * answer below 400, such as a 304 or a 300 without Location, ends the chain.
+ *
+ * A fully cached chain therefore resolves with no network at all, and a chain
+ * whose temporary hops expired only re-fetches those hops.
+ */
+public class RedirectCache implements MemoryBudget.Trimmable {
+
+    private static final String TAG = "RedirectCache";
+    private static final long PERMANENT_TTL_MS = 7L * 24 * 60 * 60 * 1000;
+    private static final long TEMPORARY_TTL_MS = 30L * 60 * 1000;
+    private static final long TERMINAL_TTL_MS = 6L * 60 * 60 * 1000;
+    private static final int MAX_ENTRIES = 512;
+    public static final int MAX_REDIRECTS = 15;
+
+    private static RedirectCache instance;
+
+    // Access-ordered so the least recently used hops are evicted first
+    private final LinkedHashMap<String, Hop> hops = new LinkedHashMap<String, Hop>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Hop> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private final ExecutorService resolveExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private int cachedHopCount = 0;
+    private int networkHopCount = 0;
+
+    /**
+     * One step of a redirect chain. A null target marks the end of the chain.
+     */
+    private static class Hop {
+        final String target;
+        final long expiresAt;
+
+        Hop(String target, long expiresAt) {
+            this.target = target;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Callback for {@link #resolveAsync}, always invoked on the main thread.
+     */
+    public interface ResolveCallback {
+        void onResolved(String finalUrl, boolean fromCache);
+    }
+
+    RedirectCache() {
+    }
+
+    public static synchronized RedirectCache getInstance() {
+        if (instance == null) {
+            instance = new RedirectCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Look up the final URL without touching the network.
+     * @param url The enclosure URL
+     * @return The final URL if every hop is cached and fresh, null otherwise
+     */
+    public synchronized String getCachedFinalUrl(String url) {
+        String current = url;
+        for (int i = 0; i <= MAX_REDIRECTS; i++) {
+            Hop hop = getFreshHop(current);
+            if (hop == null) {
+                return null;
+            }
+            if (hop.target == null) {
+                return current;
+            }
+            current = hop.target;
+        }
+        return null;
+    }
+
+    /**
+     * Resolve a URL to the end of its redirect chain, using cached hops where
+     * possible. Blocks on network for uncached hops, so call from a background thread.
+     * @param url The enclosure URL
+     * @return The final URL after following redirects
+     * @throws IOException If a network error occurs or the chain is too long
+     */
+    public String resolve(String url) throws IOException {
+        String current = url;
+        for (int i = 0; i <= MAX_REDIRECTS; i++) {
+            Hop hop;
+            synchronized (this) {
+                hop = getFreshHop(current);
+                if (hop != null) {
+                    cachedHopCount++;
+                }
+            }
+            if (hop == null) {
+                hop = fetchHop(current);
+            }
+            if (hop.target == null) {
+                return current;
+            }
+            current = hop.target;
+        }
+        throw new IOException("Too many redirects");
+    }
+
+    /**
+     * Resolve on a background thread and deliver the result on the main thread.
+     * Falls back to the original URL if resolution fails, so callers can always proceed.
+     * @param url The enclosure URL
+     * @param callback Receives the final URL
+     */
+    public void resolveAsync(final String url, final ResolveCallback callback) {
+        final String cached = getCachedFinalUrl(url);
+        if (cached != null) {
+            callback.onResolved(cached, true);
+            return;
+        }
+
+        resolveExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                String finalUrl = url;
+                try {
+                    finalUrl = resolve(url);
+                } catch (IOException e) {
+                    Log.w(TAG, "Failed to resolve redirects, using original URL: " + url, e);
+                }
+                final String result = finalUrl;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onResolved(result, false);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Resolve a batch of URLs in the background so a later download or stream
+     * start finds its chain already cached.
+     * @param urls Enclosure URLs to resolve
+     */
+    public void prewarm(final List<String> urls) {
+        resolveExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int warmed = 0;
+                for (String url : urls) {
+                    if (url == null || url.isEmpty() || getCachedFinalUrl(url) != null) {
+                        continue;
+                    }
+                    try {
+                        resolve(url);
+                        warmed++;
+                    } catch (IOException e) {
+                        Log.w(TAG, "Pre-warm failed for: " + url, e);
+                    }
+                }
+                if (warmed > 0) {
+                    Log.d(TAG, "Pre-warmed redirect chains for " + warmed + " URLs");
+                }
+            }
+        });
+    }
+
+    /**
+     * @return Number of hops answered from the cache since process start
+     */
+    public synchronized int getCachedHopCount() {
+        return cachedHopCount;
+    }
+
+    /**
+     * @return Number of hops that needed a network round trip since process start
+     */
+    public synchronized int getNetworkHopCount() {
+        return networkHopCount;
+    }
+
+    /**
+     * Drop expired hops under mild memory pressure, everything when it is severe.
+     * @param level A TRIM_MEMORY_* level
+     */
+    @Override
+    public synchronized void onTrimMemory(int level) {
+        int before = hops.size();
+        if (MemoryBudget.isSevere(level)) {
+            hops.clear();
+        } else {
+            long now = currentTimeMillis();
+            Iterator<Map.Entry<String, Hop>> it = hops.entrySet().iterator();
+            while (it.hasNext()) {
+                if (it.next().getValue().expiresAt < now) {
+                    it.remove();
+                }
+            }
+        }
+        Log.d(TAG, "Trimmed " + (before - hops.size()) + " of " + before + " hops");
+    }
+
+    /**
+     * @return The current time in milliseconds; tests override it to expire hops
+     */
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private static boolean isRedirect(int responseCode) {
+        switch (responseCode) {
+            case HttpURLConnection.HTTP_MOVED_PERM:
+            case HttpURLConnection.HTTP_MOVED_TEMP:
+            case HttpURLConnection.HTTP_SEE_OTHER:
+            case 307:
+            case 308:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private Hop getFreshHop(String url) {
+        Hop hop = hops.get(url);
+        if (hop != null && hop.expiresAt < currentTimeMillis()) {
+            hops.remove(url);
+            return null;
+        }
+        return hop;
+    }
+
+    /**
+     * Issue a HEAD request for one hop and cache the answer.
+     */
+    private Hop fetchHop(String url) throws IOException {
+        HttpURLConnection connection = null;
+        try {
+            URL urlObj = new URL(url);
+            connection = (HttpURLConnection) urlObj.openConnection();
+            connection.setRequestMethod("HEAD");  // Use HEAD to avoid downloading content
+            connection.setInstanceFollowRedirects(false);  // Handle redirects manually
+            connection.setConnectTimeout(10000);
+            connection.setReadTimeout(10000);
+            connection.setRequestProperty("User-Agent", "Dumbcast/1.0");
+
+            int responseCode = connection.getResponseCode();
+            String location = connection.getHeaderField("Location");
+            long now = currentTimeMillis();
+            Hop hop;
+
+            if (isRedirect(responseCode) && location != null) {
+                // Location may be relative to the current URL
+                String target = new URL(urlObj, location).toString();
+                boolean permanent = responseCode == HttpURLConnection.HTTP_MOVED_PERM || responseCode == 308;
+                hop = new Hop(target, now + (permanent ? PERMANENT_TTL_MS : TEMPORARY_TTL_MS));
+                Log.d(TAG, "Following " + (permanent ? "permanent" : "temporary") +
+                      " redirect: " + url + " -> " + target);
+            } else {
+                hop = new Hop(null, now + TERMINAL_TTL_MS);
+            }
+
+            synchronized (this) {
+                networkHopCount++;
+                // Don't remember error responses as terminal; they may be transient
+                if (responseCode < 400) {
+                    hops.put(url, hop);
+                }
+            }
+            return hop;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+}
@@ -8,9 +8,18 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Utility class for fetching RSS feeds with HTTP redirect support.
+ *
+ * Permanent redirects (301/308) are reported back to the caller so the new
+ * location can be persisted. Temporary redirects (302/303/307) are only
+ * remembered in memory for a few hours, because the publisher may point
+ * the original URL somewhere else at any time.
  */
 public class RssFeedUtils {
     private static final String TAG = "RssFeedUtils";
@@ -18,6 +27,62 @@ public class RssFeedUtils {
     private static final int CONNECT_TIMEOUT_MS = 15000;
     private static final int READ_TIMEOUT_MS = 15000;
     private static final String USER_AGENT = "Dumbcast/1.0";
+    private static final long TEMPORARY_REDIRECT_TTL_MS = 6L * 60 * 60 * 1000;
+
+    private static final Map<String, TemporaryRedirect> temporaryRedirects = new ConcurrentHashMap<>();
+
+    private static class TemporaryRedirect {
+        final String target;
+        final long expiresAt;
+
+        TemporaryRedirect(String target, long expiresAt) {
+            this.target = target;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Result of a feed fetch, including what was learned about redirects on the way.
+     */
+    public static class FetchResult {
+        private final RssFeed feed;
+        private final String permanentUrl;
+        private final int permanentHops;
+        private final int networkRedirects;
+        private final int cachedRedirects;
+
+        FetchResult(RssFeed feed, String permanentUrl, int permanentHops,
+                    int networkRedirects, int cachedRedirects) {
+            this.feed = feed;
+            this.permanentUrl = permanentUrl;
+            this.permanentHops = permanentHops;
+            this.networkRedirects = networkRedirects;
+            this.cachedRedirects = cachedRedirects;
+        }
+
+        public RssFeed getFeed() { return feed; }
+
+        /**
+         * @return The URL reached by following only permanent redirects from the
+         *         requested URL, or null if the first hop wasn't a permanent redirect
+         */
+        public String getPermanentUrl() { return permanentUrl; }
+
+        /**
+         * @return Number of permanent redirects that permanentUrl collapses
+         */
+        public int getPermanentHops() { return permanentHops; }
+
+        /**
+         * @return Number of redirects that needed a network round trip
+         */
+        public int getNetworkRedirects() { return networkRedirects; }
+
+        /**
+         * @return Number of temporary redirects skipped from the in-memory cache
+         */
+        public int getCachedRedirects() { return cachedRedirects; }
+    }
 
     /**
      * Fetch RSS feed from URL with automatic redirect following.
@@ -28,57 +93,130 @@ public class RssFeedUtils {
      * @throws XmlPullParserException If XML parsing error occurs
      */
     public static RssFeed fetchFeed(String feedUrl) throws IOException, XmlPullParserException {
-        return fetchFeedWithRedirects(feedUrl, MAX_HTTP_REDIRECTS);
+        return fetchFeedResult(feedUrl).getFeed();
+    }
+
+    /**
+     * Fetch RSS feed and report the redirects that were followed.
+     * If a cached temporary redirect leads to a failure, the fetch is retried
+     * once from the original URL without the cache.
+     *
+     * @param feedUrl The URL of the RSS feed
+     * @return The parsed feed along with redirect details
+     * @throws IOException If network or I/O error occurs or too many redirects
+     * @throws XmlPullParserException If XML parsing error occurs
+     */
+    public static FetchResult fetchFeedResult(String feedUrl) throws IOException, XmlPullParserException {
+        List<String> usedCacheKeys = new ArrayList<>();
+        try {
+            return fetchFeedWithRedirects(feedUrl, true, usedCacheKeys);
+        } catch (IOException e) {
+            if (usedCacheKeys.isEmpty()) {
+                throw e;
+            }
+            Log.w(TAG, "Fetch via cached redirect failed, retrying from " + feedUrl, e);
+            for (String key : usedCacheKeys) {
+                temporaryRedirects.remove(key);
+            }
+            return fetchFeedWithRedirects(feedUrl, false, new ArrayList<String>());
+        }
     }
 
     /**
      * Fetch RSS feed with manual redirect following.
      *
      * @param feedUrl The URL of the RSS feed
-     * @param maxRedirects Maximum number of redirects to follow
-     * @return Parsed RssFeed object
+     * @param useCache Whether cached temporary redirects may be used
+     * @param usedCacheKeys Receives the URLs whose cached redirects were used
+     * @return The parsed feed along with redirect details
      * @throws IOException If network or I/O error occurs or too many redirects
      * @throws XmlPullParserException If XML parsing error occurs
      */
-    private static RssFeed fetchFeedWithRedirects(String feedUrl, int maxRedirects)
+    private static FetchResult fetchFeedWithRedirects(String feedUrl, boolean useCache, List<String> usedCacheKeys)
             throws IOException, XmlPullParserException {
-        if (maxRedirects <= 0) {
-            throw new IOException("Too many redirects");
-        }
+        String currentUrl = feedUrl;
+        String permanentUrl = null;
+        boolean onlyPermanentSoFar = true;
+        int permanentHops = 0;
+        int networkRedirects = 0;
+        int cachedRedirects = 0;
 
-        URL url = new URL(feedUrl);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        for (int redirects = 0; redirects < MAX_HTTP_REDIRECTS; redirects++) {
+            if (useCache) {
+                String cachedTarget = getTemporaryRedirect(currentUrl);
+                if (cachedTarget != null) {
+                    Log.d(TAG, "Using cached temporary redirect: " + currentUrl + " -> " + cachedTarget);
+                    usedCacheKeys.add(currentUrl);
+                    onlyPermanentSoFar = false;
+                    cachedRedirects++;
+                    currentUrl = cachedTarget;
+                    continue;
+                }
+            }
 
-        try {
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
-            connection.setReadTimeout(READ_TIMEOUT_MS);
-            connection.setRequestProperty("User-Agent", USER_AGENT);
-            connection.setInstanceFollowRedirects(false);
-
-            int responseCode = connection.getResponseCode();
-
-            // Handle redirects
-            if (responseCode >= 300 && responseCode < 400) {
-                String newUrl = connection.getHeaderField("Location");
-                if (newUrl == null) {
-                    throw new IOException("Redirect with no Location header");
+            URL url = new URL(currentUrl);
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+            try {
+                connection.setRequestMethod("GET");
+                connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+                connection.setReadTimeout(READ_TIMEOUT_MS);
+                connection.setRequestProperty("User-Agent", USER_AGENT);
+                connection.setInstanceFollowRedirects(false);
+
+                int responseCode = connection.getResponseCode();
+
+                // Handle redirects
+                if (responseCode >= 300 && responseCode < 400) {
+                    String location = connection.getHeaderField("Location");
+                    if (location == null) {
+                        throw new IOException("Redirect with no Location header");
+                    }
+                    String newUrl = new URL(url, location).toString();
+                    boolean permanent = responseCode == HttpURLConnection.HTTP_MOVED_PERM || responseCode == 308;
+
+                    Log.d(TAG, "Following " + (permanent ? "permanent" : "temporary") +
+                          " redirect: " + currentUrl + " -> " + newUrl);
+                    networkRedirects++;
+
+                    if (permanent && onlyPermanentSoFar) {
+                        permanentUrl = newUrl;
+                        permanentHops++;
+                    } else if (!permanent) {
+                        onlyPermanentSoFar = false;
+                        temporaryRedirects.put(currentUrl, new TemporaryRedirect(newUrl,
+                            System.currentTimeMillis() + TEMPORARY_REDIRECT_TTL_MS));
+                    }
+
+                    currentUrl = newUrl;
+                    continue;
                 }
 
-                Log.d(TAG, "Following redirect: " + feedUrl + " -> " + newUrl);
+                if (responseCode != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("HTTP error code: " + responseCode);
+                }
+
+                InputStream inputStream = connection.getInputStream();
+                RssParser parser = new RssParser();
+                RssFeed feed = parser.parse(inputStream);
+                return new FetchResult(feed, permanentUrl, permanentHops, networkRedirects, cachedRedirects);
+            } finally {
                 connection.disconnect();
-                return fetchFeedWithRedirects(newUrl, maxRedirects - 1);
             }
+        }
 
-            if (responseCode != HttpURLConnection.HTTP_OK) {
-                throw new IOException("HTTP error code: " + responseCode);
-            }
+        throw new IOException("Too many redirects");
+    }
 
-            InputStream inputStream = connection.getInputStream();
-            RssParser parser = new RssParser();
-            return parser.parse(inputStream);
-        } finally {
-            connection.disconnect();
+    private static String getTemporaryRedirect(String url) {
+        TemporaryRedirect redirect = temporaryRedirects.get(url);
+        if (redirect == null) {
+            return null;
+        }
+        if (redirect.expiresAt < System.currentTimeMillis()) {
+            temporaryRedirects.remove(url);
+            return null;
         }
+        return redirect.target;
     }
 }
@@ -16,6 +16,10 @@ import java.util.regex.Pattern;
 
 public class RssParser {
     private static final String ns = null;
+    // Safety limit to prevent runaway parsing, used until the memory budget is known
+    public static final int DEFAULT_MAX_ITEMS = 500;
+
+    private final int maxItems;
 
     // Date format patterns
     private static final SimpleDateFormat RFC822_FORMAT =
@@ -27,6 +31,21 @@ public class RssParser {
     private static final Pattern DURATION_PATTERN =
         Pattern.compile("(?:(\\d+):)?(\\d+):(\\d+)|^(\\d+)$");
 
+    /**
+     * Parser capped at the memory budget's feed item limit.
+     */
+    public RssParser() {
+        MemoryBudget budget = MemoryBudget.peek();
+        this.maxItems = budget != null ? budget.getMaxFeedItems() : DEFAULT_MAX_ITEMS;
+    }
+
+    /**
+     * @param maxItems Most items to read; later items are ignored
+     */
+    public RssParser(int maxItems) {
+        this.maxItems = maxItems;
+    }
+
     public RssFeed parse(InputStream in) throws XmlPullParserException, IOException {
         try {
             XmlPullParser parser = Xml.newPullParser();
@@ -61,7 +80,6 @@ public class RssParser {
             throws XmlPullParserException, IOException {
         parser.require(XmlPullParser.START_TAG, ns, "channel");
         int itemCount = 0;
-        final int MAX_ITEMS = 500; // Safety limit to prevent runaway parsing
 
         android.util.Log.d("RssParser", "Starting readChannel loop");
         // Read until we hit the closing </channel> tag specifically
@@ -91,8 +109,8 @@ public class RssParser {
                     android.util.Log.d("RssParser", "Reading item #" + itemCount);
 
                     // Safety check to prevent runaway parsing
-                    if (itemCount > MAX_ITEMS) {
-                        android.util.Log.w("RssParser", "Reached max item limit (" + MAX_ITEMS + "), stopping parse");
+                    if (itemCount > maxItems) {
+                        android.util.Log.w("RssParser", "Reached max item limit (" + maxItems + "), stopping parse");
                         return; // Exit early but successfully
                     }
 
@@ -0,0 +1,424 @@
+package com.ispringle.dumbcast.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reduces feed show notes to the small subset of HTML the player renders,
+ * before they are stored.
+ *
+ * Feed HTML carries tracking pixels, inline styles, scripts, layout tables and
+ * the same sponsor footer on every episode. What is kept:
+ * - Text, with whitespace collapsed the way Html.fromHtml collapses it anyway
+ * - Paragraphs, line breaks, lists, headings, block quotes, bold, italic, underline
+ *   (div becomes p, strong becomes b, em becomes i)
+ * - Links to http, https and mailto URLs, with no attributes but href
+ * Everything else is dropped: script, style and similar elements with their
+ * content, other tags keeping their text, comments, and empty elements.
+ *
+ * Stored show notes are then split in two (see EpisodeRepository):
+ * - {@link #compactLinks} moves link URLs out to a per-episode link table,
+ *   leaving href="1", href="2"... in the text; {@link #expandLinks} reverses it
+ * - {@link #findSharedFooter} finds trailing paragraphs two episodes of a podcast
+ *   share, which are then stored once for the podcast instead of on every episode
+ *
+ * Pure string processing; safe on any thread.
+ */
+public final class ShowNotesNormalizer {
+
+    // Shorter shared endings are more likely a sign-off than boilerplate
+    public static final int MIN_FOOTER_CHARS = 200;
+
+    private static final Set<String> KEPT_TAGS = new HashSet<>(Arrays.asList(
+        "p", "br", "b", "i", "u", "ul", "ol", "li", "blockquote", "h1", "h2", "h3", "h4", "h5", "h6", "a"));
+    private static final Map<String, String> RENAMED_TAGS = new HashMap<>();
+    // Dropped along with everything inside them
+    private static final Set<String> DROPPED_ELEMENTS = new HashSet<>(Arrays.asList(
+        "script", "style", "head", "title", "noscript", "iframe", "svg", "object", "template", "button", "select"));
+    // Dropped without separating the text around them
+    private static final Set<String> INLINE_TAGS = new HashSet<>(Arrays.asList(
+        "span", "font", "img", "sup", "sub", "small", "big", "abbr", "code", "mark", "s", "strike", "cite", "q", "wbr"));
+    private static final Set<String> VOID_TAGS = new HashSet<>(Arrays.asList("br", "img", "hr", "wbr"));
+
+    static {
+        RENAMED_TAGS.put("div", "p");
+        RENAMED_TAGS.put("strong", "b");
+        RENAMED_TAGS.put("em", "i");
+    }
+
+    private static final Pattern ATTRIBUTE = Pattern.compile(
+        "([a-zA-Z_:][-a-zA-Z0-9_:.]*)\\s*(?:=\\s*(\"[^\"]*\"|'[^']*'|[^\\s\"'>]+))?");
+    private static final Pattern EMPTY_ELEMENT = Pattern.compile(
+        "<(p|b|i|u|ul|ol|li|blockquote|h[1-6])>(?:\\s|&nbsp;|&#160;)*</\\1>|<a href=\"[^\"]*\">\\s*</a>");
+    private static final Pattern SPACE_AROUND_BLOCK = Pattern.compile(
+        "\\s*(</?(?:p|br|ul|ol|li|blockquote|h[1-6])>)\\s*");
+    private static final Pattern REPEATED_BREAKS = Pattern.compile("(?:<br>){3,}");
+    private static final Pattern HREF = Pattern.compile("<a href=\"([^\"]*)\">");
+    private static final Pattern BLOCK_START = Pattern.compile("(?=<(?:p|ul|ol|blockquote|h[1-6])>)");
+
+    private ShowNotesNormalizer() {
+    }
+
+    /**
+     * Show notes with their link URLs moved out.
+     */
+    public static class Compacted {
+        public final String html;
+        public final List<String> links;
+
+        Compacted(String html, List<String> links) {
+            this.html = html;
+            this.links = links;
+        }
+    }
+
+    /**
+     * Reduce feed HTML to the kept tags and links.
+     * @param html Show notes as found in the feed, may be null
+     * @return The reduced HTML, or null if there is no text left
+     */
+    public static String clean(String html) {
+        if (html == null) {
+            return null;
+        }
+        StringBuilder out = new StringBuilder(Math.min(html.length(), 64 * 1024));
+        // One entry per open <a>: whether its tag was kept, so its </a> is kept too
+        List<Boolean> anchors = new ArrayList<>();
+        int length = html.length();
+        int i = 0;
+        while (i < length) {
+            char c = html.charAt(i);
+            if (c != '<') {
+                int next = html.indexOf('<', i);
+                appendText(out, html, i, next < 0 ? length : next);
+                i = next < 0 ? length : next;
+                continue;
+            }
+
+            if (html.startsWith("<!--", i)) {
+                int end = html.indexOf("-->", i + 4);
+                i = end < 0 ? length : end + 3;
+                continue;
+            }
+            if (i + 1 < length && (html.charAt(i + 1) == '!' || html.charAt(i + 1) == '?')) {
+                int end = html.indexOf('>', i);
+                i = end < 0 ? length : end + 1;
+                continue;
+            }
+
+            boolean closing = i + 1 < length && html.charAt(i + 1) == '/';
+            int nameStart = closing ? i + 2 : i + 1;
+            int nameEnd = nameStart;
+            while (nameEnd < length && Character.isLetterOrDigit(html.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            if (nameEnd == nameStart) {
+                // A lone '<' in text
+                out.append("&lt;");
+                i++;
+                continue;
+            }
+            int tagEnd = findTagEnd(html, nameEnd);
+            String name = html.substring(nameStart, nameEnd).toLowerCase(Locale.US);
+            String attributes = html.substring(nameEnd, tagEnd);
+            i = tagEnd < length ? tagEnd + 1 : length;
+
+            if (DROPPED_ELEMENTS.contains(name)) {
+                if (!closing && !attributes.trim().endsWith("/")) {
+                    i = skipElement(html, i, name);
+                }
+                continue;
+            }
+            if (RENAMED_TAGS.containsKey(name)) {
+                name = RENAMED_TAGS.get(name);
+            }
+            if (!KEPT_TAGS.contains(name)) {
+                if (!INLINE_TAGS.contains(name)) {
+                    out.append(' ');
+                }
+                continue;
+            }
+
+            if (name.equals("a")) {
+                if (closing) {
+                    if (!anchors.isEmpty() && anchors.remove(anchors.size() - 1)) {
+                        out.append("</a>");
+                    }
+                } else {
+                    String href = linkTarget(attributes);
+                    anchors.add(href != null);
+                    if (href != null) {
+                        out.append("<a href=\"").append(href).append("\">");
+                    }
+                }
+            } else if (name.equals("br")) {
+                out.append("<br>");
+            } else if (!VOID_TAGS.contains(name)) {
+                out.append(closing ? "</" : "<").append(name).append('>');
+            }
+        }
+        for (Boolean kept : anchors) {
+            if (kept) {
+                out.append("</a>");
+            }
+        }
+        return tidy(out.toString());
+    }
+
+    /**
+     * Move link URLs out of cleaned HTML, numbering them in order of first use.
+     * @param html HTML from {@link #clean}
+     * @return The HTML with href="N" (1-based) and the URLs in order
+     */
+    public static Compacted compactLinks(String html) {
+        List<String> links = new ArrayList<>();
+        Map<String, Integer> numbers = new HashMap<>();
+        Matcher matcher = HREF.matcher(html);
+        StringBuffer out = new StringBuffer(html.length());
+        while (matcher.find()) {
+            String url = matcher.group(1);
+            Integer number = numbers.get(url);
+            if (number == null) {
+                links.add(url);
+                number = links.size();
+                numbers.put(url, number);
+            }
+            matcher.appendReplacement(out, "<a href=\"" + number + "\">");
+        }
+        matcher.appendTail(out);
+        return new Compacted(out.toString(), links);
+    }
+
+    /**
+     * Put link URLs back into HTML from {@link #compactLinks}. Links that aren't
+     * numbers, or have no URL in the list, are left as they are.
+     * @param html Compacted HTML
+     * @param links The URLs, in number order
+     * @return The HTML with its URLs inline
+     */
+    public static String expandLinks(String html, List<String> links) {
+        if (links.isEmpty()) {
+            return html;
+        }
+        Matcher matcher = HREF.matcher(html);
+        StringBuffer out = new StringBuffer(html.length() + links.size() * 64);
+        while (matcher.find()) {
+            String href = matcher.group(1);
+            String url = href;
+            if (isNumber(href)) {
+                int number = Integer.parseInt(href);
+                if (number >= 1 && number <= links.size()) {
+                    url = links.get(number - 1);
+                }
+            }
+            matcher.appendReplacement(out, Matcher.quoteReplacement("<a href=\"" + url + "\">"));
+        }
+        matcher.appendTail(out);
+        return out.toString();
+    }
+
+    /**
+     * Find the paragraphs two episodes' show notes both end with, if there are
+     * enough of them to be boilerplate rather than a shared sign-off.
+     * @param first Cleaned show notes, links inline
+     * @param second Cleaned show notes of another episode, links inline
+     * @return The shared ending, or null if it is shorter than {@link #MIN_FOOTER_CHARS}
+     */
+    public static String findSharedFooter(String first, String second) {
+        if (first == null || second == null) {
+            return null;
+        }
+        String[] a = BLOCK_START.split(first);
+        String[] b = BLOCK_START.split(second);
+        int shared = 0;
+        while (shared < a.length && shared < b.length &&
+               a[a.length - 1 - shared].equals(b[b.length - 1 - shared])) {
+            shared++;
+        }
+        StringBuilder footer = new StringBuilder();
+        for (int k = a.length - shared; k < a.length; k++) {
+            footer.append(a[k]);
+        }
+        return footer.length() >= MIN_FOOTER_CHARS ? footer.toString() : null;
+    }
+
+    /**
+     * @param html Cleaned show notes, links inline
+     * @param footer A footer from {@link #findSharedFooter}
+     * @return The show notes without the footer, or null if they don't end with it
+     */
+    public static String stripFooter(String html, String footer) {
+        if (html == null || footer == null || !html.endsWith(footer)) {
+            return null;
+        }
+        return html.substring(0, html.length() - footer.length());
+    }
+
+    /**
+     * The text of cleaned show notes, for the search index: tags become spaces
+     * and common character references are decoded.
+     * @param html HTML from {@link #clean}
+     * @param maxChars Most characters to return
+     * @return The text
+     */
+    public static String plainText(String html, int maxChars) {
+        StringBuilder text = new StringBuilder(Math.min(html.length(), maxChars));
+        int i = 0;
+        while (i < html.length() && text.length() < maxChars) {
+            char c = html.charAt(i);
+            if (c == '<') {
+                int end = html.indexOf('>', i);
+                i = end < 0 ? html.length() : end + 1;
+                if (text.length() > 0 && text.charAt(text.length() - 1) != ' ') {
+                    text.append(' ');
+                }
+            } else if (c == '&') {
+                int end = html.indexOf(';', i);
+                String decoded = end > i && end - i <= 10 ? decodeReference(html.substring(i + 1, end)) : null;
+                if (decoded != null) {
+                    text.append(decoded);
+                    i = end + 1;
+                } else {
+                    text.append(c);
+                    i++;
+                }
+            } else {
+                text.append(c);
+                i++;
+            }
+        }
+        if (text.length() > maxChars) {
+            text.setLength(maxChars);
+        }
+        return text.toString().trim();
+    }
+
+    private static String decodeReference(String name) {
+        switch (name) {
+            case "amp": return "&";
+            case "lt": return "<";
+            case "gt": return ">";
+            case "quot": return "\"";
+            case "apos": return "'";
+            case "nbsp": return " ";
+        }
+        try {
+            int codePoint;
+            if (name.startsWith("#x") || name.startsWith("#X")) {
+                codePoint = Integer.parseInt(name.substring(2), 16);
+            } else if (name.startsWith("#")) {
+                codePoint = Integer.parseInt(name.substring(1));
+            } else {
+                return null;
+            }
+            return Character.isValidCodePoint(codePoint) ? new String(Character.toChars(codePoint)) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void appendText(StringBuilder out, String html, int start, int end) {
+        for (int k = start; k < end; k++) {
+            char c = html.charAt(k);
+            if (Character.isWhitespace(c)) {
+                if (out.length() > 0 && out.charAt(out.length() - 1) != ' ') {
+                    out.append(' ');
+                }
+            } else if (c == '>') {
+                out.append("&gt;");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+
+    private static int findTagEnd(String html, int from) {
+        char quote = 0;
+        for (int k = from; k < html.length(); k++) {
+            char c = html.charAt(k);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return k;
+            }
+        }
+        return html.length();
+    }
+
+    private static int skipElement(String html, int from, String name) {
+        int close = html.indexOf("</", from);
+        while (close >= 0) {
+            if (html.regionMatches(true, close + 2, name, 0, name.length())) {
+                int end = html.indexOf('>', close);
+                return end < 0 ? html.length() : end + 1;
+            }
+            close = html.indexOf("</", close + 2);
+        }
+        return html.length();
+    }
+
+    private static String linkTarget(String attributes) {
+        Matcher matcher = ATTRIBUTE.matcher(attributes);
+        while (matcher.find()) {
+            if (!matcher.group(1).equalsIgnoreCase("href") || matcher.group(2) == null) {
+                continue;
+            }
+            String value = matcher.group(2);
+            if (value.startsWith("\"") || value.startsWith("'")) {
+                value = value.substring(1, value.length() - 1);
+            }
+            value = value.trim().replace("\"", "&quot;");
+            String lower = value.toLowerCase(Locale.US);
+            if (lower.startsWith("http://") || lower.startsWith("https://") || lower.startsWith("mailto:")) {
+                return value;
+            }
+            return null;
+        }
+        return null;
+    }
+
+    private static String tidy(String html) {
+        String previous;
+        do {
+            previous = html;
+            html = SPACE_AROUND_BLOCK.matcher(html).replaceAll("$1");
+            html = EMPTY_ELEMENT.matcher(html).replaceAll("");
+            // A div around paragraphs becomes a paragraph around paragraphs
+            html = html.replace("<p><p>", "<p>").replace("</p></p>", "</p>");
+            // Breaks at the edges of a paragraph add nothing
+            html = html.replace("<p><br>", "<p>").replace("<br></p>", "</p>");
+        } while (!html.equals(previous));
+        html = REPEATED_BREAKS.matcher(html).replaceAll("<br><br>").trim();
+        while (html.startsWith("<br>")) {
+            html = html.substring(4);
+        }
+        while (html.endsWith("<br>")) {
+            html = html.substring(0, html.length() - 4);
+        }
+        return html.isEmpty() ? null : html;
+    }
+
+    private static boolean isNumber(String value) {
+        if (value.isEmpty() || value.length() > 6) {
+            return false;
+        }
+        for (int k = 0; k < value.length(); k++) {
+            if (!Character.isDigit(value.charAt(k))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
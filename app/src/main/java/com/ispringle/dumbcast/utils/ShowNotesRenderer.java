@@ -0,0 +1,292 @@
+package com.ispringle.dumbcast.utils;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.v4.util.LruCache;
+import android.text.Html;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.util.Log;
+
+import com.ispringle.dumbcast.data.DatabaseManager;
+import com.ispringle.dumbcast.data.EpisodeChangeNotifier;
+import com.ispringle.dumbcast.data.EpisodeRepository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Renders episode show notes from HTML to Spanned text off the main thread.
+ *
+ * content:encoded show notes run to hundreds of KB with a link every line, and
+ * Html.fromHtml on those takes hundreds of ms on a feature phone. Here:
+ * - HTML is parsed on a single low-priority background thread
+ * - The text is cut into pages of about {@link #PAGE_CHARS} characters at
+ *   paragraph breaks, so a TextView never lays out more than the reader asked for
+ * - Rendered pages are kept in a small LRU keyed by episode ID, dropped when
+ *   the episode's show notes change; sized and trimmed by MemoryBudget
+ * - Requests for the same show notes share one render
+ * - Stored show notes are read through EpisodeRepository#getShowNotesHtml on the
+ *   render thread, so the compressed text is only touched when notes are opened
+ *
+ * Usage:
+ *   ShowNotesRenderer.getInstance(context).render(episodeId, null, pages -> ...);
+ *
+ * Called on the main thread; callbacks are delivered on the main thread.
+ */
+public class ShowNotesRenderer {
+
+    private static final String TAG = "ShowNotesRenderer";
+
+    // A few screens of a small display; the rest is one "More" away
+    public static final int PAGE_CHARS = 4000;
+
+    private static ShowNotesRenderer instance;
+
+    private final EpisodeRepository episodeRepository;
+    private final LruCache<String, Pages> cache;
+    private final ExecutorService renderExecutor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Main thread only: renders not yet delivered, by cache key, and who is waiting for each
+    private final Map<String, List<Callback>> inFlight = new HashMap<>();
+
+    /**
+     * Show notes rendered and cut into pages. Immutable.
+     */
+    public static class Pages {
+        private final List<Spanned> pages;
+        private final int length;
+
+        Pages(List<Spanned> pages) {
+            this.pages = pages;
+            int length = 0;
+            for (Spanned page : pages) {
+                length += page.length();
+            }
+            this.length = length;
+        }
+
+        /**
+         * @return Number of pages; 0 if the show notes have no text
+         */
+        public int getCount() {
+            return pages.size();
+        }
+
+        /**
+         * @param index Page index, from 0
+         * @return The page's text, with its links and formatting
+         */
+        public Spanned get(int index) {
+            return pages.get(index);
+        }
+
+        /**
+         * @return Characters across all pages
+         */
+        public int length() {
+            return length;
+        }
+    }
+
+    /**
+     * Receives rendered show notes on the main thread.
+     */
+    public interface Callback {
+        void onRendered(Pages pages);
+    }
+
+    private ShowNotesRenderer(Context context) {
+        episodeRepository = new EpisodeRepository(DatabaseManager.getInstance(context));
+        MemoryBudget budget = MemoryBudget.getInstance(context);
+        cache = new LruCache<String, Pages>(budget.getShowNotesCacheChars()) {
+            @Override
+            protected int sizeOf(String key, Pages pages) {
+                return Math.max(1, pages.length());
+            }
+        };
+        budget.register(level -> MemoryBudget.trimLruCache(cache, level), MemoryBudget.ORDER_UI);
+        EpisodeChangeNotifier.getInstance().addListener(this::onEpisodesChanged);
+
+        renderExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, TAG));
+    }
+
+    /**
+     * Get singleton instance of ShowNotesRenderer. First call must be on the main thread.
+     */
+    public static synchronized ShowNotesRenderer getInstance(Context context) {
+        if (instance == null) {
+            instance = new ShowNotesRenderer(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Render show notes, from the cache if possible.
+     * @param episodeId The episode ID, or 0 for an episode not in the database
+     * @param html Show notes of an episode not in the database, such as a feed
+     *             preview; null to read the stored show notes
+     * @param callback Called with the pages, immediately if they are cached;
+     *                 no pages if the episode has no show notes
+     */
+    public void render(long episodeId, String html, Callback callback) {
+        String key = getCacheKey(episodeId, html);
+        Pages cached = cache.get(key);
+        if (cached != null) {
+            callback.onRendered(cached);
+            return;
+        }
+
+        List<Callback> waiting = inFlight.get(key);
+        if (waiting != null) {
+            waiting.add(callback);
+            return;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(callback);
+        inFlight.put(key, waiting);
+
+        renderExecutor.execute(() -> {
+            long start = System.currentTimeMillis();
+            String full = html != null ? html : episodeRepository.getShowNotesHtml(episodeId);
+            if (full == null) {
+                full = "";
+            }
+            Pages pages = renderPages(full, PAGE_CHARS);
+            Log.d(TAG, "Rendered " + full.length() + " chars of HTML into " + pages.getCount() +
+                  " pages in " + (System.currentTimeMillis() - start) + " ms");
+            mainHandler.post(() -> deliver(key, pages));
+        });
+    }
+
+    /**
+     * Render stored show notes in the background so they open at once later,
+     * such as for the episode that plays next.
+     * @param episodeId The episode ID
+     */
+    public void prerender(long episodeId) {
+        render(episodeId, null, pages -> { });
+    }
+
+    private void onEpisodesChanged(EpisodeChangeNotifier.Change change) {
+        if (!change.changed(EpisodeChangeNotifier.FIELD_DESCRIPTION | EpisodeChangeNotifier.FIELD_ROWS)) {
+            return;
+        }
+        if (!change.hasEpisodeIds()) {
+            cache.evictAll();
+            return;
+        }
+        for (long episodeId : change.getEpisodeIds()) {
+            cache.remove(getCacheKey(episodeId, null));
+        }
+    }
+
+    private void deliver(String key, Pages pages) {
+        cache.put(key, pages);
+        List<Callback> waiting = inFlight.remove(key);
+        if (waiting != null) {
+            for (Callback callback : waiting) {
+                callback.onRendered(pages);
+            }
+        }
+    }
+
+    private static String getCacheKey(long episodeId, String html) {
+        if (html == null) {
+            return String.valueOf(episodeId);
+        }
+        return episodeId + ":" + html.length() + ":" + html.hashCode();
+    }
+
+    /**
+     * Parse HTML and cut the text into pages. Blocking.
+     * @param html The HTML to render
+     * @param pageChars Most characters on a page
+     * @return The pages
+     */
+    public static Pages renderPages(String html, int pageChars) {
+        Spanned text = Html.fromHtml(html, Html.FROM_HTML_MODE_COMPACT);
+        return new Pages(paginate(text, pageChars));
+    }
+
+    /**
+     * Cut text into pages of at most pageChars characters, breaking at the last
+     * paragraph break, else line break, else space in the second half of a page.
+     * Surrounding whitespace is dropped; spans are kept, clipped to each page.
+     * @param text The text
+     * @param pageChars Most characters on a page
+     * @return The pages; empty if the text is blank
+     */
+    public static List<Spanned> paginate(Spanned text, int pageChars) {
+        List<Spanned> pages = new ArrayList<>();
+        int start = skipWhitespace(text, 0);
+        int end = text.length();
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+
+        while (start < end) {
+            int pageEnd = end;
+            if (end - start > pageChars) {
+                pageEnd = findBreak(text, start, start + pageChars);
+            }
+            pages.add(trimEnd(new SpannableStringBuilder(text, start, pageEnd)));
+            start = skipWhitespace(text, pageEnd);
+        }
+        return pages;
+    }
+
+    private static int findBreak(CharSequence text, int start, int limit) {
+        int earliest = start + (limit - start) / 2;
+        int lineBreak = -1;
+        int space = -1;
+        for (int i = limit; i > earliest; i--) {
+            char c = text.charAt(i - 1);
+            if (c == '\n') {
+                if (i - 2 >= start && text.charAt(i - 2) == '\n') {
+                    return i;
+                }
+                if (lineBreak < 0) {
+                    lineBreak = i;
+                }
+            } else if (c == ' ' && space < 0) {
+                space = i;
+            }
+        }
+        if (lineBreak >= 0) {
+            return lineBreak;
+        }
+        if (space >= 0) {
+            return space;
+        }
+        // One long word; don't split a surrogate pair
+        return Character.isHighSurrogate(text.charAt(limit - 1)) ? limit - 1 : limit;
+    }
+
+    private static int skipWhitespace(CharSequence text, int index) {
+        while (index < text.length() && Character.isWhitespace(text.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static Spanned trimEnd(SpannableStringBuilder page) {
+        int end = page.length();
+        while (end > 0 && Character.isWhitespace(page.charAt(end - 1))) {
+            end--;
+        }
+        if (end < page.length()) {
+            page.delete(end, page.length());
+        }
+        return page;
+    }
+}
@@ -0,0 +1,172 @@
+package com.ispringle.dumbcast.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import com.ispringle.dumbcast.BuildConfig;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Timing of a cold start, from process start to the app being usable.
+ *
+ * Milestones, all measured from process start:
+ *   ACTIVITY_CREATED  MainActivity.onCreate entered
+ *   FIRST_FRAME       the first frame has been drawn (time to first frame)
+ *   DATA_LOADED       tab counts and subscriptions read from the database
+ *   INTERACTIVE       the first tab's screen has been drawn (time to interactive)
+ *   LIST_SNAPSHOT     the first tab's list shown from its saved snapshot
+ *   LIST_FRESH        the first tab's list shown from a fresh query
+ *   MAINTENANCE_DONE  deferred idle-time maintenance finished
+ *
+ * LIST_SNAPSHOT is the time to a meaningful list now; LIST_FRESH is what it
+ * was before lists had snapshots. Neither is marked if the first tab isn't a list.
+ * Each cold start is logged and appended to a file so startups can be compared
+ * between builds. Only the first activity creation in a process is traced.
+ * Called on the main thread, except {@link #mark} which may come from any thread.
+ */
+public class StartupTrace {
+
+    private static final String TAG = "StartupTrace";
+    private static final long MAX_FILE_BYTES = 64 * 1024;
+
+    public enum Milestone {
+        ACTIVITY_CREATED,
+        FIRST_FRAME,
+        DATA_LOADED,
+        INTERACTIVE,
+        LIST_SNAPSHOT,
+        LIST_FRESH,
+        MAINTENANCE_DONE
+    }
+
+    private static StartupTrace instance;
+
+    private final long processStart = Process.getStartElapsedRealtime();
+    private final long[] times = new long[Milestone.values().length];
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private File outputFile;
+    private boolean listClaimed = false;
+
+    private StartupTrace() {
+        Arrays.fill(times, -1);
+    }
+
+    public static synchronized StartupTrace getInstance() {
+        if (instance == null) {
+            instance = new StartupTrace();
+        }
+        return instance;
+    }
+
+    /**
+     * Start tracing this process's cold start, if it hasn't been already.
+     * @param outputFile File the finished trace is appended to
+     * @return True if this is the first activity creation in the process
+     */
+    public synchronized boolean begin(File outputFile) {
+        if (times[Milestone.ACTIVITY_CREATED.ordinal()] >= 0) {
+            return false;
+        }
+        this.outputFile = outputFile;
+        mark(Milestone.ACTIVITY_CREATED);
+        return true;
+    }
+
+    /**
+     * Record a milestone now. Later marks of the same milestone are ignored.
+     * @param milestone The milestone reached
+     */
+    public synchronized void mark(Milestone milestone) {
+        if (times[milestone.ordinal()] < 0) {
+            times[milestone.ordinal()] = SystemClock.elapsedRealtime() - processStart;
+            Log.d(TAG, milestone.name().toLowerCase(Locale.US) + " at " + times[milestone.ordinal()] + " ms");
+        }
+        if (isComplete()) {
+            writeOut();
+        }
+    }
+
+    /**
+     * Called by a list screen as it is created. The first one created during
+     * startup, before the app is interactive, is the one the list milestones time.
+     * @return True if the caller should mark LIST_SNAPSHOT and LIST_FRESH
+     */
+    public synchronized boolean claimListTrace() {
+        if (listClaimed || times[Milestone.ACTIVITY_CREATED.ordinal()] < 0 ||
+            times[Milestone.INTERACTIVE.ordinal()] >= 0) {
+            return false;
+        }
+        listClaimed = true;
+        return true;
+    }
+
+    private boolean isComplete() {
+        return times[Milestone.MAINTENANCE_DONE.ordinal()] >= 0 &&
+            (!listClaimed || times[Milestone.LIST_FRESH.ordinal()] >= 0);
+    }
+
+    /**
+     * Record a milestone once the view's next frame has been drawn.
+     * @param view A view in the window being drawn
+     * @param milestone The milestone to mark
+     */
+    public void markAfterNextDraw(View view, Milestone milestone) {
+        final ViewTreeObserver observer = view.getViewTreeObserver();
+        observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                if (observer.isAlive()) {
+                    observer.removeOnPreDrawListener(this);
+                } else {
+                    view.getViewTreeObserver().removeOnPreDrawListener(this);
+                }
+                // The draw follows in the same traversal; anything posted runs after it
+                mainHandler.postAtFrontOfQueue(() -> mark(milestone));
+                return true;
+            }
+        });
+    }
+
+    /**
+     * @return The milestones reached so far, one line
+     */
+    public synchronized String summary() {
+        StringBuilder line = new StringBuilder("Cold start:");
+        for (Milestone milestone : Milestone.values()) {
+            long time = times[milestone.ordinal()];
+            if (time >= 0) {
+                line.append(' ').append(milestone.name().toLowerCase(Locale.US)).append('=').append(time);
+            }
+        }
+        return line.toString();
+    }
+
+    private void writeOut() {
+        if (outputFile == null) {
+            return;
+        }
+        String stamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).format(new Date());
+        // Start the file over rather than let it grow without bound
+        boolean append = outputFile.length() < MAX_FILE_BYTES;
+        try (Writer writer = new FileWriter(outputFile, append)) {
+            writer.write(stamp + " " + BuildConfig.VERSION_NAME + " (" + BuildConfig.VERSION_CODE + ") " +
+                summary() + "\n");
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write startup trace to " + outputFile, e);
+        }
+        outputFile = null;
+    }
+}
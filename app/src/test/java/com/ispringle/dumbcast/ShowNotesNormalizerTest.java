@@ -0,0 +1,146 @@
+package com.ispringle.dumbcast;
+
+import com.ispringle.dumbcast.utils.ShowNotesNormalizer;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Show notes reduction before storage, on markup shaped like hosted feeds' show notes.
+ * ShowNotesNormalizer is plain string work, so these are local unit tests.
+ */
+public class ShowNotesNormalizerTest {
+
+    // The sponsor block a hosting service appends to every episode
+    private static final String SPONSOR_FOOTER =
+        "<div style=\"margin-top:12px;font-family:Helvetica,Arial\">" +
+        "<p><strong>Support the show:</strong> get 20% off with code <em>DUMB</em> at " +
+        "<a href=\"https://sponsor.example.com/?utm_source=feed&amp;utm_medium=podcast\" " +
+        "target=\"_blank\" rel=\"noopener\" style=\"color:#0066cc\">sponsor.example.com</a></p>" +
+        "<p>Learn more about your ad choices. Visit " +
+        "<a href=\"https://podcastchoices.example.com/adchoices\" target=\"_blank\">podcastchoices.example.com/adchoices</a></p>" +
+        "<p>Hosted on an example host. See <a href=\"https://host.example.com/privacy\">host.example.com/privacy</a> " +
+        "for privacy information.</p></div>";
+
+    private static String episodeHtml(int number) {
+        StringBuilder html = new StringBuilder();
+        html.append("<script type=\"text/javascript\">window.track('episode-").append(number).append("');</script>")
+            .append("<style>.notes p { margin: 0 0 1em; }</style>")
+            .append("<div class=\"notes\" style=\"font-size:14px;line-height:1.4\">")
+            .append("<p><span style=\"font-weight:400\">In episode ").append(number)
+            .append(" we talk   about\n\t things.</span></p>")
+            .append("<p><strong>Links:</strong></p><ul>");
+        for (int i = 0; i < 5; i++) {
+            html.append("<li><a href=\"https://example.com/").append(number).append('/').append(i)
+                .append("\" target=\"_blank\" rel=\"noopener noreferrer\" class=\"link\">Link ").append(i)
+                .append("</a></li>");
+        }
+        html.append("</ul><p><br></p><p>&nbsp;</p>")
+            .append("<img src=\"https://pixel.example.com/t.gif?ep=").append(number)
+            .append("\" width=\"1\" height=\"1\" alt=\"\">")
+            .append("<!-- generated by the host -->")
+            .append(SPONSOR_FOOTER);
+        return html.toString();
+    }
+
+    @Test
+    public void testMarkupIsDroppedAndTextAndLinksKept() {
+        String raw = episodeHtml(7);
+        String cleaned = ShowNotesNormalizer.clean(raw);
+
+        assertNotNull(cleaned);
+        assertFalse(cleaned.contains("<script"));
+        assertFalse(cleaned.contains("track("));
+        assertFalse(cleaned.contains("<style"));
+        assertFalse(cleaned.contains("style="));
+        assertFalse(cleaned.contains("<img"));
+        assertFalse(cleaned.contains("<span"));
+        assertFalse(cleaned.contains("<div"));
+        assertFalse(cleaned.contains("target="));
+        assertFalse(cleaned.contains("<!--"));
+        assertTrue(cleaned.contains("<p>In episode 7 we talk about things.</p>"));
+        assertTrue(cleaned.contains("<b>Links:</b>"));
+        assertTrue(cleaned.contains("<li><a href=\"https://example.com/7/3\">Link 3</a></li>"));
+        assertFalse(cleaned.contains("<p></p>"));
+        assertFalse(cleaned.contains("&nbsp;"));
+        assertTrue(cleaned.length() * 3 < raw.length() * 2);
+    }
+
+    @Test
+    public void testNothingLeftIsNull() {
+        assertNull(ShowNotesNormalizer.clean(null));
+        assertNull(ShowNotesNormalizer.clean("<p> </p><img src=\"https://pixel.example.com/t.gif\"><script>x()</script>"));
+    }
+
+    @Test
+    public void testUnsafeLinksAreDroppedKeepingText() {
+        String cleaned = ShowNotesNormalizer.clean("<p><a href=\"javascript:alert(1)\">Click</a> here</p>");
+
+        assertEquals("<p>Click here</p>", cleaned);
+    }
+
+    @Test
+    public void testLinksCompactAndExpandBack() {
+        String cleaned = ShowNotesNormalizer.clean(
+            episodeHtml(3) + "<p><a href=\"https://example.com/3/0\">Link 0 again</a></p>");
+        ShowNotesNormalizer.Compacted compacted = ShowNotesNormalizer.compactLinks(cleaned);
+
+        // Five episode links, three in the footer; the repeated one numbered once
+        assertEquals(8, compacted.links.size());
+        assertEquals("https://example.com/3/0", compacted.links.get(0));
+        assertFalse(compacted.html.contains("https://"));
+        assertTrue(compacted.html.contains("<a href=\"1\">Link 0 again</a>"));
+        assertEquals(cleaned, ShowNotesNormalizer.expandLinks(compacted.html, compacted.links));
+    }
+
+    @Test
+    public void testExpandLeavesUnknownLinksAlone() {
+        String html = "<a href=\"1\">a</a><a href=\"9\">b</a><a href=\"https://example.com\">c</a>";
+
+        assertEquals("<a href=\"https://one.example.com\">a</a><a href=\"9\">b</a><a href=\"https://example.com\">c</a>",
+            ShowNotesNormalizer.expandLinks(html, Arrays.asList("https://one.example.com")));
+    }
+
+    @Test
+    public void testSharedFooterIsFoundAndStripped() {
+        String first = ShowNotesNormalizer.clean(episodeHtml(1));
+        String second = ShowNotesNormalizer.clean(episodeHtml(2));
+        String footer = ShowNotesNormalizer.findSharedFooter(first, second);
+
+        assertNotNull(footer);
+        assertTrue(footer.startsWith("<p><b>Support the show:</b>"));
+        assertTrue(footer.contains("podcastchoices.example.com/adchoices"));
+        assertFalse(footer.contains("example.com/1/"));
+
+        String body = ShowNotesNormalizer.stripFooter(first, footer);
+        assertEquals(first, body + footer);
+        assertTrue(body.contains("In episode 1"));
+        assertNull(ShowNotesNormalizer.stripFooter("<p>Other notes</p>", footer));
+    }
+
+    @Test
+    public void testShortSharedEndingIsNotAFooter() {
+        assertNull(ShowNotesNormalizer.findSharedFooter(
+            "<p>Episode one.</p><p>Thanks for listening!</p>",
+            "<p>Episode two.</p><p>Thanks for listening!</p>"));
+    }
+
+    @Test
+    public void testStoredFormIsMuchSmallerThanFeedHtml() {
+        String raw = episodeHtml(4);
+        String first = ShowNotesNormalizer.clean(episodeHtml(3));
+        String cleaned = ShowNotesNormalizer.clean(raw);
+        String footer = ShowNotesNormalizer.findSharedFooter(cleaned, first);
+        ShowNotesNormalizer.Compacted stored =
+            ShowNotesNormalizer.compactLinks(ShowNotesNormalizer.stripFooter(cleaned, footer));
+
+        int storedChars = stored.html.length();
+        for (String link : stored.links) {
+            storedChars += link.length();
+        }
+        assertTrue("Stored " + storedChars + " of " + raw.length() + " chars", storedChars * 3 < raw.length());
+    }
+}
@@ -0,0 +1,192 @@
+package com.ispringle.dumbcast;
+
+import com.ispringle.dumbcast.services.SilenceMap;
+import com.ispringle.dumbcast.services.SilenceTrimmer;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Silence detection and cut planning over synthetic PCM. SilenceTrimmer and
+ * SilenceMap use no Android classes, so these are local unit tests.
+ */
+public class SilenceTrimmerTest {
+
+    private static final int RATE = 16000;
+
+    @Test
+    public void testLongPauseIsShortenedToKeepLength() {
+        short[] pcm = concat(tone(1000), noise(2000, -60), tone(1000));
+        SilenceTrimmer trimmer = run(pcm, 1, pcm.length);
+
+        assertEquals(1, trimmer.getCutCount());
+        // Half the 300 ms keep length stays on each side of the cut
+        assertEquals(ms(1150), trimmer.getCutStartFrame(0), ms(20));
+        assertEquals(ms(2850), trimmer.getCutEndFrame(0), ms(20));
+        assertEquals(1700, trimmer.getTimeSavedMs(), 30);
+    }
+
+    @Test
+    public void testShortPauseIsLeftAlone() {
+        short[] pcm = concat(tone(1000), noise(500, -60), tone(1000));
+        SilenceTrimmer trimmer = run(pcm, 1, pcm.length);
+
+        assertEquals(0, trimmer.getCutCount());
+        assertEquals(0, trimmer.getTimeSavedMs());
+    }
+
+    @Test
+    public void testHysteresisKeepsOneSilenceThroughClicksAndRoomTone() {
+        // Room tone between the thresholds and a 10 ms click mustn't split the pause
+        short[] pcm = concat(tone(1000), noise(800, -60), noise(600, -41), tone(10), noise(800, -60), tone(1000));
+        SilenceTrimmer trimmer = run(pcm, 1, pcm.length);
+
+        assertEquals(1, trimmer.getCutCount());
+        assertEquals(1910, trimmer.getTimeSavedMs(), 30);
+    }
+
+    @Test
+    public void testRoomToneAloneDoesNotStartSilence() {
+        // Above the close threshold, so never counts as silence even though it's quiet
+        short[] pcm = concat(tone(1000), noise(2000, -41), tone(1000));
+        assertEquals(0, run(pcm, 1, pcm.length).getCutCount());
+    }
+
+    @Test
+    public void testBufferSizeDoesNotChangeCuts() {
+        short[] pcm = concat(tone(700), noise(1300, -60), tone(450), noise(3100, -55), tone(900));
+        pcm = stereo(pcm);
+        SilenceTrimmer whole = run(pcm, 2, pcm.length);
+        SilenceTrimmer chunked = run(pcm, 2, 997);
+
+        assertEquals(2, whole.getCutCount());
+        assertEquals(whole.getCutCount(), chunked.getCutCount());
+        for (int i = 0; i < whole.getCutCount(); i++) {
+            assertEquals(whole.getCutStartFrame(i), chunked.getCutStartFrame(i));
+            assertEquals(whole.getCutEndFrame(i), chunked.getCutEndFrame(i));
+        }
+    }
+
+    @Test
+    public void testTrailingSilenceIsCutAndCompressed() {
+        short[] pcm = stereo(concat(tone(1000), noise(3000, -60)));
+        SilenceTrimmer trimmer = run(pcm, 2, pcm.length);
+
+        assertEquals(1, trimmer.getCutCount());
+        // The usual padding is left before the end of the stream
+        assertEquals(pcm.length / 2 - ms(150), trimmer.getCutEndFrame(0));
+
+        short[] compressed = trimmer.compress(pcm, pcm.length);
+        assertEquals(pcm.length - trimmer.getFramesCut() * 2, compressed.length);
+        // Everything before the cut is untouched
+        for (int i = 0; i < trimmer.getCutStartFrame(0) * 2; i++) {
+            assertEquals(pcm[i], compressed[i]);
+        }
+    }
+
+    @Test
+    public void testSilenceMapLookup() {
+        short[] pcm = concat(tone(1000), noise(2000, -60), tone(1000), noise(2000, -60), tone(1000));
+        SilenceMap map = run(pcm, 1, pcm.length).toSilenceMap();
+
+        assertEquals(2, map.size());
+        assertEquals(0, map.indexFrom(0));
+        assertEquals(0, map.indexFrom(map.getStartMs(0) + 10));
+        assertEquals(1, map.indexFrom(map.getEndMs(0)));
+        assertEquals(-1, map.indexFrom(map.getEndMs(1)));
+        assertEquals(map.getTotalMs(), 2 * 1700, 60);
+    }
+
+    @Test
+    public void testAnalyzesFasterThanRealTime() {
+        // One hour of 44.1 kHz stereo talk: 4 s of speech, 1.5 s of silence, repeated
+        int rate = 44100;
+        short[] block = stereo(concat(tone(4000, rate), noise(1500, -60, rate)));
+        int blocks = 3600 * 1000 / 5500;
+        SilenceTrimmer trimmer = new SilenceTrimmer(rate, 2);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < blocks; i++) {
+            trimmer.process(block, 0, block.length);
+        }
+        trimmer.finish();
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+
+        long audioMs = trimmer.getFramesProcessed() * 1000 / rate;
+        String report = "Analyzed " + (audioMs / 1000) + " s of audio in " + elapsedMs + " ms (" +
+            (audioMs / Math.max(1, elapsedMs)) + "x real time), " + trimmer.getCutCount() +
+            " cuts saving " + (trimmer.getTimeSavedMs() / 1000) + " s";
+        System.out.println(report);
+
+        assertEquals(report, blocks, trimmer.getCutCount());
+        // Each pause keeps 300 ms of its 1.5 s
+        assertEquals(report, blocks * 1200L, trimmer.getTimeSavedMs(), blocks * 30L);
+        // At least 50x real time, so an hour-long episode is analyzed in under 72 s
+        assertTrue(report, elapsedMs < audioMs / 50);
+    }
+
+    private static SilenceTrimmer run(short[] pcm, int channels, int chunk) {
+        SilenceTrimmer trimmer = new SilenceTrimmer(RATE, channels);
+        for (int offset = 0; offset < pcm.length; offset += chunk) {
+            trimmer.process(pcm, offset, Math.min(chunk, pcm.length - offset));
+        }
+        trimmer.finish();
+        return trimmer;
+    }
+
+    private static long ms(long ms) {
+        return ms * RATE / 1000;
+    }
+
+    private static short[] tone(int durationMs) {
+        return tone(durationMs, RATE);
+    }
+
+    private static short[] tone(int durationMs, int rate) {
+        short[] pcm = new short[durationMs * rate / 1000];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (short) (10000 * Math.sin(2 * Math.PI * 220 * i / rate));
+        }
+        return pcm;
+    }
+
+    private static short[] noise(int durationMs, double db) {
+        return noise(durationMs, db, RATE);
+    }
+
+    private static short[] noise(int durationMs, double db, int rate) {
+        Random random = new Random(durationMs);
+        double amplitude = Math.pow(10, db / 20) * Short.MAX_VALUE;
+        short[] pcm = new short[durationMs * rate / 1000];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (short) (random.nextGaussian() * amplitude);
+        }
+        return pcm;
+    }
+
+    private static short[] stereo(short[] mono) {
+        short[] pcm = new short[mono.length * 2];
+        for (int i = 0; i < mono.length; i++) {
+            pcm[i * 2] = mono[i];
+            pcm[i * 2 + 1] = (short) (mono[i] / 2);
+        }
+        return pcm;
+    }
+
+    private static short[] concat(short[]... parts) {
+        int length = 0;
+        for (short[] part : parts) {
+            length += part.length;
+        }
+        short[] pcm = new short[length];
+        int offset = 0;
+        for (short[] part : parts) {
+            System.arraycopy(part, 0, pcm, offset, part.length);
+            offset += part.length;
+        }
+        return pcm;
+    }
+}
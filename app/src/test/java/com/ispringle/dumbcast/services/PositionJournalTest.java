@@ -0,0 +1,173 @@
+package com.ispringle.dumbcast.services;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+/**
+ * Recovery of the latest position from the journal file after torn writes,
+ * corruption and wrapping around the ring. PositionJournal is plain file I/O,
+ * so these are local unit tests.
+ */
+public class PositionJournalTest {
+
+    // Record layout from PositionJournal: 28-byte records in a ring of 64
+    private static final int RECORD_SIZE = 28;
+    private static final int SLOT_COUNT = 64;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.getRoot(), "position.journal");
+    }
+
+    @Test
+    public void testEmptyJournalHasNoRecord() throws IOException {
+        PositionJournal journal = new PositionJournal(file);
+        assertNull(journal.open());
+        journal.close();
+
+        assertEquals(RECORD_SIZE * SLOT_COUNT, file.length());
+    }
+
+    @Test
+    public void testLatestRecordIsRecovered() throws IOException {
+        appendPositions(1, 10);
+
+        PositionJournal.Record latest = reopen();
+        assertEquals(10, latest.sequence);
+        assertEquals(42, latest.episodeId);
+        assertEquals(10, latest.positionSeconds);
+        assertFalse(latest.isFlushed());
+    }
+
+    @Test
+    public void testShortFileFallsBackToLastWholeRecord() throws IOException {
+        appendPositions(1, 10);
+        // Power lost partway through writing record 10, which sits in slot 10
+        truncate(10L * RECORD_SIZE + 11);
+
+        PositionJournal.Record latest = reopen();
+        assertEquals(9, latest.sequence);
+        assertEquals(9, latest.positionSeconds);
+        // The file is padded back out to the full ring
+        assertEquals(RECORD_SIZE * SLOT_COUNT, file.length());
+    }
+
+    @Test
+    public void testTornRecordFallsBackToPrevious() throws IOException {
+        appendPositions(1, 10);
+        // Only the first half of record 10 reached storage; the rest is zeros
+        writeAt(10L * RECORD_SIZE + 14, new byte[RECORD_SIZE - 14]);
+
+        PositionJournal.Record latest = reopen();
+        assertEquals(9, latest.sequence);
+        assertEquals(9, latest.positionSeconds);
+    }
+
+    @Test
+    public void testChecksumMismatchFallsBackToPrevious() throws IOException {
+        appendPositions(1, 10);
+        // Flip a bit in record 10's position
+        long offset = 10L * RECORD_SIZE + 16 + 3;
+        writeAt(offset, new byte[]{(byte) (readAt(offset) ^ 0x01)});
+
+        PositionJournal.Record latest = reopen();
+        assertEquals(9, latest.sequence);
+        assertEquals(9, latest.positionSeconds);
+    }
+
+    @Test
+    public void testAppendAfterRecoveryContinuesSequence() throws IOException {
+        appendPositions(1, 10);
+        writeAt(10L * RECORD_SIZE + 16, new byte[]{1, 2, 3, 4});
+
+        PositionJournal journal = new PositionJournal(file);
+        assertEquals(9, journal.open().sequence);
+        // Overwrites the damaged slot rather than skipping ahead
+        journal.append(42, 100, PositionJournal.FLAG_FLUSHED);
+        journal.close();
+
+        PositionJournal.Record latest = reopen();
+        assertEquals(10, latest.sequence);
+        assertEquals(100, latest.positionSeconds);
+        assertTrue(latest.isFlushed());
+    }
+
+    @Test
+    public void testRingWrapsAroundKeepingLatest() throws IOException {
+        // Three and a half times round the ring, reopening partway through
+        appendPositions(1, 100);
+        appendPositions(101, 3 * SLOT_COUNT + SLOT_COUNT / 2);
+
+        assertEquals(RECORD_SIZE * SLOT_COUNT, file.length());
+        PositionJournal.Record latest = reopen();
+        assertEquals(3 * SLOT_COUNT + SLOT_COUNT / 2, latest.sequence);
+        assertEquals(3 * SLOT_COUNT + SLOT_COUNT / 2, latest.positionSeconds);
+    }
+
+    @Test
+    public void testCorruptLatestAfterWrapFallsBackToPrevious() throws IOException {
+        int last = 2 * SLOT_COUNT + 5;
+        appendPositions(1, last);
+        // Damage the latest record's episode ID; older laps in the other slots must not win
+        writeAt((last % SLOT_COUNT) * (long) RECORD_SIZE + 8, new byte[]{(byte) 0xff});
+
+        PositionJournal.Record latest = reopen();
+        assertEquals(last - 1, latest.sequence);
+        assertEquals(last - 1, latest.positionSeconds);
+    }
+
+    /**
+     * Append records for episode 42 whose position equals their sequence number,
+     * reopening the journal first so it continues from what's on disk.
+     */
+    private void appendPositions(int first, int last) throws IOException {
+        PositionJournal journal = new PositionJournal(file);
+        PositionJournal.Record latest = journal.open();
+        assertEquals(first - 1, latest == null ? 0 : latest.sequence);
+        for (int position = first; position <= last; position++) {
+            journal.append(42, position, 0);
+        }
+        journal.close();
+    }
+
+    private PositionJournal.Record reopen() throws IOException {
+        PositionJournal journal = new PositionJournal(file);
+        PositionJournal.Record latest = journal.open();
+        journal.close();
+        assertNotNull(latest);
+        return latest;
+    }
+
+    private void truncate(long length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        }
+    }
+
+    private void writeAt(long offset, byte[] bytes) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(offset);
+            raf.write(bytes);
+        }
+    }
+
+    private byte readAt(long offset) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(offset);
+            return raf.readByte();
+        }
+    }
+}